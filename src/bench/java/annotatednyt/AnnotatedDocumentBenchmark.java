@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nytlabs.corpus.NYTCorpusDocumentParser;
+
+import edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument;
+import edu.jhu.hlt.annotatednyt.ParagraphView;
+
+/**
+ * Cost of the {@link AnnotatedNYTDocument} accessors that copy or split text, over parsed
+ * {@link NitfInputs} of each size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnnotatedDocumentBenchmark {
+
+  @Param({ "small", "medium", "large" })
+  public String size;
+
+  private AnnotatedNYTDocument doc;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    this.doc = new AnnotatedNYTDocument(new NYTCorpusDocumentParser().fromByteArray(NitfInputs.get(this.size), false));
+  }
+
+  @Benchmark
+  public List<String> getBodyAsList() {
+    return this.doc.getBodyAsList();
+  }
+
+  @Benchmark
+  public ParagraphView getBodyParagraphView() {
+    return this.doc.getBodyParagraphView();
+  }
+
+  @Benchmark
+  public Optional<String> getOnlineLeadParagraph() {
+    return this.doc.getOnlineLeadParagraph();
+  }
+
+  @Benchmark
+  public String toStringBenchmark() {
+    return this.doc.toString();
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Benchmark inputs of several sizes, built from the test sample by repeating the paragraphs of
+ * its <code>full_text</code> block, so every input parses to a realistic document.
+ */
+final class NitfInputs {
+
+  private static final String FULL_TEXT = "<block class=\"full_text\">";
+
+  private NitfInputs() {
+  }
+
+  /**
+   * @param size <code>small</code> (the sample, about 6 KB), <code>medium</code> (about 50 KB),
+   * <code>large</code> (about 2 MB), or <code>markup</code> (about 50 KB, with inline elements
+   * around most words, which stresses the recursive text collection of the parser)
+   * @return the NITF bytes
+   */
+  static byte[] get(final String size) throws IOException {
+    final String sample = new String(Fixtures.readResource("/nitf/sample.xml"), StandardCharsets.UTF_8);
+    switch (size) {
+    case "small":
+      return sample.getBytes(StandardCharsets.UTF_8);
+    case "medium":
+      return grow(sample, 50 << 10, false);
+    case "large":
+      return grow(sample, 2 << 20, false);
+    case "markup":
+      return grow(sample, 50 << 10, true);
+    default:
+      throw new IllegalArgumentException("Unknown input size: " + size);
+    }
+  }
+
+  private static byte[] grow(final String sample, final int bytes, final boolean markup) {
+    final int start = sample.indexOf(FULL_TEXT) + FULL_TEXT.length();
+    final int end = sample.indexOf("</block>", start);
+    String paragraphs = sample.substring(start, end);
+    if (markup)
+      paragraphs = paragraphs.replaceAll("(?<=[ >])(\\w+)(?=[ ,.<])", "<em>$1</em>");
+    final StringBuilder sb = new StringBuilder(bytes + sample.length());
+    sb.append(sample, 0, start);
+    while (sb.length() < bytes)
+      sb.append(paragraphs);
+    sb.append(sample, end, sample.length());
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+import com.nytlabs.corpus.NYTCorpusDocumentParser;
+
+/**
+ * Throughput and latency of {@link NYTCorpusDocumentParser}, from bytes and from a file, over
+ * {@link NitfInputs} of each size. Run with <code>-prof gc</code> for the allocation per
+ * document (<code>gc.alloc.rate.norm</code>).
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+  @Param({ "small", "medium", "large", "markup" })
+  public String size;
+
+  private final NYTCorpusDocumentParser parser = new NYTCorpusDocumentParser();
+  private byte[] bytes;
+  private File file;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    this.bytes = NitfInputs.get(this.size);
+    this.file = File.createTempFile("bench", ".xml");
+    Files.write(this.file.toPath(), this.bytes);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(this.file.toPath());
+  }
+
+  @Benchmark
+  public NYTCorpusDocument fromByteArray() {
+    return this.parser.fromByteArray(this.bytes, false);
+  }
+
+  @Benchmark
+  public NYTCorpusDocument parseFromFile() {
+    return this.parser.parseNYTCorpusDocumentFromFile(this.file, false);
+  }
+
+  @Benchmark
+  public NYTCorpusDocument parseHead() {
+    return this.parser.parseHead(this.bytes);
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.jhu.hlt.annotatednyt.SpaceNormalizer;
+
+/**
+ * Compares {@link SpaceNormalizer#normalizeAndTrim(String)} with the regular expression
+ * based normalization it replaced, on body-sized inputs: roughly a short item, a median body,
+ * and a long feature.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpaceNormalizerBenchmark {
+
+  private static final Pattern NBS_PATTERN = Pattern.compile("\\p{Zs}");
+
+  private static final String[] WORDS = { "the", "mayor", "said", "on", "Tuesday", "that",
+      "city", "budget", "would", "include", "$4.2", "billion", "for", "schools", "--", "a",
+      "decision", "critics", "called", "''premature.''", "In", "Albany,", "officials" };
+
+  @Param({ "600", "5000", "60000" })
+  public int chars;
+
+  @Param({ "false", "true" })
+  public boolean withNbsp;
+
+  private String input;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random r = new Random(7);
+    StringBuilder sb = new StringBuilder(this.chars + 32);
+    while (sb.length() < this.chars) {
+      sb.append(WORDS[r.nextInt(WORDS.length)]);
+      if (r.nextInt(25) == 0)
+        sb.append(".\n");
+      else if (this.withNbsp && r.nextInt(200) == 0)
+        sb.append('\u00a0');
+      else
+        sb.append(' ');
+    }
+    this.input = sb.toString();
+  }
+
+  @Benchmark
+  public String regex() {
+    return this.input.replaceAll(NBS_PATTERN.toString(), " ").trim();
+  }
+
+  @Benchmark
+  public String normalizer() {
+    return SpaceNormalizer.normalizeAndTrim(this.input);
+  }
+}
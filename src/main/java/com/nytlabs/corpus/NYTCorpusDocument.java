@@ -975,30 +975,6 @@ public class NYTCorpusDocument {
 		return wordCount;
 	}
 
-	/**
-	 * Left justify a string by forcing it to be the specified length. This is
-	 * done by concatonating space characters to the end of the string until the
-	 * string is of the specified length. If, however, the string is initially
-	 * longer than the specified length then the original string is returned.
-	 *
-	 * @param s
-	 *            A string.
-	 * @param length
-	 *            The target length for the string.
-	 * @return A left-justified string.
-	 */
-	private String ljust(String s, Integer length) {
-		if (s.length() >= length) {
-			return s;
-		}
-		length -= s.length();
-		StringBuffer sb = new StringBuffer();
-		for (Integer i = 0; i < length; i++) {
-			sb.append(" ");
-		}
-		return s + sb.toString();
-	}
-
 	/**
 	 * Setter for the alternateURL property.
 	 *
@@ -1497,7 +1473,7 @@ public class NYTCorpusDocument {
 	 */
 	@Override
   public String toString() {
-		StringBuffer sb = new StringBuffer();
+		StringBuilder sb = new StringBuilder();
 		appendProperty(sb, "alternativeURL", alternateURL);
 		appendProperty(sb, "articleAbstract", articleAbstract);
 		appendProperty(sb, "authorBiography", authorBiography);
@@ -1551,19 +1527,48 @@ public class NYTCorpusDocument {
 	}
 
 	/**
-	 * Append a property to the specified string.
+	 * Append a property to the specified string: its name, left justified to
+	 * 45 characters, and its value with runs of whitespace collapsed to a single
+	 * space and the ends trimmed, as by
+	 * <code>replaceAll("\\s+", " ").trim()</code>.
 	 *
 	 * @param sb
 	 * @param propertyName
 	 * @param propertyValue
 	 */
-	private void appendProperty(StringBuffer sb, String propertyName,
+	private static void appendProperty(StringBuilder sb, String propertyName,
 			Object propertyValue) {
-
-		if (propertyValue != null) {
-			propertyValue = propertyValue.toString().replaceAll("\\s+", " ")
-					.trim();
+		sb.append(propertyName).append(':');
+		for (int i = propertyName.length() + 1; i < 45; i++) {
+			sb.append(' ');
+		}
+		if (propertyValue == null) {
+			sb.append("null");
+		} else {
+			String s = propertyValue.toString();
+			int start = 0;
+			int end = s.length();
+			while (start < end && s.charAt(start) <= ' ') {
+				start++;
+			}
+			while (end > start && s.charAt(end - 1) <= ' ') {
+				end--;
+			}
+			boolean inRun = false;
+			for (int i = start; i < end; i++) {
+				char c = s.charAt(i);
+				if (c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f'
+						|| c == '\r') {
+					if (!inRun) {
+						sb.append(' ');
+					}
+					inRun = true;
+				} else {
+					sb.append(c);
+					inRun = false;
+				}
+			}
 		}
-		sb.append(ljust(propertyName + ":", 45) + propertyValue + "\n");
+		sb.append('\n');
 	}
 }
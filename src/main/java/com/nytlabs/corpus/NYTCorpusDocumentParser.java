@@ -30,6 +30,7 @@ import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -47,6 +48,10 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
+import edu.jhu.hlt.annotatednyt.perf.FlightEvents;
+import edu.jhu.hlt.annotatednyt.perf.PipelineMetrics;
+import edu.jhu.hlt.annotatednyt.perf.PipelineStage;
+
 /**
  * NYTCorpusDocumentParser <BR>
  * Created: Jun 17, 2008 <BR>
@@ -60,6 +65,8 @@ import org.xml.sax.SAXException;
  * 
  * Additionally, an API to read from an {@link InputStream} was
  * added.
+ * 
+ * Parsers are not thread-safe; use one instance per thread.
  *
  * @author Evan Sandhaus
  *
@@ -71,8 +78,11 @@ public class NYTCorpusDocumentParser {
 	/** NITF Constant */
 	private static final String SERIES_NAME_TAG = "series.name";
 
-	/** NITF Constant */
-	private static final DateFormat format = new SimpleDateFormat(
+	/**
+	 * NITF date format. {@link SimpleDateFormat} is not thread-safe, so each
+	 * parser has its own.
+	 */
+	private final DateFormat format = new SimpleDateFormat(
 			"yyyyMMdd'T'HHmmss");
 
 	/** NITF Constant */
@@ -271,8 +281,98 @@ public class NYTCorpusDocumentParser {
 	private static final String GENERAL_DESCRIPTOR_ATTRIBUTE = "general_descriptor";
 
 	public NYTCorpusDocument fromByteArray(byte[] bytes, boolean validating) {
-    return this.parseNYTCorpusDocumentFromFile(new ByteArrayInputStream(bytes), validating);
+    Object event = FlightEvents.beginParse();
+    NYTCorpusDocument doc = null;
+    try {
+      doc = this.parseNYTCorpusDocumentFromFile(new ByteArrayInputStream(bytes), validating);
+      return doc;
+    } catch (RuntimeException e) {
+      FlightEvents.parseFailure("document", null, e);
+      throw e;
+    } finally {
+      FlightEvents.endParse(event, bytes.length, doc);
+    }
   }
+
+	/** NITF end tag of the head element, as bytes. */
+	private static final byte[] HEAD_END = ("</" + HEAD_TAG + ">")
+			.getBytes(StandardCharsets.US_ASCII);
+
+	/** NITF end tag of the root element, as bytes. */
+	private static final byte[] NITF_END = ("</" + NITF_TAG + ">")
+			.getBytes(StandardCharsets.US_ASCII);
+
+	/** Parses the head elements; created on first use. */
+	private DocumentBuilder headBuilder;
+
+	/**
+	 * Parse only the <code>head</code> element of a NITF document: the
+	 * metadata, classifiers, and publication data, but no headline or text.
+	 * The body is never scanned, so this is much cheaper than a full parse,
+	 * and lets callers discard documents by their metadata alone.
+	 *
+	 * @param bytes
+	 *            The NITF document.
+	 * @return A document with only the fields found in the head set, or null
+	 *         if the head cannot be found or parsed.
+	 */
+	public NYTCorpusDocument parseHead(byte[] bytes) {
+		int end = indexOf(bytes, HEAD_END);
+		if (end < 0) {
+			return null;
+		}
+		end += HEAD_END.length;
+		byte[] head = new byte[end + NITF_END.length];
+		System.arraycopy(bytes, 0, head, 0, end);
+		System.arraycopy(NITF_END, 0, head, end, NITF_END.length);
+		try {
+			if (headBuilder == null) {
+				DocumentBuilderFactory factory = DocumentBuilderFactory
+						.newInstance();
+				factory.setValidating(false);
+				factory.setNamespaceAware(false);
+				// skip the DOCTYPE's external DTD rather than fetch it
+				factory.setFeature(
+						"http://apache.org/xml/features/nonvalidating/load-external-dtd",
+						false);
+				headBuilder = factory.newDocumentBuilder();
+			}
+			long start = PipelineMetrics.start();
+			Document document = headBuilder.parse(new ByteArrayInputStream(
+					head));
+			PipelineMetrics.record(PipelineStage.DOM, start);
+			start = PipelineMetrics.start();
+			NYTCorpusDocument ldcDocument = new NYTCorpusDocument();
+			Node nitf = document.getDocumentElement();
+			NodeList children = nitf.getChildNodes();
+			for (int i = 0; i < children.getLength(); i++) {
+				Node child = children.item(i);
+				if (child.getNodeName().equals(HEAD_TAG)) {
+					handleHeadNode(child, ldcDocument);
+				}
+			}
+			PipelineMetrics.record(PipelineStage.EXTRACT, start);
+			return ldcDocument;
+		} catch (SAXException e) {
+			return null;
+		} catch (IOException e) {
+			return null;
+		} catch (ParserConfigurationException e) {
+			return null;
+		}
+	}
+
+	private static int indexOf(byte[] bytes, byte[] pattern) {
+		outer: for (int i = 0; i <= bytes.length - pattern.length; i++) {
+			for (int j = 0; j < pattern.length; j++) {
+				if (bytes[i + j] != pattern[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
 	
 	/**
 	 * Parse an New York Times Document from a file.
@@ -289,17 +389,22 @@ public class NYTCorpusDocumentParser {
 	public NYTCorpusDocument parseNYTCorpusDocumentFromFile(File file,
 			boolean validating) {
 
+		long start = PipelineMetrics.start();
 		Document document = null;
 		if (validating) {
 			document = loadValidating(file);
 		} else {
 			document = loadNonValidating(file);
 		}
+		PipelineMetrics.record(PipelineStage.DOM, start);
+		if (document == null)
+			return null;
 		return parseNYTCorpusDocumentFromDOMDocument(file, document);
 	}
 
 	public NYTCorpusDocument parseNYTCorpusDocumentFromDOMDocument(
 			File file, Document document) {
+		long start = PipelineMetrics.start();
 		NYTCorpusDocument ldcDocument = new NYTCorpusDocument();
 		ldcDocument.setSourceFile(file);
 		NodeList children = document.getChildNodes();
@@ -311,6 +416,7 @@ public class NYTCorpusDocumentParser {
 			}
 		}
 
+		PipelineMetrics.record(PipelineStage.EXTRACT, start);
 		return ldcDocument;
 	}
 	
@@ -328,16 +434,22 @@ public class NYTCorpusDocumentParser {
    */
   public NYTCorpusDocument parseNYTCorpusDocumentFromFile(InputStream is, boolean validating) {
 
+    long start = PipelineMetrics.start();
     Document document = null;
     if (validating) {
       document = loadValidating(is);
     } else {
       document = loadNonValidating(is);
     }
+    PipelineMetrics.record(PipelineStage.DOM, start);
+    // the loader has already reported the error
+    if (document == null)
+      return null;
     return parseNYTCorpusDocumentFromDOMDocument(is, document);
   }
   
   public NYTCorpusDocument parseNYTCorpusDocumentFromDOMDocument(InputStream is, Document document) {
+    long start = PipelineMetrics.start();
     NYTCorpusDocument ldcDocument = new NYTCorpusDocument();
     ldcDocument.setSourceFile(null);
     NodeList children = document.getChildNodes();
@@ -349,6 +461,7 @@ public class NYTCorpusDocumentParser {
       }
     }
 
+    PipelineMetrics.record(PipelineStage.EXTRACT, start);
     return ldcDocument;
   }
   
@@ -363,6 +476,7 @@ public class NYTCorpusDocumentParser {
     try {
       return getDOMObject(is, true);
     } catch (SAXException e) {
+      FlightEvents.parseFailure("document", null, e);
       e.printStackTrace();
       System.out.println("Error parsing digital document from nitf inputstream.");
     } catch (IOException e) {
@@ -436,6 +550,7 @@ public class NYTCorpusDocumentParser {
       Document doc = factory.newDocumentBuilder().parse(is);
       return doc;
     } catch (SAXException e) {
+      FlightEvents.parseFailure("document", null, e);
       e.printStackTrace();
       System.out.println("Exception processing string.");
     } catch (ParserConfigurationException e) {
@@ -654,6 +769,8 @@ public class NYTCorpusDocumentParser {
 				Date date = format.parse(publicationDateString);
 				ldcDocument.setPublicationDate(date);
 			} catch (ParseException e) {
+				FlightEvents.parseFailure(DATE_PUBLICATION_ATTRIBUTE,
+						publicationDateString, e);
 				e.printStackTrace();
 				System.out.println("Error parsing date from string "
 						+ publicationDateString + " in file "
@@ -668,6 +785,7 @@ public class NYTCorpusDocumentParser {
 				URL url = new URL(urlString);
 				ldcDocument.setUrl(url);
 			} catch (MalformedURLException e) {
+				FlightEvents.parseFailure(EX_REF_ATTRIBUTE, urlString, e);
 				e.printStackTrace();
 				System.out.println("Error parsing url from string " + urlString
 						+ " in file " + ldcDocument.getSourceFile() + ".");
@@ -680,6 +798,8 @@ public class NYTCorpusDocumentParser {
 				Integer wordCount = Integer.parseInt(wordCountString);
 				ldcDocument.setWordCount(wordCount);
 			} catch (NumberFormatException e) {
+				FlightEvents.parseFailure(ITEM_LENGTH_ATTRIBUTE,
+						wordCountString, e);
 				e.printStackTrace();
 				System.out.println("Error parsing integer from string "
 						+ wordCountString + " in file "
@@ -762,6 +882,7 @@ public class NYTCorpusDocumentParser {
 			try {
 				ldcDocument.setGuid(Integer.parseInt(docIdString));
 			} catch (NumberFormatException e) {
+				FlightEvents.parseFailure(ID_STRING_ATTRIBUTE, docIdString, e);
 				e.printStackTrace();
 				System.out.println("Error parsing long from string "
 						+ docIdString + " in file "
@@ -817,16 +938,19 @@ public class NYTCorpusDocumentParser {
 			}
 
 		} catch (MalformedURLException e) {
+			FlightEvents.parseFailure(name, content, e);
 			e.printStackTrace();
 			System.out.println("Error parsing url from string " + content
 					+ " in file " + ldcDocument.getSourceFile() + ".");
 		} catch (NumberFormatException e) {
+			FlightEvents.parseFailure(name, content, e);
 			e.printStackTrace();
 			System.out
 					.println("Error parsing integer" + " from string "
 							+ content + " in file "
 							+ ldcDocument.getSourceFile() + ".");
 		} catch (ParseException e) {
+			FlightEvents.parseFailure(name, content, e);
 			e.printStackTrace();
 			System.out.println("Error parsing date" + " from string " + content
 					+ " in file " + ldcDocument.getSourceFile() + ".");
@@ -0,0 +1,358 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+import com.nytlabs.corpus.NYTCorpusDocumentParser;
+
+import edu.jhu.hlt.acute.iterators.tar.TarGzArchiveEntryByteIterator;
+import edu.jhu.hlt.annotatednyt.cache.ParseCache;
+import edu.jhu.hlt.annotatednyt.perf.FlightEvents;
+import edu.jhu.hlt.annotatednyt.perf.PipelineMetrics;
+import edu.jhu.hlt.annotatednyt.perf.PipelineStage;
+
+/**
+ * Reads the Annotated NYT corpus as distributed by LDC: a <code>data</code> directory
+ * containing one directory per year, each holding one <code>.tgz</code> archive per month
+ * (e.g., <code>data/1995/03.tgz</code>).
+ * <br><br>
+ * Archives can be read one at a time with {@link #read(Path, DocumentHandler)}, or
+ * processed in parallel with {@link #processArchives(int, ArchiveProcessor, ResultHandler)},
+ * which runs one archive per thread and hands back the per-archive results in corpus order.
+ */
+public class CorpusReader {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CorpusReader.class);
+
+  private static final int BUFFER_SIZE = 1024 * 8 * 16;
+
+  /**
+   * Receives the documents of an archive.
+   */
+  @FunctionalInterface
+  public interface DocumentHandler {
+    /**
+     * @param doc the parsed document
+     * @throws IOException on errors handling <code>doc</code>
+     */
+    void handle(NYTCorpusDocument doc) throws IOException;
+
+    /**
+     * @param next the handler to call after this one
+     * @return a handler that passes each document to this handler, then to <code>next</code>;
+     * use it to build several indexes in a single pass
+     */
+    default DocumentHandler andThen(final DocumentHandler next) {
+      return doc -> {
+        this.handle(doc);
+        next.handle(doc);
+      };
+    }
+
+    /**
+     * @param handler the handler of wrapped documents
+     * @return a handler that wraps each document in an {@link AnnotatedNYTDocument}, timing
+     * the wrap as {@link PipelineStage#WRAP}, and passes it to <code>handler</code>
+     */
+    static DocumentHandler wrapping(final AnnotatedDocumentHandler handler) {
+      return doc -> {
+        final long start = PipelineMetrics.start();
+        final AnnotatedNYTDocument wrapped = new AnnotatedNYTDocument(doc);
+        PipelineMetrics.record(PipelineStage.WRAP, start);
+        handler.handle(wrapped);
+      };
+    }
+  }
+
+  /**
+   * Receives the documents of an archive, wrapped by {@link DocumentHandler#wrapping}.
+   */
+  @FunctionalInterface
+  public interface AnnotatedDocumentHandler {
+    /**
+     * @param doc the parsed document, wrapped
+     * @throws IOException on errors handling <code>doc</code>
+     */
+    void handle(AnnotatedNYTDocument doc) throws IOException;
+  }
+
+  /**
+   * Processes a single archive, typically by calling {@link CorpusReader#read(Path, DocumentHandler)}.
+   * Called concurrently, from several threads, for different archives.
+   *
+   * @param <R> the result type
+   */
+  @FunctionalInterface
+  public interface ArchiveProcessor<R> {
+    /**
+     * @param archive the archive to process
+     * @return the result for <code>archive</code>
+     * @throws IOException on errors processing <code>archive</code>
+     */
+    R process(Path archive) throws IOException;
+  }
+
+  /**
+   * Receives per-archive results, in corpus order, on the calling thread.
+   *
+   * @param <R> the result type
+   */
+  @FunctionalInterface
+  public interface ResultHandler<R> {
+    /**
+     * @param archive the archive that was processed
+     * @param result the result of processing <code>archive</code>
+     * @throws IOException on errors handling <code>result</code>
+     */
+    void handle(Path archive, R result) throws IOException;
+  }
+
+  private final Path dataPath;
+  private final ParseCache parseCache;
+
+  /**
+   * @param dataPath path to the <code>data</code> directory of the corpus
+   */
+  public CorpusReader(final Path dataPath) {
+    this(dataPath, null);
+  }
+
+  /**
+   * @param dataPath path to the <code>data</code> directory of the corpus
+   * @param parseCache the {@link ParseCache} to parse documents through, or <code>null</code>
+   * to always parse
+   */
+  public CorpusReader(final Path dataPath, final ParseCache parseCache) {
+    this.dataPath = dataPath;
+    this.parseCache = parseCache;
+  }
+
+  /**
+   * @return the path to the <code>data</code> directory of the corpus
+   */
+  public Path getDataPath() {
+    return this.dataPath;
+  }
+
+  /**
+   * @return the <code>.tgz</code> archives of the corpus, sorted by year and month
+   * @throws IOException on errors listing the data directory
+   */
+  public List<Path> getArchives() throws IOException {
+    List<Path> archives = new ArrayList<>();
+    try (Stream<Path> years = Files.list(this.dataPath)) {
+      for (Path year : (Iterable<Path>) years::iterator) {
+        if (!Files.isDirectory(year))
+          continue;
+        try (Stream<Path> months = Files.list(year)) {
+          months.filter(p -> p.getFileName().toString().endsWith(".tgz"))
+              .forEach(archives::add);
+        }
+      }
+    }
+    Collections.sort(archives);
+    return archives;
+  }
+
+  /**
+   * Parse every document of <code>archive</code>, in archive order, through the
+   * {@link ParseCache} if there is one. Documents that cannot be parsed are skipped; the
+   * parser has already reported them.
+   *
+   * @param archive a <code>.tgz</code> archive of NITF documents
+   * @param handler the {@link DocumentHandler} to pass documents to
+   * @throws IOException on errors reading <code>archive</code>, or from <code>handler</code>
+   */
+  public void read(final Path archive, final DocumentHandler handler) throws IOException {
+    final NYTCorpusDocumentParser parser = new NYTCorpusDocumentParser();
+    final ParseCache cache = this.parseCache;
+    if (cache == null)
+      this.readEntries(archive, bytes -> sink(handler, parser.fromByteArray(bytes, false)));
+    else
+      this.readEntries(archive, bytes -> sink(handler, cache.fromByteArray(parser, bytes)));
+  }
+
+  private static void sink(final DocumentHandler handler, final NYTCorpusDocument doc) throws IOException {
+    if (doc == null)
+      return;
+    final long start = PipelineMetrics.start();
+    handler.handle(doc);
+    PipelineMetrics.record(PipelineStage.SINK, start);
+  }
+
+  /**
+   * Read the raw (NITF) bytes of every document of <code>archive</code>, in archive order.
+   *
+   * @param archive a <code>.tgz</code> archive of NITF documents
+   * @param handler receives the bytes of each entry
+   * @throws IOException on errors reading <code>archive</code>, or from <code>handler</code>
+   */
+  public void readEntries(final Path archive, final EntryHandler handler) throws IOException {
+    LOGGER.debug("Reading archive: {}", archive);
+    final Object scan = FlightEvents.beginArchive(archive);
+    int entries = 0;
+    long inflated = 0;
+    boolean completed = false;
+    try (InputStream is = Files.newInputStream(archive);
+        BufferedInputStream bin = new BufferedInputStream(is, BUFFER_SIZE);
+        TarGzArchiveEntryByteIterator iter = new TarGzArchiveEntryByteIterator(bin);) {
+      long start = PipelineMetrics.start();
+      while (iter.hasNext()) {
+        final byte[] bytes = iter.next();
+        PipelineMetrics.recordEntry(start, bytes.length);
+        entries++;
+        inflated += bytes.length;
+        handler.handle(bytes);
+        start = PipelineMetrics.start();
+      }
+      completed = true;
+    } finally {
+      FlightEvents.endArchive(scan, entries, inflated, completed);
+    }
+  }
+
+  /**
+   * Receives the raw bytes of archive entries.
+   */
+  @FunctionalInterface
+  public interface EntryHandler {
+    /**
+     * @param bytes the contents of an archive entry
+     * @throws IOException on errors handling <code>bytes</code>
+     */
+    void handle(byte[] bytes) throws IOException;
+  }
+
+  /**
+   * Parse every document of the corpus, in corpus order, on the calling thread.
+   *
+   * @param handler the {@link DocumentHandler} to pass documents to
+   * @throws IOException on errors reading the corpus, or from <code>handler</code>
+   */
+  public void readAll(final DocumentHandler handler) throws IOException {
+    for (Path archive : this.getArchives())
+      this.read(archive, handler);
+  }
+
+  /**
+   * Process every archive of the corpus with <code>processor</code>, using <code>threads</code>
+   * threads, one archive per thread at a time. Results are passed to <code>handler</code> on the
+   * calling thread, in corpus order, as soon as they and all of their predecessors are available.
+   * At most <code>2 * threads</code> archives are in flight or awaiting their turn at any time.
+   * <br><br>
+   * If any archive fails, the remaining work is cancelled and the failure is rethrown.
+   *
+   * @param threads the number of worker threads
+   * @param processor the per-archive work; must be safe to call concurrently
+   * @param handler receives the per-archive results
+   * @throws IOException if processing or handling any archive fails
+   */
+  public <R> void processArchives(final int threads, final ArchiveProcessor<R> processor,
+      final ResultHandler<R> handler) throws IOException {
+    if (threads < 1)
+      throw new IllegalArgumentException("threads must be positive: " + threads);
+    final List<Path> archives = this.getArchives();
+    final ExecutorService pool = Executors.newFixedThreadPool(threads, new WorkerThreadFactory());
+    final Deque<Path> pendingPaths = new ArrayDeque<>();
+    final Deque<Future<R>> pending = new ArrayDeque<>();
+    try {
+      for (Path archive : archives) {
+        pending.add(pool.submit(() -> processor.process(archive)));
+        pendingPaths.add(archive);
+        if (pending.size() >= 2 * threads)
+          handler.handle(pendingPaths.poll(), await(pending.poll()));
+      }
+      while (!pending.isEmpty())
+        handler.handle(pendingPaths.poll(), await(pending.poll()));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Read every archive of the corpus with {@link #processArchives(int, ArchiveProcessor, ResultHandler)},
+   * giving each worker thread its own handler from <code>handlers</code>, so handlers need no
+   * locks. Use it to accumulate per-thread state, such as counts, and combine it afterwards.
+   *
+   * @param threads the number of worker threads
+   * @param handlers creates a handler, once per worker thread that reads an archive
+   * @return the handlers created, in no particular order; empty if the corpus has no archives
+   * @throws IOException if reading any archive fails
+   */
+  public <H extends DocumentHandler> List<H> readPerThread(final int threads, final Supplier<H> handlers)
+      throws IOException {
+    final Queue<H> all = new ConcurrentLinkedQueue<>();
+    final ThreadLocal<H> local = ThreadLocal.withInitial(() -> {
+      final H h = handlers.get();
+      all.add(h);
+      return h;
+    });
+    this.processArchives(threads, archive -> {
+      this.read(archive, local.get());
+      return Boolean.TRUE;
+    }, (archive, done) -> {
+    });
+    return new ArrayList<>(all);
+  }
+
+  private static <R> R await(final Future<R> f) throws IOException {
+    try {
+      return f.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while processing the corpus.");
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof UncheckedIOException)
+        throw ((UncheckedIOException) cause).getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw new IOException(cause);
+    }
+  }
+
+  private static final class WorkerThreadFactory implements ThreadFactory {
+    private static final AtomicInteger POOL = new AtomicInteger();
+    private final int pool = POOL.incrementAndGet();
+    private final AtomicInteger n = new AtomicInteger();
+
+    @Override
+    public Thread newThread(final Runnable r) {
+      final Thread t = new Thread(r, "corpus-reader-" + this.pool + "-" + this.n.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  }
+}
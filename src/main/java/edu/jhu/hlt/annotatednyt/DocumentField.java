@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt;
+
+import java.util.function.Function;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+/**
+ * The properties of an {@link NYTCorpusDocument}, in the order of
+ * {@link NYTCorpusDocument#toString()}.
+ * <br><br>
+ * Writers and indexes use these constants to select fields. The accessors are plain
+ * method references; no reflection is involved.
+ */
+public enum DocumentField {
+
+  ALTERNATE_URL("alternateURL", Kind.URL, NYTCorpusDocument::getAlternateURL),
+  ARTICLE_ABSTRACT("articleAbstract", Kind.STRING, NYTCorpusDocument::getArticleAbstract),
+  AUTHOR_BIOGRAPHY("authorBiography", Kind.STRING, NYTCorpusDocument::getAuthorBiography),
+  BANNER("banner", Kind.STRING, NYTCorpusDocument::getBanner),
+  BIOGRAPHICAL_CATEGORIES("biographicalCategories", Kind.STRING_LIST, NYTCorpusDocument::getBiographicalCategories),
+  BODY("body", Kind.STRING, NYTCorpusDocument::getBody),
+  BYLINE("byline", Kind.STRING, NYTCorpusDocument::getByline),
+  COLUMN_NAME("columnName", Kind.STRING, NYTCorpusDocument::getColumnName),
+  COLUMN_NUMBER("columnNumber", Kind.INTEGER, NYTCorpusDocument::getColumnNumber),
+  CORRECTION_DATE("correctionDate", Kind.DATE, NYTCorpusDocument::getCorrectionDate),
+  CORRECTION_TEXT("correctionText", Kind.STRING, NYTCorpusDocument::getCorrectionText),
+  CREDIT("credit", Kind.STRING, NYTCorpusDocument::getCredit),
+  DATELINE("dateline", Kind.STRING, NYTCorpusDocument::getDateline),
+  DAY_OF_WEEK("dayOfWeek", Kind.STRING, NYTCorpusDocument::getDayOfWeek),
+  DESCRIPTORS("descriptors", Kind.STRING_LIST, NYTCorpusDocument::getDescriptors),
+  FEATURE_PAGE("featurePage", Kind.STRING, NYTCorpusDocument::getFeaturePage),
+  GENERAL_ONLINE_DESCRIPTORS("generalOnlineDescriptors", Kind.STRING_LIST, NYTCorpusDocument::getGeneralOnlineDescriptors),
+  GUID("guid", Kind.INTEGER, NYTCorpusDocument::getGuid),
+  HEADLINE("headline", Kind.STRING, NYTCorpusDocument::getHeadline),
+  KICKER("kicker", Kind.STRING, NYTCorpusDocument::getKicker),
+  LEAD_PARAGRAPH("leadParagraph", Kind.STRING, NYTCorpusDocument::getLeadParagraph),
+  LOCATIONS("locations", Kind.STRING_LIST, NYTCorpusDocument::getLocations),
+  NAMES("names", Kind.STRING_LIST, NYTCorpusDocument::getNames),
+  NEWS_DESK("newsDesk", Kind.STRING, NYTCorpusDocument::getNewsDesk),
+  NORMALIZED_BYLINE("normalizedByline", Kind.STRING, NYTCorpusDocument::getNormalizedByline),
+  ONLINE_DESCRIPTORS("onlineDescriptors", Kind.STRING_LIST, NYTCorpusDocument::getOnlineDescriptors),
+  ONLINE_HEADLINE("onlineHeadline", Kind.STRING, NYTCorpusDocument::getOnlineHeadline),
+  ONLINE_LEAD_PARAGRAPH("onlineLeadParagraph", Kind.STRING, NYTCorpusDocument::getOnlineLeadParagraph),
+  ONLINE_LOCATIONS("onlineLocations", Kind.STRING_LIST, NYTCorpusDocument::getOnlineLocations),
+  ONLINE_ORGANIZATIONS("onlineOrganizations", Kind.STRING_LIST, NYTCorpusDocument::getOnlineOrganizations),
+  ONLINE_PEOPLE("onlinePeople", Kind.STRING_LIST, NYTCorpusDocument::getOnlinePeople),
+  ONLINE_SECTION("onlineSection", Kind.STRING, NYTCorpusDocument::getOnlineSection),
+  ONLINE_TITLES("onlineTitles", Kind.STRING_LIST, NYTCorpusDocument::getOnlineTitles),
+  ORGANIZATIONS("organizations", Kind.STRING_LIST, NYTCorpusDocument::getOrganizations),
+  PAGE("page", Kind.INTEGER, NYTCorpusDocument::getPage),
+  PEOPLE("people", Kind.STRING_LIST, NYTCorpusDocument::getPeople),
+  PUBLICATION_DATE("publicationDate", Kind.DATE, NYTCorpusDocument::getPublicationDate),
+  PUBLICATION_DAY_OF_MONTH("publicationDayOfMonth", Kind.INTEGER, NYTCorpusDocument::getPublicationDayOfMonth),
+  PUBLICATION_MONTH("publicationMonth", Kind.INTEGER, NYTCorpusDocument::getPublicationMonth),
+  PUBLICATION_YEAR("publicationYear", Kind.INTEGER, NYTCorpusDocument::getPublicationYear),
+  SECTION("section", Kind.STRING, NYTCorpusDocument::getSection),
+  SERIES_NAME("seriesName", Kind.STRING, NYTCorpusDocument::getSeriesName),
+  SLUG("slug", Kind.STRING, NYTCorpusDocument::getSlug),
+  SOURCE_FILE("sourceFile", Kind.FILE, NYTCorpusDocument::getSourceFile),
+  TAXONOMIC_CLASSIFIERS("taxonomicClassifiers", Kind.STRING_LIST, NYTCorpusDocument::getTaxonomicClassifiers),
+  TITLES("titles", Kind.STRING_LIST, NYTCorpusDocument::getTitles),
+  TYPES_OF_MATERIAL("typesOfMaterial", Kind.STRING_LIST, NYTCorpusDocument::getTypesOfMaterial),
+  URL("url", Kind.URL, NYTCorpusDocument::getUrl),
+  WORD_COUNT("wordCount", Kind.INTEGER, NYTCorpusDocument::getWordCount);
+
+  /**
+   * The value type of a {@link DocumentField}.
+   */
+  public enum Kind {
+    /** {@link String} values */
+    STRING,
+    /** {@link java.util.List} of {@link String} values */
+    STRING_LIST,
+    /** {@link Integer} values; {@link DocumentField#GUID} is the only primitive <code>int</code> */
+    INTEGER,
+    /** {@link java.util.Date} values */
+    DATE,
+    /** {@link java.net.URL} values */
+    URL,
+    /** {@link java.io.File} values */
+    FILE
+  }
+
+  private final String propertyName;
+  private final Kind kind;
+  private final Function<NYTCorpusDocument, ?> getter;
+
+  private DocumentField(final String propertyName, final Kind kind, final Function<NYTCorpusDocument, ?> getter) {
+    this.propertyName = propertyName;
+    this.kind = kind;
+    this.getter = getter;
+  }
+
+  /**
+   * @return the camel-case name of the property, e.g. <code>onlineLeadParagraph</code>
+   */
+  public String getPropertyName() {
+    return this.propertyName;
+  }
+
+  /**
+   * @return the value type of this field
+   */
+  public Kind getKind() {
+    return this.kind;
+  }
+
+  /**
+   * @param doc the {@link NYTCorpusDocument} to read
+   * @return the (possibly <code>null</code>) value of this field in <code>doc</code>
+   */
+  public Object get(final NYTCorpusDocument doc) {
+    return this.getter.apply(doc);
+  }
+
+  /**
+   * @param propertyName a camel-case property name, as returned by {@link #getPropertyName()}
+   * @return the matching {@link DocumentField}
+   * @throws IllegalArgumentException if no field has that property name
+   */
+  public static DocumentField forPropertyName(final String propertyName) {
+    for (DocumentField f : values())
+      if (f.propertyName.equals(propertyName))
+        return f;
+    throw new IllegalArgumentException("No such document field: " + propertyName);
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only, paragraph-oriented view over a newline-delimited text field
+ * (e.g., the body of an article).
+ * <br><br>
+ * The view holds a single shared character buffer and an <code>int[]</code> of paragraph
+ * boundaries. Paragraphs are exposed as {@link CharSequence} slices over that buffer,
+ * so iterating paragraphs does not copy any text.
+ * <br><br>
+ * The paragraphs of this view are exactly the elements returned by
+ * {@link AnnotatedNYTDocument#getBodyAsList()}: Unicode space separators are mapped to
+ * <code>' '</code>, surrounding whitespace is trimmed, and the result is split on
+ * <code>\n</code>. Because the space mapping is one character for one character,
+ * the offsets reported by {@link #start(int)} and {@link #end(int)} index directly into the
+ * original, unmodified field string.
+ */
+public final class ParagraphView implements Iterable<CharSequence> {
+
+  private static final ParagraphView EMPTY = new ParagraphView(new char[0], new int[] { 1 });
+
+  private final char[] text;
+
+  // bounds[i] is the start offset of paragraph i; bounds[size] is one past
+  // the virtual newline that would follow the last paragraph. Paragraph i
+  // therefore ends at bounds[i + 1] - 1.
+  private final int[] bounds;
+
+  private ParagraphView(final char[] text, final int[] bounds) {
+    this.text = text;
+    this.bounds = bounds;
+  }
+
+  /**
+   * @param field possibly <code>null</code> newline-delimited {@link String}
+   * @return a {@link ParagraphView} over <code>field</code>; empty if <code>field</code> is
+   * <code>null</code> or only contains whitespace
+   */
+  public static ParagraphView of(final String field) {
+    if (field == null)
+      return EMPTY;
+
+    final char[] text = field.toCharArray();
+    SpaceNormalizer.normalize(text);
+
+    // same bounds String#trim would produce
+    int first = 0;
+    int last = text.length;
+    while (first < last && text[first] <= ' ')
+      first++;
+    while (last > first && text[last - 1] <= ' ')
+      last--;
+    if (first == last)
+      return EMPTY;
+
+    int n = 1;
+    for (int i = first; i < last; i++)
+      if (text[i] == '\n')
+        n++;
+
+    final int[] bounds = new int[n + 1];
+    bounds[0] = first;
+    int p = 1;
+    for (int i = first; i < last; i++)
+      if (text[i] == '\n')
+        bounds[p++] = i + 1;
+    bounds[n] = last + 1;
+    return new ParagraphView(text, bounds);
+  }
+
+  /**
+   * @return the number of paragraphs in this view
+   */
+  public int size() {
+    return this.bounds.length - 1;
+  }
+
+  /**
+   * @return <code>true</code> if this view has no paragraphs
+   */
+  public boolean isEmpty() {
+    return this.size() == 0;
+  }
+
+  /**
+   * @param i paragraph index
+   * @return the offset of the first character of paragraph <code>i</code> in the underlying field
+   */
+  public int start(final int i) {
+    this.checkIndex(i);
+    return this.bounds[i];
+  }
+
+  /**
+   * @param i paragraph index
+   * @return the offset one past the last character of paragraph <code>i</code> in the underlying field
+   */
+  public int end(final int i) {
+    this.checkIndex(i);
+    return this.bounds[i + 1] - 1;
+  }
+
+  /**
+   * @param i paragraph index
+   * @return the number of characters in paragraph <code>i</code>
+   */
+  public int length(final int i) {
+    return this.end(i) - this.start(i);
+  }
+
+  /**
+   * @param offset an offset into the underlying field
+   * @return the (space-normalized) character at <code>offset</code>
+   */
+  public char charAt(final int offset) {
+    return this.text[offset];
+  }
+
+  /**
+   * @param i paragraph index
+   * @return paragraph <code>i</code> as a {@link CharSequence} sharing this view's buffer
+   */
+  public CharSequence get(final int i) {
+    return new Slice(this.text, this.start(i), this.end(i));
+  }
+
+  /**
+   * @param i paragraph index
+   * @return paragraph <code>i</code> copied into a new {@link String}
+   */
+  public String getString(final int i) {
+    final int s = this.start(i);
+    return new String(this.text, s, this.end(i) - s);
+  }
+
+  /**
+   * @return the whole (space-normalized, untrimmed) field as a {@link CharSequence}
+   * sharing this view's buffer. Offsets into it are the same as those returned by
+   * {@link #start(int)} and {@link #end(int)}.
+   */
+  public CharSequence getText() {
+    return new Slice(this.text, 0, this.text.length);
+  }
+
+  /**
+   * @return the paragraphs of this view copied into a {@link List} of {@link String}s,
+   * identical to {@link AnnotatedNYTDocument#getBodyAsList()}
+   */
+  public List<String> toList() {
+    final int n = this.size();
+    List<String> strList = new ArrayList<String>(n);
+    for (int i = 0; i < n; i++)
+      strList.add(this.getString(i));
+    return strList;
+  }
+
+  @Override
+  public Iterator<CharSequence> iterator() {
+    return new Iterator<CharSequence>() {
+      private int i = 0;
+
+      @Override
+      public boolean hasNext() {
+        return this.i < ParagraphView.this.size();
+      }
+
+      @Override
+      public CharSequence next() {
+        if (!this.hasNext())
+          throw new NoSuchElementException();
+        return ParagraphView.this.get(this.i++);
+      }
+    };
+  }
+
+  private void checkIndex(final int i) {
+    if (i < 0 || i >= this.size())
+      throw new IndexOutOfBoundsException("Paragraph index: " + i + ", size: " + this.size());
+  }
+
+  /**
+   * {@link CharSequence} over a range of a shared <code>char[]</code>.
+   */
+  private static final class Slice implements CharSequence {
+    private final char[] buf;
+    private final int start;
+    private final int end;
+
+    Slice(final char[] buf, final int start, final int end) {
+      this.buf = buf;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public int length() {
+      return this.end - this.start;
+    }
+
+    @Override
+    public char charAt(final int index) {
+      if (index < 0 || index >= this.length())
+        throw new IndexOutOfBoundsException("Index: " + index + ", length: " + this.length());
+      return this.buf[this.start + index];
+    }
+
+    @Override
+    public CharSequence subSequence(final int s, final int e) {
+      if (s < 0 || e > this.length() || s > e)
+        throw new IndexOutOfBoundsException("Range: [" + s + ", " + e + "), length: " + this.length());
+      return new Slice(this.buf, this.start + s, this.start + e);
+    }
+
+    @Override
+    public String toString() {
+      return new String(this.buf, this.start, this.length());
+    }
+  }
+}
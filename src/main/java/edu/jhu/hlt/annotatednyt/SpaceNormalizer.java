@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt;
+
+/**
+ * Single-pass replacement of Unicode space separators (category <code>Zs</code>,
+ * e.g., non-breaking spaces) with <code>' '</code>.
+ * <br><br>
+ * The result is identical to <code>s.replaceAll("\\p{Zs}", " ")</code>, without compiling
+ * or running a regular expression. Strings that contain no space separators other than
+ * <code>' '</code>, which is almost all of the corpus, are returned as-is without
+ * allocating.
+ */
+public final class SpaceNormalizer {
+
+  private SpaceNormalizer() {
+  }
+
+  /**
+   * @param s a {@link String}, which may be <code>null</code>
+   * @return <code>s</code> with every space separator replaced by <code>' '</code>;
+   * <code>s</code> itself if there is nothing to replace
+   */
+  public static String normalize(final String s) {
+    if (s == null)
+      return null;
+    final int first = firstNonAsciiSpace(s);
+    if (first < 0)
+      return s;
+    final char[] chars = s.toCharArray();
+    replaceFrom(chars, first);
+    return new String(chars);
+  }
+
+  /**
+   * Equivalent to <code>normalize(s).trim()</code>, with empty results mapped to <code>null</code>.
+   *
+   * @param s a {@link String}, which may be <code>null</code>
+   * @return the normalized and trimmed {@link String}, or <code>null</code> if <code>s</code>
+   * is <code>null</code> or contains only whitespace
+   */
+  public static String normalizeAndTrim(final String s) {
+    if (s == null)
+      return null;
+    final int first = firstNonAsciiSpace(s);
+    if (first < 0) {
+      final String trimmed = s.trim();
+      return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    final char[] chars = s.toCharArray();
+    replaceFrom(chars, first);
+    int b = 0;
+    int e = chars.length;
+    while (b < e && chars[b] <= ' ')
+      b++;
+    while (e > b && chars[e - 1] <= ' ')
+      e--;
+    return b == e ? null : new String(chars, b, e - b);
+  }
+
+  /**
+   * Replace space separators in <code>chars</code>, in place.
+   *
+   * @param chars the characters to normalize
+   */
+  public static void normalize(final char[] chars) {
+    replaceFrom(chars, 0);
+  }
+
+  private static int firstNonAsciiSpace(final String s) {
+    final int len = s.length();
+    for (int i = 0; i < len; i++) {
+      final char c = s.charAt(i);
+      if (c > 0x7f && Character.getType(c) == Character.SPACE_SEPARATOR)
+        return i;
+    }
+    return -1;
+  }
+
+  private static void replaceFrom(final char[] chars, final int from) {
+    for (int i = from; i < chars.length; i++) {
+      final char c = chars[i];
+      if (c > 0x7f && Character.getType(c) == Character.SPACE_SEPARATOR)
+        chars[i] = ' ';
+    }
+  }
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.cache;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.DocumentField;
+
+/**
+ * A thread-safe, size-bounded cache of parsed documents keyed by guid, in front of a
+ * {@link Loader} such as a parser over an archive or a {@link edu.jhu.hlt.annotatednyt.io.DocumentCodec}
+ * store.
+ * <br><br>
+ * Entries are weighed by their estimated retained heap size ({@link #estimateSize(NYTCorpusDocument)}),
+ * and the total weight is kept under a bound. The cache is split into segments by guid, each
+ * a least-recently-used map under its own lock with an equal share of the bound, so lookups of
+ * different documents rarely contend. Documents are loaded outside the segment lock; two threads
+ * missing the same guid at once may both load it, and the first to finish is kept.
+ * <br><br>
+ * Cached documents are shared between callers and must not be modified.
+ */
+public class DocumentCache {
+
+  /**
+   * The default bound on the total weight, 256 MB.
+   */
+  public static final long DEFAULT_MAX_WEIGHT = 256L << 20;
+
+  /**
+   * The default number of segments.
+   */
+  public static final int DEFAULT_SEGMENTS = 16;
+
+  /**
+   * Loads documents on cache misses.
+   */
+  @FunctionalInterface
+  public interface Loader {
+    /**
+     * @param guid a document guid
+     * @return the document, or <code>null</code> if there is none
+     * @throws IOException on errors loading the document
+     */
+    NYTCorpusDocument load(int guid) throws IOException;
+  }
+
+  private final Loader loader;
+  private final long maxWeight;
+  private final Segment[] segments;
+  private final int shift;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder loadNanos = new LongAdder();
+
+  /**
+   * @param loader the {@link Loader} to call on misses
+   * @param maxWeight the bound on the total weight, in bytes
+   */
+  public DocumentCache(final Loader loader, final long maxWeight) {
+    this(loader, maxWeight, DEFAULT_SEGMENTS);
+  }
+
+  /**
+   * @param loader the {@link Loader} to call on misses
+   * @param maxWeight the bound on the total weight, in bytes
+   * @param segments the number of segments, a power of two; more segments mean less contention,
+   * but a smaller share of the bound each, so a document heavier than
+   * <code>maxWeight / segments</code> is never cached
+   */
+  public DocumentCache(final Loader loader, final long maxWeight, final int segments) {
+    if (maxWeight < 1)
+      throw new IllegalArgumentException("maxWeight must be positive: " + maxWeight);
+    if (segments < 1 || Integer.bitCount(segments) != 1)
+      throw new IllegalArgumentException("segments must be a power of two: " + segments);
+    this.loader = loader;
+    this.maxWeight = maxWeight;
+    this.segments = new Segment[segments];
+    for (int s = 0; s < segments; s++)
+      this.segments[s] = new Segment(maxWeight / segments);
+    this.shift = 32 - Integer.numberOfTrailingZeros(segments);
+  }
+
+  private Segment segment(final int guid) {
+    // Fibonacci hashing spreads runs of guids over the segments; a shift of 32 would be a no-op
+    return this.shift == 32 ? this.segments[0] : this.segments[(guid * 0x9e3779b9) >>> this.shift];
+  }
+
+  /**
+   * @param guid a document guid
+   * @return the document, from the cache or else from the {@link Loader}; <code>null</code> if
+   * the loader has none
+   * @throws IOException on errors from the {@link Loader}
+   */
+  public NYTCorpusDocument get(final int guid) throws IOException {
+    final Segment s = this.segment(guid);
+    NYTCorpusDocument doc = s.get(guid);
+    if (doc != null) {
+      this.hits.increment();
+      return doc;
+    }
+    this.misses.increment();
+    final long start = System.nanoTime();
+    doc = this.loader.load(guid);
+    this.loadNanos.add(System.nanoTime() - start);
+    return doc == null ? null : s.put(guid, doc, false);
+  }
+
+  /**
+   * @param guid a document guid
+   * @return the cached document, or <code>null</code>; does not count as a hit or miss
+   */
+  public NYTCorpusDocument getIfPresent(final int guid) {
+    return this.segment(guid).get(guid);
+  }
+
+  /**
+   * Cache <code>doc</code> under its guid, replacing any cached document.
+   *
+   * @param doc the document
+   */
+  public void put(final NYTCorpusDocument doc) {
+    this.segment(doc.getGuid()).put(doc.getGuid(), doc, true);
+  }
+
+  /**
+   * @param guid a document guid to remove from the cache
+   */
+  public void invalidate(final int guid) {
+    this.segment(guid).remove(guid);
+  }
+
+  /**
+   * Remove every document from the cache.
+   */
+  public void invalidateAll() {
+    for (Segment s : this.segments)
+      s.clear();
+  }
+
+  /**
+   * @return the number of cached documents
+   */
+  public int size() {
+    int n = 0;
+    for (Segment s : this.segments)
+      n += s.size();
+    return n;
+  }
+
+  /**
+   * @return the total weight of the cached documents
+   */
+  public long getWeight() {
+    long w = 0;
+    for (Segment s : this.segments)
+      w += s.weight();
+    return w;
+  }
+
+  /**
+   * @return the bound on the total weight
+   */
+  public long getMaxWeight() {
+    return this.maxWeight;
+  }
+
+  /**
+   * @return a snapshot of the cache metrics
+   */
+  public Stats getStats() {
+    return new Stats(this.hits.sum(), this.misses.sum(), this.evictions.sum(), this.loadNanos.sum(),
+        this.size(), this.getWeight());
+  }
+
+  /**
+   * Estimate the heap retained by <code>doc</code>: object and array headers, references, and
+   * two bytes per character of every field, on a 64-bit JVM with compressed references. Strings
+   * stored with one byte per character (Java 9 and later) make this an overestimate.
+   *
+   * @param doc a document
+   * @return its estimated retained size in bytes
+   */
+  public static long estimateSize(final NYTCorpusDocument doc) {
+    long size = 16 + 4 * DocumentField.values().length;
+    for (DocumentField f : DocumentField.values()) {
+      final Object v = f.get(doc);
+      if (v == null)
+        continue;
+      switch (f.getKind()) {
+      case STRING:
+        size += stringSize((String) v);
+        break;
+      case STRING_LIST:
+        // ArrayList and its array
+        size += 40 + 4 * ((List<?>) v).size();
+        for (Object o : (List<?>) v)
+          size += stringSize((String) o);
+        break;
+      case INTEGER:
+        size += f == DocumentField.GUID ? 0 : 16;
+        break;
+      case DATE:
+        size += 24;
+        break;
+      case URL:
+        // the URL and its component strings
+        size += 80 + 2 * stringSize(v.toString());
+        break;
+      case FILE:
+        size += 24 + stringSize(v.toString());
+        break;
+      default:
+        throw new IllegalStateException("Unknown kind: " + f.getKind());
+      }
+    }
+    return size;
+  }
+
+  private static long stringSize(final String s) {
+    // String, plus char[] header and contents
+    return 24 + 16 + 2L * s.length();
+  }
+
+  /**
+   * A least-recently-used map with its own share of the bound.
+   */
+  private final class Segment {
+    private final long maxWeight;
+    private final LinkedHashMap<Integer, Entry> map = new LinkedHashMap<>(64, 0.75f, true);
+    private long weight;
+
+    Segment(final long maxWeight) {
+      this.maxWeight = maxWeight;
+    }
+
+    synchronized NYTCorpusDocument get(final int guid) {
+      final Entry e = this.map.get(guid);
+      return e == null ? null : e.doc;
+    }
+
+    /**
+     * @return the cached document: <code>doc</code>, or the one already cached unless
+     * <code>replace</code>
+     */
+    NYTCorpusDocument put(final int guid, final NYTCorpusDocument doc, final boolean replace) {
+      final long w = estimateSize(doc);
+      synchronized (this) {
+        final Entry old = this.map.get(guid);
+        if (old != null && !replace)
+          return old.doc;
+        if (old != null) {
+          this.map.remove(guid);
+          this.weight -= old.weight;
+        }
+        if (w > this.maxWeight)
+          return doc;
+        this.map.put(guid, new Entry(doc, w));
+        this.weight += w;
+        final Iterator<Map.Entry<Integer, Entry>> it = this.map.entrySet().iterator();
+        while (this.weight > this.maxWeight) {
+          final Entry eldest = it.next().getValue();
+          it.remove();
+          this.weight -= eldest.weight;
+          DocumentCache.this.evictions.increment();
+        }
+        return doc;
+      }
+    }
+
+    synchronized void remove(final int guid) {
+      final Entry e = this.map.remove(guid);
+      if (e != null)
+        this.weight -= e.weight;
+    }
+
+    synchronized void clear() {
+      this.map.clear();
+      this.weight = 0;
+    }
+
+    synchronized int size() {
+      return this.map.size();
+    }
+
+    synchronized long weight() {
+      return this.weight;
+    }
+  }
+
+  private static final class Entry {
+    private final NYTCorpusDocument doc;
+    private final long weight;
+
+    Entry(final NYTCorpusDocument doc, final long weight) {
+      this.doc = doc;
+      this.weight = weight;
+    }
+  }
+
+  /**
+   * A snapshot of the metrics of a {@link DocumentCache}.
+   */
+  public static final class Stats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long loadNanos;
+    private final int size;
+    private final long weight;
+
+    Stats(final long hits, final long misses, final long evictions, final long loadNanos, final int size,
+        final long weight) {
+      this.hits = hits;
+      this.misses = misses;
+      this.evictions = evictions;
+      this.loadNanos = loadNanos;
+      this.size = size;
+      this.weight = weight;
+    }
+
+    /**
+     * @return the number of lookups served from the cache
+     */
+    public long getHitCount() {
+      return this.hits;
+    }
+
+    /**
+     * @return the number of lookups that called the {@link Loader}
+     */
+    public long getMissCount() {
+      return this.misses;
+    }
+
+    /**
+     * @return the fraction of lookups served from the cache, or 0 if there were none
+     */
+    public double getHitRate() {
+      final long n = this.hits + this.misses;
+      return n == 0 ? 0 : (double) this.hits / n;
+    }
+
+    /**
+     * @return the number of documents evicted to stay within the bound
+     */
+    public long getEvictionCount() {
+      return this.evictions;
+    }
+
+    /**
+     * @return the total time spent in the {@link Loader}, in nanoseconds
+     */
+    public long getTotalLoadNanos() {
+      return this.loadNanos;
+    }
+
+    /**
+     * @return the number of cached documents
+     */
+    public int getSize() {
+      return this.size;
+    }
+
+    /**
+     * @return the total weight of the cached documents
+     */
+    public long getWeight() {
+      return this.weight;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("hits=%d misses=%d hitRate=%.3f evictions=%d loadMs=%d size=%d weight=%d", this.hits,
+          this.misses, this.getHitRate(), this.evictions, this.loadNanos / 1000000, this.size, this.weight);
+    }
+  }
+}
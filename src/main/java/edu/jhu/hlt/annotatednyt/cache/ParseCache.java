@@ -0,0 +1,336 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+import com.nytlabs.corpus.NYTCorpusDocumentParser;
+
+import edu.jhu.hlt.annotatednyt.io.DocumentCodec;
+
+/**
+ * A persistent cache of parsed documents in a local directory, keyed by a 64-bit hash of the
+ * raw NITF bytes. On a hit, the document is decoded from its {@link DocumentCodec} record and
+ * the XML parser is skipped entirely. Pass a cache to
+ * {@link edu.jhu.hlt.annotatednyt.CorpusReader#CorpusReader(Path, ParseCache)} to use it for
+ * every archive read.
+ * <br><br>
+ * Each document is one file, named by its hash, under one of 256 subdirectories. A file holds a
+ * header of magic, codec version, source length, and source hash, then the record; a file that
+ * does not match the bytes being parsed, or cannot be decoded, is a miss. Files are written to
+ * a temporary name and atomically renamed into place, so several threads and processes can
+ * share a directory: readers never see a partial file, and racing writers write the same
+ * contents.
+ * <br><br>
+ * When the files grow past the size bound, the least recently used are deleted, by modification
+ * time, which hits refresh. The size of the directory is measured when the cache is opened and
+ * then tracked per process, so with several processes the bound is approximate; each re-measures
+ * before evicting.
+ */
+public class ParseCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ParseCache.class);
+
+  /**
+   * The default bound on the size of the cache directory, 8 GB.
+   */
+  public static final long DEFAULT_MAX_BYTES = 8L << 30;
+
+  private static final int MAGIC = 0x414e5043; // "ANPC"
+  private static final int HEADER_BYTES = 20;
+  private static final String SUFFIX = ".doc";
+
+  // XXH64 primes
+  private static final long P1 = 0x9e3779b185ebca87L;
+  private static final long P2 = 0xc2b2ae3d27d4eb4fL;
+  private static final long P3 = 0x165667b19e3779f9L;
+  private static final long P4 = 0x85ebca77c2b2ae63L;
+  private static final long P5 = 0x27d4eb2f165667c5L;
+
+  private final Path dir;
+  private final long maxBytes;
+  private final AtomicLong size = new AtomicLong();
+  private final AtomicBoolean evicting = new AtomicBoolean();
+  private final ThreadLocal<DocumentCodec> codecs = ThreadLocal.withInitial(DocumentCodec::new);
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * Open (or create) a cache directory with the {@link #DEFAULT_MAX_BYTES} bound.
+   *
+   * @param dir the cache directory; created if needed
+   * @throws IOException on errors creating or measuring <code>dir</code>
+   */
+  public ParseCache(final Path dir) throws IOException {
+    this(dir, DEFAULT_MAX_BYTES);
+  }
+
+  /**
+   * Open (or create) a cache directory.
+   *
+   * @param dir the cache directory; created if needed
+   * @param maxBytes the bound on the total size of the cached files
+   * @throws IOException on errors creating or measuring <code>dir</code>
+   */
+  public ParseCache(final Path dir, final long maxBytes) throws IOException {
+    if (maxBytes < 1)
+      throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+    this.dir = dir;
+    this.maxBytes = maxBytes;
+    Files.createDirectories(dir);
+    this.size.set(this.measure(null));
+  }
+
+  /**
+   * Parse <code>bytes</code> with <code>parser</code>, non-validating, unless the cache holds
+   * the result.
+   *
+   * @param parser the {@link NYTCorpusDocumentParser} to use on a miss
+   * @param bytes a NITF document
+   * @return the document, or <code>null</code> if it cannot be parsed
+   * @throws UncheckedIOException on errors writing the cache
+   */
+  public NYTCorpusDocument fromByteArray(final NYTCorpusDocumentParser parser, final byte[] bytes) {
+    final long hash = hash(bytes, 0, bytes.length);
+    final Path path = this.path(hash);
+    final NYTCorpusDocument cached = this.read(path, bytes.length, hash);
+    if (cached != null) {
+      this.hits.increment();
+      return cached;
+    }
+    this.misses.increment();
+    final NYTCorpusDocument doc = parser.fromByteArray(bytes, false);
+    if (doc != null) {
+      try {
+        this.write(path, bytes.length, hash, doc);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return doc;
+  }
+
+  private Path path(final long hash) {
+    final String name = String.format("%016x", hash);
+    return this.dir.resolve(name.substring(0, 2)).resolve(name + SUFFIX);
+  }
+
+  /**
+   * @return the cached document, or <code>null</code> on a miss
+   */
+  private NYTCorpusDocument read(final Path path, final int length, final long hash) {
+    final byte[] file;
+    try {
+      file = Files.readAllBytes(path);
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      LOGGER.debug("Cannot read {}", path, e);
+      return null;
+    }
+    final ByteBuffer buf = ByteBuffer.wrap(file);
+    if (file.length < HEADER_BYTES || buf.getInt() != MAGIC || buf.getInt() != DocumentCodec.VERSION
+        || buf.getInt() != length || buf.getLong() != hash)
+      return null;
+    final NYTCorpusDocument doc;
+    try {
+      doc = this.codecs.get().decode(buf);
+    } catch (IllegalArgumentException e) {
+      LOGGER.debug("Corrupt cache file {}", path, e);
+      return null;
+    }
+    try {
+      Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      // evicted meanwhile; the document is still good
+    }
+    return doc;
+  }
+
+  private void write(final Path path, final int length, final long hash, final NYTCorpusDocument doc)
+      throws IOException {
+    final byte[] record = this.codecs.get().encode(doc);
+    final ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + record.length);
+    buf.putInt(MAGIC).putInt(DocumentCodec.VERSION).putInt(length).putLong(hash).put(record);
+    final Path parent = path.getParent();
+    Files.createDirectories(parent);
+    final Path tmp = Files.createTempFile(parent, "tmp", ".part");
+    try {
+      Files.write(tmp, buf.array());
+      try {
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+    if (this.size.addAndGet(buf.capacity()) > this.maxBytes)
+      this.evict();
+  }
+
+  /**
+   * Delete the least recently used files until the cache is at 90% of its bound. Only one
+   * thread of a process evicts at a time; the others carry on.
+   */
+  private void evict() throws IOException {
+    if (!this.evicting.compareAndSet(false, true))
+      return;
+    try {
+      final List<CachedFile> files = new ArrayList<>();
+      long total = this.measure(files);
+      final long target = this.maxBytes / 10 * 9;
+      if (total > this.maxBytes) {
+        files.sort(Comparator.comparing(f -> f.modified));
+        int deleted = 0;
+        for (int i = 0; i < files.size() && total > target; i++) {
+          Files.deleteIfExists(files.get(i).path);
+          total -= files.get(i).size;
+          deleted++;
+        }
+        LOGGER.debug("Evicted {} documents from {}", deleted, this.dir);
+      }
+      this.size.set(total);
+    } finally {
+      this.evicting.set(false);
+    }
+  }
+
+  /**
+   * @param files if not <code>null</code>, receives every cached file
+   * @return the total size of the cached files
+   */
+  private long measure(final List<CachedFile> files) throws IOException {
+    final long[] total = new long[1];
+    Files.walkFileTree(this.dir, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+        if (file.getFileName().toString().endsWith(SUFFIX)) {
+          total[0] += attrs.size();
+          if (files != null)
+            files.add(new CachedFile(file, attrs.lastModifiedTime(), attrs.size()));
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+        // deleted by another process while walking
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return total[0];
+  }
+
+  private static final class CachedFile {
+    private final Path path;
+    private final FileTime modified;
+    private final long size;
+
+    CachedFile(final Path path, final FileTime modified, final long size) {
+      this.path = path;
+      this.modified = modified;
+      this.size = size;
+    }
+  }
+
+  /**
+   * @return the cache directory
+   */
+  public Path getDirectory() {
+    return this.dir;
+  }
+
+  /**
+   * @return the estimated total size of the cached files
+   */
+  public long getSize() {
+    return this.size.get();
+  }
+
+  /**
+   * @return the number of documents served from the cache
+   */
+  public long getHitCount() {
+    return this.hits.sum();
+  }
+
+  /**
+   * @return the number of documents parsed
+   */
+  public long getMissCount() {
+    return this.misses.sum();
+  }
+
+  /**
+   * @return the XXH64 hash, with seed 0, of <code>bytes</code> from <code>off</code> to
+   * <code>off + len</code>
+   */
+  static long hash(final byte[] bytes, final int off, final int len) {
+    final ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    final int end = off + len;
+    int i = off;
+    long h;
+    if (len >= 32) {
+      long v1 = P1 + P2;
+      long v2 = P2;
+      long v3 = 0;
+      long v4 = -P1;
+      for (; i <= end - 32; i += 32) {
+        v1 = round(v1, buf.getLong(i));
+        v2 = round(v2, buf.getLong(i + 8));
+        v3 = round(v3, buf.getLong(i + 16));
+        v4 = round(v4, buf.getLong(i + 24));
+      }
+      h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+      h = (h ^ round(0, v1)) * P1 + P4;
+      h = (h ^ round(0, v2)) * P1 + P4;
+      h = (h ^ round(0, v3)) * P1 + P4;
+      h = (h ^ round(0, v4)) * P1 + P4;
+    } else {
+      h = P5;
+    }
+    h += len;
+    for (; i <= end - 8; i += 8)
+      h = Long.rotateLeft(h ^ round(0, buf.getLong(i)), 27) * P1 + P4;
+    if (i <= end - 4) {
+      h = Long.rotateLeft(h ^ (buf.getInt(i) & 0xffffffffL) * P1, 23) * P2 + P3;
+      i += 4;
+    }
+    for (; i < end; i++)
+      h = Long.rotateLeft(h ^ (bytes[i] & 0xff) * P5, 11) * P1;
+    h ^= h >>> 33;
+    h *= P2;
+    h ^= h >>> 29;
+    h *= P3;
+    return h ^ (h >>> 32);
+  }
+
+  private static long round(final long acc, final long input) {
+    return Long.rotateLeft(acc + input * P2, 31) * P1;
+  }
+}
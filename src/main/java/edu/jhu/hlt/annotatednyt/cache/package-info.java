@@ -0,0 +1,10 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+
+/**
+ * Caching of parsed {@link com.nytlabs.corpus.NYTCorpusDocument}s for services that look up
+ * the same documents repeatedly.
+ */
+package edu.jhu.hlt.annotatednyt.cache;
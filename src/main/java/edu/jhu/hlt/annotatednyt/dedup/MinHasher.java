@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.dedup;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import edu.jhu.hlt.annotatednyt.text.TokenBuffer;
+import edu.jhu.hlt.annotatednyt.text.Tokenizer;
+
+/**
+ * Word shingling and MinHash signatures.
+ * <br><br>
+ * A shingle is a run of <code>shingleSize</code> consecutive {@link Tokenizer} tokens,
+ * case-folded, hashed to 32 bits. Signature element <code>i</code> is the minimum over the
+ * shingles of hash function <code>i</code>, a multiply-shift hash with seeded random
+ * coefficients; the fraction of equal elements in two signatures estimates the Jaccard
+ * similarity of the shingle sets.
+ * <br><br>
+ * Immutable and thread-safe.
+ */
+public class MinHasher {
+
+  private final int shingleSize;
+  private final long[] a;
+  private final long[] b;
+
+  /**
+   * @param numHashes the number of hash functions, i.e. the signature length
+   * @param shingleSize the number of tokens per shingle
+   * @param seed the seed of the hash functions; signatures are comparable only under the same seed
+   */
+  public MinHasher(final int numHashes, final int shingleSize, final long seed) {
+    if (numHashes < 1)
+      throw new IllegalArgumentException("numHashes must be positive: " + numHashes);
+    if (shingleSize < 1)
+      throw new IllegalArgumentException("shingleSize must be positive: " + shingleSize);
+    this.shingleSize = shingleSize;
+    this.a = new long[numHashes];
+    this.b = new long[numHashes];
+    final SplittableRandom r = new SplittableRandom(seed);
+    for (int i = 0; i < numHashes; i++) {
+      this.a[i] = r.nextLong() | 1L;
+      this.b[i] = r.nextLong();
+    }
+  }
+
+  /**
+   * @return the signature length
+   */
+  public int getNumHashes() {
+    return this.a.length;
+  }
+
+  /**
+   * @return the number of tokens per shingle
+   */
+  public int getShingleSize() {
+    return this.shingleSize;
+  }
+
+  /**
+   * @param text the text to shingle
+   * @return the distinct shingle hashes of <code>text</code>, sorted; empty if it has fewer
+   * tokens than a shingle
+   */
+  public int[] shingles(final CharSequence text) {
+    final TokenBuffer tokens = new TokenBuffer();
+    Tokenizer.tokenize(text, tokens);
+    final int n = tokens.size() - this.shingleSize + 1;
+    if (n <= 0)
+      return new int[0];
+    final long[] th = new long[tokens.size()];
+    for (int t = 0; t < th.length; t++) {
+      // FNV-1a over the case-folded characters
+      long h = 0xcbf29ce484222325L;
+      for (int i = tokens.start(t); i < tokens.end(t); i++)
+        h = (h ^ Character.toLowerCase(text.charAt(i))) * 0x100000001b3L;
+      th[t] = h;
+    }
+    final int[] out = new int[n];
+    for (int s = 0; s < n; s++) {
+      long h = 0;
+      for (int t = s; t < s + this.shingleSize; t++)
+        h = Long.rotateLeft(h, 23) * 0x9e3779b97f4a7c15L + th[t];
+      out[s] = (int) (mix(h) >>> 32);
+    }
+    Arrays.sort(out);
+    int u = 0;
+    for (int i = 0; i < n; i++)
+      if (u == 0 || out[i] != out[u - 1])
+        out[u++] = out[i];
+    return u == n ? out : Arrays.copyOf(out, u);
+  }
+
+  /**
+   * @param shingles shingle hashes, as returned by {@link #shingles(CharSequence)}
+   * @return the MinHash signature; all elements are -1 if there are no shingles
+   */
+  public int[] signature(final int[] shingles) {
+    final int[] sig = new int[this.a.length];
+    for (int i = 0; i < sig.length; i++) {
+      final long ai = this.a[i];
+      final long bi = this.b[i];
+      // unsigned 32-bit minimum, kept in a long
+      long min = 0xffffffffL;
+      for (int s : shingles) {
+        final long h = (ai * (s & 0xffffffffL) + bi) >>> 32;
+        if (h < min)
+          min = h;
+      }
+      sig[i] = (int) min;
+    }
+    return sig;
+  }
+
+  /**
+   * @param x sorted distinct values
+   * @param y sorted distinct values
+   * @return the Jaccard similarity of <code>x</code> and <code>y</code>; 1 if both are empty
+   */
+  public static double jaccard(final int[] x, final int[] y) {
+    if (x.length == 0 && y.length == 0)
+      return 1;
+    int i = 0;
+    int j = 0;
+    int common = 0;
+    while (i < x.length && j < y.length) {
+      if (x[i] < y[j]) {
+        i++;
+      } else if (x[i] > y[j]) {
+        j++;
+      } else {
+        common++;
+        i++;
+        j++;
+      }
+    }
+    return (double) common / (x.length + y.length - common);
+  }
+
+  /**
+   * @param x a signature
+   * @param y a signature of the same length and {@link MinHasher}
+   * @return the estimated Jaccard similarity of the underlying shingle sets
+   */
+  public static double estimate(final int[] x, final int[] y) {
+    if (x.length != y.length)
+      throw new IllegalArgumentException("Signatures differ in length: " + x.length + ", " + y.length);
+    int equal = 0;
+    for (int i = 0; i < x.length; i++)
+      if (x[i] == y[i])
+        equal++;
+    return (double) equal / x.length;
+  }
+
+  // the MurmurHash3 64-bit finalizer
+  static long mix(long h) {
+    h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+    h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return h ^ (h >>> 33);
+  }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.dedup;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+
+/**
+ * Finds clusters of near-duplicate article bodies: corrections, reprints, and wire stories
+ * filed under several guids.
+ * <br><br>
+ * One parallel pass over the corpus shingles each body and computes its MinHash signature
+ * (see {@link MinHasher}). The signature is cut into bands of equal width, and only a hash of
+ * each band is kept in memory; the shingle sets are appended to a scratch file. Then, for
+ * each band, documents are sorted by band hash, and documents sharing a bucket are candidates.
+ * Each candidate is verified against one representative of every cluster already in its
+ * bucket, by exact Jaccard similarity of the shingle sets read back from the scratch file, and
+ * joins the first cluster it matches. Clusters are kept in a union-find forest, so no pairs
+ * within a cluster are compared twice, and no pairs outside a bucket are compared at all.
+ * <br><br>
+ * With <code>b</code> bands of <code>r</code> rows, a pair of similarity <code>s</code> becomes
+ * a candidate with probability <code>1 - (1 - s^r)^b</code>; the defaults (16 bands of 8) find
+ * pairs above 0.8 with probability above 0.99. Bodies shorter than a shingle are skipped.
+ */
+public class NearDuplicateDetector {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(NearDuplicateDetector.class);
+
+  /** The default number of MinHash functions. */
+  public static final int DEFAULT_NUM_HASHES = 128;
+  /** The default number of LSH bands. */
+  public static final int DEFAULT_BANDS = 16;
+  /** The default number of tokens per shingle. */
+  public static final int DEFAULT_SHINGLE_SIZE = 5;
+  /** The default minimum Jaccard similarity of near-duplicates. */
+  public static final double DEFAULT_THRESHOLD = 0.8;
+
+  private final MinHasher hasher;
+  private final int bands;
+  private final int rows;
+  private final double threshold;
+
+  /**
+   * Use the defaults.
+   */
+  public NearDuplicateDetector() {
+    this(DEFAULT_NUM_HASHES, DEFAULT_BANDS, DEFAULT_SHINGLE_SIZE, DEFAULT_THRESHOLD);
+  }
+
+  /**
+   * @param numHashes the number of MinHash functions
+   * @param bands the number of LSH bands; must divide <code>numHashes</code>
+   * @param shingleSize the number of tokens per shingle
+   * @param threshold the minimum Jaccard similarity of near-duplicates
+   */
+  public NearDuplicateDetector(final int numHashes, final int bands, final int shingleSize, final double threshold) {
+    if (bands < 1 || numHashes % bands != 0)
+      throw new IllegalArgumentException(bands + " bands do not divide " + numHashes + " hashes.");
+    if (threshold < 0 || threshold > 1)
+      throw new IllegalArgumentException("threshold must be in [0, 1]: " + threshold);
+    this.hasher = new MinHasher(numHashes, shingleSize, 0x5eed);
+    this.bands = bands;
+    this.rows = numHashes / bands;
+    this.threshold = threshold;
+  }
+
+  /**
+   * @return the {@link MinHasher} computing signatures
+   */
+  public MinHasher getHasher() {
+    return this.hasher;
+  }
+
+  /**
+   * Find near-duplicate clusters in the corpus.
+   *
+   * @param reader the {@link CorpusReader} to read from
+   * @param workDir a directory for the scratch file of shingle sets, which is removed when done
+   * @param threads the number of archives to process concurrently
+   * @return the clusters of two or more guids, each in corpus order, ordered by their first
+   * document
+   * @throws IOException on errors reading the corpus or the scratch file
+   */
+  public List<int[]> find(final CorpusReader reader, final Path workDir, final int threads) throws IOException {
+    final Path scratch = Files.createTempFile(workDir, "shingles", ".bin");
+    try {
+      final Documents docs = new Documents(this.bands);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(scratch), 1 << 16))) {
+        reader.processArchives(threads, archive -> {
+          final Batch b = new Batch(this.bands);
+          reader.read(archive, doc -> {
+            final String body = doc.getBody();
+            if (body == null)
+              return;
+            final int[] shingles = this.hasher.shingles(body);
+            if (shingles.length > 0)
+              b.add(doc.getGuid(), shingles, this.bandKeys(this.hasher.signature(shingles)));
+          });
+          return b;
+        }, (archive, b) -> docs.add(b, out));
+      }
+      LOGGER.info("Shingled {} documents; joining buckets.", docs.size);
+      try (FileChannel ch = FileChannel.open(scratch)) {
+        return this.cluster(docs, ch);
+      }
+    } finally {
+      Files.deleteIfExists(scratch);
+    }
+  }
+
+  private int[] bandKeys(final int[] sig) {
+    final int[] keys = new int[this.bands];
+    for (int b = 0; b < this.bands; b++) {
+      long h = b;
+      for (int r = b * this.rows; r < (b + 1) * this.rows; r++)
+        h = h * 0x9e3779b97f4a7c15L + sig[r];
+      keys[b] = (int) (MinHasher.mix(h) >>> 32);
+    }
+    return keys;
+  }
+
+  private List<int[]> cluster(final Documents docs, final FileChannel shingles) throws IOException {
+    final int n = docs.size;
+    final int[] parent = new int[n];
+    for (int i = 0; i < n; i++)
+      parent[i] = i;
+    final long[] bucket = new long[n];
+    final ShingleReader sr = new ShingleReader(shingles, docs.offsets);
+    final List<Integer> reps = new ArrayList<>();
+    long compared = 0;
+    for (int b = 0; b < this.bands; b++) {
+      for (int i = 0; i < n; i++)
+        bucket[i] = (long) docs.bandKeys[i * this.bands + b] << 32 | i;
+      Arrays.sort(bucket);
+      for (int start = 0; start < n;) {
+        final int key = (int) (bucket[start] >> 32);
+        int end = start + 1;
+        while (end < n && (int) (bucket[end] >> 32) == key)
+          end++;
+        // verify each member against one representative per cluster seen in this bucket
+        reps.clear();
+        for (int i = start; i < end; i++) {
+          final int d = (int) bucket[i];
+          final int root = find(parent, d);
+          boolean known = false;
+          for (int r : reps) {
+            if (find(parent, r) == root) {
+              known = true;
+              break;
+            }
+          }
+          if (known)
+            continue;
+          boolean joined = false;
+          for (int r : reps) {
+            compared++;
+            if (MinHasher.jaccard(sr.get(d, 0), sr.get(r, 1)) >= this.threshold) {
+              union(parent, find(parent, r), root);
+              joined = true;
+              break;
+            }
+          }
+          if (!joined)
+            reps.add(d);
+        }
+        start = end;
+      }
+    }
+    LOGGER.info("Verified {} candidate pairs.", compared);
+
+    // gather clusters; iterating in ordinal order keeps members and clusters in corpus order
+    final int[] size = new int[n];
+    for (int i = 0; i < n; i++)
+      size[find(parent, i)]++;
+    final int[][] members = new int[n][];
+    final int[] filled = new int[n];
+    final List<int[]> clusters = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      final int root = find(parent, i);
+      if (size[root] < 2)
+        continue;
+      if (members[root] == null) {
+        members[root] = new int[size[root]];
+        clusters.add(members[root]);
+      }
+      members[root][filled[root]++] = docs.guids[i];
+    }
+    return clusters;
+  }
+
+  private static int find(final int[] parent, int x) {
+    while (parent[x] != x) {
+      // path halving
+      parent[x] = parent[parent[x]];
+      x = parent[x];
+    }
+    return x;
+  }
+
+  private static void union(final int[] parent, final int x, final int y) {
+    // the smaller ordinal stays root; any choice is correct
+    if (x < y)
+      parent[y] = x;
+    else if (y < x)
+      parent[x] = y;
+  }
+
+  /**
+   * The documents of one archive.
+   */
+  private static final class Batch {
+    private final int bands;
+    private final List<int[]> shingles = new ArrayList<>();
+    private int[] guids = new int[256];
+    private int[] bandKeys;
+    private int size;
+
+    Batch(final int bands) {
+      this.bands = bands;
+      this.bandKeys = new int[256 * bands];
+    }
+
+    void add(final int guid, final int[] shingles, final int[] keys) {
+      if (this.size == this.guids.length) {
+        this.guids = Arrays.copyOf(this.guids, this.size * 2);
+        this.bandKeys = Arrays.copyOf(this.bandKeys, this.size * 2 * this.bands);
+      }
+      this.guids[this.size] = guid;
+      System.arraycopy(keys, 0, this.bandKeys, this.size * this.bands, this.bands);
+      this.shingles.add(shingles);
+      this.size++;
+    }
+  }
+
+  /**
+   * Guids and band keys of every document, by ordinal, with offsets of their shingle sets in
+   * the scratch file. Filled on the caller thread, in corpus order.
+   */
+  private static final class Documents {
+    private final int bands;
+    private int[] guids = new int[1024];
+    private int[] bandKeys;
+    private long[] offsets = new long[1025];
+    private int size;
+
+    Documents(final int bands) {
+      this.bands = bands;
+      this.bandKeys = new int[1024 * bands];
+    }
+
+    void add(final Batch b, final DataOutputStream out) throws IOException {
+      final int n = this.size + b.size;
+      if (n > this.guids.length) {
+        final int c = Math.max(n, this.guids.length * 2);
+        this.guids = Arrays.copyOf(this.guids, c);
+        this.bandKeys = Arrays.copyOf(this.bandKeys, c * this.bands);
+        this.offsets = Arrays.copyOf(this.offsets, c + 1);
+      }
+      System.arraycopy(b.guids, 0, this.guids, this.size, b.size);
+      System.arraycopy(b.bandKeys, 0, this.bandKeys, this.size * this.bands, b.size * this.bands);
+      for (int[] s : b.shingles) {
+        for (int x : s)
+          out.writeInt(x);
+        this.offsets[this.size + 1] = this.offsets[this.size] + s.length * 4L;
+        this.size++;
+      }
+    }
+  }
+
+  /**
+   * Reads shingle sets back from the scratch file, through one of two reusable buffers.
+   */
+  private static final class ShingleReader {
+    private final FileChannel ch;
+    private final long[] offsets;
+    private final ByteBuffer[] bufs = { ByteBuffer.allocate(1 << 14), ByteBuffer.allocate(1 << 14) };
+
+    ShingleReader(final FileChannel ch, final long[] offsets) {
+      this.ch = ch;
+      this.offsets = offsets;
+    }
+
+    int[] get(final int doc, final int slot) throws IOException {
+      final int len = (int) (this.offsets[doc + 1] - this.offsets[doc]);
+      ByteBuffer buf = this.bufs[slot];
+      if (buf.capacity() < len)
+        buf = this.bufs[slot] = ByteBuffer.allocate(Math.max(len, buf.capacity() * 2));
+      ((Buffer) buf).clear();
+      ((Buffer) buf).limit(len);
+      while (buf.hasRemaining())
+        if (this.ch.read(buf, this.offsets[doc] + buf.position()) < 0)
+          throw new IOException("Truncated shingle file.");
+      ((Buffer) buf).flip();
+      final IntBuffer ib = buf.asIntBuffer();
+      final int[] out = new int[ib.remaining()];
+      ib.get(out);
+      return out;
+    }
+  }
+}
@@ -0,0 +1,9 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+
+/**
+ * Near-duplicate detection over {@link com.nytlabs.corpus.NYTCorpusDocument} collections.
+ */
+package edu.jhu.hlt.annotatednyt.dedup;
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.facet;
+
+import java.util.Arrays;
+
+import edu.jhu.hlt.annotatednyt.util.StringIds;
+
+/**
+ * A hash map from strings to primitive <code>long</code> counts: a {@link StringIds} table,
+ * with the counts in an array indexed by id. Counting a key that is already present allocates
+ * nothing; a {@link String} copy is made only on insertion.
+ * <br><br>
+ * Not thread-safe.
+ */
+final class CountMap {
+
+  private final StringIds keys;
+  private long[] counts;
+
+  CountMap() {
+    this(64);
+  }
+
+  CountMap(final int capacity) {
+    this.keys = new StringIds(capacity);
+    this.counts = new long[Math.max(capacity, 16)];
+  }
+
+  int size() {
+    return this.keys.size();
+  }
+
+  /**
+   * @param key the key to count
+   * @param n the amount to add
+   */
+  void add(final CharSequence key, final long n) {
+    final int id = this.keys.intern(key);
+    if (id == this.counts.length)
+      this.counts = Arrays.copyOf(this.counts, id * 2);
+    this.counts[id] += n;
+  }
+
+  /**
+   * @return the count of <code>key</code>, or 0
+   */
+  long get(final CharSequence key) {
+    final int id = this.keys.find(key);
+    return id < 0 ? 0 : this.counts[id];
+  }
+
+  /**
+   * Add every count of <code>other</code> to this map.
+   */
+  void addAll(final CountMap other) {
+    for (int id = 0; id < other.size(); id++)
+      this.add(other.keys.get(id), other.counts[id]);
+  }
+
+  interface EntryConsumer {
+    void accept(String key, long count);
+  }
+
+  /**
+   * Pass every key and its count to <code>c</code>, in order of insertion.
+   */
+  void forEach(final EntryConsumer c) {
+    for (int id = 0; id < this.size(); id++)
+      c.accept(this.keys.get(id), this.counts[id]);
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.facet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument;
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+
+/**
+ * Counts combinations of facet values over documents, e.g. descriptors by year:
+ * <pre>
+ * FacetCounts counts = new FacetCounter(
+ *     FacetExtractor.list(AnnotatedNYTDocument::getDescriptors),
+ *     FacetExtractor.optional(AnnotatedNYTDocument::getPublicationYear))
+ *     .count(reader, 8);
+ * long n = counts.get("Politics and Government", "1998");
+ * </pre>
+ * With several facets, each document counts once for every combination (cross product) of
+ * its values; a document missing any facet is not counted. Repeated values are counted each time.
+ * <br><br>
+ * Counting happens in {@link Accumulator}s, one per thread, backed by primitive open-addressing
+ * maps: no locks, and no allocation for keys already seen. They are merged once, at the end.
+ * Facet values must not contain <code>U+001F</code>, which separates them internally.
+ */
+public class FacetCounter {
+
+  static final char SEPARATOR = '\u001f';
+
+  private final FacetExtractor[] dimensions;
+
+  /**
+   * @param dimensions the facets to count, at least one
+   */
+  public FacetCounter(final FacetExtractor... dimensions) {
+    if (dimensions.length == 0)
+      throw new IllegalArgumentException("At least one facet is required.");
+    this.dimensions = dimensions.clone();
+  }
+
+  /**
+   * @return a new, empty {@link Accumulator} over this counter's facets
+   */
+  public Accumulator newAccumulator() {
+    return new Accumulator(this.dimensions);
+  }
+
+  /**
+   * Count every document of the corpus, parsing and counting archives in parallel with one
+   * {@link Accumulator} per worker thread.
+   *
+   * @param reader the {@link CorpusReader} to read from
+   * @param threads the number of worker threads
+   * @return the counts
+   * @throws IOException on errors reading the corpus
+   */
+  public FacetCounts count(final CorpusReader reader, final int threads) throws IOException {
+    return merge(reader.readPerThread(threads, this::newAccumulator));
+  }
+
+  /**
+   * Merge accumulators, e.g. ones filled on separate threads.
+   *
+   * @param accumulators accumulators over the same facets; they must not be used afterwards
+   * @return the combined counts
+   */
+  public static FacetCounts merge(final Iterable<Accumulator> accumulators) {
+    Accumulator largest = null;
+    for (Accumulator a : accumulators)
+      if (largest == null || a.counts.size() > largest.counts.size())
+        largest = a;
+    if (largest == null)
+      throw new IllegalArgumentException("Nothing to merge.");
+    // grow the largest map in place rather than rehashing it into a new one
+    long docs = largest.documents;
+    for (Accumulator a : accumulators) {
+      if (a == largest)
+        continue;
+      if (a.dimensions.length != largest.dimensions.length)
+        throw new IllegalArgumentException("Accumulators count different facets.");
+      largest.counts.addAll(a.counts);
+      docs += a.documents;
+    }
+    return new FacetCounts(largest.dimensions.length, largest.counts, docs);
+  }
+
+  /**
+   * Counts facet values of the documents given to it. A {@link CorpusReader.DocumentHandler},
+   * so it can be chained onto any corpus pass. Not thread-safe.
+   */
+  public static final class Accumulator implements CorpusReader.DocumentHandler {
+    private final FacetExtractor[] dimensions;
+    private final CountMap counts = new CountMap();
+    private final List<List<CharSequence>> values = new ArrayList<>();
+    private final List<Consumer<CharSequence>> collectors = new ArrayList<>();
+    private final Consumer<CharSequence> direct;
+    private final StringBuilder sb = new StringBuilder();
+    private final int[] index;
+    private long documents;
+
+    private Accumulator(final FacetExtractor[] dimensions) {
+      this.dimensions = dimensions;
+      this.index = new int[dimensions.length];
+      for (int d = 0; d < dimensions.length; d++) {
+        final List<CharSequence> l = new ArrayList<>();
+        this.values.add(l);
+        this.collectors.add(l::add);
+      }
+      this.direct = v -> this.counts.add(v, 1);
+    }
+
+    @Override
+    public void handle(final NYTCorpusDocument doc) {
+      this.add(new AnnotatedNYTDocument(doc));
+    }
+
+    /**
+     * @param doc the document to count
+     */
+    public void add(final AnnotatedNYTDocument doc) {
+      this.documents++;
+      if (this.dimensions.length == 1) {
+        this.dimensions[0].extract(doc, this.direct);
+        return;
+      }
+      for (int d = 0; d < this.dimensions.length; d++) {
+        final List<CharSequence> l = this.values.get(d);
+        l.clear();
+        this.dimensions[d].extract(doc, this.collectors.get(d));
+        if (l.isEmpty())
+          return;
+      }
+      // odometer over the cross product of the values
+      final int n = this.dimensions.length;
+      Arrays.fill(this.index, 0);
+      while (true) {
+        this.sb.setLength(0);
+        for (int d = 0; d < n; d++) {
+          if (d > 0)
+            this.sb.append(SEPARATOR);
+          this.sb.append(this.values.get(d).get(this.index[d]));
+        }
+        this.counts.add(this.sb, 1);
+        int d = n - 1;
+        while (d >= 0 && ++this.index[d] == this.values.get(d).size())
+          this.index[d--] = 0;
+        if (d < 0)
+          return;
+      }
+    }
+
+    /**
+     * @return the number of documents added
+     */
+    public long getDocumentCount() {
+      return this.documents;
+    }
+
+    /**
+     * @return a view of the counts; documents added later are reflected in it
+     */
+    public FacetCounts getCounts() {
+      return new FacetCounts(this.dimensions.length, this.counts, this.documents);
+    }
+  }
+}
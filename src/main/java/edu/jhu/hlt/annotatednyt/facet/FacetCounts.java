@@ -0,0 +1,189 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.facet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Counts of facet value combinations, produced by a {@link FacetCounter}.
+ */
+public final class FacetCounts {
+
+  /**
+   * A combination of facet values and its count.
+   */
+  public static final class Entry {
+    private final String[] values;
+    private final long count;
+
+    private Entry(final String[] values, final long count) {
+      this.values = values;
+      this.count = count;
+    }
+
+    /**
+     * @param dimension a facet index, in the order given to the {@link FacetCounter}
+     * @return the value of that facet
+     */
+    public String getValue(final int dimension) {
+      return this.values[dimension];
+    }
+
+    /**
+     * @return the number of facets
+     */
+    public int getDimensions() {
+      return this.values.length;
+    }
+
+    /**
+     * @return the count
+     */
+    public long getCount() {
+      return this.count;
+    }
+
+    @Override
+    public String toString() {
+      return Arrays.toString(this.values) + "=" + this.count;
+    }
+  }
+
+  /**
+   * Receives entries without creating {@link Entry} objects.
+   */
+  @FunctionalInterface
+  public interface EntryVisitor {
+    /**
+     * @param values the facet values; the array may be reused between calls
+     * @param count the count
+     */
+    void visit(String[] values, long count);
+  }
+
+  private static final Comparator<Entry> BY_COUNT = (a, b) -> {
+    final int c = Long.compare(b.count, a.count);
+    return c != 0 ? c : Arrays.toString(a.values).compareTo(Arrays.toString(b.values));
+  };
+
+  private final int dimensions;
+  private final CountMap counts;
+  private final long documents;
+
+  FacetCounts(final int dimensions, final CountMap counts, final long documents) {
+    this.dimensions = dimensions;
+    this.counts = counts;
+    this.documents = documents;
+  }
+
+  /**
+   * @return the number of facets
+   */
+  public int getDimensions() {
+    return this.dimensions;
+  }
+
+  /**
+   * @return the number of documents counted, including those without facet values
+   */
+  public long getDocumentCount() {
+    return this.documents;
+  }
+
+  /**
+   * @return the number of distinct value combinations
+   */
+  public int size() {
+    return this.counts.size();
+  }
+
+  /**
+   * @param values one value per facet
+   * @return the count of the combination, or 0
+   */
+  public long get(final String... values) {
+    if (values.length != this.dimensions)
+      throw new IllegalArgumentException("Expected " + this.dimensions + " values, got " + values.length);
+    if (values.length == 1)
+      return this.counts.get(values[0]);
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0)
+        sb.append(FacetCounter.SEPARATOR);
+      sb.append(values[i]);
+    }
+    return this.counts.get(sb);
+  }
+
+  /**
+   * Visit every entry, in no particular order.
+   *
+   * @param visitor the {@link EntryVisitor}
+   */
+  public void forEach(final EntryVisitor visitor) {
+    final String[] values = new String[this.dimensions];
+    this.counts.forEach((key, count) -> {
+      split(key, values);
+      visitor.visit(values, count);
+    });
+  }
+
+  /**
+   * @param n the maximum number of entries
+   * @return the <code>n</code> most frequent entries, most frequent first
+   */
+  public List<Entry> top(final int n) {
+    final PriorityQueue<Entry> pq = new PriorityQueue<>(Math.max(1, n), BY_COUNT.reversed());
+    if (n > 0) {
+      this.counts.forEach((key, count) -> {
+        if (pq.size() < n || count > pq.peek().count) {
+          pq.add(new Entry(split(key, new String[this.dimensions]), count));
+          if (pq.size() > n)
+            pq.poll();
+        }
+      });
+    }
+    final List<Entry> out = new ArrayList<>(pq);
+    out.sort(BY_COUNT);
+    return out;
+  }
+
+  /**
+   * @return every entry, most frequent first
+   */
+  public List<Entry> entries() {
+    return this.top(this.size());
+  }
+
+  /**
+   * Write every entry as a tab-separated row of the facet values and the count, most frequent first.
+   *
+   * @param out the {@link Appendable} to write to
+   * @throws IOException on errors writing to <code>out</code>
+   */
+  public void writeTsv(final Appendable out) throws IOException {
+    for (Entry e : this.entries()) {
+      for (String v : e.values)
+        out.append(v).append('\t');
+      out.append(Long.toString(e.count)).append('\n');
+    }
+  }
+
+  private static String[] split(final String key, final String[] out) {
+    int start = 0;
+    for (int d = 0; d < out.length - 1; d++) {
+      final int end = key.indexOf(FacetCounter.SEPARATOR, start);
+      out[d] = key.substring(start, end);
+      start = end + 1;
+    }
+    out[out.length - 1] = start == 0 ? key : key.substring(start);
+    return out;
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.facet;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument;
+
+/**
+ * Extracts the values of one facet (dimension) from a document, e.g. its descriptors or its
+ * publication year. A document may have any number of values for a facet.
+ */
+@FunctionalInterface
+public interface FacetExtractor {
+
+  /**
+   * @param doc the document
+   * @param out receives each value of the facet in <code>doc</code>
+   */
+  void extract(AnnotatedNYTDocument doc, Consumer<CharSequence> out);
+
+  /**
+   * @param f a multi-valued accessor, e.g. <code>AnnotatedNYTDocument::getDescriptors</code>
+   * @return an extractor emitting every element of the list
+   */
+  static FacetExtractor list(final Function<AnnotatedNYTDocument, List<String>> f) {
+    return (doc, out) -> {
+      final List<String> l = f.apply(doc);
+      for (int i = 0; i < l.size(); i++)
+        out.accept(l.get(i));
+    };
+  }
+
+  /**
+   * @param f an optional accessor, e.g. <code>AnnotatedNYTDocument::getPublicationYear</code>
+   * @return an extractor emitting the string form of the value, if present
+   */
+  static FacetExtractor optional(final Function<AnnotatedNYTDocument, ? extends Optional<?>> f) {
+    return (doc, out) -> {
+      final Optional<?> o = f.apply(doc);
+      if (o.isPresent())
+        out.accept(o.get().toString());
+    };
+  }
+}
@@ -0,0 +1,9 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+
+/**
+ * Facet counting over {@link edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument} metadata.
+ */
+package edu.jhu.hlt.annotatednyt.facet;
@@ -0,0 +1,378 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.graph;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.DocumentField;
+import edu.jhu.hlt.annotatednyt.util.RunMerger;
+import edu.jhu.hlt.annotatednyt.util.StringIds;
+import edu.jhu.hlt.annotatednyt.util.TempDirectory;
+
+/**
+ * Counts, for every pair of entities, the number of documents mentioning both, and writes the
+ * counts as a {@link CooccurrenceMatrix}. Entities are the values of string list fields, by
+ * default people, organizations, and locations; the same name in two fields is two entities.
+ * <br><br>
+ * Each worker thread counts pairs of its own entity ids in a primitive <code>long</code> to
+ * <code>int</code> hash map. When a map reaches its size limit, or the thread has seen that
+ * many distinct entities since it last spilled, the thread resolves its ids against the shared
+ * vocabulary (one synchronized call per spill, not per document), spills the counts to disk as
+ * a run sorted by global pair, and starts over with no local ids. The runs are then merged,
+ * streaming, into the compressed sparse row matrix. Heap use is bounded by the limit times the
+ * number of threads, plus the vocabulary.
+ * <br><br>
+ * Entity ids are assigned as threads first spill them, so they vary between parallel runs; use
+ * the vocabulary to map names to ids.
+ */
+public class CooccurrenceBuilder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CooccurrenceBuilder.class);
+
+  /**
+   * The entity fields counted by default: people, organizations, and locations.
+   */
+  public static final Set<DocumentField> DEFAULT_FIELDS = Collections.unmodifiableSet(EnumSet.of(
+      DocumentField.PEOPLE, DocumentField.ORGANIZATIONS, DocumentField.LOCATIONS));
+
+  /**
+   * The default number of distinct pairs a thread holds before spilling, about 50 MB of heap.
+   */
+  public static final int DEFAULT_MAX_PAIRS = 1 << 21;
+
+  private final DocumentField[] fields;
+  private final int maxPairs;
+
+  // guarded by itself
+  private final StringIds vocabulary = new StringIds();
+  private int[] documentFrequencies = new int[1024];
+
+  /**
+   * Count pairs of {@link #DEFAULT_FIELDS}, spilling every {@link #DEFAULT_MAX_PAIRS} pairs.
+   */
+  public CooccurrenceBuilder() {
+    this(DEFAULT_FIELDS, DEFAULT_MAX_PAIRS);
+  }
+
+  /**
+   * @param fields the entity fields, all string lists
+   * @param maxPairs the number of distinct pairs a thread holds in memory before spilling
+   * @throws IllegalArgumentException if a field is not a string list field
+   */
+  public CooccurrenceBuilder(final Set<DocumentField> fields, final int maxPairs) {
+    if (fields.isEmpty())
+      throw new IllegalArgumentException("At least one field is required.");
+    if (maxPairs < 1)
+      throw new IllegalArgumentException("maxPairs must be positive: " + maxPairs);
+    for (DocumentField f : fields)
+      if (f.getKind() != DocumentField.Kind.STRING_LIST)
+        throw new IllegalArgumentException("Not a string list field: " + f);
+    // EnumSet order, so the field index stored in each entity key is stable
+    this.fields = EnumSet.copyOf(fields).toArray(new DocumentField[0]);
+    this.maxPairs = maxPairs;
+  }
+
+  /**
+   * Count the whole corpus and write a {@link CooccurrenceMatrix} to <code>dir</code>. Spilled
+   * runs go to a temporary directory under <code>dir</code>, removed when done. A builder
+   * builds once.
+   *
+   * @param reader the {@link CorpusReader} to read from
+   * @param dir the directory to write the matrix to; created if needed
+   * @param threads the number of worker threads
+   * @throws IOException on errors reading the corpus or writing the matrix
+   */
+  public void build(final CorpusReader reader, final Path dir, final int threads) throws IOException {
+    Files.createDirectories(dir);
+    try (TempDirectory tmp = new TempDirectory(dir, "runs")) {
+      final List<Path> runs = new ArrayList<>();
+      for (Shard s : reader.readPerThread(threads, () -> new Shard(tmp))) {
+        s.spill();
+        runs.addAll(s.runs);
+      }
+      LOGGER.info("Merging {} runs over {} entities.", runs.size(), this.vocabulary.size());
+      this.writeVocabulary(dir.resolve(CooccurrenceMatrix.VOCABULARY_FILE));
+      merge(runs, this.vocabulary.size(), tmp, dir.resolve(CooccurrenceMatrix.MATRIX_FILE));
+    }
+  }
+
+  /**
+   * Map the local ids of <code>ids</code> to global ids, and add local document frequencies to
+   * the global ones.
+   */
+  private void resolve(final StringIds ids, final int[] toGlobal, final int[] freqs) {
+    synchronized (this.vocabulary) {
+      for (int i = 0; i < ids.size(); i++)
+        toGlobal[i] = this.vocabulary.intern(ids.get(i));
+      if (this.documentFrequencies.length < this.vocabulary.size())
+        this.documentFrequencies = Arrays.copyOf(this.documentFrequencies,
+            Math.max(this.vocabulary.size(), this.documentFrequencies.length * 2));
+      for (int i = 0; i < ids.size(); i++)
+        this.documentFrequencies[toGlobal[i]] += freqs[i];
+    }
+  }
+
+  private void writeVocabulary(final Path path) throws IOException {
+    try (BufferedWriter w = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      final StringBuilder sb = new StringBuilder();
+      for (int id = 0; id < this.vocabulary.size(); id++) {
+        final String key = this.vocabulary.get(id);
+        sb.setLength(0);
+        sb.append(this.fields[key.charAt(0)].getPropertyName()).append('\t');
+        CooccurrenceMatrix.escape(key, 1, sb);
+        sb.append('\t').append(this.documentFrequencies[id]).append('\n');
+        w.append(sb);
+      }
+    }
+  }
+
+  /**
+   * Counts the pairs of one thread. Entity keys are the field index as a <code>char</code>,
+   * followed by the name.
+   */
+  private final class Shard implements CorpusReader.DocumentHandler {
+    private final TempDirectory tmp;
+    private final List<Path> runs = new ArrayList<>();
+    private final StringIds ids = new StringIds();
+    private final LongIntMap pairs = new LongIntMap(CooccurrenceBuilder.this.maxPairs);
+    private final StringBuilder key = new StringBuilder();
+    private int[] toGlobal = new int[1024];
+    // per local id
+    private int[] freqs = new int[1024];
+    private int[] doc = new int[64];
+    private long[] spillKeys = new long[0];
+    private int[] spillCounts = new int[0];
+
+    Shard(final TempDirectory tmp) {
+      this.tmp = tmp;
+    }
+
+    @Override
+    public void handle(final NYTCorpusDocument d) {
+      final DocumentField[] fields = CooccurrenceBuilder.this.fields;
+      int n = 0;
+      for (int f = 0; f < fields.length; f++) {
+        final List<?> values = (List<?>) fields[f].get(d);
+        if (values == null)
+          continue;
+        for (Object v : values) {
+          this.key.setLength(0);
+          this.key.append((char) f).append((String) v);
+          if (n == this.doc.length)
+            this.doc = Arrays.copyOf(this.doc, n * 2);
+          this.doc[n++] = this.ids.intern(this.key);
+        }
+      }
+      if (this.ids.size() > this.freqs.length) {
+        this.freqs = Arrays.copyOf(this.freqs, Math.max(this.ids.size(), this.freqs.length * 2));
+        this.toGlobal = Arrays.copyOf(this.toGlobal, this.freqs.length);
+      }
+      // each entity counts once per document
+      Arrays.sort(this.doc, 0, n);
+      int u = 0;
+      for (int i = 0; i < n; i++)
+        if (u == 0 || this.doc[i] != this.doc[u - 1])
+          this.doc[u++] = this.doc[i];
+      for (int i = 0; i < u; i++) {
+        this.freqs[this.doc[i]]++;
+        final long hi = (long) this.doc[i] << 32;
+        for (int j = i + 1; j < u; j++)
+          this.pairs.add(hi | this.doc[j], 1);
+      }
+      final int max = CooccurrenceBuilder.this.maxPairs;
+      if (this.pairs.size() >= max || this.ids.size() >= max) {
+        try {
+          this.spill();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+
+    /**
+     * Write the pairs counted so far as a run sorted by global pair, and empty the map and the
+     * local ids.
+     */
+    void spill() throws IOException {
+      resolve(this.ids, this.toGlobal, this.freqs);
+      Arrays.fill(this.freqs, 0, this.ids.size(), 0);
+      if (this.pairs.size() > 0)
+        this.writeRun();
+      this.ids.clear();
+    }
+
+    private void writeRun() throws IOException {
+      final int size = this.pairs.size();
+      if (this.spillKeys.length < size) {
+        this.spillKeys = new long[size];
+        this.spillCounts = new int[size];
+      }
+      final long[] keys = this.spillKeys;
+      final int[] counts = this.spillCounts;
+      final int n = this.pairs.drainTo(keys, counts);
+      for (int i = 0; i < n; i++) {
+        final int a = this.toGlobal[(int) (keys[i] >>> 32)];
+        final int b = this.toGlobal[(int) keys[i]];
+        keys[i] = a < b ? (long) a << 32 | b : (long) b << 32 | a;
+      }
+      sort(keys, counts, 0, n);
+      final Path run = this.tmp.newFile("run", ".bin");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+        for (int i = 0; i < n; i++) {
+          out.writeLong(keys[i]);
+          out.writeInt(counts[i]);
+        }
+      }
+      LOGGER.debug("Spilled {} pairs to {}", n, run);
+      this.runs.add(run);
+    }
+  }
+
+  /**
+   * Sort <code>keys[from, to)</code> ascending, permuting <code>counts</code> alongside.
+   */
+  static void sort(final long[] keys, final int[] counts, int from, int to) {
+    while (to - from > 16) {
+      // median of three
+      final int mid = (from + to) >>> 1;
+      if (keys[mid] < keys[from])
+        swap(keys, counts, mid, from);
+      if (keys[to - 1] < keys[from])
+        swap(keys, counts, to - 1, from);
+      if (keys[to - 1] < keys[mid])
+        swap(keys, counts, to - 1, mid);
+      final long pivot = keys[mid];
+      int i = from;
+      int j = to - 1;
+      while (i <= j) {
+        while (keys[i] < pivot)
+          i++;
+        while (keys[j] > pivot)
+          j--;
+        if (i <= j)
+          swap(keys, counts, i++, j--);
+      }
+      // recurse into the smaller side to bound the stack
+      if (j - from < to - i) {
+        sort(keys, counts, from, j + 1);
+        from = i;
+      } else {
+        sort(keys, counts, i, to);
+        to = j + 1;
+      }
+    }
+    for (int i = from + 1; i < to; i++)
+      for (int j = i; j > from && keys[j] < keys[j - 1]; j--)
+        swap(keys, counts, j, j - 1);
+  }
+
+  private static void swap(final long[] keys, final int[] counts, final int i, final int j) {
+    final long k = keys[i];
+    keys[i] = keys[j];
+    keys[j] = k;
+    final int c = counts[i];
+    counts[i] = counts[j];
+    counts[j] = c;
+  }
+
+  /**
+   * Merge sorted runs, summing the counts of equal pairs, into a matrix file.
+   */
+  private static void merge(final List<Path> runs, final int n, final TempDirectory tmp, final Path out) throws IOException {
+    final long[] rows = new long[n + 1];
+    final Path cols = tmp.newFile("columns", ".bin");
+    final Path vals = tmp.newFile("values", ".bin");
+    long nnz = 0;
+    try (DataOutputStream c = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(cols), 1 << 16));
+        DataOutputStream v = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(vals), 1 << 16));
+        RunMerger<Run> m = new RunMerger<>(runs, Run::new)) {
+      while (m.hasNext()) {
+        final long key = m.peek().key;
+        long sum = 0;
+        while (m.hasNext() && m.peek().key == key) {
+          sum += m.peek().count;
+          m.advance();
+        }
+        if (sum > Integer.MAX_VALUE)
+          throw new IOException("Co-occurrence count overflows an int: " + sum);
+        rows[(int) (key >>> 32) + 1]++;
+        c.writeInt((int) key);
+        v.writeInt((int) sum);
+        nnz++;
+      }
+    }
+    for (int i = 0; i < n; i++)
+      rows[i + 1] += rows[i];
+
+    try (FileChannel ch = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE)) {
+      final ByteBuffer header = ByteBuffer.allocate(CooccurrenceMatrix.HEADER_BYTES + rows.length * 8);
+      header.putInt(CooccurrenceMatrix.MAGIC).putInt(CooccurrenceMatrix.VERSION).putInt(n).putLong(nnz);
+      header.asLongBuffer().put(rows);
+      ((Buffer) header).rewind();
+      while (header.hasRemaining())
+        ch.write(header);
+      for (Path p : Arrays.asList(cols, vals)) {
+        try (FileChannel src = FileChannel.open(p)) {
+          final long size = src.size();
+          for (long done = 0; done < size;)
+            done += src.transferTo(done, size - done, ch);
+        }
+      }
+    }
+  }
+
+  /**
+   * A cursor over a spilled run.
+   */
+  private static final class Run extends RunMerger.Cursor<Run> {
+    private long key;
+    private int count;
+
+    Run(final Path path) throws IOException {
+      super(path);
+    }
+
+    @Override
+    protected boolean next() throws IOException {
+      try {
+        this.key = this.in.readLong();
+      } catch (EOFException e) {
+        return false;
+      }
+      this.count = this.in.readInt();
+      return true;
+    }
+
+    @Override
+    public int compareTo(final Run o) {
+      return Long.compare(this.key, o.key);
+    }
+  }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.graph;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import edu.jhu.hlt.annotatednyt.DocumentField;
+import edu.jhu.hlt.annotatednyt.util.StringIds;
+
+/**
+ * A symmetric matrix of entity co-occurrence counts, written by {@link CooccurrenceBuilder}.
+ * <br><br>
+ * A matrix directory holds two files:
+ * <ul>
+ * <li><code>vocabulary.tsv</code>: one line per entity id, in id order, of field property
+ * name, entity name, and document frequency, separated by tabs. Tabs, line breaks, and
+ * backslashes in names are escaped as <code>\t</code>, <code>\n</code>, <code>\r</code>, and
+ * <code>\\</code>.</li>
+ * <li><code>matrix.bin</code>: the strict upper triangle (row &lt; column) in compressed sparse
+ * row form, big-endian: a header of magic, version, entity count <code>n</code>, and non-zero
+ * count <code>nnz</code> (a long); then <code>n + 1</code> long row offsets,
+ * <code>nnz</code> int column ids, sorted within each row, and <code>nnz</code> int
+ * counts.</li>
+ * </ul>
+ * The arrays are memory-mapped, so opening a matrix is cheap, and it may be queried from several
+ * threads.
+ */
+public class CooccurrenceMatrix {
+
+  static final String VOCABULARY_FILE = "vocabulary.tsv";
+  static final String MATRIX_FILE = "matrix.bin";
+
+  static final int MAGIC = 0x414e434f; // "ANCO"
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 20;
+
+  /**
+   * Receives non-zero entries.
+   */
+  @FunctionalInterface
+  public interface EntryVisitor {
+    /**
+     * @param row the smaller entity id
+     * @param column the larger entity id
+     * @param count the number of documents mentioning both
+     */
+    void visit(int row, int column, int count);
+  }
+
+  private final DocumentField[] fields;
+  private final String[] names;
+  private final int[] documentFrequencies;
+  private final StringIds ids;
+  private final LongBuffer rows;
+  private final IntBuffer columns;
+  private final IntBuffer counts;
+  private final long nonZeros;
+
+  private CooccurrenceMatrix(final DocumentField[] fields, final String[] names, final int[] documentFrequencies,
+      final StringIds ids, final LongBuffer rows, final IntBuffer columns, final IntBuffer counts,
+      final long nonZeros) {
+    this.fields = fields;
+    this.names = names;
+    this.documentFrequencies = documentFrequencies;
+    this.ids = ids;
+    this.rows = rows;
+    this.columns = columns;
+    this.counts = counts;
+    this.nonZeros = nonZeros;
+  }
+
+  /**
+   * @return the number of entities
+   */
+  public int size() {
+    return this.names.length;
+  }
+
+  /**
+   * @return the number of non-zero entries in the upper triangle
+   */
+  public long getNonZeroCount() {
+    return this.nonZeros;
+  }
+
+  /**
+   * @param field the field of the entity
+   * @param name the name of the entity
+   * @return the id of the entity, or -1 if it never occurs
+   */
+  public int getId(final DocumentField field, final String name) {
+    return this.ids.find(key(field, name));
+  }
+
+  /**
+   * @param id an entity id
+   * @return the field of the entity
+   */
+  public DocumentField getField(final int id) {
+    return this.fields[id];
+  }
+
+  /**
+   * @param id an entity id
+   * @return the name of the entity
+   */
+  public String getName(final int id) {
+    return this.names[id];
+  }
+
+  /**
+   * @param id an entity id
+   * @return the number of documents mentioning the entity
+   */
+  public int getDocumentFrequency(final int id) {
+    return this.documentFrequencies[id];
+  }
+
+  /**
+   * @param a an entity id
+   * @param b an entity id
+   * @return the number of documents mentioning both; the document frequency if
+   * <code>a == b</code>
+   */
+  public int get(final int a, final int b) {
+    if (a == b)
+      return this.documentFrequencies[a];
+    final int row = Math.min(a, b);
+    final int col = Math.max(a, b);
+    long lo = this.rows.get(row);
+    long hi = this.rows.get(row + 1);
+    while (lo < hi) {
+      final long mid = (lo + hi) >>> 1;
+      final int c = this.columns.get((int) mid);
+      if (c < col)
+        lo = mid + 1;
+      else if (c > col)
+        hi = mid;
+      else
+        return this.counts.get((int) mid);
+    }
+    return 0;
+  }
+
+  /**
+   * Visit the non-zero entries of one row of the upper triangle: the entities with larger ids
+   * co-occurring with <code>row</code>, by id.
+   *
+   * @param row an entity id
+   * @param visitor the {@link EntryVisitor}
+   */
+  public void forEachInRow(final int row, final EntryVisitor visitor) {
+    final int end = (int) this.rows.get(row + 1);
+    for (int i = (int) this.rows.get(row); i < end; i++)
+      visitor.visit(row, this.columns.get(i), this.counts.get(i));
+  }
+
+  /**
+   * Visit every non-zero entry of the upper triangle, by row, then column.
+   *
+   * @param visitor the {@link EntryVisitor}
+   */
+  public void forEach(final EntryVisitor visitor) {
+    for (int r = 0; r < this.names.length; r++)
+      this.forEachInRow(r, visitor);
+  }
+
+  private static String key(final DocumentField field, final String name) {
+    return (char) field.ordinal() + name;
+  }
+
+  /**
+   * @param dir a directory written by {@link CooccurrenceBuilder}
+   * @return the matrix
+   * @throws IOException on errors reading <code>dir</code>, or if it does not hold a matrix
+   */
+  public static CooccurrenceMatrix open(final Path dir) throws IOException {
+    DocumentField[] fields = new DocumentField[1024];
+    String[] names = new String[1024];
+    int[] freqs = new int[1024];
+    final StringIds ids = new StringIds();
+    try (BufferedReader r = Files.newBufferedReader(dir.resolve(VOCABULARY_FILE), StandardCharsets.UTF_8)) {
+      final StringBuilder sb = new StringBuilder();
+      int n = 0;
+      for (String line = r.readLine(); line != null; line = r.readLine()) {
+        final int t1 = line.indexOf('\t');
+        final int t2 = line.lastIndexOf('\t');
+        if (t1 < 0 || t2 == t1)
+          throw new IOException("Malformed vocabulary line " + (n + 1) + ": " + line);
+        if (n == names.length) {
+          fields = Arrays.copyOf(fields, n * 2);
+          names = Arrays.copyOf(names, n * 2);
+          freqs = Arrays.copyOf(freqs, n * 2);
+        }
+        fields[n] = DocumentField.forPropertyName(line.substring(0, t1));
+        sb.setLength(0);
+        unescape(line, t1 + 1, t2, sb);
+        names[n] = sb.toString();
+        freqs[n] = Integer.parseInt(line.substring(t2 + 1));
+        ids.intern(key(fields[n], names[n]));
+        n++;
+      }
+      fields = Arrays.copyOf(fields, n);
+      names = Arrays.copyOf(names, n);
+      freqs = Arrays.copyOf(freqs, n);
+    }
+
+    final Path path = dir.resolve(MATRIX_FILE);
+    try (FileChannel ch = FileChannel.open(path)) {
+      final ByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(ch.size(), HEADER_BYTES));
+      if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC)
+        throw new IOException("Not a co-occurrence matrix: " + path);
+      final int version = header.getInt();
+      if (version != VERSION)
+        throw new IOException("Unsupported co-occurrence matrix version: " + version);
+      final int n = header.getInt();
+      final long nnz = header.getLong();
+      if (n != names.length)
+        throw new IOException("Matrix has " + n + " entities, vocabulary " + names.length);
+      if (nnz * 4 > Integer.MAX_VALUE)
+        throw new IOException("Matrix too large to map: " + nnz + " entries");
+      final long rowBytes = (n + 1) * 8L;
+      if (ch.size() != HEADER_BYTES + rowBytes + nnz * 8)
+        throw new IOException("Truncated co-occurrence matrix: " + path);
+      final LongBuffer rows = ch.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, rowBytes).asLongBuffer();
+      final IntBuffer columns = ch.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + rowBytes, nnz * 4).asIntBuffer();
+      final IntBuffer counts = ch.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + rowBytes + nnz * 4, nnz * 4)
+          .asIntBuffer();
+      return new CooccurrenceMatrix(fields, names, freqs, ids, rows, columns, counts, nnz);
+    }
+  }
+
+  /**
+   * Append <code>s</code> from <code>from</code>, escaped for the vocabulary file.
+   */
+  static void escape(final String s, final int from, final StringBuilder out) {
+    for (int i = from; i < s.length(); i++) {
+      final char c = s.charAt(i);
+      switch (c) {
+      case '\t':
+        out.append("\\t");
+        break;
+      case '\n':
+        out.append("\\n");
+        break;
+      case '\r':
+        out.append("\\r");
+        break;
+      case '\\':
+        out.append("\\\\");
+        break;
+      default:
+        out.append(c);
+      }
+    }
+  }
+
+  private static void unescape(final String s, final int from, final int to, final StringBuilder out) {
+    for (int i = from; i < to; i++) {
+      final char c = s.charAt(i);
+      if (c != '\\' || i + 1 == to) {
+        out.append(c);
+        continue;
+      }
+      final char e = s.charAt(++i);
+      out.append(e == 't' ? '\t' : e == 'n' ? '\n' : e == 'r' ? '\r' : e);
+    }
+  }
+}
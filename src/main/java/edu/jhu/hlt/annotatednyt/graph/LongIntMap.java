@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.graph;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing (linear probing) hash map from non-negative <code>long</code> keys to
+ * <code>int</code> counts, with no per-entry objects.
+ * <br><br>
+ * Not thread-safe.
+ */
+final class LongIntMap {
+
+  private static final long EMPTY = -1L;
+
+  private long[] keys;
+  private int[] counts;
+  private int size;
+  private int shift;
+
+  /**
+   * @param capacity the number of entries to hold without growing
+   */
+  LongIntMap(final int capacity) {
+    int bits = 4;
+    while ((1 << bits) < capacity * 2L)
+      bits++;
+    this.allocate(bits);
+  }
+
+  private void allocate(final int bits) {
+    this.keys = new long[1 << bits];
+    this.counts = new int[1 << bits];
+    Arrays.fill(this.keys, EMPTY);
+    this.shift = 64 - bits;
+  }
+
+  int size() {
+    return this.size;
+  }
+
+  // Fibonacci hashing: the high bits of the product index the table
+  private int slot(final long key) {
+    return (int) ((key * 0x9e3779b97f4a7c15L) >>> this.shift);
+  }
+
+  /**
+   * @param key a non-negative key
+   * @param n the amount to add
+   */
+  void add(final long key, final int n) {
+    final int mask = this.keys.length - 1;
+    int i = this.slot(key);
+    while (true) {
+      final long k = this.keys[i];
+      if (k == key) {
+        this.counts[i] += n;
+        return;
+      }
+      if (k == EMPTY) {
+        this.keys[i] = key;
+        this.counts[i] = n;
+        if (++this.size * 2 > this.keys.length)
+          this.grow();
+        return;
+      }
+      i = (i + 1) & mask;
+    }
+  }
+
+  /**
+   * @return the count of <code>key</code>, or 0
+   */
+  int get(final long key) {
+    final int mask = this.keys.length - 1;
+    for (int i = this.slot(key);; i = (i + 1) & mask) {
+      final long k = this.keys[i];
+      if (k == key)
+        return this.counts[i];
+      if (k == EMPTY)
+        return 0;
+    }
+  }
+
+  /**
+   * Copy the entries, in table order, to the front of <code>keys</code> and <code>counts</code>,
+   * which must hold at least {@link #size()} entries, and empty the map. The table keeps its
+   * capacity.
+   *
+   * @return the number of entries copied
+   */
+  int drainTo(final long[] keys, final int[] counts) {
+    int n = 0;
+    for (int i = 0; i < this.keys.length; i++) {
+      if (this.keys[i] != EMPTY) {
+        keys[n] = this.keys[i];
+        counts[n++] = this.counts[i];
+        this.keys[i] = EMPTY;
+      }
+    }
+    this.size = 0;
+    return n;
+  }
+
+  private void grow() {
+    final long[] oldKeys = this.keys;
+    final int[] oldCounts = this.counts;
+    this.allocate(64 - this.shift + 1);
+    final int mask = this.keys.length - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldKeys[j] == EMPTY)
+        continue;
+      int i = this.slot(oldKeys[j]);
+      while (this.keys[i] != EMPTY)
+        i = (i + 1) & mask;
+      this.keys[i] = oldKeys[j];
+      this.counts[i] = oldCounts[j];
+    }
+  }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.roaringbitmap.ImmutableBitmapDataProvider;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.DocumentField;
+
+/**
+ * An in-memory inverted index from the values of controlled-vocabulary fields to compressed
+ * (Roaring) bitmaps of document ordinals. Ordinals are assigned in the order documents were
+ * added, and map back to guids with {@link #getGuid(int)}.
+ * <br><br>
+ * Only fields of {@link DocumentField.Kind#STRING}, {@link DocumentField.Kind#STRING_LIST}, and
+ * {@link DocumentField.Kind#INTEGER} kinds can be indexed; integers are indexed by their
+ * decimal string, e.g. <code>term(PUBLICATION_YEAR, "1998")</code>. Values are matched exactly.
+ * <br><br>
+ * A built index is immutable and may be queried from several threads.
+ */
+public class BitmapIndex {
+
+  /**
+   * The fields indexed by default: descriptors, people, organizations, locations, taxonomic
+   * classifiers, types of material, and publication year.
+   */
+  public static final Set<DocumentField> DEFAULT_FIELDS = Collections.unmodifiableSet(EnumSet.of(
+      DocumentField.DESCRIPTORS, DocumentField.PEOPLE, DocumentField.ORGANIZATIONS,
+      DocumentField.LOCATIONS, DocumentField.TAXONOMIC_CLASSIFIERS, DocumentField.TYPES_OF_MATERIAL,
+      DocumentField.PUBLICATION_YEAR));
+
+  private static final int MAGIC = 0x414e4249; // "ANBI"
+  private static final int VERSION = 1;
+
+  private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+  private final int[] guids;
+  private final Map<DocumentField, Map<String, RoaringBitmap>> postings;
+
+  private BitmapIndex(final int[] guids, final Map<DocumentField, Map<String, RoaringBitmap>> postings) {
+    this.guids = guids;
+    this.postings = postings;
+  }
+
+  /**
+   * @return the number of indexed documents
+   */
+  public int size() {
+    return this.guids.length;
+  }
+
+  /**
+   * @param ordinal a document ordinal
+   * @return the guid of the document
+   */
+  public int getGuid(final int ordinal) {
+    return this.guids[ordinal];
+  }
+
+  /**
+   * @return the indexed fields
+   */
+  public Set<DocumentField> getFields() {
+    return Collections.unmodifiableSet(this.postings.keySet());
+  }
+
+  /**
+   * @param field an indexed field
+   * @return the distinct values of <code>field</code>
+   */
+  public Set<String> getValues(final DocumentField field) {
+    return Collections.unmodifiableSet(this.fieldPostings(field).keySet());
+  }
+
+  /**
+   * @param query the {@link BitmapQuery} to run
+   * @return the ordinals of the matching documents, in a bitmap of the caller's own
+   */
+  public ImmutableBitmapDataProvider search(final BitmapQuery query) {
+    final RoaringBitmap hits = query.evaluate(this);
+    // never hand out a posting list, or EMPTY: a cast back to RoaringBitmap could modify them
+    return hits == EMPTY || query.isShared() ? hits.clone() : hits;
+  }
+
+  /**
+   * @param query the {@link BitmapQuery} to run
+   * @return the number of matching documents
+   */
+  public int count(final BitmapQuery query) {
+    return query.evaluate(this).getCardinality();
+  }
+
+  /**
+   * @param query the {@link BitmapQuery} to run
+   * @return the guids of the matching documents, in ordinal order
+   */
+  public int[] searchGuids(final BitmapQuery query) {
+    final RoaringBitmap hits = query.evaluate(this);
+    final int[] out = new int[hits.getCardinality()];
+    int i = 0;
+    for (IntIterator it = hits.getIntIterator(); it.hasNext();)
+      out[i++] = this.guids[it.next()];
+    return out;
+  }
+
+  RoaringBitmap postings(final DocumentField field, final String value) {
+    final RoaringBitmap b = this.fieldPostings(field).get(value);
+    return b == null ? EMPTY : b;
+  }
+
+  private Map<String, RoaringBitmap> fieldPostings(final DocumentField field) {
+    final Map<String, RoaringBitmap> m = this.postings.get(field);
+    if (m == null)
+      throw new IllegalArgumentException("Field is not indexed: " + field);
+    return m;
+  }
+
+  /**
+   * Write this index to <code>path</code>.
+   *
+   * @param path the file to write; replaced if it exists
+   * @throws IOException on errors writing <code>path</code>
+   */
+  public void write(final Path path) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(this.guids.length);
+      for (int g : this.guids)
+        out.writeInt(g);
+      out.writeInt(this.postings.size());
+      for (Map.Entry<DocumentField, Map<String, RoaringBitmap>> f : this.postings.entrySet()) {
+        out.writeUTF(f.getKey().getPropertyName());
+        out.writeInt(f.getValue().size());
+        for (Map.Entry<String, RoaringBitmap> e : f.getValue().entrySet()) {
+          out.writeUTF(e.getKey());
+          e.getValue().serialize(out);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param path a file written by {@link #write(Path)}
+   * @return the index
+   * @throws IOException on errors reading <code>path</code>, or if it is not an index file
+   */
+  public static BitmapIndex read(final Path path) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+      if (in.readInt() != MAGIC)
+        throw new IOException("Not a bitmap index: " + path);
+      final int version = in.readInt();
+      if (version != VERSION)
+        throw new IOException("Unsupported bitmap index version: " + version);
+      final int[] guids = new int[in.readInt()];
+      for (int i = 0; i < guids.length; i++)
+        guids[i] = in.readInt();
+      final Map<DocumentField, Map<String, RoaringBitmap>> postings = new EnumMap<>(DocumentField.class);
+      final int nFields = in.readInt();
+      for (int f = 0; f < nFields; f++) {
+        final DocumentField field = DocumentField.forPropertyName(in.readUTF());
+        final int nValues = in.readInt();
+        final Map<String, RoaringBitmap> values = new HashMap<>(nValues * 4 / 3 + 1);
+        for (int v = 0; v < nValues; v++) {
+          final String value = in.readUTF();
+          final RoaringBitmap b = new RoaringBitmap();
+          b.deserialize(in);
+          values.put(value, b);
+        }
+        postings.put(field, values);
+      }
+      return new BitmapIndex(guids, postings);
+    }
+  }
+
+  /**
+   * Index every document of the corpus, parsing archives in parallel. Ordinals follow corpus order.
+   *
+   * @param reader the {@link CorpusReader} to read from
+   * @param fields the fields to index
+   * @param threads the number of archives to parse concurrently
+   * @return the index
+   * @throws IOException on errors reading the corpus
+   */
+  public static BitmapIndex build(final CorpusReader reader, final Set<DocumentField> fields, final int threads)
+      throws IOException {
+    final Builder all = new Builder(fields);
+    reader.processArchives(threads, archive -> {
+      final Builder b = new Builder(fields);
+      reader.read(archive, b::add);
+      return b;
+    }, (archive, b) -> all.add(b));
+    return all.build();
+  }
+
+  /**
+   * Builds a {@link BitmapIndex}. Not thread-safe; build partial indexes on separate threads and
+   * combine them with {@link #add(Builder)}.
+   */
+  public static class Builder {
+    private final DocumentField[] fields;
+    private final Map<DocumentField, Map<String, RoaringBitmap>> postings = new EnumMap<>(DocumentField.class);
+    private int[] guids = new int[1024];
+    private int size;
+
+    /**
+     * Index the {@link BitmapIndex#DEFAULT_FIELDS}.
+     */
+    public Builder() {
+      this(DEFAULT_FIELDS);
+    }
+
+    /**
+     * @param fields the fields to index
+     * @throws IllegalArgumentException if a field is not a string, string list, or integer field
+     */
+    public Builder(final Set<DocumentField> fields) {
+      for (DocumentField f : fields) {
+        switch (f.getKind()) {
+        case STRING:
+        case STRING_LIST:
+        case INTEGER:
+          this.postings.put(f, new HashMap<>());
+          break;
+        default:
+          throw new IllegalArgumentException("Cannot index field of kind " + f.getKind() + ": " + f);
+        }
+      }
+      this.fields = this.postings.keySet().toArray(new DocumentField[this.postings.size()]);
+    }
+
+    /**
+     * @param doc the {@link NYTCorpusDocument} to add; it gets the next ordinal
+     */
+    public void add(final NYTCorpusDocument doc) {
+      final int ordinal = this.size;
+      if (ordinal == this.guids.length)
+        this.guids = Arrays.copyOf(this.guids, ordinal * 2);
+      this.guids[ordinal] = doc.getGuid();
+      this.size++;
+      for (DocumentField f : this.fields) {
+        final Object v = f.get(doc);
+        if (v == null)
+          continue;
+        final Map<String, RoaringBitmap> m = this.postings.get(f);
+        if (v instanceof List) {
+          for (Object o : (List<?>) v)
+            posting(m, (String) o).add(ordinal);
+        } else {
+          posting(m, v.toString()).add(ordinal);
+        }
+      }
+    }
+
+    /**
+     * Append the documents of <code>other</code>, shifting their ordinals past the documents
+     * already added.
+     *
+     * @param other a {@link Builder} over the same fields; it must not be used afterwards
+     */
+    public void add(final Builder other) {
+      if (!this.postings.keySet().equals(other.postings.keySet()))
+        throw new IllegalArgumentException("Builders index different fields.");
+      final int base = this.size;
+      if (base + other.size > this.guids.length)
+        this.guids = Arrays.copyOf(this.guids, Math.max(base + other.size, this.guids.length * 2));
+      System.arraycopy(other.guids, 0, this.guids, base, other.size);
+      this.size += other.size;
+      for (Map.Entry<DocumentField, Map<String, RoaringBitmap>> f : other.postings.entrySet()) {
+        final Map<String, RoaringBitmap> m = this.postings.get(f.getKey());
+        for (Map.Entry<String, RoaringBitmap> e : f.getValue().entrySet()) {
+          final RoaringBitmap shifted = base == 0 ? e.getValue() : RoaringBitmap.addOffset(e.getValue(), base);
+          final RoaringBitmap existing = m.putIfAbsent(e.getKey(), shifted);
+          if (existing != null)
+            existing.or(shifted);
+        }
+      }
+    }
+
+    /**
+     * @return the number of documents added
+     */
+    public int size() {
+      return this.size;
+    }
+
+    /**
+     * Compress the bitmaps and build the index. The builder must not be used afterwards.
+     *
+     * @return the {@link BitmapIndex}
+     */
+    public BitmapIndex build() {
+      for (Map<String, RoaringBitmap> m : this.postings.values())
+        for (RoaringBitmap b : m.values())
+          b.runOptimize();
+      return new BitmapIndex(Arrays.copyOf(this.guids, this.size), this.postings);
+    }
+
+    private static RoaringBitmap posting(final Map<String, RoaringBitmap> m, final String value) {
+      RoaringBitmap b = m.get(value);
+      if (b == null) {
+        b = new RoaringBitmap();
+        m.put(value, b);
+      }
+      return b;
+    }
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.index;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+
+import edu.jhu.hlt.annotatednyt.DocumentField;
+
+/**
+ * A boolean query over a {@link BitmapIndex}.
+ * <br><br>
+ * For example, all obituaries mentioning an organization in 1998:
+ * <pre>
+ * BitmapQuery.and(
+ *     BitmapQuery.term(DocumentField.TYPES_OF_MATERIAL, "Obituary"),
+ *     BitmapQuery.term(DocumentField.ORGANIZATIONS, "Columbia University"),
+ *     BitmapQuery.term(DocumentField.PUBLICATION_YEAR, "1998"))
+ * </pre>
+ */
+public abstract class BitmapQuery {
+
+  private BitmapQuery() {
+  }
+
+  /**
+   * @param index the {@link BitmapIndex} to evaluate against
+   * @return the matching ordinals; may be shared with <code>index</code>, and must not be modified
+   */
+  abstract RoaringBitmap evaluate(BitmapIndex index);
+
+  /**
+   * @return true if {@link #evaluate(BitmapIndex)} may return a posting list of the index
+   * itself, rather than a new bitmap
+   */
+  abstract boolean isShared();
+
+  /**
+   * @param field an indexed field
+   * @param value the exact value to match
+   * @return a query matching documents with <code>value</code> in <code>field</code>
+   */
+  public static BitmapQuery term(final DocumentField field, final String value) {
+    return new Term(field, value);
+  }
+
+  /**
+   * @param clauses the queries that must all match
+   * @return a query matching documents matched by every clause
+   */
+  public static BitmapQuery and(final BitmapQuery... clauses) {
+    if (clauses.length == 0)
+      throw new IllegalArgumentException("and() needs at least one clause.");
+    return new And(clauses.clone());
+  }
+
+  /**
+   * @param clauses the queries of which at least one must match
+   * @return a query matching documents matched by any clause
+   */
+  public static BitmapQuery or(final BitmapQuery... clauses) {
+    if (clauses.length == 0)
+      throw new IllegalArgumentException("or() needs at least one clause.");
+    return new Or(clauses.clone());
+  }
+
+  /**
+   * @param clause the query that must not match
+   * @return a query matching every document not matched by <code>clause</code>
+   */
+  public static BitmapQuery not(final BitmapQuery clause) {
+    return new Not(clause);
+  }
+
+  private static final class Term extends BitmapQuery {
+    private final DocumentField field;
+    private final String value;
+
+    private Term(final DocumentField field, final String value) {
+      this.field = field;
+      this.value = value;
+    }
+
+    @Override
+    RoaringBitmap evaluate(final BitmapIndex index) {
+      return index.postings(this.field, this.value);
+    }
+
+    @Override
+    boolean isShared() {
+      return true;
+    }
+
+    @Override
+    public String toString() {
+      return this.field.getPropertyName() + ":\"" + this.value + "\"";
+    }
+  }
+
+  private static final class And extends BitmapQuery {
+    private final BitmapQuery[] clauses;
+
+    private And(final BitmapQuery[] clauses) {
+      this.clauses = clauses;
+    }
+
+    @Override
+    RoaringBitmap evaluate(final BitmapIndex index) {
+      final RoaringBitmap[] bs = new RoaringBitmap[this.clauses.length];
+      for (int i = 0; i < bs.length; i++) {
+        bs[i] = this.clauses[i].evaluate(index);
+        if (bs[i].isEmpty())
+          return bs[i];
+      }
+      if (bs.length == 1)
+        return bs[0];
+      // smallest first, so intermediate results stay small
+      Arrays.sort(bs, Comparator.comparingLong(RoaringBitmap::getLongCardinality));
+      RoaringBitmap result = RoaringBitmap.and(bs[0], bs[1]);
+      for (int i = 2; i < bs.length && !result.isEmpty(); i++)
+        result.and(bs[i]);
+      return result;
+    }
+
+    @Override
+    boolean isShared() {
+      return this.clauses.length == 1 && this.clauses[0].isShared();
+    }
+
+    @Override
+    public String toString() {
+      return Arrays.stream(this.clauses).map(Object::toString).collect(Collectors.joining(" AND ", "(", ")"));
+    }
+  }
+
+  private static final class Or extends BitmapQuery {
+    private final BitmapQuery[] clauses;
+
+    private Or(final BitmapQuery[] clauses) {
+      this.clauses = clauses;
+    }
+
+    @Override
+    RoaringBitmap evaluate(final BitmapIndex index) {
+      if (this.clauses.length == 1)
+        return this.clauses[0].evaluate(index);
+      final RoaringBitmap[] bs = new RoaringBitmap[this.clauses.length];
+      for (int i = 0; i < bs.length; i++)
+        bs[i] = this.clauses[i].evaluate(index);
+      return FastAggregation.or(bs);
+    }
+
+    @Override
+    boolean isShared() {
+      return this.clauses.length == 1 && this.clauses[0].isShared();
+    }
+
+    @Override
+    public String toString() {
+      return Arrays.stream(this.clauses).map(Object::toString).collect(Collectors.joining(" OR ", "(", ")"));
+    }
+  }
+
+  private static final class Not extends BitmapQuery {
+    private final BitmapQuery clause;
+
+    private Not(final BitmapQuery clause) {
+      this.clause = clause;
+    }
+
+    @Override
+    RoaringBitmap evaluate(final BitmapIndex index) {
+      return RoaringBitmap.flip(this.clause.evaluate(index), 0L, (long) index.size());
+    }
+
+    @Override
+    boolean isShared() {
+      return false;
+    }
+
+    @Override
+    public String toString() {
+      return "NOT " + this.clause;
+    }
+  }
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.index;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.temporal.ChronoField;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Set;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+
+/**
+ * A sorted index of publication dates: three parallel <code>int</code> arrays of epoch day,
+ * document ordinal, and guid, sorted by day, then ordinal. Ranges are found by binary search.
+ * <br><br>
+ * The day of a document is its <code>publicationYear/Month/DayOfMonth</code> when all three are
+ * set, and otherwise the calendar day of its <code>publicationDate</code> in the default time
+ * zone (the zone the parser used). Documents without a date are not indexed, but still take
+ * an ordinal, so ordinals match those of indexes built in the same pass, such as
+ * {@link BitmapIndex}.
+ * <br><br>
+ * Every range query takes its first and last day inclusive. A range whose first day is after
+ * its last day is empty: it counts zero documents and returns an empty array.
+ * <br><br>
+ * A built index is immutable and may be queried from several threads.
+ */
+public class DateIndex {
+
+  private static final int MAGIC = 0x414e4449; // "ANDI"
+  private static final int VERSION = 1;
+
+  private final int[] days;
+  private final int[] ordinals;
+  private final int[] guids;
+
+  private DateIndex(final int[] days, final int[] ordinals, final int[] guids) {
+    this.days = days;
+    this.ordinals = ordinals;
+    this.guids = guids;
+  }
+
+  /**
+   * @return the number of indexed (dated) documents
+   */
+  public int size() {
+    return this.days.length;
+  }
+
+  /**
+   * @return the earliest publication date, or <code>null</code> if the index is empty
+   */
+  public LocalDate getFirstDay() {
+    return this.days.length == 0 ? null : LocalDate.ofEpochDay(this.days[0]);
+  }
+
+  /**
+   * @return the latest publication date, or <code>null</code> if the index is empty
+   */
+  public LocalDate getLastDay() {
+    return this.days.length == 0 ? null : LocalDate.ofEpochDay(this.days[this.days.length - 1]);
+  }
+
+  /**
+   * @param from the first day, inclusive
+   * @param to the last day, inclusive
+   * @return the number of documents published from <code>from</code> to <code>to</code>
+   */
+  public int count(final LocalDate from, final LocalDate to) {
+    final int lo = this.lower(from);
+    return this.upper(to, lo) - lo;
+  }
+
+  /**
+   * @param from the first day, inclusive
+   * @param to the last day, inclusive
+   * @return the guids of documents published from <code>from</code> to <code>to</code>, by date
+   */
+  public int[] guids(final LocalDate from, final LocalDate to) {
+    final int lo = this.lower(from);
+    return Arrays.copyOfRange(this.guids, lo, this.upper(to, lo));
+  }
+
+  /**
+   * @param from the first day, inclusive
+   * @param to the last day, inclusive
+   * @return the ordinals of documents published from <code>from</code> to <code>to</code>, by date
+   */
+  public int[] ordinals(final LocalDate from, final LocalDate to) {
+    final int lo = this.lower(from);
+    return Arrays.copyOfRange(this.ordinals, lo, this.upper(to, lo));
+  }
+
+  /**
+   * @param from the first day, inclusive
+   * @param to the last day, inclusive
+   * @param daysOfWeek the days of the week to keep
+   * @return the guids of documents published from <code>from</code> to <code>to</code> on one of
+   * <code>daysOfWeek</code>, by date
+   */
+  public int[] guids(final LocalDate from, final LocalDate to, final Set<DayOfWeek> daysOfWeek) {
+    final int lo = this.lower(from);
+    final int hi = this.upper(to, lo);
+    // bit d set if DayOfWeek.getValue() == d + 1
+    int mask = 0;
+    for (DayOfWeek d : daysOfWeek)
+      mask |= 1 << (d.getValue() - 1);
+    final int[] out = new int[hi - lo];
+    int n = 0;
+    for (int i = lo; i < hi; i++)
+      if ((mask & (1 << dayOfWeek(this.days[i]))) != 0)
+        out[n++] = this.guids[i];
+    return n == out.length ? out : Arrays.copyOf(out, n);
+  }
+
+  /**
+   * @param from the first day, inclusive
+   * @param to the last day, inclusive
+   * @return the number of documents published on each day from <code>from</code> to
+   * <code>to</code>: element <code>i</code> counts <code>from.plusDays(i)</code>
+   */
+  public int[] countsPerDay(final LocalDate from, final LocalDate to) {
+    final long first = from.toEpochDay();
+    final long n = to.toEpochDay() - first + 1;
+    if (n <= 0)
+      return new int[0];
+    if (n > Integer.MAX_VALUE)
+      throw new IllegalArgumentException("Range too long: " + from + " to " + to);
+    final int[] counts = new int[(int) n];
+    final int lo = this.lower(from);
+    final int hi = this.upper(to, lo);
+    for (int i = lo; i < hi; i++)
+      counts[(int) (this.days[i] - first)]++;
+    return counts;
+  }
+
+  // 1970-01-01 was a Thursday; returns DayOfWeek.getValue() - 1
+  private static int dayOfWeek(final int epochDay) {
+    return Math.floorMod(epochDay + 3, 7);
+  }
+
+  /** @return the index of the first entry on or after <code>day</code> */
+  private int lower(final LocalDate day) {
+    return this.search(clamp(day.toEpochDay()));
+  }
+
+  /** @return the index one past the last entry on or before <code>day</code> */
+  private int upper(final LocalDate day) {
+    final long d = day.toEpochDay();
+    return d >= Integer.MAX_VALUE ? this.days.length : this.search(clamp(d + 1));
+  }
+
+  /**
+   * @return {@link #upper(LocalDate)}, but not below <code>lo</code>, so that a range ending
+   * before it starts is empty
+   */
+  private int upper(final LocalDate day, final int lo) {
+    return Math.max(lo, this.upper(day));
+  }
+
+  private static int clamp(final long day) {
+    return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, day));
+  }
+
+  // first index with days[i] >= day
+  private int search(final int day) {
+    int lo = 0;
+    int hi = this.days.length;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (this.days[mid] < day)
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    return lo;
+  }
+
+  /**
+   * Write this index to <code>path</code>: a header, then the three arrays as raw big-endian ints.
+   *
+   * @param path the file to write; replaced if it exists
+   * @throws IOException on errors writing <code>path</code>
+   */
+  public void write(final Path path) throws IOException {
+    try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      final ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.BIG_ENDIAN);
+      header.putInt(MAGIC).putInt(VERSION).putInt(this.days.length);
+      ((Buffer) header).flip();
+      writeFully(ch, header);
+      final ByteBuffer body = ByteBuffer.allocate(this.days.length * 12);
+      body.asIntBuffer().put(this.days).put(this.ordinals).put(this.guids);
+      writeFully(ch, body);
+    }
+  }
+
+  private static void writeFully(final FileChannel ch, final ByteBuffer buf) throws IOException {
+    while (buf.hasRemaining())
+      ch.write(buf);
+  }
+
+  /**
+   * @param path a file written by {@link #write(Path)}
+   * @return the index
+   * @throws IOException on errors reading <code>path</code>, or if it is not a date index
+   */
+  public static DateIndex read(final Path path) throws IOException {
+    try (FileChannel ch = FileChannel.open(path)) {
+      final ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+      if (buf.remaining() < 12 || buf.getInt() != MAGIC)
+        throw new IOException("Not a date index: " + path);
+      final int version = buf.getInt();
+      if (version != VERSION)
+        throw new IOException("Unsupported date index version: " + version);
+      final int n = buf.getInt();
+      if (buf.remaining() != n * 12L)
+        throw new IOException("Truncated date index: " + path);
+      final int[] days = new int[n];
+      final int[] ordinals = new int[n];
+      final int[] guids = new int[n];
+      buf.asIntBuffer().get(days).get(ordinals).get(guids);
+      return new DateIndex(days, ordinals, guids);
+    }
+  }
+
+  /**
+   * Index every document of the corpus, parsing archives in parallel. Ordinals follow corpus
+   * order. To build alongside other indexes in one pass, feed a {@link Builder} from a
+   * {@link CorpusReader.DocumentHandler} instead.
+   *
+   * @param reader the {@link CorpusReader} to read from
+   * @param threads the number of archives to parse concurrently
+   * @return the index
+   * @throws IOException on errors reading the corpus
+   */
+  public static DateIndex build(final CorpusReader reader, final int threads) throws IOException {
+    final Builder all = new Builder();
+    reader.processArchives(threads, archive -> {
+      final Builder b = new Builder();
+      reader.read(archive, b);
+      return b;
+    }, (archive, b) -> all.add(b));
+    return all.build();
+  }
+
+  /**
+   * Collects publication dates. A builder is a {@link CorpusReader.DocumentHandler}, so it can
+   * be chained onto any corpus pass with {@link CorpusReader.DocumentHandler#andThen}. Not
+   * thread-safe; build partial indexes on separate threads and combine them with
+   * {@link #add(Builder)}.
+   */
+  public static class Builder implements CorpusReader.DocumentHandler {
+    private int[] days = new int[1024];
+    private int[] ordinals = new int[1024];
+    private int[] guids = new int[1024];
+    private int size;
+    private int next;
+
+    /**
+     * @param doc the {@link NYTCorpusDocument} to add; it gets the next ordinal. If its
+     * publication year, month, and day do not form a valid date, its
+     * <code>publicationDate</code> is used; if that is missing too, it is left out, but still
+     * uses up its ordinal.
+     */
+    public void add(final NYTCorpusDocument doc) {
+      final int ordinal = this.next++;
+      final Integer y = doc.getPublicationYear();
+      final Integer m = doc.getPublicationMonth();
+      final Integer d = doc.getPublicationDayOfMonth();
+      final long day;
+      if (y != null && m != null && d != null && isValidDate(y, m, d)) {
+        day = LocalDate.of(y, m, d).toEpochDay();
+      } else {
+        final Date date = doc.getPublicationDate();
+        if (date == null)
+          return;
+        day = date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+      }
+      this.append((int) day, ordinal, doc.getGuid());
+    }
+
+    /**
+     * @return true iff <code>y-m-d</code> is a date; the parser accepts any integers
+     */
+    private static boolean isValidDate(final int y, final int m, final int d) {
+      return ChronoField.YEAR.range().isValidIntValue(y)
+          && ChronoField.MONTH_OF_YEAR.range().isValidIntValue(m)
+          && d >= 1 && d <= YearMonth.of(y, m).lengthOfMonth();
+    }
+
+    @Override
+    public void handle(final NYTCorpusDocument doc) {
+      this.add(doc);
+    }
+
+    private void append(final int day, final int ordinal, final int guid) {
+      if (this.size == this.days.length) {
+        final int c = this.size * 2;
+        this.days = Arrays.copyOf(this.days, c);
+        this.ordinals = Arrays.copyOf(this.ordinals, c);
+        this.guids = Arrays.copyOf(this.guids, c);
+      }
+      this.days[this.size] = day;
+      this.ordinals[this.size] = ordinal;
+      this.guids[this.size] = guid;
+      this.size++;
+    }
+
+    /**
+     * Append the documents of <code>other</code>, shifting their ordinals past the documents
+     * already added.
+     *
+     * @param other another {@link Builder}
+     */
+    public void add(final Builder other) {
+      final int base = this.next;
+      for (int i = 0; i < other.size; i++)
+        this.append(other.days[i], base + other.ordinals[i], other.guids[i]);
+      this.next += other.next;
+    }
+
+    /**
+     * @return the number of documents added, dated or not
+     */
+    public int size() {
+      return this.next;
+    }
+
+    /**
+     * @return the sorted {@link DateIndex}
+     */
+    public DateIndex build() {
+      // documents arrive nearly in date order, and entries are in ordinal order, so sorting
+      // (day, entry) pairs packed into longs gives the (day, ordinal) order
+      final long[] keys = new long[this.size];
+      for (int i = 0; i < this.size; i++)
+        keys[i] = ((long) this.days[i] << 32) | i;
+      Arrays.sort(keys);
+      final int[] d = new int[this.size];
+      final int[] o = new int[this.size];
+      final int[] g = new int[this.size];
+      for (int i = 0; i < this.size; i++) {
+        final int e = (int) keys[i];
+        d[i] = this.days[e];
+        o[i] = this.ordinals[e];
+        g[i] = this.guids[e];
+      }
+      return new DateIndex(d, o, g);
+    }
+  }
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.index;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import edu.jhu.hlt.annotatednyt.DocumentField;
+import edu.jhu.hlt.annotatednyt.text.TokenBuffer;
+import edu.jhu.hlt.annotatednyt.text.Tokenizer;
+
+/**
+ * A positional full-text index over the headline, lead paragraph, and body of documents,
+ * ranked with BM25. Built by {@link FullTextIndexBuilder}.
+ * <br><br>
+ * An index is a directory of three files:
+ * <ul>
+ * <li><code>docs.bin</code>: the guid and per-field token counts (length norms) of each document</li>
+ * <li><code>terms.bin</code>: per field, the sorted terms with their document frequency and the
+ * offset and length of their postings</li>
+ * <li><code>postings.bin</code>: positional postings in the block format of {@link PostingsWriter}</li>
+ * </ul>
+ * Documents and terms are loaded into memory on {@link #open(Path)}; postings are memory-mapped per
+ * query term, so they are served from the page cache.
+ * <br><br>
+ * Queries are lists of terms and double-quoted phrases, e.g. <code>"white house" budget</code>.
+ * A document matches if any clause matches in any searched field; its score is the sum over fields
+ * and clauses of the field weight times the BM25 score of the clause. A phrase scores as a term whose
+ * frequency is the number of phrase occurrences and whose IDF is the sum of its terms' IDFs.
+ * <br><br>
+ * An open index may be searched from several threads.
+ */
+public class FullTextIndex implements Closeable {
+
+  /** The indexed fields, in file order. */
+  static final DocumentField[] FIELDS = { DocumentField.HEADLINE, DocumentField.LEAD_PARAGRAPH, DocumentField.BODY };
+
+  static final String DOCS_FILE = "docs.bin";
+  static final String TERMS_FILE = "terms.bin";
+  static final String POSTINGS_FILE = "postings.bin";
+
+  static final int MAGIC = 0x414e4654; // "ANFT"
+  static final int VERSION = 1;
+
+  /**
+   * The default field weights: headline 2, lead paragraph 1.5, body 1.
+   */
+  public static final Map<DocumentField, Float> DEFAULT_WEIGHTS;
+
+  static {
+    final Map<DocumentField, Float> m = new EnumMap<>(DocumentField.class);
+    m.put(DocumentField.HEADLINE, 2f);
+    m.put(DocumentField.LEAD_PARAGRAPH, 1.5f);
+    m.put(DocumentField.BODY, 1f);
+    DEFAULT_WEIGHTS = Collections.unmodifiableMap(m);
+  }
+
+  private static final float K1 = 1.2f;
+  private static final float B = 0.75f;
+
+  /**
+   * A search result.
+   */
+  public static final class Hit {
+    private final int ordinal;
+    private final int guid;
+    private final float score;
+
+    private Hit(final int ordinal, final int guid, final float score) {
+      this.ordinal = ordinal;
+      this.guid = guid;
+      this.score = score;
+    }
+
+    /**
+     * @return the document ordinal
+     */
+    public int getOrdinal() {
+      return this.ordinal;
+    }
+
+    /**
+     * @return the document guid
+     */
+    public int getGuid() {
+      return this.guid;
+    }
+
+    /**
+     * @return the BM25 score
+     */
+    public float getScore() {
+      return this.score;
+    }
+
+    @Override
+    public String toString() {
+      return "Hit [guid=" + this.guid + ", score=" + this.score + "]";
+    }
+  }
+
+  private final int[] guids;
+  private final int[][] lengths;
+  private final float[] avgLengths;
+  private final String[][] terms;
+  private final int[][] docFreqs;
+  private final long[][] offsets;
+  private final int[][] postingLengths;
+  private final FileChannel postings;
+
+  private FullTextIndex(final Path dir) throws IOException {
+    try (DataInputStream in = openFile(dir.resolve(DOCS_FILE))) {
+      final int n = in.readInt();
+      this.guids = new int[n];
+      for (int i = 0; i < n; i++)
+        this.guids[i] = in.readInt();
+      this.lengths = new int[FIELDS.length][n];
+      this.avgLengths = new float[FIELDS.length];
+      for (int f = 0; f < FIELDS.length; f++) {
+        long total = 0;
+        for (int i = 0; i < n; i++)
+          total += this.lengths[f][i] = in.readInt();
+        this.avgLengths[f] = n == 0 ? 0f : Math.max(1f, (float) total / n);
+      }
+    }
+    this.terms = new String[FIELDS.length][];
+    this.docFreqs = new int[FIELDS.length][];
+    this.offsets = new long[FIELDS.length][];
+    this.postingLengths = new int[FIELDS.length][];
+    try (DataInputStream in = openFile(dir.resolve(TERMS_FILE))) {
+      for (int f = 0; f < FIELDS.length; f++) {
+        final int n = in.readInt();
+        this.terms[f] = new String[n];
+        this.docFreqs[f] = new int[n];
+        this.offsets[f] = new long[n];
+        this.postingLengths[f] = new int[n];
+        for (int i = 0; i < n; i++) {
+          this.terms[f][i] = in.readUTF();
+          this.docFreqs[f][i] = in.readInt();
+          this.offsets[f][i] = in.readLong();
+          this.postingLengths[f][i] = in.readInt();
+        }
+      }
+    }
+    this.postings = FileChannel.open(dir.resolve(POSTINGS_FILE));
+  }
+
+  static DataInputStream openFile(final Path p) throws IOException {
+    final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(p), 1 << 16));
+    boolean ok = false;
+    try {
+      if (in.readInt() != MAGIC)
+        throw new IOException("Not a full-text index file: " + p);
+      final int version = in.readInt();
+      if (version != VERSION)
+        throw new IOException("Unsupported full-text index version " + version + ": " + p);
+      ok = true;
+      return in;
+    } finally {
+      if (!ok)
+        in.close();
+    }
+  }
+
+  /**
+   * @param dir a directory written by {@link FullTextIndexBuilder}
+   * @return the opened index
+   * @throws IOException on errors reading the index
+   */
+  public static FullTextIndex open(final Path dir) throws IOException {
+    return new FullTextIndex(dir);
+  }
+
+  /**
+   * @return the number of indexed documents
+   */
+  public int size() {
+    return this.guids.length;
+  }
+
+  /**
+   * @param ordinal a document ordinal
+   * @return the guid of the document
+   */
+  public int getGuid(final int ordinal) {
+    return this.guids[ordinal];
+  }
+
+  /**
+   * @param field an indexed field
+   * @param ordinal a document ordinal
+   * @return the number of tokens of <code>field</code> in the document
+   */
+  public int getLength(final DocumentField field, final int ordinal) {
+    return this.lengths[fieldIndex(field)][ordinal];
+  }
+
+  /**
+   * @param field an indexed field
+   * @param term a term, as produced by the tokenizer and lowercased
+   * @return the number of documents containing <code>term</code> in <code>field</code>
+   */
+  public int docFreq(final DocumentField field, final String term) {
+    final int f = fieldIndex(field);
+    final int t = Arrays.binarySearch(this.terms[f], term);
+    return t < 0 ? 0 : this.docFreqs[f][t];
+  }
+
+  /**
+   * Search with the {@link #DEFAULT_WEIGHTS}.
+   *
+   * @param query terms and double-quoted phrases
+   * @param k the maximum number of hits
+   * @return the top <code>k</code> hits, best first
+   * @throws IOException on errors reading postings
+   */
+  public List<Hit> search(final String query, final int k) throws IOException {
+    return this.search(query, DEFAULT_WEIGHTS, k);
+  }
+
+  /**
+   * @param query terms and double-quoted phrases
+   * @param weights the fields to search, and their weights
+   * @param k the maximum number of hits
+   * @return the top <code>k</code> hits, best first
+   * @throws IOException on errors reading postings
+   */
+  public List<Hit> search(final String query, final Map<DocumentField, Float> weights, final int k)
+      throws IOException {
+    final List<String[]> clauses = parse(query);
+    final List<Scorer> scorers = new ArrayList<>();
+    for (Map.Entry<DocumentField, Float> e : weights.entrySet()) {
+      final int f = fieldIndex(e.getKey());
+      for (String[] clause : clauses) {
+        final Scorer s = this.scorer(f, clause, e.getValue());
+        if (s != null && s.nextDoc() != PostingsIterator.NO_MORE_DOCS)
+          scorers.add(s);
+      }
+    }
+
+    final PriorityQueue<Hit> top = new PriorityQueue<>(Math.max(1, k), (a, b) -> Float.compare(a.score, b.score));
+    while (k > 0 && !scorers.isEmpty()) {
+      int doc = PostingsIterator.NO_MORE_DOCS;
+      for (Scorer s : scorers)
+        doc = Math.min(doc, s.doc);
+      float score = 0f;
+      for (int i = scorers.size() - 1; i >= 0; i--) {
+        final Scorer s = scorers.get(i);
+        if (s.doc != doc)
+          continue;
+        score += s.score();
+        if (s.nextDoc() == PostingsIterator.NO_MORE_DOCS)
+          scorers.remove(i);
+      }
+      if (top.size() < k)
+        top.add(new Hit(doc, this.guids[doc], score));
+      else if (score > top.peek().score) {
+        top.poll();
+        top.add(new Hit(doc, this.guids[doc], score));
+      }
+    }
+    final List<Hit> hits = new ArrayList<>(top);
+    hits.sort((a, b) -> a.score != b.score ? Float.compare(b.score, a.score) : Integer.compare(a.ordinal, b.ordinal));
+    return hits;
+  }
+
+  private Scorer scorer(final int f, final String[] clause, final float weight) throws IOException {
+    final PostingsIterator[] its = new PostingsIterator[clause.length];
+    float idf = 0f;
+    for (int i = 0; i < clause.length; i++) {
+      final int t = Arrays.binarySearch(this.terms[f], clause[i]);
+      if (t < 0)
+        return null;
+      final int df = this.docFreqs[f][t];
+      idf += (float) Math.log(1 + (this.guids.length - df + 0.5) / (df + 0.5));
+      final ByteBuffer buf = this.postings.map(FileChannel.MapMode.READ_ONLY, this.offsets[f][t], this.postingLengths[f][t]);
+      its[i] = new PostingsIterator(buf, df);
+    }
+    return clause.length == 1
+        ? new Scorer(its[0], weight * idf, this.lengths[f], this.avgLengths[f])
+        : new PhraseScorer(its, weight * idf, this.lengths[f], this.avgLengths[f]);
+  }
+
+  private static int fieldIndex(final DocumentField field) {
+    for (int f = 0; f < FIELDS.length; f++)
+      if (FIELDS[f] == field)
+        return f;
+    throw new IllegalArgumentException("Field is not indexed: " + field);
+  }
+
+  /**
+   * Split a query into clauses: each double-quoted phrase is one clause, every other token is its own.
+   */
+  static List<String[]> parse(final String query) {
+    final List<String[]> clauses = new ArrayList<>();
+    final TokenBuffer tokens = new TokenBuffer();
+    final StringBuilder sb = new StringBuilder();
+    final String[] parts = query.split("\"", -1);
+    for (int p = 0; p < parts.length; p++) {
+      tokens.clear();
+      Tokenizer.tokenize(parts[p], tokens);
+      // odd parts are inside quotes, unless the last quote is unbalanced
+      final boolean phrase = p % 2 == 1 && p < parts.length - 1;
+      if (phrase && tokens.size() > 0) {
+        final String[] c = new String[tokens.size()];
+        for (int i = 0; i < c.length; i++)
+          c[i] = term(parts[p], tokens.start(i), tokens.end(i), sb);
+        clauses.add(c);
+      } else {
+        for (int i = 0; i < tokens.size(); i++)
+          clauses.add(new String[] { term(parts[p], tokens.start(i), tokens.end(i), sb) });
+      }
+    }
+    return clauses;
+  }
+
+  /**
+   * @return the indexed form of a token: lowercased
+   */
+  static String term(final CharSequence text, final int start, final int end, final StringBuilder sb) {
+    sb.setLength(0);
+    for (int i = start; i < end; i++)
+      sb.append(Character.toLowerCase(text.charAt(i)));
+    return sb.toString();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.postings.close();
+  }
+
+  private static class Scorer {
+    final PostingsIterator it;
+    final float weight;
+    final int[] lengths;
+    final float avgLength;
+    int doc = -1;
+
+    Scorer(final PostingsIterator it, final float weight, final int[] lengths, final float avgLength) {
+      this.it = it;
+      this.weight = weight;
+      this.lengths = lengths;
+      this.avgLength = avgLength;
+    }
+
+    int nextDoc() {
+      return this.doc = this.it.nextDoc();
+    }
+
+    int freq() {
+      return this.it.freq();
+    }
+
+    final float score() {
+      final float tf = this.freq();
+      final float norm = K1 * (1 - B + B * this.lengths[this.doc] / this.avgLength);
+      return this.weight * tf * (K1 + 1) / (tf + norm);
+    }
+  }
+
+  private static final class PhraseScorer extends Scorer {
+    private final PostingsIterator[] its;
+    private int[][] positions;
+    private final int[] counts;
+    private final int[] ptr;
+    private int freq;
+
+    PhraseScorer(final PostingsIterator[] its, final float weight, final int[] lengths, final float avgLength) {
+      super(its[0], weight, lengths, avgLength);
+      this.its = its;
+      this.positions = new int[its.length][16];
+      this.counts = new int[its.length];
+      this.ptr = new int[its.length];
+    }
+
+    @Override
+    int nextDoc() {
+      int d = this.its[0].nextDoc();
+      while (d != PostingsIterator.NO_MORE_DOCS) {
+        int max = d;
+        for (int i = 1; i < this.its.length; i++)
+          max = Math.max(max, this.its[i].advance(d));
+        if (max != d) {
+          d = this.its[0].advance(max);
+          continue;
+        }
+        this.freq = this.phraseFreq();
+        if (this.freq > 0)
+          return this.doc = d;
+        d = this.its[0].nextDoc();
+      }
+      return this.doc = PostingsIterator.NO_MORE_DOCS;
+    }
+
+    @Override
+    int freq() {
+      return this.freq;
+    }
+
+    /**
+     * @return the number of positions p such that term i occurs at p + i for every i
+     */
+    private int phraseFreq() {
+      for (int i = 0; i < this.its.length; i++) {
+        final int n = this.its[i].freq();
+        if (this.positions[i].length < n)
+          this.positions[i] = new int[Math.max(n, this.positions[i].length * 2)];
+        for (int j = 0; j < n; j++)
+          this.positions[i][j] = this.its[i].nextPosition() - i;
+        this.counts[i] = n;
+      }
+      final int[] ptr = this.ptr;
+      Arrays.fill(ptr, 0);
+      int matches = 0;
+      outer: for (int j = 0; j < this.counts[0]; j++) {
+        final int p = this.positions[0][j];
+        for (int i = 1; i < this.its.length; i++) {
+          while (ptr[i] < this.counts[i] && this.positions[i][ptr[i]] < p)
+            ptr[i]++;
+          if (ptr[i] == this.counts[i])
+            break outer;
+          if (this.positions[i][ptr[i]] != p)
+            continue outer;
+        }
+        matches++;
+      }
+      return matches;
+    }
+  }
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument;
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.CorpusReader.DocumentHandler;
+import edu.jhu.hlt.annotatednyt.text.TokenBuffer;
+import edu.jhu.hlt.annotatednyt.text.Tokenizer;
+import edu.jhu.hlt.annotatednyt.util.TempDirectory;
+
+/**
+ * Builds a {@link FullTextIndex}.
+ * <br><br>
+ * A builder indexes documents in memory, as compressed postings, and writes them out as a
+ * segment with {@link #write(Path)}. Segments have the same layout as a full index, and
+ * {@link #merge(List, Path)} combines them into one, streaming every term's postings in segment
+ * order. {@link #build(CorpusReader, Path, int)} does this for the whole corpus, one segment per
+ * archive, building segments in parallel.
+ * <br><br>
+ * Body paragraphs are separated by one empty position, so phrases do not match across them.
+ * <br><br>
+ * Not thread-safe.
+ */
+public class FullTextIndexBuilder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FullTextIndexBuilder.class);
+
+  // drain merged postings to disk once this many bytes are buffered
+  private static final int DRAIN_THRESHOLD = 1 << 20;
+
+  private final List<Map<String, PostingsWriter>> postings = new ArrayList<>();
+  private final int[][] lengths = new int[FullTextIndex.FIELDS.length][];
+  private int[] guids = new int[1024];
+  private int size;
+
+  private final TokenBuffer tokens = new TokenBuffer();
+  private final StringBuilder sb = new StringBuilder();
+  private final Map<String, Positions> docTerms = new HashMap<>();
+  private final List<Positions> pool = new ArrayList<>();
+  private int pooled;
+
+  private static final class Positions {
+    private int[] data = new int[8];
+    private int size;
+
+    void add(final int p) {
+      if (this.size == this.data.length)
+        this.data = Arrays.copyOf(this.data, this.size * 2);
+      this.data[this.size++] = p;
+    }
+  }
+
+  /**
+   * Create an empty builder.
+   */
+  public FullTextIndexBuilder() {
+    for (int f = 0; f < FullTextIndex.FIELDS.length; f++) {
+      this.postings.add(new HashMap<>());
+      this.lengths[f] = new int[1024];
+    }
+  }
+
+  /**
+   * @return the number of documents added
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Index the headline, lead paragraph, and body paragraphs of <code>doc</code>. Body paragraphs
+   * are those of {@link AnnotatedNYTDocument#getBodyAsList()}, read through the zero-copy
+   * {@link AnnotatedNYTDocument#getBodyParagraphView()}.
+   *
+   * @param doc the {@link AnnotatedNYTDocument} to add; it gets the next ordinal
+   */
+  public void add(final AnnotatedNYTDocument doc) {
+    final int ordinal = this.size++;
+    if (ordinal == this.guids.length) {
+      this.guids = Arrays.copyOf(this.guids, ordinal * 2);
+      for (int f = 0; f < this.lengths.length; f++)
+        this.lengths[f] = Arrays.copyOf(this.lengths[f], ordinal * 2);
+    }
+    this.guids[ordinal] = doc.getGuid();
+    this.addField(0, ordinal, optional(doc.getHeadline()));
+    this.addField(1, ordinal, optional(doc.getLeadParagraph()));
+    this.addField(2, ordinal, doc.getBodyParagraphView());
+  }
+
+  private static List<CharSequence> optional(final Optional<String> s) {
+    return s.isPresent() ? Collections.singletonList(s.get()) : Collections.emptyList();
+  }
+
+  private void addField(final int f, final int ordinal, final Iterable<? extends CharSequence> paragraphs) {
+    int pos = 0;
+    int length = 0;
+    for (CharSequence p : paragraphs) {
+      this.tokens.clear();
+      Tokenizer.tokenize(p, this.tokens);
+      for (int i = 0; i < this.tokens.size(); i++) {
+        final String term = FullTextIndex.term(p, this.tokens.start(i), this.tokens.end(i), this.sb);
+        Positions ps = this.docTerms.get(term);
+        if (ps == null) {
+          ps = this.pooled < this.pool.size() ? this.pool.get(this.pooled) : new Positions();
+          if (this.pooled == this.pool.size())
+            this.pool.add(ps);
+          this.pooled++;
+          ps.size = 0;
+          this.docTerms.put(term, ps);
+        }
+        ps.add(pos++);
+      }
+      length += this.tokens.size();
+      pos++;
+    }
+    this.lengths[f][ordinal] = length;
+
+    final Map<String, PostingsWriter> m = this.postings.get(f);
+    for (Map.Entry<String, Positions> e : this.docTerms.entrySet()) {
+      PostingsWriter w = m.get(e.getKey());
+      if (w == null) {
+        w = new PostingsWriter();
+        m.put(e.getKey(), w);
+      }
+      w.add(ordinal, e.getValue().data, e.getValue().size);
+    }
+    this.docTerms.clear();
+    this.pooled = 0;
+  }
+
+  /**
+   * Write the documents added so far as an index (or segment) in <code>dir</code>.
+   *
+   * @param dir the directory to write to; created if needed
+   * @throws IOException on errors writing the index
+   */
+  public void write(final Path dir) throws IOException {
+    Files.createDirectories(dir);
+    writeDocs(dir, Arrays.copyOf(this.guids, this.size), this.lengths, this.size);
+    try (DataOutputStream terms = create(dir.resolve(FullTextIndex.TERMS_FILE));
+        OutputStream post = new BufferedOutputStream(Files.newOutputStream(dir.resolve(FullTextIndex.POSTINGS_FILE)), 1 << 16)) {
+      long offset = 0;
+      for (Map<String, PostingsWriter> m : this.postings) {
+        final String[] sorted = m.keySet().toArray(new String[m.size()]);
+        Arrays.sort(sorted);
+        terms.writeInt(sorted.length);
+        for (String t : sorted) {
+          final PostingsWriter w = m.get(t);
+          final long len = w.finish();
+          w.drainTo(post);
+          writeTerm(terms, t, w.docFreq(), offset, len);
+          offset += len;
+        }
+      }
+    }
+  }
+
+  private static DataOutputStream create(final Path p) throws IOException {
+    final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(p), 1 << 16));
+    out.writeInt(FullTextIndex.MAGIC);
+    out.writeInt(FullTextIndex.VERSION);
+    return out;
+  }
+
+  private static void writeDocs(final Path dir, final int[] guids, final int[][] lengths, final int n) throws IOException {
+    try (DataOutputStream out = create(dir.resolve(FullTextIndex.DOCS_FILE))) {
+      out.writeInt(n);
+      for (int i = 0; i < n; i++)
+        out.writeInt(guids[i]);
+      for (int[] l : lengths)
+        for (int i = 0; i < n; i++)
+          out.writeInt(l[i]);
+    }
+  }
+
+  private static void writeTerm(final DataOutputStream out, final String term, final int docFreq,
+      final long offset, final long length) throws IOException {
+    if (length > Integer.MAX_VALUE)
+      throw new IOException("Postings of term \"" + term + "\" exceed 2 GB.");
+    out.writeUTF(term);
+    out.writeInt(docFreq);
+    out.writeLong(offset);
+    out.writeInt((int) length);
+  }
+
+  /**
+   * Merge segments into one index. Documents keep their segment order, so ordinals in the
+   * merged index follow the order of <code>segments</code>.
+   *
+   * @param segments the segment directories, in order
+   * @param dir the directory to write the merged index to; created if needed
+   * @throws IOException on errors reading segments or writing the index
+   */
+  public static void merge(final List<Path> segments, final Path dir) throws IOException {
+    Files.createDirectories(dir);
+    final int nFields = FullTextIndex.FIELDS.length;
+    final int[] bases = new int[segments.size()];
+    int total = 0;
+    for (int s = 0; s < segments.size(); s++) {
+      bases[s] = total;
+      try (DataInputStream in = FullTextIndex.openFile(segments.get(s).resolve(FullTextIndex.DOCS_FILE))) {
+        total += in.readInt();
+      }
+    }
+    final int[] guids = new int[total];
+    final int[][] lengths = new int[nFields][total];
+    for (int s = 0; s < segments.size(); s++) {
+      try (DataInputStream in = FullTextIndex.openFile(segments.get(s).resolve(FullTextIndex.DOCS_FILE))) {
+        final int n = in.readInt();
+        for (int i = 0; i < n; i++)
+          guids[bases[s] + i] = in.readInt();
+        for (int f = 0; f < nFields; f++)
+          for (int i = 0; i < n; i++)
+            lengths[f][bases[s] + i] = in.readInt();
+      }
+    }
+    writeDocs(dir, guids, lengths, total);
+
+    final List<SegmentTerms> cursors = new ArrayList<>();
+    try (DataOutputStream terms = create(dir.resolve(FullTextIndex.TERMS_FILE));
+        OutputStream post = new BufferedOutputStream(Files.newOutputStream(dir.resolve(FullTextIndex.POSTINGS_FILE)), 1 << 16)) {
+      for (int s = 0; s < segments.size(); s++)
+        cursors.add(new SegmentTerms(s, bases[s], segments.get(s)));
+
+      final PostingsWriter w = new PostingsWriter(DRAIN_THRESHOLD);
+      int[] positions = new int[64];
+      ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+      long offset = 0;
+      for (int f = 0; f < nFields; f++) {
+        // count merged terms first: the count precedes the field's entries
+        final List<String> fieldTerms = new ArrayList<>();
+        final List<long[]> entries = new ArrayList<>();
+        final PriorityQueue<SegmentTerms> pq = new PriorityQueue<>();
+        for (SegmentTerms c : cursors)
+          if (c.startField())
+            pq.add(c);
+        while (!pq.isEmpty()) {
+          final String term = pq.peek().term;
+          w.reset();
+          // segments come off the queue in order for equal terms
+          while (!pq.isEmpty() && pq.peek().term.equals(term)) {
+            final SegmentTerms c = pq.poll();
+            if (buf.capacity() < c.length)
+              buf = ByteBuffer.allocate(Math.max(c.length, buf.capacity() * 2));
+            // Buffer casts keep the Java 8 signatures when compiling on later JDKs
+            ((Buffer) buf).clear();
+            ((Buffer) buf).limit(c.length);
+            while (buf.hasRemaining())
+              if (c.postings.read(buf, c.offset + buf.position()) < 0)
+                throw new IOException("Truncated postings in segment: " + segments.get(c.segment));
+            ((Buffer) buf).flip();
+            final PostingsIterator it = new PostingsIterator(buf, c.docFreq);
+            for (int d = it.nextDoc(); d != PostingsIterator.NO_MORE_DOCS; d = it.nextDoc()) {
+              final int freq = it.freq();
+              if (positions.length < freq)
+                positions = new int[Math.max(freq, positions.length * 2)];
+              for (int i = 0; i < freq; i++)
+                positions[i] = it.nextPosition();
+              w.add(c.base + d, positions, freq);
+              if (w.buffered() >= DRAIN_THRESHOLD)
+                w.drainTo(post);
+            }
+            if (c.next())
+              pq.add(c);
+          }
+          final long len = w.finish();
+          w.drainTo(post);
+          fieldTerms.add(term);
+          entries.add(new long[] { w.docFreq(), offset, len });
+          offset += len;
+        }
+        terms.writeInt(fieldTerms.size());
+        for (int i = 0; i < fieldTerms.size(); i++) {
+          final long[] e = entries.get(i);
+          writeTerm(terms, fieldTerms.get(i), (int) e[0], e[1], e[2]);
+        }
+      }
+    } finally {
+      for (SegmentTerms c : cursors)
+        c.close();
+    }
+  }
+
+  /**
+   * A cursor over the terms of one field of one segment.
+   */
+  private static final class SegmentTerms implements Comparable<SegmentTerms> {
+    private final int segment;
+    private final int base;
+    private final DataInputStream in;
+    private final FileChannel postings;
+    private int remaining;
+    private String term;
+    private int docFreq;
+    private long offset;
+    private int length;
+
+    SegmentTerms(final int segment, final int base, final Path dir) throws IOException {
+      this.segment = segment;
+      this.base = base;
+      this.in = FullTextIndex.openFile(dir.resolve(FullTextIndex.TERMS_FILE));
+      this.postings = FileChannel.open(dir.resolve(FullTextIndex.POSTINGS_FILE));
+    }
+
+    boolean startField() throws IOException {
+      this.remaining = this.in.readInt();
+      return this.next();
+    }
+
+    boolean next() throws IOException {
+      if (this.remaining == 0)
+        return false;
+      this.remaining--;
+      this.term = this.in.readUTF();
+      this.docFreq = this.in.readInt();
+      this.offset = this.in.readLong();
+      this.length = this.in.readInt();
+      return true;
+    }
+
+    @Override
+    public int compareTo(final SegmentTerms o) {
+      final int c = this.term.compareTo(o.term);
+      return c != 0 ? c : Integer.compare(this.segment, o.segment);
+    }
+
+    void close() throws IOException {
+      try {
+        this.in.close();
+      } finally {
+        this.postings.close();
+      }
+    }
+  }
+
+  /**
+   * Index the whole corpus into <code>dir</code>: one segment per archive, built in parallel
+   * in a temporary directory under <code>dir</code>, then merged.
+   *
+   * @param reader the {@link CorpusReader} to read from
+   * @param dir the directory to write the index to; created if needed
+   * @param threads the number of archives to index concurrently
+   * @throws IOException on errors reading the corpus or writing the index
+   */
+  public static void build(final CorpusReader reader, final Path dir, final int threads) throws IOException {
+    Files.createDirectories(dir);
+    try (TempDirectory tmp = new TempDirectory(dir, "segments")) {
+      final List<Path> segments = new ArrayList<>();
+      reader.processArchives(threads, archive -> {
+        final FullTextIndexBuilder b = new FullTextIndexBuilder();
+        reader.read(archive, DocumentHandler.wrapping(b::add));
+        final Path seg = tmp.newDirectory("seg");
+        b.write(seg);
+        return seg;
+      }, (archive, seg) -> {
+        LOGGER.debug("Indexed archive {} into {}", archive, seg);
+        segments.add(seg);
+      });
+      LOGGER.info("Merging {} segments.", segments.size());
+      merge(segments, dir);
+    }
+  }
+}
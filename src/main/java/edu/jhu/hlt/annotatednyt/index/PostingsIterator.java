@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.index;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Iterates the postings written by {@link PostingsWriter}. Call {@link #nextDoc()} or
+ * {@link #advance(int)}, then {@link #freq()} and up to <code>freq()</code> calls to
+ * {@link #nextPosition()}. {@link #advance(int)} skips whole blocks using their headers.
+ */
+final class PostingsIterator {
+
+  static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+  private final ByteBuffer buf;
+  private int docsLeft;
+  private int blockStart;
+  private int blockLast = -1;
+  private int blockDocsLeft;
+  private int blockEnd;
+  private int docPtr;
+  private int posPtr;
+
+  private int doc = -1;
+  private int freq;
+  private int posLeft;
+  private int pos;
+
+  /**
+   * @param buf the encoded postings, from its position to its limit
+   * @param docFreq the number of documents in the postings
+   */
+  PostingsIterator(final ByteBuffer buf, final int docFreq) {
+    this.buf = buf;
+    this.docsLeft = docFreq;
+    this.blockStart = buf.position();
+    this.blockEnd = this.blockStart;
+  }
+
+  int docID() {
+    return this.doc;
+  }
+
+  int freq() {
+    return this.freq;
+  }
+
+  int nextDoc() {
+    if (this.blockDocsLeft == 0 && !this.nextBlock())
+      return this.doc = NO_MORE_DOCS;
+    // skip the positions of the current document that were not read
+    while (this.posLeft > 0) {
+      this.posPtr = this.skipVarint(this.posPtr);
+      this.posLeft--;
+    }
+    this.doc += this.readDocVarint();
+    this.freq = this.readDocVarint();
+    this.posLeft = this.freq;
+    this.pos = 0;
+    this.blockDocsLeft--;
+    return this.doc;
+  }
+
+  /**
+   * @param target a document ordinal
+   * @return the first document at or after <code>target</code>, or {@link #NO_MORE_DOCS}
+   */
+  int advance(final int target) {
+    while (this.blockLast < target) {
+      if (this.docsLeft == 0) {
+        this.blockDocsLeft = 0;
+        return this.doc = NO_MORE_DOCS;
+      }
+      this.nextBlock();
+    }
+    int d = this.doc;
+    while (d < target)
+      d = this.nextDoc();
+    return d;
+  }
+
+  int nextPosition() {
+    this.pos += this.readPosVarint();
+    this.posLeft--;
+    return this.pos;
+  }
+
+  private boolean nextBlock() {
+    if (this.docsLeft == 0)
+      return false;
+    int p = this.blockEnd;
+    final int lastDelta = this.readVarint(p);
+    p = this.skipVarint(p);
+    final int docLen = this.readVarint(p);
+    p = this.skipVarint(p);
+    final int posLen = this.readVarint(p);
+    p = this.skipVarint(p);
+    // a block starts where the previous one ended, so doc holds the previous block's last doc
+    this.doc = this.blockLast;
+    this.blockLast += lastDelta;
+    this.docPtr = p;
+    this.posPtr = p + docLen;
+    this.blockEnd = this.posPtr + posLen;
+    this.blockDocsLeft = Math.min(PostingsWriter.BLOCK_SIZE, this.docsLeft);
+    this.docsLeft -= this.blockDocsLeft;
+    this.posLeft = 0;
+    return true;
+  }
+
+  private int readDocVarint() {
+    final int v = this.readVarint(this.docPtr);
+    this.docPtr = this.skipVarint(this.docPtr);
+    return v;
+  }
+
+  private int readPosVarint() {
+    final int v = this.readVarint(this.posPtr);
+    this.posPtr = this.skipVarint(this.posPtr);
+    return v;
+  }
+
+  private int readVarint(int p) {
+    int b = this.buf.get(p++);
+    int v = b & 0x7f;
+    for (int shift = 7; b < 0; shift += 7) {
+      b = this.buf.get(p++);
+      v |= (b & 0x7f) << shift;
+    }
+    return v;
+  }
+
+  private int skipVarint(int p) {
+    while (this.buf.get(p++) < 0)
+      ;
+    return p;
+  }
+}
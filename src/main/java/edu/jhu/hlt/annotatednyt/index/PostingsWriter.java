@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.index;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encodes the positional postings of one term in blocks of {@link #BLOCK_SIZE} documents.
+ * <br><br>
+ * Each block is a header of three varints, <code>lastDoc - previousBlockLastDoc</code>, the
+ * byte length of the document section, and the byte length of the position section, followed
+ * by those sections. The document section holds a <code>(docDelta, freq)</code> varint pair per
+ * document; the position section holds, per document, <code>freq</code> varint position deltas.
+ * The header lets a reader skip whole blocks, positions included, without decoding them.
+ * See {@link PostingsIterator}.
+ */
+final class PostingsWriter {
+
+  static final int BLOCK_SIZE = 128;
+
+  private final VarIntBytes out;
+  private final VarIntBytes docBytes = new VarIntBytes(BLOCK_SIZE * 2);
+  private final VarIntBytes posBytes = new VarIntBytes(BLOCK_SIZE * 4);
+  private int blockDocs;
+  private int prevBlockLast = -1;
+  private int lastDoc = -1;
+  private int docFreq;
+  private long drained;
+
+  PostingsWriter() {
+    this(64);
+  }
+
+  PostingsWriter(final int capacity) {
+    this.out = new VarIntBytes(capacity);
+  }
+
+  /**
+   * @param doc the document ordinal; greater than any previously added
+   * @param positions the positions of the term in <code>doc</code>, ascending
+   * @param count the number of positions
+   */
+  void add(final int doc, final int[] positions, final int count) {
+    if (doc <= this.lastDoc)
+      throw new IllegalArgumentException("Documents must be added in increasing order: " + doc);
+    this.docBytes.writeVarint(doc - this.lastDoc);
+    this.docBytes.writeVarint(count);
+    int prev = 0;
+    for (int i = 0; i < count; i++) {
+      this.posBytes.writeVarint(positions[i] - prev);
+      prev = positions[i];
+    }
+    this.lastDoc = doc;
+    this.docFreq++;
+    if (++this.blockDocs == BLOCK_SIZE)
+      this.flushBlock();
+  }
+
+  private void flushBlock() {
+    if (this.blockDocs == 0)
+      return;
+    this.out.writeVarint(this.lastDoc - this.prevBlockLast);
+    this.out.writeVarint(this.docBytes.size());
+    this.out.writeVarint(this.posBytes.size());
+    this.out.write(this.docBytes);
+    this.out.write(this.posBytes);
+    this.docBytes.clear();
+    this.posBytes.clear();
+    this.prevBlockLast = this.lastDoc;
+    this.blockDocs = 0;
+  }
+
+  int docFreq() {
+    return this.docFreq;
+  }
+
+  /**
+   * @return the number of encoded bytes held in memory
+   */
+  int buffered() {
+    return this.out.size();
+  }
+
+  /**
+   * Flush the last, partial block.
+   *
+   * @return the encoded length in bytes, including bytes already drained
+   */
+  long finish() {
+    this.flushBlock();
+    return this.drained + this.out.size();
+  }
+
+  /**
+   * Write the complete blocks encoded so far to <code>os</code> and release them, so that very
+   * long postings can be streamed rather than held in memory.
+   */
+  void drainTo(final OutputStream os) throws IOException {
+    this.out.writeTo(os);
+    this.drained += this.out.size();
+    this.out.clear();
+  }
+
+  /**
+   * Forget every posting, to encode another term.
+   */
+  void reset() {
+    this.out.clear();
+    this.docBytes.clear();
+    this.posBytes.clear();
+    this.blockDocs = 0;
+    this.prevBlockLast = -1;
+    this.lastDoc = -1;
+    this.docFreq = 0;
+    this.drained = 0;
+  }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.index;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A persistent, memory-mapped map from terms to postings lists of <code>int</code>s, written by
+ * {@link TermStoreWriter}. Opening a store maps its files and reads a small header; nothing is
+ * loaded onto the heap, so opening is instant, and processes on the same machine share one
+ * copy through the page cache.
+ * <br><br>
+ * A store directory holds four files:
+ * <ul>
+ * <li><code>terms.dict</code>: the terms, sorted by UTF-8 bytes, in blocks of
+ * <code>blockSize</code>. The first term of a block is stored whole, as a varint length and
+ * its bytes; the others are front-coded, as the varint length of the prefix shared with the
+ * previous term, the varint suffix length, and the suffix.</li>
+ * <li><code>terms.blocks</code>: a header (magic, version, term count, block size, block
+ * count), then the <code>int</code> offset of each block in <code>terms.dict</code>.</li>
+ * <li><code>postings.bin</code>: per term, a varint count, then the varint gaps between
+ * successive values (the first from 0).</li>
+ * <li><code>postings.offsets</code>: per term, and once more at the end, the <code>long</code>
+ * offset of its postings in <code>postings.bin</code>.</li>
+ * </ul>
+ * Lookups binary-search the first terms of blocks in the mapped dictionary, then decode one
+ * block. Terms are ordered by their ordinals, so prefix ranges are contiguous: see
+ * {@link #ceiling(String)}.
+ * <br><br>
+ * Each file must be under 2 GB. A store is immutable and may be queried from several threads.
+ */
+public class TermStore {
+
+  static final String DICTIONARY_FILE = "terms.dict";
+  static final String BLOCKS_FILE = "terms.blocks";
+  static final String POSTINGS_FILE = "postings.bin";
+  static final String OFFSETS_FILE = "postings.offsets";
+
+  static final int MAGIC = 0x414e5453; // "ANTS"
+  static final int VERSION = 1;
+  private static final int HEADER_BYTES = 20;
+
+  private static final int[] EMPTY = new int[0];
+
+  private final int size;
+  private final int blockSize;
+  private final IntBuffer blocks;
+  private final ByteBuffer dict;
+  private final ByteBuffer postings;
+  private final LongBuffer offsets;
+
+  private TermStore(final int size, final int blockSize, final IntBuffer blocks, final ByteBuffer dict,
+      final ByteBuffer postings, final LongBuffer offsets) {
+    this.size = size;
+    this.blockSize = blockSize;
+    this.blocks = blocks;
+    this.dict = dict;
+    this.postings = postings;
+    this.offsets = offsets;
+  }
+
+  /**
+   * @param dir a directory written by {@link TermStoreWriter}
+   * @return the store
+   * @throws IOException on errors mapping the files, or if they do not form a store
+   */
+  public static TermStore open(final Path dir) throws IOException {
+    final ByteBuffer header = map(dir.resolve(BLOCKS_FILE));
+    if (header.remaining() < HEADER_BYTES || header.getInt(0) != MAGIC)
+      throw new IOException("Not a term store: " + dir);
+    final int version = header.getInt(4);
+    if (version != VERSION)
+      throw new IOException("Unsupported term store version: " + version);
+    final int size = header.getInt(8);
+    final int blockSize = header.getInt(12);
+    final int nBlocks = header.getInt(16);
+    if (header.remaining() != HEADER_BYTES + nBlocks * 4L || nBlocks != (size + blockSize - 1) / blockSize)
+      throw new IOException("Corrupt term store block index: " + dir);
+    ((Buffer) header).position(HEADER_BYTES);
+    final IntBuffer blocks = header.slice().asIntBuffer();
+    final LongBuffer offsets = map(dir.resolve(OFFSETS_FILE)).asLongBuffer();
+    if (offsets.remaining() != size + 1L)
+      throw new IOException("Corrupt term store postings offsets: " + dir);
+    return new TermStore(size, blockSize, blocks, map(dir.resolve(DICTIONARY_FILE)), map(dir.resolve(POSTINGS_FILE)),
+        offsets);
+  }
+
+  private static ByteBuffer map(final Path path) throws IOException {
+    try (FileChannel ch = FileChannel.open(path)) {
+      if (ch.size() > Integer.MAX_VALUE)
+        throw new IOException("File exceeds 2 GB: " + path);
+      return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+    }
+  }
+
+  /**
+   * @return the number of terms
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * @param term a term
+   * @return the ordinal of <code>term</code>, or -1 if it is not in the store
+   */
+  public int find(final String term) {
+    final byte[] key = term.getBytes(StandardCharsets.UTF_8);
+    final int ordinal = this.ceiling(key);
+    return ordinal < this.size && this.termEquals(ordinal, key) ? ordinal : -1;
+  }
+
+  /**
+   * @param term a term, which need not be in the store
+   * @return the ordinal of the first term greater than or equal to <code>term</code>, or
+   * {@link #size()} if there is none. The terms starting with <code>p</code> are the ordinals
+   * from <code>ceiling(p)</code> up to, excluding, the first that does not start with it.
+   */
+  public int ceiling(final String term) {
+    return this.ceiling(term.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private int ceiling(final byte[] key) {
+    // the last block whose first term is <= key
+    int lo = 0;
+    int hi = this.blocks.limit() - 1;
+    while (lo < hi) {
+      final int mid = (lo + hi + 1) >>> 1;
+      int p = this.blocks.get(mid);
+      final long v = readVarint(this.dict, p);
+      p = (int) (v >>> 32);
+      if (compare(this.dict, p, (int) v, key) <= 0)
+        lo = mid;
+      else
+        hi = mid - 1;
+    }
+    // decode the block until a term >= key
+    final int first = lo * this.blockSize;
+    final int end = Math.min(first + this.blockSize, this.size);
+    byte[] term = new byte[64];
+    int len = 0;
+    int p = first < end ? this.blocks.get(lo) : 0;
+    for (int i = first; i < end; i++) {
+      final int shared;
+      if (i == first) {
+        shared = 0;
+      } else {
+        final long s = readVarint(this.dict, p);
+        shared = (int) s;
+        p = (int) (s >>> 32);
+      }
+      final long v = readVarint(this.dict, p);
+      final int suffix = (int) v;
+      p = (int) (v >>> 32);
+      len = shared + suffix;
+      if (term.length < len)
+        term = Arrays.copyOf(term, Math.max(len, term.length * 2));
+      for (int j = 0; j < suffix; j++)
+        term[shared + j] = this.dict.get(p + j);
+      p += suffix;
+      if (compare(term, 0, len, key) >= 0)
+        return i;
+    }
+    return end;
+  }
+
+  private boolean termEquals(final int ordinal, final byte[] key) {
+    return Arrays.equals(this.termBytes(ordinal), key);
+  }
+
+  /**
+   * @param ordinal a term ordinal
+   * @return the term
+   */
+  public String term(final int ordinal) {
+    return new String(this.termBytes(ordinal), StandardCharsets.UTF_8);
+  }
+
+  private byte[] termBytes(final int ordinal) {
+    if (ordinal < 0 || ordinal >= this.size)
+      throw new IndexOutOfBoundsException("No term " + ordinal + " in a store of " + this.size);
+    final int block = ordinal / this.blockSize;
+    byte[] term = new byte[64];
+    int len = 0;
+    int p = this.blocks.get(block);
+    for (int i = block * this.blockSize; i <= ordinal; i++) {
+      final int shared;
+      if (i % this.blockSize == 0) {
+        shared = 0;
+      } else {
+        final long s = readVarint(this.dict, p);
+        shared = (int) s;
+        p = (int) (s >>> 32);
+      }
+      final long v = readVarint(this.dict, p);
+      final int suffix = (int) v;
+      p = (int) (v >>> 32);
+      len = shared + suffix;
+      if (term.length < len)
+        term = Arrays.copyOf(term, Math.max(len, term.length * 2));
+      for (int j = 0; j < suffix; j++)
+        term[shared + j] = this.dict.get(p + j);
+      p += suffix;
+    }
+    return Arrays.copyOf(term, len);
+  }
+
+  /**
+   * @param ordinal a term ordinal
+   * @return the number of postings of the term
+   */
+  public int docFreq(final int ordinal) {
+    return (int) readVarint(this.postings, (int) this.offsets.get(ordinal));
+  }
+
+  /**
+   * @param ordinal a term ordinal
+   * @return the postings of the term, in increasing order
+   */
+  public int[] postings(final int ordinal) {
+    int p = (int) this.offsets.get(ordinal);
+    long v = readVarint(this.postings, p);
+    final int[] out = new int[(int) v];
+    p = (int) (v >>> 32);
+    int prev = 0;
+    for (int i = 0; i < out.length; i++) {
+      v = readVarint(this.postings, p);
+      prev += (int) v;
+      out[i] = prev;
+      p = (int) (v >>> 32);
+    }
+    return out;
+  }
+
+  /**
+   * @param term a term
+   * @return the postings of <code>term</code>, in increasing order; empty if it is not in the
+   * store
+   */
+  public int[] postings(final String term) {
+    final int ordinal = this.find(term);
+    return ordinal < 0 ? EMPTY : this.postings(ordinal);
+  }
+
+  /**
+   * Read a varint with absolute gets, so that concurrent readers do not interfere.
+   *
+   * @return the value in the low 32 bits, and the position after it in the high 32 bits
+   */
+  private static long readVarint(final ByteBuffer buf, int p) {
+    int v = 0;
+    for (int shift = 0;; shift += 7) {
+      final byte b = buf.get(p++);
+      v |= (b & 0x7f) << shift;
+      if (b >= 0)
+        return (long) p << 32 | (v & 0xffffffffL);
+    }
+  }
+
+  /**
+   * Compare <code>len</code> mapped bytes at <code>p</code> with <code>key</code>, as unsigned
+   * bytes.
+   */
+  private static int compare(final ByteBuffer buf, final int p, final int len, final byte[] key) {
+    final int n = Math.min(len, key.length);
+    for (int i = 0; i < n; i++) {
+      final int c = (buf.get(p + i) & 0xff) - (key[i] & 0xff);
+      if (c != 0)
+        return c;
+    }
+    return len - key.length;
+  }
+
+  /**
+   * Compare <code>a[off, off + len)</code> with <code>key</code>, as unsigned bytes.
+   */
+  static int compare(final byte[] a, final int off, final int len, final byte[] key) {
+    final int n = Math.min(len, key.length);
+    for (int i = 0; i < n; i++) {
+      final int c = (a[off + i] & 0xff) - (key[i] & 0xff);
+      if (c != 0)
+        return c;
+    }
+    return len - key.length;
+  }
+}
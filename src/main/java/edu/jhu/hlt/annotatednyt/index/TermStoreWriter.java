@@ -0,0 +1,310 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.index;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.DocumentField;
+
+/**
+ * Writes a {@link TermStore}. Terms must be added in increasing order of their UTF-8 bytes
+ * (which is code point order), each with its postings: distinct <code>int</code>s in
+ * increasing order. Everything is streamed to disk; only the block offsets are kept in memory.
+ * <br><br>
+ * Not thread-safe.
+ */
+public class TermStoreWriter implements Closeable {
+
+  /** The default number of terms per front-coded block. */
+  public static final int DEFAULT_BLOCK_SIZE = 16;
+
+  private final Path dir;
+  private final int blockSize;
+  private final OutputStream dict;
+  private final OutputStream postings;
+  private final DataOutputStream offsets;
+  private final VarIntBytes buf = new VarIntBytes(1 << 12);
+  private int[] blockOffsets = new int[1024];
+  private int blocks;
+  private long dictSize;
+  private long postingsSize;
+  private int size;
+  private byte[] previous;
+
+  /**
+   * Write to <code>dir</code> with {@link #DEFAULT_BLOCK_SIZE}.
+   *
+   * @param dir the directory to write to; created if needed, and existing files replaced
+   * @throws IOException on errors creating the files
+   */
+  public TermStoreWriter(final Path dir) throws IOException {
+    this(dir, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * @param dir the directory to write to; created if needed, and existing files replaced
+   * @param blockSize the number of terms per front-coded block; larger blocks are smaller on
+   * disk but slower to search
+   * @throws IOException on errors creating the files
+   */
+  public TermStoreWriter(final Path dir, final int blockSize) throws IOException {
+    if (blockSize < 1)
+      throw new IllegalArgumentException("blockSize must be positive: " + blockSize);
+    Files.createDirectories(dir);
+    this.dir = dir;
+    this.blockSize = blockSize;
+    this.dict = new BufferedOutputStream(Files.newOutputStream(dir.resolve(TermStore.DICTIONARY_FILE)), 1 << 16);
+    this.postings = new BufferedOutputStream(Files.newOutputStream(dir.resolve(TermStore.POSTINGS_FILE)), 1 << 16);
+    this.offsets = new DataOutputStream(new BufferedOutputStream(
+        Files.newOutputStream(dir.resolve(TermStore.OFFSETS_FILE)), 1 << 16));
+  }
+
+  /**
+   * @return the number of terms added
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * @param term the next term, greater than the previous one
+   * @param values the postings of <code>term</code>: <code>n</code> distinct, increasing values
+   * @param n the number of postings
+   * @throws IOException on errors writing
+   * @throws IllegalArgumentException if terms or postings are out of order
+   */
+  public void add(final String term, final int[] values, final int n) throws IOException {
+    this.add(term.getBytes(StandardCharsets.UTF_8), values, n);
+  }
+
+  private void add(final byte[] bytes, final int[] values, final int n) throws IOException {
+    final int shared = this.previous == null ? 0 : sharedPrefix(this.previous, bytes);
+    if (this.previous != null && TermStore.compare(this.previous, 0, this.previous.length, bytes) >= 0)
+      throw new IllegalArgumentException("Terms out of order at \"" + decode(bytes) + "\"");
+    for (int i = 1; i < n; i++)
+      if (values[i] <= values[i - 1])
+        throw new IllegalArgumentException("Postings of \"" + decode(bytes) + "\" are not increasing.");
+
+    this.buf.clear();
+    if (this.size % this.blockSize == 0) {
+      if (this.blocks == this.blockOffsets.length)
+        this.blockOffsets = Arrays.copyOf(this.blockOffsets, this.blocks * 2);
+      if (this.dictSize > Integer.MAX_VALUE)
+        throw new IOException("Dictionary exceeds 2 GB.");
+      this.blockOffsets[this.blocks++] = (int) this.dictSize;
+      this.buf.writeVarint(bytes.length);
+      this.buf.write(bytes, 0, bytes.length);
+    } else {
+      this.buf.writeVarint(shared);
+      this.buf.writeVarint(bytes.length - shared);
+      this.buf.write(bytes, shared, bytes.length - shared);
+    }
+    this.buf.writeTo(this.dict);
+    this.dictSize += this.buf.size();
+
+    this.offsets.writeLong(this.postingsSize);
+    this.buf.clear();
+    this.buf.writeVarint(n);
+    int prev = 0;
+    for (int i = 0; i < n; i++) {
+      this.buf.writeVarint(values[i] - prev);
+      prev = values[i];
+    }
+    this.buf.writeTo(this.postings);
+    this.postingsSize += this.buf.size();
+
+    this.previous = bytes;
+    this.size++;
+  }
+
+  private static String decode(final byte[] bytes) {
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int sharedPrefix(final byte[] a, final byte[] b) {
+    final int n = Math.min(a.length, b.length);
+    int i = 0;
+    while (i < n && a[i] == b[i])
+      i++;
+    return i;
+  }
+
+  /**
+   * Write the block index and close the files.
+   *
+   * @throws IOException on errors writing
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      this.offsets.writeLong(this.postingsSize);
+    } finally {
+      try {
+        this.offsets.close();
+      } finally {
+        try {
+          this.postings.close();
+        } finally {
+          this.dict.close();
+        }
+      }
+    }
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        Files.newOutputStream(this.dir.resolve(TermStore.BLOCKS_FILE)), 1 << 16))) {
+      out.writeInt(TermStore.MAGIC);
+      out.writeInt(TermStore.VERSION);
+      out.writeInt(this.size);
+      out.writeInt(this.blockSize);
+      out.writeInt(this.blocks);
+      for (int i = 0; i < this.blocks; i++)
+        out.writeInt(this.blockOffsets[i]);
+    }
+  }
+
+  /**
+   * Index the values of one field over the whole corpus: each distinct value becomes a term,
+   * with the guids of the documents having it as postings. Integer fields are indexed by their
+   * decimal string.
+   *
+   * @param reader the {@link CorpusReader} to read from
+   * @param field a string, string list, or integer field
+   * @param dir the directory to write the store to
+   * @param threads the number of archives to read concurrently
+   * @throws IOException on errors reading the corpus or writing the store
+   */
+  public static void writeField(final CorpusReader reader, final DocumentField field, final Path dir,
+      final int threads) throws IOException {
+    switch (field.getKind()) {
+    case STRING:
+    case STRING_LIST:
+    case INTEGER:
+      break;
+    default:
+      throw new IllegalArgumentException("Cannot index field of kind " + field.getKind() + ": " + field);
+    }
+    final Map<String, IntList> all = new HashMap<>();
+    reader.processArchives(threads, archive -> {
+      final Map<String, IntList> m = new HashMap<>();
+      reader.read(archive, doc -> collect(field, doc, m));
+      return m;
+    }, (archive, m) -> {
+      for (Map.Entry<String, IntList> e : m.entrySet()) {
+        final IntList l = all.putIfAbsent(e.getKey(), e.getValue());
+        if (l != null)
+          l.addAll(e.getValue());
+      }
+    });
+    writeTerms(all, dir);
+  }
+
+  /**
+   * Write a store of <code>terms</code>, given in any order, each with postings in any order
+   * and possibly repeated.
+   * <br><br>
+   * Terms are keyed by their UTF-8 bytes, so strings that encode to the same bytes (which only
+   * strings with unpaired surrogates do, each of which is encoded as <code>'?'</code>) are one
+   * term, with the union of their postings.
+   *
+   * @param terms the postings of each term
+   * @param dir the directory to write the store to
+   * @throws IOException on errors writing the store
+   */
+  public static void write(final Map<String, int[]> terms, final Path dir) throws IOException {
+    final Map<String, IntList> all = new HashMap<>();
+    for (Map.Entry<String, int[]> e : terms.entrySet())
+      all.put(e.getKey(), new IntList(e.getValue()));
+    writeTerms(all, dir);
+  }
+
+  private static void writeTerms(final Map<String, IntList> all, final Path dir) throws IOException {
+    // sort the entries by their encoded bytes; decoding the bytes need not give the key back
+    final Term[] terms = new Term[all.size()];
+    int k = 0;
+    for (Map.Entry<String, IntList> e : all.entrySet())
+      terms[k++] = new Term(e.getKey().getBytes(StandardCharsets.UTF_8), e.getValue());
+    Arrays.sort(terms, (a, b) -> TermStore.compare(a.bytes, 0, a.bytes.length, b.bytes));
+    try (TermStoreWriter w = new TermStoreWriter(dir)) {
+      for (int i = 0; i < terms.length;) {
+        final Term t = terms[i++];
+        while (i < terms.length && Arrays.equals(terms[i].bytes, t.bytes))
+          t.postings.addAll(terms[i++].postings);
+        w.add(t.bytes, t.postings.values, t.postings.sortDistinct());
+      }
+    }
+  }
+
+  private static void collect(final DocumentField field, final NYTCorpusDocument doc, final Map<String, IntList> m) {
+    final Object v = field.get(doc);
+    if (v == null)
+      return;
+    if (v instanceof List) {
+      for (Object o : (List<?>) v)
+        m.computeIfAbsent((String) o, x -> new IntList()).add(doc.getGuid());
+    } else {
+      m.computeIfAbsent(v.toString(), x -> new IntList()).add(doc.getGuid());
+    }
+  }
+
+  private static final class Term {
+    private final byte[] bytes;
+    private final IntList postings;
+
+    Term(final byte[] bytes, final IntList postings) {
+      this.bytes = bytes;
+      this.postings = postings;
+    }
+  }
+
+  private static final class IntList {
+    private int[] values;
+    private int size;
+
+    IntList() {
+      this.values = new int[4];
+    }
+
+    IntList(final int[] values) {
+      this.values = Arrays.copyOf(values, Math.max(4, values.length));
+      this.size = values.length;
+    }
+
+    void add(final int v) {
+      if (this.size == this.values.length)
+        this.values = Arrays.copyOf(this.values, this.size * 2);
+      this.values[this.size++] = v;
+    }
+
+    void addAll(final IntList other) {
+      if (this.size + other.size > this.values.length)
+        this.values = Arrays.copyOf(this.values, Math.max(this.size + other.size, this.values.length * 2));
+      System.arraycopy(other.values, 0, this.values, this.size, other.size);
+      this.size += other.size;
+    }
+
+    /** @return the number of distinct values, now sorted at the front */
+    int sortDistinct() {
+      Arrays.sort(this.values, 0, this.size);
+      int u = 0;
+      for (int i = 0; i < this.size; i++)
+        if (u == 0 || this.values[i] != this.values[u - 1])
+          this.values[u++] = this.values[i];
+      return this.size = u;
+    }
+  }
+}
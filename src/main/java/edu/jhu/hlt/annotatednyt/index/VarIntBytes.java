@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.index;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A growable byte array with unsigned varint encoding: seven bits per byte,
+ * least significant group first, high bit set on all but the last byte.
+ */
+final class VarIntBytes {
+
+  private byte[] data;
+  private int size;
+
+  VarIntBytes(final int capacity) {
+    this.data = new byte[Math.max(16, capacity)];
+  }
+
+  int size() {
+    return this.size;
+  }
+
+  void clear() {
+    this.size = 0;
+  }
+
+  void writeVarint(int v) {
+    if (this.size + 5 > this.data.length)
+      this.data = Arrays.copyOf(this.data, Math.max(this.size + 5, this.data.length * 2));
+    while ((v & ~0x7f) != 0) {
+      this.data[this.size++] = (byte) ((v & 0x7f) | 0x80);
+      v >>>= 7;
+    }
+    this.data[this.size++] = (byte) v;
+  }
+
+  void write(final byte[] b, final int off, final int len) {
+    if (this.size + len > this.data.length)
+      this.data = Arrays.copyOf(this.data, Math.max(this.size + len, this.data.length * 2));
+    System.arraycopy(b, off, this.data, this.size, len);
+    this.size += len;
+  }
+
+  void write(final VarIntBytes other) {
+    if (this.size + other.size > this.data.length)
+      this.data = Arrays.copyOf(this.data, Math.max(this.size + other.size, this.data.length * 2));
+    System.arraycopy(other.data, 0, this.data, this.size, other.size);
+    this.size += other.size;
+  }
+
+  void writeTo(final OutputStream out) throws IOException {
+    out.write(this.data, 0, this.size);
+  }
+
+  static int varintLength(int v) {
+    int n = 1;
+    while ((v & ~0x7f) != 0) {
+      v >>>= 7;
+      n++;
+    }
+    return n;
+  }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument;
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.CorpusReader.DocumentHandler;
+
+/**
+ * Writes document metadata as an Apache Arrow IPC file, for columnar scans in downstream tools.
+ * <br><br>
+ * The schema is:
+ * <ul>
+ * <li><code>guid</code>: <code>int32</code>, not null</li>
+ * <li><code>publicationDate</code>: <code>timestamp[ms, UTC]</code></li>
+ * <li><code>section</code>, <code>newsDesk</code>: dictionary-encoded <code>utf8</code></li>
+ * <li><code>page</code>, <code>wordCount</code>: <code>int32</code></li>
+ * <li><code>descriptors</code>, <code>people</code>, <code>organizations</code>,
+ * <code>locations</code>: <code>list&lt;utf8&gt;</code>, dictionary-encoded, not null
+ * (documents without values have empty lists)</li>
+ * </ul>
+ * The IPC file format needs every dictionary before the first record batch, so rows are
+ * buffered as dictionary codes in primitive arrays (a few bytes per value; well under a
+ * gigabyte for the whole corpus) and written as batches of {@link #getBatchSize()} rows on
+ * {@link #close()}.
+ * <br><br>
+ * Arrow is an optional dependency of this library; add <code>arrow-vector</code> and an
+ * allocator (e.g. <code>arrow-memory-unsafe</code>) to use this class. On Java 9 and later,
+ * Arrow also needs <code>--add-opens=java.base/java.nio=ALL-UNNAMED</code>.
+ */
+public class ArrowMetadataWriter implements Closeable {
+
+  /** The default number of rows per record batch. */
+  public static final int DEFAULT_BATCH_SIZE = 64 * 1024;
+
+  private static final ArrowType INT32 = new ArrowType.Int(32, true);
+
+  private static final String[] STRING_COLUMNS = { "section", "newsDesk" };
+
+  private static final String[] LIST_COLUMNS = { "descriptors", "people", "organizations", "locations" };
+
+  /**
+   * Metadata columns for a run of documents, with their own dictionaries. Chunks can be filled
+   * on worker threads and then appended, in order, to an {@link ArrowMetadataWriter}.
+   * Not thread-safe.
+   */
+  public static final class Chunk {
+    private final IntArray guids = new IntArray();
+    private final LongArray publicationDates = new LongArray();
+    private final IntArray pages = new IntArray();
+    private final IntArray wordCounts = new IntArray();
+    private final StringDictionary[] stringDicts = newDictionaries(STRING_COLUMNS.length);
+    private final IntArray[] strings = newIntArrays(STRING_COLUMNS.length);
+    private final StringDictionary[] listDicts = newDictionaries(LIST_COLUMNS.length);
+    private final IntArray[] listValues = newIntArrays(LIST_COLUMNS.length);
+    private final IntArray[] listOffsets = newIntArrays(LIST_COLUMNS.length);
+
+    /**
+     * Create an empty chunk.
+     */
+    public Chunk() {
+      for (IntArray o : this.listOffsets)
+        o.add(0);
+    }
+
+    /**
+     * @param doc the {@link AnnotatedNYTDocument} to add as a row
+     */
+    public void add(final AnnotatedNYTDocument doc) {
+      this.guids.add(doc.getGuid());
+      final Optional<Date> date = doc.getPublicationDate();
+      this.publicationDates.add(date.isPresent() ? date.get().getTime() : Long.MIN_VALUE);
+      this.pages.add(doc.getPage().orElse(Integer.MIN_VALUE));
+      this.wordCounts.add(doc.getWordCount().orElse(Integer.MIN_VALUE));
+      this.addString(0, doc.getSection());
+      this.addString(1, doc.getNewsDesk());
+      this.addList(0, doc.getDescriptors());
+      this.addList(1, doc.getPeople());
+      this.addList(2, doc.getOrganizations());
+      this.addList(3, doc.getLocations());
+    }
+
+    private void addString(final int col, final Optional<String> v) {
+      this.strings[col].add(v.isPresent() ? this.stringDicts[col].code(v.get()) : -1);
+    }
+
+    private void addList(final int col, final List<String> vs) {
+      for (String v : vs)
+        this.listValues[col].add(this.listDicts[col].code(v));
+      this.listOffsets[col].add(this.listValues[col].size);
+    }
+
+    /**
+     * @return the number of rows in this chunk
+     */
+    public int size() {
+      return this.guids.size;
+    }
+  }
+
+  private final WritableByteChannel out;
+  private final int batchSize;
+  private final Chunk rows = new Chunk();
+
+  /**
+   * @param out the channel to write the IPC file to; closed by {@link #close()}
+   */
+  public ArrowMetadataWriter(final WritableByteChannel out) {
+    this(out, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * @param out the channel to write the IPC file to; closed by {@link #close()}
+   * @param batchSize the number of rows per record batch
+   */
+  public ArrowMetadataWriter(final WritableByteChannel out, final int batchSize) {
+    if (batchSize < 1)
+      throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+    this.out = out;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * @return the number of rows per record batch
+   */
+  public int getBatchSize() {
+    return this.batchSize;
+  }
+
+  /**
+   * @param doc the {@link AnnotatedNYTDocument} to add as a row
+   */
+  public void add(final AnnotatedNYTDocument doc) {
+    this.rows.add(doc);
+  }
+
+  /**
+   * Append the rows of <code>chunk</code>, in order.
+   *
+   * @param chunk the {@link Chunk} to append
+   */
+  public void add(final Chunk chunk) {
+    final Chunk r = this.rows;
+    r.guids.addAll(chunk.guids);
+    r.publicationDates.addAll(chunk.publicationDates);
+    r.pages.addAll(chunk.pages);
+    r.wordCounts.addAll(chunk.wordCounts);
+    for (int c = 0; c < STRING_COLUMNS.length; c++) {
+      final int[] remap = r.stringDicts[c].merge(chunk.stringDicts[c]);
+      final IntArray src = chunk.strings[c];
+      for (int i = 0; i < src.size; i++)
+        r.strings[c].add(src.data[i] < 0 ? -1 : remap[src.data[i]]);
+    }
+    for (int c = 0; c < LIST_COLUMNS.length; c++) {
+      final int[] remap = r.listDicts[c].merge(chunk.listDicts[c]);
+      final int base = r.listValues[c].size;
+      final IntArray src = chunk.listValues[c];
+      for (int i = 0; i < src.size; i++)
+        r.listValues[c].add(remap[src.data[i]]);
+      final IntArray offsets = chunk.listOffsets[c];
+      for (int i = 1; i < offsets.size; i++)
+        r.listOffsets[c].add(base + offsets.data[i]);
+    }
+  }
+
+  /**
+   * @return the number of rows added so far
+   */
+  public int size() {
+    return this.rows.size();
+  }
+
+  /**
+   * Write the IPC file and close the channel.
+   */
+  @Override
+  public void close() throws IOException {
+    try (BufferAllocator allocator = new RootAllocator();
+        WritableByteChannel ch = this.out) {
+      final DictionaryProvider.MapDictionaryProvider provider = new DictionaryProvider.MapDictionaryProvider();
+      final List<VarCharVector> dictionaryVectors = new ArrayList<>();
+      final List<Field> fields = new ArrayList<>();
+      fields.add(new Field("guid", FieldType.notNullable(INT32), null));
+      fields.add(Field.nullable("publicationDate", new ArrowType.Timestamp(TimeUnit.MILLISECOND, "UTC")));
+      long id = 0;
+      for (int c = 0; c < STRING_COLUMNS.length; c++, id++) {
+        final DictionaryEncoding enc = new DictionaryEncoding(id, false, (ArrowType.Int) INT32);
+        provider.put(dictionary(allocator, STRING_COLUMNS[c], this.rows.stringDicts[c], enc, dictionaryVectors));
+        fields.add(new Field(STRING_COLUMNS[c], new FieldType(true, INT32, enc), null));
+      }
+      fields.add(Field.nullable("page", INT32));
+      fields.add(Field.nullable("wordCount", INT32));
+      for (int c = 0; c < LIST_COLUMNS.length; c++, id++) {
+        final DictionaryEncoding enc = new DictionaryEncoding(id, false, (ArrowType.Int) INT32);
+        provider.put(dictionary(allocator, LIST_COLUMNS[c], this.rows.listDicts[c], enc, dictionaryVectors));
+        final Field item = new Field("item", new FieldType(false, INT32, enc), null);
+        fields.add(new Field(LIST_COLUMNS[c], FieldType.notNullable(ArrowType.List.INSTANCE),
+            Collections.singletonList(item)));
+      }
+
+      try (VectorSchemaRoot root = VectorSchemaRoot.create(new Schema(fields), allocator);
+          ArrowFileWriter writer = new ArrowFileWriter(root, provider, ch)) {
+        writer.start();
+        for (int from = 0; from < this.rows.size(); from += this.batchSize) {
+          this.fill(root, from, Math.min(from + this.batchSize, this.rows.size()));
+          writer.writeBatch();
+        }
+        writer.end();
+      } finally {
+        for (VarCharVector v : dictionaryVectors)
+          v.close();
+      }
+    }
+  }
+
+  private void fill(final VectorSchemaRoot root, final int from, final int to) {
+    root.allocateNew();
+    final Chunk r = this.rows;
+    final int n = to - from;
+    final IntVector guid = (IntVector) root.getVector("guid");
+    final TimeStampMilliTZVector date = (TimeStampMilliTZVector) root.getVector("publicationDate");
+    final IntVector page = (IntVector) root.getVector("page");
+    final IntVector wordCount = (IntVector) root.getVector("wordCount");
+    for (int i = 0; i < n; i++) {
+      guid.setSafe(i, r.guids.data[from + i]);
+      setNullable(date, i, r.publicationDates.data[from + i]);
+      setNullable(page, i, r.pages.data[from + i], Integer.MIN_VALUE);
+      setNullable(wordCount, i, r.wordCounts.data[from + i], Integer.MIN_VALUE);
+    }
+    for (int c = 0; c < STRING_COLUMNS.length; c++) {
+      final IntVector v = (IntVector) root.getVector(STRING_COLUMNS[c]);
+      for (int i = 0; i < n; i++)
+        setNullable(v, i, r.strings[c].data[from + i], -1);
+    }
+    for (int c = 0; c < LIST_COLUMNS.length; c++) {
+      final ListVector list = (ListVector) root.getVector(LIST_COLUMNS[c]);
+      final IntVector items = (IntVector) list.getDataVector();
+      final int[] offsets = r.listOffsets[c].data;
+      final int[] values = r.listValues[c].data;
+      int k = 0;
+      for (int i = 0; i < n; i++) {
+        list.startNewValue(i);
+        final int start = offsets[from + i];
+        final int end = offsets[from + i + 1];
+        for (int j = start; j < end; j++)
+          items.setSafe(k++, values[j]);
+        list.endValue(i, end - start);
+      }
+      items.setValueCount(k);
+      list.setValueCount(n);
+    }
+    root.setRowCount(n);
+  }
+
+  private static void setNullable(final IntVector v, final int i, final int value, final int nullValue) {
+    if (value == nullValue)
+      v.setNull(i);
+    else
+      v.setSafe(i, value);
+  }
+
+  private static void setNullable(final TimeStampMilliTZVector v, final int i, final long value) {
+    if (value == Long.MIN_VALUE)
+      v.setNull(i);
+    else
+      v.setSafe(i, value);
+  }
+
+  private static Dictionary dictionary(final BufferAllocator allocator, final String name,
+      final StringDictionary dict, final DictionaryEncoding enc, final List<VarCharVector> vectors) {
+    final VarCharVector v = new VarCharVector(name + "-dictionary", allocator);
+    vectors.add(v);
+    v.allocateNew(dict.values.size());
+    for (int i = 0; i < dict.values.size(); i++)
+      v.setSafe(i, dict.values.get(i).getBytes(StandardCharsets.UTF_8));
+    v.setValueCount(dict.values.size());
+    return new Dictionary(v, enc);
+  }
+
+  /**
+   * Write the metadata of every document of the corpus to <code>output</code>, in corpus order.
+   * Archives are parsed in parallel into {@link Chunk}s.
+   *
+   * @param reader the {@link CorpusReader} to read from
+   * @param output the file to write; replaced if it exists
+   * @param threads the number of archives to parse concurrently
+   * @return the number of rows written
+   * @throws IOException on errors reading the corpus or writing output
+   */
+  public static long writeCorpus(final CorpusReader reader, final Path output, final int threads)
+      throws IOException {
+    try (ArrowMetadataWriter w = new ArrowMetadataWriter(FileChannel.open(output,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+      reader.processArchives(threads, archive -> {
+        final Chunk chunk = new Chunk();
+        reader.read(archive, DocumentHandler.wrapping(chunk::add));
+        return chunk;
+      }, (archive, chunk) -> w.add(chunk));
+      return w.size();
+    }
+  }
+
+  private static final class StringDictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    int code(final String v) {
+      Integer c = this.codes.get(v);
+      if (c == null) {
+        c = this.values.size();
+        this.codes.put(v, c);
+        this.values.add(v);
+      }
+      return c;
+    }
+
+    /**
+     * Add the values of <code>other</code>.
+     *
+     * @return a map from codes of <code>other</code> to codes of this dictionary
+     */
+    int[] merge(final StringDictionary other) {
+      final int[] remap = new int[other.values.size()];
+      for (int i = 0; i < remap.length; i++)
+        remap[i] = this.code(other.values.get(i));
+      return remap;
+    }
+  }
+
+  private static final class IntArray {
+    private int[] data = new int[16];
+    private int size;
+
+    void add(final int v) {
+      if (this.size == this.data.length)
+        this.data = Arrays.copyOf(this.data, this.size * 2);
+      this.data[this.size++] = v;
+    }
+
+    void addAll(final IntArray other) {
+      if (this.size + other.size > this.data.length)
+        this.data = Arrays.copyOf(this.data, Math.max(this.size + other.size, this.size * 2));
+      System.arraycopy(other.data, 0, this.data, this.size, other.size);
+      this.size += other.size;
+    }
+  }
+
+  private static final class LongArray {
+    private long[] data = new long[16];
+    private int size;
+
+    void add(final long v) {
+      if (this.size == this.data.length)
+        this.data = Arrays.copyOf(this.data, this.size * 2);
+      this.data[this.size++] = v;
+    }
+
+    void addAll(final LongArray other) {
+      if (this.size + other.size > this.data.length)
+        this.data = Arrays.copyOf(this.data, Math.max(this.size + other.size, this.size * 2));
+      System.arraycopy(other.data, 0, this.data, this.size, other.size);
+      this.size += other.size;
+    }
+  }
+
+  private static StringDictionary[] newDictionaries(final int n) {
+    final StringDictionary[] ds = new StringDictionary[n];
+    for (int i = 0; i < n; i++)
+      ds[i] = new StringDictionary();
+    return ds;
+  }
+
+  private static IntArray[] newIntArrays(final int n) {
+    final IntArray[] as = new IntArray[n];
+    for (int i = 0; i < n; i++)
+      as[i] = new IntArray();
+    return as;
+  }
+}
@@ -0,0 +1,611 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument;
+import edu.jhu.hlt.annotatednyt.DocumentField;
+
+/**
+ * Compact, versioned binary encoding of {@link NYTCorpusDocument} objects.
+ * <br><br>
+ * A record is laid out as follows:
+ * <ol>
+ * <li>one byte: the format version ({@link #VERSION})</li>
+ * <li>varint: the length of the payload in bytes</li>
+ * <li>payload: a varint presence bitmap, with bit <code>i</code> set if field
+ * <code>i</code> of the version's schema is non-<code>null</code>, followed by the
+ * present fields in schema order</li>
+ * </ol>
+ * Strings are written as a varint byte length followed by UTF-8; lists as a varint count
+ * followed by their strings; integers and dates (as epoch milliseconds) as zig-zag varints;
+ * {@link URL}s and {@link File}s as strings.
+ * <br><br>
+ * Every field round-trips, including the difference between <code>null</code> and empty lists.
+ * The schema of a version never changes: new fields get a new version, and older versions stay
+ * decodable.
+ * <br><br>
+ * A codec keeps a reusable scratch buffer, and is therefore not thread-safe; use one
+ * instance per thread.
+ */
+public class DocumentCodec {
+
+  /** The current format version. */
+  public static final int VERSION = 1;
+
+  // The field order of version 1. Never reorder or remove entries.
+  private static final DocumentField[] SCHEMA_V1 = {
+      DocumentField.GUID,
+      DocumentField.ALTERNATE_URL,
+      DocumentField.ARTICLE_ABSTRACT,
+      DocumentField.AUTHOR_BIOGRAPHY,
+      DocumentField.BANNER,
+      DocumentField.BIOGRAPHICAL_CATEGORIES,
+      DocumentField.BODY,
+      DocumentField.BYLINE,
+      DocumentField.COLUMN_NAME,
+      DocumentField.COLUMN_NUMBER,
+      DocumentField.CORRECTION_DATE,
+      DocumentField.CORRECTION_TEXT,
+      DocumentField.CREDIT,
+      DocumentField.DATELINE,
+      DocumentField.DAY_OF_WEEK,
+      DocumentField.DESCRIPTORS,
+      DocumentField.FEATURE_PAGE,
+      DocumentField.GENERAL_ONLINE_DESCRIPTORS,
+      DocumentField.HEADLINE,
+      DocumentField.KICKER,
+      DocumentField.LEAD_PARAGRAPH,
+      DocumentField.LOCATIONS,
+      DocumentField.NAMES,
+      DocumentField.NEWS_DESK,
+      DocumentField.NORMALIZED_BYLINE,
+      DocumentField.ONLINE_DESCRIPTORS,
+      DocumentField.ONLINE_HEADLINE,
+      DocumentField.ONLINE_LEAD_PARAGRAPH,
+      DocumentField.ONLINE_LOCATIONS,
+      DocumentField.ONLINE_ORGANIZATIONS,
+      DocumentField.ONLINE_PEOPLE,
+      DocumentField.ONLINE_SECTION,
+      DocumentField.ONLINE_TITLES,
+      DocumentField.ORGANIZATIONS,
+      DocumentField.PAGE,
+      DocumentField.PEOPLE,
+      DocumentField.PUBLICATION_DATE,
+      DocumentField.PUBLICATION_DAY_OF_MONTH,
+      DocumentField.PUBLICATION_MONTH,
+      DocumentField.PUBLICATION_YEAR,
+      DocumentField.SECTION,
+      DocumentField.SERIES_NAME,
+      DocumentField.SLUG,
+      DocumentField.SOURCE_FILE,
+      DocumentField.TAXONOMIC_CLASSIFIERS,
+      DocumentField.TITLES,
+      DocumentField.TYPES_OF_MATERIAL,
+      DocumentField.URL,
+      DocumentField.WORD_COUNT
+  };
+
+  // version byte + at most 5 bytes of length
+  private static final int MAX_HEADER = 6;
+
+  private byte[] buf = new byte[8192];
+  private int pos;
+  private int limit;
+
+  /**
+   * @param doc the {@link NYTCorpusDocument} to encode
+   * @return the encoded record
+   */
+  public byte[] encode(final NYTCorpusDocument doc) {
+    final int start = this.encodeRecord(doc);
+    final byte[] out = new byte[this.pos - start];
+    System.arraycopy(this.buf, start, out, 0, out.length);
+    return out;
+  }
+
+  /**
+   * @param doc the {@link AnnotatedNYTDocument} to encode
+   * @return the encoded record of the wrapped document
+   */
+  public byte[] encode(final AnnotatedNYTDocument doc) {
+    return this.encode(doc.getNYTCorpusDocument());
+  }
+
+  /**
+   * Encode <code>doc</code> at the position of <code>dst</code>, advancing it.
+   *
+   * @param doc the {@link NYTCorpusDocument} to encode
+   * @param dst the {@link ByteBuffer} to write to
+   * @throws BufferOverflowException if <code>dst</code> does not have room for the record;
+   * the position of <code>dst</code> is then unchanged
+   */
+  public void encode(final NYTCorpusDocument doc, final ByteBuffer dst) {
+    final int start = this.encodeRecord(doc);
+    dst.put(this.buf, start, this.pos - start);
+  }
+
+  /**
+   * @param doc the {@link NYTCorpusDocument} to encode
+   * @param os the {@link OutputStream} to write the record to
+   * @throws IOException on errors writing to <code>os</code>
+   */
+  public void encode(final NYTCorpusDocument doc, final OutputStream os) throws IOException {
+    final int start = this.encodeRecord(doc);
+    os.write(this.buf, start, this.pos - start);
+  }
+
+  /**
+   * @param record a record produced by this class
+   * @return the decoded {@link NYTCorpusDocument}
+   * @throws IllegalArgumentException if <code>record</code> is malformed
+   */
+  public NYTCorpusDocument decode(final byte[] record) {
+    return this.decode(ByteBuffer.wrap(record));
+  }
+
+  /**
+   * Decode the record at the position of <code>src</code>, advancing it past the record.
+   *
+   * @param src the {@link ByteBuffer} to read from
+   * @return the decoded {@link NYTCorpusDocument}
+   * @throws IllegalArgumentException if the record is malformed or truncated
+   */
+  public NYTCorpusDocument decode(final ByteBuffer src) {
+    try {
+      final int version = src.get() & 0xff;
+      final int length = readVarint(src);
+      if (length < 0 || length > src.remaining())
+        throw new IllegalArgumentException("Truncated document record: " + length + " bytes expected, "
+            + src.remaining() + " available.");
+      if (src.hasArray()) {
+        final int off = src.arrayOffset() + src.position();
+        ((Buffer) src).position(src.position() + length);
+        return this.decodePayload(version, src.array(), off, length);
+      }
+      this.ensureCapacity(length);
+      src.get(this.buf, 0, length);
+      return this.decodePayload(version, this.buf, 0, length);
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Truncated document record.", e);
+    }
+  }
+
+  /**
+   * Read one record from <code>is</code>.
+   *
+   * @param is the {@link InputStream} to read from
+   * @return the decoded {@link NYTCorpusDocument}, or <code>null</code> if <code>is</code>
+   * is at its end
+   * @throws IOException on errors reading from <code>is</code>, or if the record is malformed
+   */
+  public NYTCorpusDocument decode(final InputStream is) throws IOException {
+    final int version = is.read();
+    if (version < 0)
+      return null;
+
+    int length = 0;
+    for (int shift = 0;; shift += 7) {
+      final int b = is.read();
+      if (b < 0)
+        throw new EOFException("Truncated document record.");
+      if (shift > 28)
+        throw new IOException("Malformed document record length.");
+      length |= (b & 0x7f) << shift;
+      if (b < 0x80)
+        break;
+    }
+
+    this.ensureCapacity(length);
+    int read = 0;
+    while (read < length) {
+      final int n = is.read(this.buf, read, length - read);
+      if (n < 0)
+        throw new EOFException("Truncated document record.");
+      read += n;
+    }
+    try {
+      return this.decodePayload(version, this.buf, 0, length);
+    } catch (IllegalArgumentException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * @param record a record produced by this class
+   * @return the decoded document, wrapped in an {@link AnnotatedNYTDocument}
+   * @throws IllegalArgumentException if <code>record</code> is malformed
+   */
+  public AnnotatedNYTDocument decodeAnnotated(final byte[] record) {
+    return new AnnotatedNYTDocument(this.decode(record));
+  }
+
+  /*
+   * Encoding. The payload is written after MAX_HEADER reserved bytes; the header is then
+   * written right-aligned in front of it, so that the record is contiguous.
+   */
+
+  private int encodeRecord(final NYTCorpusDocument doc) {
+    this.pos = MAX_HEADER;
+    long presence = 0;
+    for (int i = 0; i < SCHEMA_V1.length; i++)
+      if (SCHEMA_V1[i] == DocumentField.GUID || SCHEMA_V1[i].get(doc) != null)
+        presence |= 1L << i;
+    this.writeVarlong(presence);
+
+    for (int i = 0; i < SCHEMA_V1.length; i++) {
+      if ((presence & (1L << i)) == 0)
+        continue;
+      final DocumentField f = SCHEMA_V1[i];
+      if (f == DocumentField.GUID) {
+        this.writeVarlong(zigzag(doc.getGuid()));
+        continue;
+      }
+      final Object v = f.get(doc);
+      switch (f.getKind()) {
+      case STRING:
+        this.writeString((String) v);
+        break;
+      case STRING_LIST:
+        final List<?> l = (List<?>) v;
+        this.writeVarlong(l.size());
+        for (Object o : l)
+          this.writeString((String) o);
+        break;
+      case INTEGER:
+        this.writeVarlong(zigzag((Integer) v));
+        break;
+      case DATE:
+        this.writeVarlong(zigzag(((Date) v).getTime()));
+        break;
+      case URL:
+        this.writeString(((URL) v).toExternalForm());
+        break;
+      case FILE:
+        this.writeString(((File) v).getPath());
+        break;
+      default:
+        throw new IllegalStateException("Unhandled kind: " + f.getKind());
+      }
+    }
+
+    // header: version, varint payload length
+    final int length = this.pos - MAX_HEADER;
+    int headerLen = 2;
+    for (int l = length; l >= 0x80; l >>>= 7)
+      headerLen++;
+    int p = MAX_HEADER - headerLen;
+    final int start = p;
+    this.buf[p++] = (byte) VERSION;
+    int l = length;
+    while (l >= 0x80) {
+      this.buf[p++] = (byte) (l | 0x80);
+      l >>>= 7;
+    }
+    this.buf[p] = (byte) l;
+    return start;
+  }
+
+  private void writeString(final String s) {
+    // ASCII fast path: one byte per char, so the length is known up front
+    final int n = s.length();
+    final int lenSize = varintSize(n);
+    this.ensureCapacity(this.pos + lenSize + n);
+    int p = this.pos + lenSize;
+    for (int i = 0; i < n; i++) {
+      final char c = s.charAt(i);
+      if (c >= 0x80) {
+        this.writeUTF8(s);
+        return;
+      }
+      this.buf[p++] = (byte) c;
+    }
+    this.putVarint(this.pos, n);
+    this.pos = p;
+  }
+
+  private void writeUTF8(final String s) {
+    final byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+    this.writeVarlong(utf8.length);
+    this.ensureCapacity(this.pos + utf8.length);
+    System.arraycopy(utf8, 0, this.buf, this.pos, utf8.length);
+    this.pos += utf8.length;
+  }
+
+  private void putVarint(int at, int v) {
+    while (v >= 0x80) {
+      this.buf[at++] = (byte) (v | 0x80);
+      v >>>= 7;
+    }
+    this.buf[at] = (byte) v;
+  }
+
+  private void writeVarlong(long v) {
+    this.ensureCapacity(this.pos + 10);
+    while ((v & ~0x7fL) != 0) {
+      this.buf[this.pos++] = (byte) (v | 0x80);
+      v >>>= 7;
+    }
+    this.buf[this.pos++] = (byte) v;
+  }
+
+  private static int varintSize(int v) {
+    int n = 1;
+    while (v >= 0x80) {
+      v >>>= 7;
+      n++;
+    }
+    return n;
+  }
+
+  private static long zigzag(final long v) {
+    return (v << 1) ^ (v >> 63);
+  }
+
+  private void ensureCapacity(final int needed) {
+    if (needed > this.buf.length) {
+      final byte[] grown = new byte[Math.max(needed, this.buf.length * 2)];
+      System.arraycopy(this.buf, 0, grown, 0, this.pos);
+      this.buf = grown;
+    }
+  }
+
+  /*
+   * Decoding. The payload lives in b[off, off + len); pos/limit index into it.
+   */
+
+  private NYTCorpusDocument decodePayload(final int version, final byte[] b, final int off, final int len) {
+    if (version != VERSION)
+      throw new IllegalArgumentException("Unsupported document record version: " + version);
+
+    final byte[] saved = this.buf;
+    this.buf = b;
+    this.pos = off;
+    this.limit = off + len;
+    try {
+      final NYTCorpusDocument doc = new NYTCorpusDocument();
+      final long presence = this.readVarlong();
+      for (int i = 0; i < SCHEMA_V1.length; i++) {
+        final boolean present = (presence & (1L << i)) != 0;
+        this.readField(doc, SCHEMA_V1[i], present);
+      }
+      if (this.pos != this.limit)
+        throw new IllegalArgumentException("Trailing bytes in document record.");
+      return doc;
+    } finally {
+      this.buf = saved;
+      this.pos = 0;
+    }
+  }
+
+  private void readField(final NYTCorpusDocument doc, final DocumentField f, final boolean present) {
+    switch (f) {
+    case GUID:
+      if (present)
+        doc.setGuid((int) this.readZigzag());
+      break;
+    case ALTERNATE_URL:
+      doc.setAlternateURL(present ? this.readURL() : null);
+      break;
+    case ARTICLE_ABSTRACT:
+      doc.setArticleAbstract(present ? this.readString() : null);
+      break;
+    case AUTHOR_BIOGRAPHY:
+      doc.setAuthorBiography(present ? this.readString() : null);
+      break;
+    case BANNER:
+      doc.setBanner(present ? this.readString() : null);
+      break;
+    case BIOGRAPHICAL_CATEGORIES:
+      doc.setBiographicalCategories(present ? this.readList() : null);
+      break;
+    case BODY:
+      doc.setBody(present ? this.readString() : null);
+      break;
+    case BYLINE:
+      doc.setByline(present ? this.readString() : null);
+      break;
+    case COLUMN_NAME:
+      doc.setColumnName(present ? this.readString() : null);
+      break;
+    case COLUMN_NUMBER:
+      doc.setColumnNumber(present ? (int) this.readZigzag() : null);
+      break;
+    case CORRECTION_DATE:
+      doc.setCorrectionDate(present ? new Date(this.readZigzag()) : null);
+      break;
+    case CORRECTION_TEXT:
+      doc.setCorrectionText(present ? this.readString() : null);
+      break;
+    case CREDIT:
+      doc.setCredit(present ? this.readString() : null);
+      break;
+    case DATELINE:
+      doc.setDateline(present ? this.readString() : null);
+      break;
+    case DAY_OF_WEEK:
+      doc.setDayOfWeek(present ? this.readString() : null);
+      break;
+    case DESCRIPTORS:
+      doc.setDescriptors(present ? this.readList() : null);
+      break;
+    case FEATURE_PAGE:
+      doc.setFeaturePage(present ? this.readString() : null);
+      break;
+    case GENERAL_ONLINE_DESCRIPTORS:
+      doc.setGeneralOnlineDescriptors(present ? this.readList() : null);
+      break;
+    case HEADLINE:
+      doc.setHeadline(present ? this.readString() : null);
+      break;
+    case KICKER:
+      doc.setKicker(present ? this.readString() : null);
+      break;
+    case LEAD_PARAGRAPH:
+      doc.setLeadParagraph(present ? this.readString() : null);
+      break;
+    case LOCATIONS:
+      doc.setLocations(present ? this.readList() : null);
+      break;
+    case NAMES:
+      doc.setNames(present ? this.readList() : null);
+      break;
+    case NEWS_DESK:
+      doc.setNewsDesk(present ? this.readString() : null);
+      break;
+    case NORMALIZED_BYLINE:
+      doc.setNormalizedByline(present ? this.readString() : null);
+      break;
+    case ONLINE_DESCRIPTORS:
+      doc.setOnlineDescriptors(present ? this.readList() : null);
+      break;
+    case ONLINE_HEADLINE:
+      doc.setOnlineHeadline(present ? this.readString() : null);
+      break;
+    case ONLINE_LEAD_PARAGRAPH:
+      doc.setOnlineLeadParagraph(present ? this.readString() : null);
+      break;
+    case ONLINE_LOCATIONS:
+      doc.setOnlineLocations(present ? this.readList() : null);
+      break;
+    case ONLINE_ORGANIZATIONS:
+      doc.setOnlineOrganizations(present ? this.readList() : null);
+      break;
+    case ONLINE_PEOPLE:
+      doc.setOnlinePeople(present ? this.readList() : null);
+      break;
+    case ONLINE_SECTION:
+      doc.setOnlineSection(present ? this.readString() : null);
+      break;
+    case ONLINE_TITLES:
+      doc.setOnlineTitles(present ? this.readList() : null);
+      break;
+    case ORGANIZATIONS:
+      doc.setOrganizations(present ? this.readList() : null);
+      break;
+    case PAGE:
+      doc.setPage(present ? (int) this.readZigzag() : null);
+      break;
+    case PEOPLE:
+      doc.setPeople(present ? this.readList() : null);
+      break;
+    case PUBLICATION_DATE:
+      doc.setPublicationDate(present ? new Date(this.readZigzag()) : null);
+      break;
+    case PUBLICATION_DAY_OF_MONTH:
+      doc.setPublicationDayOfMonth(present ? (int) this.readZigzag() : null);
+      break;
+    case PUBLICATION_MONTH:
+      doc.setPublicationMonth(present ? (int) this.readZigzag() : null);
+      break;
+    case PUBLICATION_YEAR:
+      doc.setPublicationYear(present ? (int) this.readZigzag() : null);
+      break;
+    case SECTION:
+      doc.setSection(present ? this.readString() : null);
+      break;
+    case SERIES_NAME:
+      doc.setSeriesName(present ? this.readString() : null);
+      break;
+    case SLUG:
+      doc.setSlug(present ? this.readString() : null);
+      break;
+    case SOURCE_FILE:
+      doc.setSourceFile(present ? new File(this.readString()) : null);
+      break;
+    case TAXONOMIC_CLASSIFIERS:
+      doc.setTaxonomicClassifiers(present ? this.readList() : null);
+      break;
+    case TITLES:
+      doc.setTitles(present ? this.readList() : null);
+      break;
+    case TYPES_OF_MATERIAL:
+      doc.setTypesOfMaterial(present ? this.readList() : null);
+      break;
+    case URL:
+      doc.setUrl(present ? this.readURL() : null);
+      break;
+    case WORD_COUNT:
+      doc.setWordCount(present ? (int) this.readZigzag() : null);
+      break;
+    default:
+      throw new IllegalStateException("Unhandled field: " + f);
+    }
+  }
+
+  private String readString() {
+    final int n = (int) this.readVarlong();
+    if (n < 0 || n > this.limit - this.pos)
+      throw new IllegalArgumentException("Truncated string in document record.");
+    final String s = new String(this.buf, this.pos, n, StandardCharsets.UTF_8);
+    this.pos += n;
+    return s;
+  }
+
+  private List<String> readList() {
+    final int n = (int) this.readVarlong();
+    if (n < 0 || n > this.limit - this.pos)
+      throw new IllegalArgumentException("Malformed list in document record.");
+    final List<String> l = new ArrayList<String>(n);
+    for (int i = 0; i < n; i++)
+      l.add(this.readString());
+    return l;
+  }
+
+  private URL readURL() {
+    final String s = this.readString();
+    try {
+      return new URL(s);
+    } catch (MalformedURLException e) {
+      throw new IllegalArgumentException("Malformed URL in document record: " + s, e);
+    }
+  }
+
+  private long readZigzag() {
+    final long v = this.readVarlong();
+    return (v >>> 1) ^ -(v & 1);
+  }
+
+  private long readVarlong() {
+    long v = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      if (this.pos >= this.limit)
+        throw new IllegalArgumentException("Truncated varint in document record.");
+      final byte b = this.buf[this.pos++];
+      v |= (long) (b & 0x7f) << shift;
+      if (b >= 0)
+        return v;
+    }
+    throw new IllegalArgumentException("Malformed varint in document record.");
+  }
+
+  private static int readVarint(final ByteBuffer src) {
+    int v = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      final byte b = src.get();
+      v |= (b & 0x7f) << shift;
+      if (b >= 0)
+        return v;
+    }
+    throw new IllegalArgumentException("Malformed document record length.");
+  }
+}
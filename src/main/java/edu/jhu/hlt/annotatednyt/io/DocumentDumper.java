@@ -0,0 +1,355 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument;
+import edu.jhu.hlt.annotatednyt.DocumentField;
+import edu.jhu.hlt.annotatednyt.SpaceNormalizer;
+
+/**
+ * Streams the human-readable representations of {@link NYTCorpusDocument} and
+ * {@link AnnotatedNYTDocument} (i.e., their <code>toString()</code> output) directly to an
+ * {@link Appendable}, such as a {@link java.io.Writer}.
+ * <br><br>
+ * Each field is read once and written as it is read; no intermediate copy of the document
+ * is built. Whitespace in {@link NYTCorpusDocument} values is collapsed with a character scan
+ * rather than a regular expression.
+ * <br><br>
+ * A dumper may be restricted to a subset of {@link DocumentField}s. With all fields selected,
+ * the output is the same as <code>toString()</code>. Instances are immutable and may be shared
+ * between threads.
+ */
+public class DocumentDumper {
+
+  private static final int LABEL_WIDTH = 45;
+
+  // Maximum number of list elements shown by AnnotatedNYTDocument#toString().
+  private static final int MAX_LIST_ELEMENTS = 3;
+
+  private static final String SPACES = "                                             ";
+
+  private final Set<DocumentField> fields;
+
+  /**
+   * Create a dumper that writes every field.
+   */
+  public DocumentDumper() {
+    this(EnumSet.allOf(DocumentField.class));
+  }
+
+  /**
+   * @param fields the {@link DocumentField}s to write
+   */
+  public DocumentDumper(final Set<DocumentField> fields) {
+    this.fields = fields.isEmpty()
+        ? Collections.emptySet()
+        : Collections.unmodifiableSet(EnumSet.copyOf(fields));
+  }
+
+  /**
+   * Write the {@link NYTCorpusDocument#toString()} representation of <code>doc</code>:
+   * one <code>name: value</code> line per selected field, with runs of whitespace in the
+   * value collapsed to a single space.
+   *
+   * @param doc the {@link NYTCorpusDocument} to write
+   * @param out the {@link Appendable} to write to
+   * @throws IOException on errors writing to <code>out</code>
+   */
+  public void dump(final NYTCorpusDocument doc, final Appendable out) throws IOException {
+    final Collapser collapser = new Collapser(out);
+    for (DocumentField f : this.fields) {
+      final String name = f == DocumentField.ALTERNATE_URL ? "alternativeURL" : f.getPropertyName();
+      out.append(name).append(':');
+      if (name.length() + 1 < LABEL_WIDTH)
+        out.append(SPACES, 0, LABEL_WIDTH - name.length() - 1);
+
+      if (f == DocumentField.GUID) {
+        out.append(Integer.toString(doc.getGuid()));
+      } else {
+        final Object v = f.get(doc);
+        if (v == null) {
+          out.append("null");
+        } else if (f.getKind() == DocumentField.Kind.STRING_LIST) {
+          final List<?> l = (List<?>) v;
+          collapser.reset();
+          collapser.append('[');
+          for (int i = 0; i < l.size(); i++) {
+            if (i > 0)
+              collapser.append(", ");
+            collapser.append(String.valueOf(l.get(i)));
+          }
+          collapser.append(']');
+        } else {
+          collapser.reset();
+          collapser.append(v.toString());
+        }
+      }
+      out.append('\n');
+    }
+  }
+
+  /**
+   * Write the {@link AnnotatedNYTDocument#toString()} representation of <code>doc</code>.
+   * Each selected {@link DocumentField} contributes the wrapper accessors derived from it;
+   * e.g., {@link DocumentField#BODY} selects <code>getBodyAsList()</code>.
+   *
+   * @param doc the {@link AnnotatedNYTDocument} to write
+   * @param out the {@link Appendable} to write to
+   * @throws IOException on errors writing to <code>out</code>
+   */
+  public void dump(final AnnotatedNYTDocument doc, final Appendable out) throws IOException {
+    final NYTCorpusDocument nytdoc = doc.getNYTCorpusDocument();
+    out.append("AnnotatedNYTDocument [");
+    boolean first = true;
+    for (Accessor a : Accessor.values()) {
+      if (!this.fields.contains(a.field))
+        continue;
+      if (!first)
+        out.append(", ");
+      first = false;
+      out.append(a.label).append('=');
+
+      final Object v = a.field == DocumentField.GUID ? null : a.field.get(nytdoc);
+      switch (a.style) {
+      case GUID:
+        out.append(Integer.toString(nytdoc.getGuid()));
+        break;
+      case PLAIN:
+        out.append(String.valueOf(v));
+        break;
+      case OPTIONAL:
+        appendOptional(out, v == null ? null : v.toString());
+        break;
+      case NORMALIZED_OPTIONAL:
+        appendOptional(out, SpaceNormalizer.normalizeAndTrim((String) v));
+        break;
+      case PATH_OPTIONAL:
+        appendOptional(out, v == null ? null : ((File) v).toPath().toString());
+        break;
+      case LIST:
+        appendList(out, (List<?>) v);
+        break;
+      case SECTION_LIST:
+        appendList(out, doc.getOnlineSectionAsList());
+        break;
+      case LINE_LIST:
+        appendLines(out, SpaceNormalizer.normalizeAndTrim((String) v));
+        break;
+      default:
+        throw new IllegalStateException("Unhandled style: " + a.style);
+      }
+    }
+    out.append(']');
+  }
+
+  private static void appendOptional(final Appendable out, final String v) throws IOException {
+    if (v == null)
+      out.append("Optional.empty");
+    else
+      out.append("Optional[").append(v).append(']');
+  }
+
+  private static void appendList(final Appendable out, final List<?> l) throws IOException {
+    out.append('[');
+    if (l != null) {
+      final int n = Math.min(l.size(), MAX_LIST_ELEMENTS);
+      for (int i = 0; i < n; i++) {
+        if (i > 0)
+          out.append(", ");
+        out.append(String.valueOf(l.get(i)));
+      }
+    }
+    out.append(']');
+  }
+
+  /**
+   * Equivalent to appending the first elements of <code>s.split("\n")</code>, but without
+   * splitting the whole (possibly long) string. <code>s</code> is already trimmed.
+   */
+  private static void appendLines(final Appendable out, final String s) throws IOException {
+    out.append('[');
+    if (s != null) {
+      int start = 0;
+      for (int n = 0; n < MAX_LIST_ELEMENTS; n++) {
+        if (n > 0)
+          out.append(", ");
+        final int nl = s.indexOf('\n', start);
+        if (nl < 0) {
+          out.append(s, start, s.length());
+          break;
+        }
+        out.append(s, start, nl);
+        start = nl + 1;
+      }
+    }
+    out.append(']');
+  }
+
+  /**
+   * How a wrapper accessor renders its value.
+   */
+  private enum Style {
+    GUID, PLAIN, OPTIONAL, NORMALIZED_OPTIONAL, PATH_OPTIONAL, LIST, SECTION_LIST, LINE_LIST
+  }
+
+  /**
+   * The accessors of {@link AnnotatedNYTDocument#toString()}, in order.
+   */
+  private enum Accessor {
+    GUID("getGuid()", DocumentField.GUID, Style.GUID),
+    ONLINE_SECTION_LIST("getOnlineSectionAsList()", DocumentField.ONLINE_SECTION, Style.SECTION_LIST),
+    LEAD_PARAGRAPH_LIST("getLeadParagraphAsList()", DocumentField.LEAD_PARAGRAPH, Style.LINE_LIST),
+    ONLINE_LEAD_PARAGRAPH_LIST("getOnlineLeadParagraphAsList()", DocumentField.ONLINE_LEAD_PARAGRAPH, Style.LINE_LIST),
+    BODY_LIST("getBodyAsList()", DocumentField.BODY, Style.LINE_LIST),
+    HEADLINE("getHeadline()", DocumentField.HEADLINE, Style.OPTIONAL),
+    ONLINE_HEADLINE("getOnlineHeadline()", DocumentField.ONLINE_HEADLINE, Style.OPTIONAL),
+    BYLINE("getByline()", DocumentField.BYLINE, Style.OPTIONAL),
+    DATELINE("getDateline()", DocumentField.DATELINE, Style.OPTIONAL),
+    ARTICLE_ABSTRACT("getArticleAbstract()", DocumentField.ARTICLE_ABSTRACT, Style.OPTIONAL),
+    LEAD_PARAGRAPH("getLeadParagraph()", DocumentField.LEAD_PARAGRAPH, Style.OPTIONAL),
+    ONLINE_LEAD_PARAGRAPH("getOnlineLeadParagraph()", DocumentField.ONLINE_LEAD_PARAGRAPH, Style.NORMALIZED_OPTIONAL),
+    CORRECTION_TEXT("getCorrectionText()", DocumentField.CORRECTION_TEXT, Style.OPTIONAL),
+    KICKER("getKicker()", DocumentField.KICKER, Style.OPTIONAL),
+    ALTERNATE_URL("getAlternateURL()", DocumentField.ALTERNATE_URL, Style.OPTIONAL),
+    DESCRIPTORS("getDescriptors()", DocumentField.DESCRIPTORS, Style.LIST),
+    AUTHOR_BIOGRAPHY("getAuthorBiography()", DocumentField.AUTHOR_BIOGRAPHY, Style.OPTIONAL),
+    BANNER("getBanner()", DocumentField.BANNER, Style.OPTIONAL),
+    BIOGRAPHICAL_CATEGORIES("getBiographicalCategories()", DocumentField.BIOGRAPHICAL_CATEGORIES, Style.LIST),
+    COLUMN_NAME("getColumnName()", DocumentField.COLUMN_NAME, Style.OPTIONAL),
+    COLUMN_NUMBER("getColumnNumber()", DocumentField.COLUMN_NUMBER, Style.OPTIONAL),
+    CORRECTION_DATE("getCorrectionDate()", DocumentField.CORRECTION_DATE, Style.OPTIONAL),
+    CREDIT("getCredit()", DocumentField.CREDIT, Style.PLAIN),
+    DAY_OF_WEEK("getDayOfWeek()", DocumentField.DAY_OF_WEEK, Style.OPTIONAL),
+    FEATURE_PAGE("getFeaturePage()", DocumentField.FEATURE_PAGE, Style.OPTIONAL),
+    GENERAL_ONLINE_DESCRIPTORS("getGeneralOnlineDescriptors()", DocumentField.GENERAL_ONLINE_DESCRIPTORS, Style.LIST),
+    LOCATIONS("getLocations()", DocumentField.LOCATIONS, Style.LIST),
+    NAMES("getNames()", DocumentField.NAMES, Style.LIST),
+    NEWS_DESK("getNewsDesk()", DocumentField.NEWS_DESK, Style.OPTIONAL),
+    NORMALIZED_BYLINE("getNormalizedByline()", DocumentField.NORMALIZED_BYLINE, Style.OPTIONAL),
+    ONLINE_DESCRIPTORS("getOnlineDescriptors()", DocumentField.ONLINE_DESCRIPTORS, Style.LIST),
+    ONLINE_LOCATIONS("getOnlineLocations()", DocumentField.ONLINE_LOCATIONS, Style.LIST),
+    ONLINE_ORGANIZATIONS("getOnlineOrganizations()", DocumentField.ONLINE_ORGANIZATIONS, Style.LIST),
+    ONLINE_PEOPLE("getOnlinePeople()", DocumentField.ONLINE_PEOPLE, Style.LIST),
+    ONLINE_SECTION("getOnlineSection()", DocumentField.ONLINE_SECTION, Style.OPTIONAL),
+    ONLINE_TITLES("getOnlineTitles()", DocumentField.ONLINE_TITLES, Style.LIST),
+    ORGANIZATIONS("getOrganizations()", DocumentField.ORGANIZATIONS, Style.LIST),
+    PAGE("getPage()", DocumentField.PAGE, Style.OPTIONAL),
+    PEOPLE("getPeople()", DocumentField.PEOPLE, Style.LIST),
+    PUBLICATION_DATE("getPublicationDate()", DocumentField.PUBLICATION_DATE, Style.OPTIONAL),
+    PUBLICATION_DAY_OF_MONTH("getPublicationDayOfMonth()", DocumentField.PUBLICATION_DAY_OF_MONTH, Style.OPTIONAL),
+    PUBLICATION_MONTH("getPublicationMonth()", DocumentField.PUBLICATION_MONTH, Style.OPTIONAL),
+    PUBLICATION_YEAR("getPublicationYear()", DocumentField.PUBLICATION_YEAR, Style.OPTIONAL),
+    SECTION("getSection()", DocumentField.SECTION, Style.OPTIONAL),
+    SERIES_NAME("getSeriesName()", DocumentField.SERIES_NAME, Style.OPTIONAL),
+    SLUG("getSlug()", DocumentField.SLUG, Style.OPTIONAL),
+    SOURCE_PATH("getSourcePath()", DocumentField.SOURCE_FILE, Style.PATH_OPTIONAL),
+    TAXONOMIC_CLASSIFIERS("getTaxonomicClassifiers()", DocumentField.TAXONOMIC_CLASSIFIERS, Style.LIST),
+    TITLES("getTitles()", DocumentField.TITLES, Style.LIST),
+    TYPES_OF_MATERIAL("getTypesOfMaterial()", DocumentField.TYPES_OF_MATERIAL, Style.LIST),
+    URL("getUrl()", DocumentField.URL, Style.OPTIONAL),
+    WORD_COUNT("getWordCount()", DocumentField.WORD_COUNT, Style.OPTIONAL);
+
+    private final String label;
+    private final DocumentField field;
+    private final Style style;
+
+    private Accessor(final String label, final DocumentField field, final Style style) {
+      this.label = label;
+      this.field = field;
+      this.style = style;
+    }
+  }
+
+  /**
+   * Streaming equivalent of <code>s.replaceAll("\\s+", " ").trim()</code>.
+   * <br><br>
+   * Characters up to and including <code>' '</code> are held back until a visible character
+   * follows them, so that nothing is written for leading or trailing whitespace. Runs of
+   * regular expression whitespace (<code>[ \t\n\x0B\f\r]</code>) are held back as a single
+   * space; other control characters are held back as-is.
+   */
+  private static final class Collapser {
+    private final Appendable out;
+    private char[] pending = new char[16];
+    private int nPending;
+    private boolean inRun;
+    private boolean started;
+
+    Collapser(final Appendable out) {
+      this.out = out;
+    }
+
+    void reset() {
+      this.nPending = 0;
+      this.inRun = false;
+      this.started = false;
+    }
+
+    void append(final CharSequence s) throws IOException {
+      final int len = s.length();
+      int flushed = 0;
+      for (int i = 0; i < len; i++) {
+        final char c = s.charAt(i);
+        if (c > ' ') {
+          continue;
+        }
+        // write the visible run [flushed, i), then hold back c
+        if (flushed < i)
+          this.writeVisible(s, flushed, i);
+        this.hold(c);
+        flushed = i + 1;
+      }
+      if (flushed < len)
+        this.writeVisible(s, flushed, len);
+    }
+
+    void append(final char c) throws IOException {
+      if (c > ' ') {
+        this.flushPending();
+        this.out.append(c);
+        this.started = true;
+      } else {
+        this.hold(c);
+      }
+    }
+
+    private void writeVisible(final CharSequence s, final int from, final int to) throws IOException {
+      this.flushPending();
+      this.out.append(s, from, to);
+      this.started = true;
+    }
+
+    private void hold(final char c) {
+      final boolean ws = c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+      if (ws && this.inRun)
+        return;
+      this.inRun = ws;
+      if (!this.started)
+        return;
+      if (this.nPending == this.pending.length) {
+        char[] grown = new char[this.pending.length * 2];
+        System.arraycopy(this.pending, 0, grown, 0, this.nPending);
+        this.pending = grown;
+      }
+      this.pending[this.nPending++] = ws ? ' ' : c;
+    }
+
+    private void flushPending() throws IOException {
+      for (int i = 0; i < this.nPending; i++)
+        this.out.append(this.pending[i]);
+      this.nPending = 0;
+      this.inRun = false;
+    }
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument;
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.DocumentField;
+
+/**
+ * Writes documents as JSON Lines: one JSON object per document, one document per line.
+ * <br><br>
+ * Keys are the property names of the selected {@link DocumentField}s, in {@link DocumentField}
+ * order. <code>guid</code> is always written; other fields are omitted when <code>null</code>.
+ * Lists become arrays of strings, dates ISO-8601 instants (e.g. <code>1995-03-01T05:00:00Z</code>),
+ * and {@link URL}s and {@link File}s strings. Strings are escaped in a single pass: quotes,
+ * backslashes, control characters, and U+2028/U+2029 (so lines are also valid JavaScript).
+ * <br><br>
+ * A writer holds no mutable state and may be shared between threads.
+ */
+public class JsonLinesWriter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(JsonLinesWriter.class);
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private static final int BUFFER_SIZE = 1024 * 64;
+
+  private final DocumentField[] fields;
+
+  /**
+   * Writes every field.
+   */
+  public JsonLinesWriter() {
+    this(EnumSet.allOf(DocumentField.class));
+  }
+
+  /**
+   * @param fields the fields to write; <code>guid</code> is written regardless
+   */
+  public JsonLinesWriter(final Set<DocumentField> fields) {
+    final EnumSet<DocumentField> selected = fields.isEmpty()
+        ? EnumSet.noneOf(DocumentField.class) : EnumSet.copyOf(fields);
+    selected.remove(DocumentField.GUID);
+    this.fields = selected.toArray(new DocumentField[selected.size()]);
+  }
+
+  /**
+   * @return the fields written, including <code>guid</code>
+   */
+  public Set<DocumentField> getFields() {
+    final EnumSet<DocumentField> s = EnumSet.noneOf(DocumentField.class);
+    Collections.addAll(s, this.fields);
+    s.add(DocumentField.GUID);
+    return s;
+  }
+
+  /**
+   * Write <code>doc</code> as a single line, including the trailing newline.
+   *
+   * @param doc the {@link AnnotatedNYTDocument} to write
+   * @param out the {@link Appendable} to write to
+   * @throws IOException on errors writing to <code>out</code>
+   */
+  public void write(final AnnotatedNYTDocument doc, final Appendable out) throws IOException {
+    this.write(doc.getNYTCorpusDocument(), out);
+  }
+
+  /**
+   * Write <code>doc</code> as a single line, including the trailing newline.
+   *
+   * @param doc the {@link NYTCorpusDocument} to write
+   * @param out the {@link Appendable} to write to
+   * @throws IOException on errors writing to <code>out</code>
+   */
+  public void write(final NYTCorpusDocument doc, final Appendable out) throws IOException {
+    out.append("{\"guid\":").append(Integer.toString(doc.getGuid()));
+    for (DocumentField f : this.fields) {
+      final Object v = f.get(doc);
+      if (v == null)
+        continue;
+      out.append(",\"").append(f.getPropertyName()).append("\":");
+      switch (f.getKind()) {
+      case STRING:
+        writeString((String) v, out);
+        break;
+      case STRING_LIST:
+        out.append('[');
+        final List<?> l = (List<?>) v;
+        for (int i = 0; i < l.size(); i++) {
+          if (i > 0)
+            out.append(',');
+          writeString((String) l.get(i), out);
+        }
+        out.append(']');
+        break;
+      case INTEGER:
+        out.append(v.toString());
+        break;
+      case DATE:
+        out.append('"');
+        DateTimeFormatter.ISO_INSTANT.formatTo(((Date) v).toInstant(), out);
+        out.append('"');
+        break;
+      case URL:
+        writeString(((URL) v).toExternalForm(), out);
+        break;
+      case FILE:
+        writeString(((File) v).getPath(), out);
+        break;
+      default:
+        throw new IllegalStateException("Unhandled kind: " + f.getKind());
+      }
+    }
+    out.append("}\n");
+  }
+
+  /**
+   * Write <code>s</code> as a quoted, escaped JSON string. Unescaped runs are
+   * appended as ranges rather than character by character.
+   *
+   * @param s the string to write
+   * @param out the {@link Appendable} to write to
+   * @throws IOException on errors writing to <code>out</code>
+   */
+  static void writeString(final String s, final Appendable out) throws IOException {
+    out.append('"');
+    int run = 0;
+    final int len = s.length();
+    for (int i = 0; i < len; i++) {
+      final char c = s.charAt(i);
+      if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029')
+        continue;
+      if (run < i)
+        out.append(s, run, i);
+      run = i + 1;
+      switch (c) {
+      case '"':
+        out.append("\\\"");
+        break;
+      case '\\':
+        out.append("\\\\");
+        break;
+      case '\n':
+        out.append("\\n");
+        break;
+      case '\r':
+        out.append("\\r");
+        break;
+      case '\t':
+        out.append("\\t");
+        break;
+      case '\b':
+        out.append("\\b");
+        break;
+      case '\f':
+        out.append("\\f");
+        break;
+      default:
+        out.append("\\u")
+            .append(HEX[(c >> 12) & 0xf]).append(HEX[(c >> 8) & 0xf])
+            .append(HEX[(c >> 4) & 0xf]).append(HEX[c & 0xf]);
+      }
+    }
+    if (run < len)
+      out.append(s, run, len);
+    out.append('"');
+  }
+
+  /**
+   * Write one file per archive, in parallel: <code>data/1995/03.tgz</code> becomes
+   * <code>outputDir/1995/03.jsonl</code>.
+   *
+   * @param reader the {@link CorpusReader} to read from
+   * @param outputDir the directory to write to
+   * @param threads the number of archives to convert concurrently
+   * @return the number of documents written
+   * @throws IOException on errors reading the corpus or writing output
+   */
+  public long writePerArchive(final CorpusReader reader, final Path outputDir, final int threads)
+      throws IOException {
+    final long[] total = new long[1];
+    reader.processArchives(threads, archive -> {
+      final Path rel = reader.getDataPath().relativize(archive);
+      final String name = rel.getFileName().toString();
+      final Path out = outputDir.resolve(rel).resolveSibling(
+          name.substring(0, name.length() - ".tgz".length()) + ".jsonl");
+      Files.createDirectories(out.getParent());
+      return this.writeArchive(reader, archive, out);
+    }, (archive, n) -> {
+      LOGGER.info("Wrote {} documents from archive: {}", n, archive);
+      total[0] += n;
+    });
+    return total[0];
+  }
+
+  /**
+   * Write the whole corpus to a single file, in corpus order. Archives are converted in
+   * parallel to temporary files next to <code>output</code>, which are appended to
+   * <code>output</code> in order as they complete.
+   *
+   * @param reader the {@link CorpusReader} to read from
+   * @param output the file to write to; replaced if it exists
+   * @param threads the number of archives to convert concurrently
+   * @return the number of documents written
+   * @throws IOException on errors reading the corpus or writing output
+   */
+  public long writeOrdered(final CorpusReader reader, final Path output, final int threads)
+      throws IOException {
+    final Path parent = output.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    final long[] total = new long[1];
+    final Set<Path> parts = ConcurrentHashMap.newKeySet();
+    try (OutputStream os = Files.newOutputStream(output)) {
+      reader.processArchives(threads, archive -> {
+        final Path tmp = Files.createTempFile(parent, ".jsonl-", ".part");
+        parts.add(tmp);
+        return new Part(tmp, this.writeArchive(reader, archive, tmp));
+      }, (archive, part) -> {
+        Files.copy(part.path, os);
+        LOGGER.info("Wrote {} documents from archive: {}", part.count, archive);
+        total[0] += part.count;
+        Files.delete(part.path);
+        parts.remove(part.path);
+      });
+    } finally {
+      for (Path p : parts)
+        Files.deleteIfExists(p);
+    }
+    return total[0];
+  }
+
+  private long writeArchive(final CorpusReader reader, final Path archive, final Path out)
+      throws IOException {
+    final long[] n = new long[1];
+    try (Writer w = new BufferedWriter(
+        new OutputStreamWriter(Files.newOutputStream(out), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+      reader.read(archive, doc -> {
+        this.write(doc, w);
+        n[0]++;
+      });
+    }
+    return n[0];
+  }
+
+  private static final class Part {
+    private final Path path;
+    private final long count;
+
+    private Part(final Path path, final long count) {
+      this.path = path;
+      this.count = count;
+    }
+  }
+}
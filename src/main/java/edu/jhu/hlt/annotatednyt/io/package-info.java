@@ -0,0 +1,10 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+
+/**
+ * Writers and readers for {@link com.nytlabs.corpus.NYTCorpusDocument} and
+ * {@link edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument} objects.
+ */
+package edu.jhu.hlt.annotatednyt.io;
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.matrix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * A sparse document-term matrix of term counts, written by {@link DocumentTermMatrixWriter}.
+ * <br><br>
+ * A matrix directory holds the compressed sparse row arrays as raw little-endian files, which
+ * load directly with e.g. <code>numpy.fromfile</code> into
+ * <code>scipy.sparse.csr_matrix((data, indices, indptr))</code>:
+ * <ul>
+ * <li><code>indptr.i32</code>: <code>rows + 1</code> ints; row <code>r</code> holds entries
+ * <code>indptr[r]</code> to <code>indptr[r + 1]</code>, exclusive</li>
+ * <li><code>indices.i32</code>: the term id of each entry, ascending within each row</li>
+ * <li><code>data.f32</code>: the count of each entry, as a float</li>
+ * <li><code>guids.i32</code>: the guid of each row's document</li>
+ * <li><code>vocabulary.tsv</code>: the column {@link Vocabulary}</li>
+ * </ul>
+ * The arrays are memory-mapped, in segments, so opening a matrix is cheap, and it may be
+ * queried from several threads.
+ */
+public class DocumentTermMatrix {
+
+  static final String INDPTR_FILE = "indptr.i32";
+  static final String INDICES_FILE = "indices.i32";
+  static final String DATA_FILE = "data.f32";
+  static final String GUIDS_FILE = "guids.i32";
+  static final String VOCABULARY_FILE = "vocabulary.tsv";
+
+  // entries per mapped segment: 1 GB of ints
+  private static final int SEGMENT_SHIFT = 28;
+  private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+  /**
+   * Receives the entries of a row.
+   */
+  @FunctionalInterface
+  public interface EntryVisitor {
+    /**
+     * @param column the term id
+     * @param value the count of the term in the row's document
+     */
+    void visit(int column, float value);
+  }
+
+  private final Vocabulary vocabulary;
+  private final ByteBuffer[] indptr;
+  private final ByteBuffer[] indices;
+  private final ByteBuffer[] data;
+  private final ByteBuffer[] guids;
+  private final int rows;
+  private final int nonZeros;
+
+  private DocumentTermMatrix(final Vocabulary vocabulary, final ByteBuffer[] indptr, final ByteBuffer[] indices,
+      final ByteBuffer[] data, final ByteBuffer[] guids, final int rows, final int nonZeros) {
+    this.vocabulary = vocabulary;
+    this.indptr = indptr;
+    this.indices = indices;
+    this.data = data;
+    this.guids = guids;
+    this.rows = rows;
+    this.nonZeros = nonZeros;
+  }
+
+  /**
+   * @param dir a directory written by {@link DocumentTermMatrixWriter}
+   * @return the matrix
+   * @throws IOException on errors reading <code>dir</code>, or if the files do not agree
+   */
+  public static DocumentTermMatrix open(final Path dir) throws IOException {
+    final Vocabulary vocabulary = Vocabulary.read(dir.resolve(VOCABULARY_FILE));
+    final ByteBuffer[] indptr = map(dir.resolve(INDPTR_FILE));
+    final ByteBuffer[] guids = map(dir.resolve(GUIDS_FILE));
+    final long rows = length(guids);
+    if (length(indptr) != rows + 1)
+      throw new IOException("Row pointers do not match rows in " + dir);
+    final int nnz = get(indptr, rows);
+    final ByteBuffer[] indices = map(dir.resolve(INDICES_FILE));
+    final ByteBuffer[] data = map(dir.resolve(DATA_FILE));
+    if (length(indices) != nnz || length(data) != nnz)
+      throw new IOException("Truncated matrix in " + dir);
+    return new DocumentTermMatrix(vocabulary, indptr, indices, data, guids, (int) rows, nnz);
+  }
+
+  private static ByteBuffer[] map(final Path path) throws IOException {
+    try (FileChannel ch = FileChannel.open(path)) {
+      final long size = ch.size();
+      if (size % 4 != 0)
+        throw new IOException("Truncated array: " + path);
+      final long segment = 4L << SEGMENT_SHIFT;
+      final ByteBuffer[] segments = new ByteBuffer[(int) Math.max(1, (size + segment - 1) / segment)];
+      for (int s = 0; s < segments.length; s++) {
+        final long from = s * segment;
+        segments[s] = ch.map(FileChannel.MapMode.READ_ONLY, from, Math.min(segment, size - from))
+            .order(ByteOrder.LITTLE_ENDIAN);
+      }
+      return segments;
+    }
+  }
+
+  private static long length(final ByteBuffer[] segments) {
+    final ByteBuffer last = segments[segments.length - 1];
+    return ((long) (segments.length - 1) << SEGMENT_SHIFT) + last.capacity() / 4;
+  }
+
+  private static int get(final ByteBuffer[] segments, final long i) {
+    return segments[(int) (i >>> SEGMENT_SHIFT)].getInt((int) (i & SEGMENT_MASK) << 2);
+  }
+
+  private static float getFloat(final ByteBuffer[] segments, final long i) {
+    return segments[(int) (i >>> SEGMENT_SHIFT)].getFloat((int) (i & SEGMENT_MASK) << 2);
+  }
+
+  /**
+   * @return the column {@link Vocabulary}
+   */
+  public Vocabulary getVocabulary() {
+    return this.vocabulary;
+  }
+
+  /**
+   * @return the number of rows (documents)
+   */
+  public int getRowCount() {
+    return this.rows;
+  }
+
+  /**
+   * @return the number of columns (terms)
+   */
+  public int getColumnCount() {
+    return this.vocabulary.size();
+  }
+
+  /**
+   * @return the number of non-zero entries
+   */
+  public int getNonZeroCount() {
+    return this.nonZeros;
+  }
+
+  /**
+   * @param row a row
+   * @return the guid of the row's document
+   */
+  public int getGuid(final int row) {
+    return get(this.guids, row);
+  }
+
+  /**
+   * @param row a row
+   * @return the number of distinct vocabulary terms in the row's document
+   */
+  public int getRowLength(final int row) {
+    return get(this.indptr, row + 1L) - get(this.indptr, row);
+  }
+
+  /**
+   * @param row a row
+   * @param column a term id
+   * @return the count of the term in the row's document, or 0
+   */
+  public float get(final int row, final int column) {
+    int lo = get(this.indptr, row);
+    int hi = get(this.indptr, row + 1L) - 1;
+    while (lo <= hi) {
+      final int mid = (lo + hi) >>> 1;
+      final int c = get(this.indices, mid);
+      if (c < column)
+        lo = mid + 1;
+      else if (c > column)
+        hi = mid - 1;
+      else
+        return getFloat(this.data, mid);
+    }
+    return 0;
+  }
+
+  /**
+   * @param row a row
+   * @param visitor receives the entries of <code>row</code>, by ascending term id
+   */
+  public void forEachInRow(final int row, final EntryVisitor visitor) {
+    final int end = get(this.indptr, row + 1L);
+    for (int k = get(this.indptr, row); k < end; k++)
+      visitor.visit(get(this.indices, k), getFloat(this.data, k));
+  }
+}
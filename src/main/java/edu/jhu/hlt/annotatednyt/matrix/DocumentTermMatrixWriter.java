@@ -0,0 +1,228 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.matrix;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.text.TokenBuffer;
+import edu.jhu.hlt.annotatednyt.text.Tokenizer;
+
+/**
+ * Writes the bodies of a corpus as a {@link DocumentTermMatrix} over a {@link Vocabulary}:
+ * one row per document, in corpus order, holding the count of each vocabulary term.
+ * <br><br>
+ * Archives are counted in parallel. Each worker counts a document into a dense array indexed
+ * by term id, reused across documents, and collects the rows of its archive; the rows are then
+ * appended to the matrix files in corpus order. Heap use is bounded by the rows of one archive
+ * per thread, plus the vocabulary.
+ */
+public class DocumentTermMatrixWriter implements Closeable {
+
+  private final FileChannel indptr;
+  private final FileChannel indices;
+  private final FileChannel data;
+  private final FileChannel guids;
+  private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+  private long nonZeros;
+
+  /**
+   * Create the matrix files in <code>dir</code> and write <code>vocabulary</code> alongside.
+   *
+   * @param vocabulary the column {@link Vocabulary}
+   * @param dir the directory to write to; created if needed
+   * @throws IOException on errors writing <code>dir</code>
+   */
+  public DocumentTermMatrixWriter(final Vocabulary vocabulary, final Path dir) throws IOException {
+    Files.createDirectories(dir);
+    vocabulary.write(dir.resolve(DocumentTermMatrix.VOCABULARY_FILE));
+    this.indptr = open(dir.resolve(DocumentTermMatrix.INDPTR_FILE));
+    this.indices = open(dir.resolve(DocumentTermMatrix.INDICES_FILE));
+    this.data = open(dir.resolve(DocumentTermMatrix.DATA_FILE));
+    this.guids = open(dir.resolve(DocumentTermMatrix.GUIDS_FILE));
+    this.buf.putInt(0);
+    this.flush(this.indptr);
+  }
+
+  private static FileChannel open(final Path path) throws IOException {
+    return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE);
+  }
+
+  /**
+   * Write the bodies of the whole corpus to <code>dir</code>.
+   *
+   * @param reader the {@link CorpusReader} to read from
+   * @param vocabulary the column {@link Vocabulary}, e.g. from {@link VocabularyBuilder}
+   * @param dir the directory to write to; created if needed
+   * @param threads the number of archives to count concurrently
+   * @return the number of rows written
+   * @throws IOException on errors reading the corpus or writing the matrix
+   */
+  public static long write(final CorpusReader reader, final Vocabulary vocabulary, final Path dir, final int threads)
+      throws IOException {
+    try (DocumentTermMatrixWriter w = new DocumentTermMatrixWriter(vocabulary, dir)) {
+      final ThreadLocal<Counter> local = ThreadLocal.withInitial(() -> new Counter(vocabulary));
+      final long[] rows = new long[1];
+      reader.processArchives(threads, archive -> {
+        final Rows r = new Rows();
+        final Counter c = local.get();
+        reader.read(archive, doc -> c.count(doc, r));
+        return r;
+      }, (archive, r) -> {
+        w.append(r);
+        rows[0] += r.size;
+      });
+      return rows[0];
+    }
+  }
+
+  /**
+   * Append rows, in order. Each array goes through the buffer and is flushed to its own file
+   * before the next.
+   */
+  void append(final Rows r) throws IOException {
+    for (int i = 0; i < r.size; i++) {
+      this.nonZeros += r.lengths[i];
+      if (this.nonZeros > Integer.MAX_VALUE)
+        throw new IOException("Too many non-zeros for int row pointers: " + this.nonZeros);
+      this.put(this.indptr, (int) this.nonZeros);
+    }
+    this.flush(this.indptr);
+    for (int i = 0; i < r.size; i++)
+      this.put(this.guids, r.guids[i]);
+    this.flush(this.guids);
+    for (int i = 0; i < r.entries; i++)
+      this.put(this.indices, r.columns[i]);
+    this.flush(this.indices);
+    for (int i = 0; i < r.entries; i++)
+      this.putFloat(this.data, r.values[i]);
+    this.flush(this.data);
+  }
+
+  private void put(final FileChannel ch, final int v) throws IOException {
+    if (this.buf.remaining() < 4)
+      this.flush(ch);
+    this.buf.putInt(v);
+  }
+
+  private void putFloat(final FileChannel ch, final float v) throws IOException {
+    if (this.buf.remaining() < 4)
+      this.flush(ch);
+    this.buf.putFloat(v);
+  }
+
+  private void flush(final FileChannel ch) throws IOException {
+    ((Buffer) this.buf).flip();
+    while (this.buf.hasRemaining())
+      ch.write(this.buf);
+    ((Buffer) this.buf).clear();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      this.indptr.close();
+    } finally {
+      try {
+        this.indices.close();
+      } finally {
+        try {
+          this.data.close();
+        } finally {
+          this.guids.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * Counts the terms of one document at a time. One per thread.
+   */
+  private static final class Counter {
+    private final Vocabulary vocabulary;
+    private final int[] counts;
+    private int[] touched = new int[1024];
+    private final TokenBuffer tokens = new TokenBuffer();
+    private final StringBuilder sb = new StringBuilder();
+
+    Counter(final Vocabulary vocabulary) {
+      this.vocabulary = vocabulary;
+      this.counts = new int[vocabulary.size()];
+    }
+
+    void count(final NYTCorpusDocument doc, final Rows out) {
+      int n = 0;
+      final String body = doc.getBody();
+      if (body != null) {
+        this.tokens.clear();
+        Tokenizer.tokenize(body, this.tokens);
+        for (int i = 0; i < this.tokens.size(); i++) {
+          if (!VocabularyBuilder.term(body, this.tokens.start(i), this.tokens.end(i), this.sb))
+            continue;
+          final int id = this.vocabulary.getId(this.sb);
+          if (id < 0)
+            continue;
+          if (this.counts[id]++ == 0) {
+            if (n == this.touched.length)
+              this.touched = Arrays.copyOf(this.touched, n * 2);
+            this.touched[n++] = id;
+          }
+        }
+      }
+      Arrays.sort(this.touched, 0, n);
+      out.startRow(doc.getGuid(), n);
+      for (int i = 0; i < n; i++) {
+        final int id = this.touched[i];
+        out.add(id, this.counts[id]);
+        this.counts[id] = 0;
+      }
+    }
+  }
+
+  /**
+   * The rows of one archive.
+   */
+  static final class Rows {
+    private int size;
+    private int[] guids = new int[256];
+    private int[] lengths = new int[256];
+    private int entries;
+    private int[] columns = new int[1 << 14];
+    private float[] values = new float[1 << 14];
+
+    void startRow(final int guid, final int length) {
+      if (this.size == this.guids.length) {
+        this.guids = Arrays.copyOf(this.guids, this.size * 2);
+        this.lengths = Arrays.copyOf(this.lengths, this.size * 2);
+      }
+      this.guids[this.size] = guid;
+      this.lengths[this.size] = length;
+      this.size++;
+      if (this.entries + length > this.columns.length) {
+        final int c = Math.max(this.entries + length, this.columns.length * 2);
+        this.columns = Arrays.copyOf(this.columns, c);
+        this.values = Arrays.copyOf(this.values, c);
+      }
+    }
+
+    void add(final int column, final float value) {
+      this.columns[this.entries] = column;
+      this.values[this.entries] = value;
+      this.entries++;
+    }
+  }
+}
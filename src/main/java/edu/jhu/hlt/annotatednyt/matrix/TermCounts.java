@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.matrix;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import edu.jhu.hlt.annotatednyt.util.StringIds;
+
+/**
+ * A hash map from terms to primitive document and collection frequencies: a {@link StringIds}
+ * table, with the frequencies in arrays indexed by id. Counting a term that is already present
+ * allocates nothing; a {@link String} copy is made only on insertion.
+ * <br><br>
+ * Not thread-safe.
+ */
+final class TermCounts {
+
+  private final StringIds terms = new StringIds(1 << 12);
+  private int[] lastDocs = new int[1 << 12];
+  private int[] dfs = new int[1 << 12];
+  private long[] cfs = new long[1 << 12];
+
+  int size() {
+    return this.terms.size();
+  }
+
+  /**
+   * Remove every term, keeping the capacity.
+   */
+  void clear() {
+    final int n = this.terms.size();
+    Arrays.fill(this.lastDocs, 0, n, 0);
+    Arrays.fill(this.dfs, 0, n, 0);
+    Arrays.fill(this.cfs, 0, n, 0);
+    this.terms.clear();
+  }
+
+  /**
+   * Count one occurrence of <code>term</code> in document <code>doc</code>. Documents must be
+   * numbered from 1, in increasing order, so the document frequency is only incremented on the
+   * first occurrence in each document.
+   */
+  void add(final CharSequence term, final int doc) {
+    final int id = this.terms.intern(term);
+    if (id == this.dfs.length) {
+      this.lastDocs = Arrays.copyOf(this.lastDocs, id * 2);
+      this.dfs = Arrays.copyOf(this.dfs, id * 2);
+      this.cfs = Arrays.copyOf(this.cfs, id * 2);
+    }
+    if (this.lastDocs[id] != doc) {
+      this.lastDocs[id] = doc;
+      this.dfs[id]++;
+    }
+    this.cfs[id]++;
+  }
+
+  /**
+   * Write the terms in {@link String#compareTo(String)} order to <code>path</code> as a sorted
+   * run for {@link VocabularyBuilder}: the term count, then term, document frequency, and
+   * collection frequency of each term; then clear this map.
+   */
+  void spill(final Path path) throws IOException {
+    final int n = this.terms.size();
+    final String[] sorted = new String[n];
+    for (int id = 0; id < n; id++)
+      sorted[id] = this.terms.get(id);
+    Arrays.sort(sorted);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+      out.writeInt(n);
+      for (String k : sorted) {
+        final int i = this.terms.find(k);
+        out.writeUTF(k);
+        out.writeInt(this.dfs[i]);
+        out.writeLong(this.cfs[i]);
+      }
+    }
+    this.clear();
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.matrix;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import edu.jhu.hlt.annotatednyt.util.StringIds;
+
+/**
+ * A vocabulary of lower-cased body terms with dense <code>int</code> ids, built by
+ * {@link VocabularyBuilder}. Ids follow {@link String#compareTo(String)} order of the terms.
+ * <br><br>
+ * Terms are looked up by {@link CharSequence} in a {@link StringIds} table, so mapping tokens to
+ * ids allocates nothing. A vocabulary is immutable and may be queried from several threads.
+ */
+public class Vocabulary {
+
+  private final StringIds terms;
+  private final int[] documentFrequencies;
+  private final long[] collectionFrequencies;
+
+  Vocabulary(final String[] terms, final int[] documentFrequencies, final long[] collectionFrequencies) {
+    this.terms = new StringIds(terms.length);
+    for (int id = 0; id < terms.length; id++)
+      if (this.terms.intern(terms[id]) != id)
+        throw new IllegalArgumentException("Duplicate term: " + terms[id]);
+    this.documentFrequencies = documentFrequencies;
+    this.collectionFrequencies = collectionFrequencies;
+  }
+
+  /**
+   * @return the number of terms
+   */
+  public int size() {
+    return this.terms.size();
+  }
+
+  /**
+   * @param term a term
+   * @return the id of <code>term</code>, or -1 if it is not in the vocabulary
+   */
+  public int getId(final CharSequence term) {
+    return this.terms.find(term);
+  }
+
+  /**
+   * @param id a term id
+   * @return the term
+   */
+  public String getTerm(final int id) {
+    return this.terms.get(id);
+  }
+
+  /**
+   * @param id a term id
+   * @return the number of documents containing the term
+   */
+  public int getDocumentFrequency(final int id) {
+    return this.documentFrequencies[id];
+  }
+
+  /**
+   * @param id a term id
+   * @return the number of occurrences of the term
+   */
+  public long getCollectionFrequency(final int id) {
+    return this.collectionFrequencies[id];
+  }
+
+  /**
+   * Write this vocabulary as one line per term, in id order, of term, document frequency, and
+   * collection frequency, separated by tabs. Terms never contain tabs or line breaks.
+   *
+   * @param path the file to write; replaced if it exists
+   * @throws IOException on errors writing <code>path</code>
+   */
+  public void write(final Path path) throws IOException {
+    try (BufferedWriter w = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      for (int id = 0; id < this.terms.size(); id++) {
+        w.write(this.terms.get(id));
+        w.write('\t');
+        w.write(Integer.toString(this.documentFrequencies[id]));
+        w.write('\t');
+        w.write(Long.toString(this.collectionFrequencies[id]));
+        w.write('\n');
+      }
+    }
+  }
+
+  /**
+   * @param path a file written by {@link #write(Path)}
+   * @return the vocabulary
+   * @throws IOException on errors reading <code>path</code>, or if a line is malformed or a
+   * term repeated
+   */
+  public static Vocabulary read(final Path path) throws IOException {
+    String[] terms = new String[1024];
+    int[] dfs = new int[1024];
+    long[] cfs = new long[1024];
+    int n = 0;
+    try (BufferedReader r = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = r.readLine()) != null) {
+        final int a = line.indexOf('\t');
+        final int b = line.indexOf('\t', a + 1);
+        if (a < 0 || b < 0)
+          throw new IOException("Malformed vocabulary line " + (n + 1) + " of " + path);
+        if (n == terms.length) {
+          terms = Arrays.copyOf(terms, n * 2);
+          dfs = Arrays.copyOf(dfs, n * 2);
+          cfs = Arrays.copyOf(cfs, n * 2);
+        }
+        try {
+          terms[n] = line.substring(0, a);
+          dfs[n] = Integer.parseInt(line.substring(a + 1, b));
+          cfs[n] = Long.parseLong(line.substring(b + 1));
+        } catch (NumberFormatException e) {
+          throw new IOException("Malformed vocabulary line " + (n + 1) + " of " + path, e);
+        }
+        n++;
+      }
+    }
+    try {
+      return new Vocabulary(Arrays.copyOf(terms, n), Arrays.copyOf(dfs, n), Arrays.copyOf(cfs, n));
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Malformed vocabulary " + path, e);
+    }
+  }
+}
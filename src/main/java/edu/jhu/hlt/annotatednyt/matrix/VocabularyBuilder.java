@@ -0,0 +1,243 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.matrix;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.text.TokenBuffer;
+import edu.jhu.hlt.annotatednyt.text.Tokenizer;
+import edu.jhu.hlt.annotatednyt.util.RunMerger;
+import edu.jhu.hlt.annotatednyt.util.TempDirectory;
+
+/**
+ * Builds the {@link Vocabulary} of article bodies: the lower-cased {@link Tokenizer} tokens,
+ * pruned by document frequency.
+ * <br><br>
+ * Each worker thread counts document and collection frequencies in its own primitive hash map.
+ * When a map reaches its size limit, the thread spills it to disk as a run sorted by term. The
+ * runs are then merged, streaming, and only the terms that survive pruning are kept in memory.
+ * Heap use is bounded by the limit times the number of threads, plus the pruned vocabulary.
+ */
+public class VocabularyBuilder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(VocabularyBuilder.class);
+
+  /**
+   * The default minimum number of documents a term must appear in.
+   */
+  public static final int DEFAULT_MIN_DF = 5;
+
+  /**
+   * The default maximum fraction of documents a term may appear in.
+   */
+  public static final double DEFAULT_MAX_DF = 0.5;
+
+  /**
+   * The default number of distinct terms a thread holds before spilling, about 100 MB of heap.
+   */
+  public static final int DEFAULT_MAX_TERMS = 1 << 20;
+
+  /**
+   * Tokens longer than this, mostly tables and markup debris, are not terms.
+   */
+  public static final int MAX_TERM_LENGTH = 64;
+
+  private final int minDf;
+  private final double maxDf;
+  private final int maxTerms;
+
+  /**
+   * Prune with {@link #DEFAULT_MIN_DF} and {@link #DEFAULT_MAX_DF}, spilling every
+   * {@link #DEFAULT_MAX_TERMS} terms.
+   */
+  public VocabularyBuilder() {
+    this(DEFAULT_MIN_DF, DEFAULT_MAX_DF, DEFAULT_MAX_TERMS);
+  }
+
+  /**
+   * @param minDf the minimum number of documents a term must appear in
+   * @param maxDf the maximum fraction of documents a term may appear in, in (0, 1]
+   * @param maxTerms the number of distinct terms a thread holds in memory before spilling
+   */
+  public VocabularyBuilder(final int minDf, final double maxDf, final int maxTerms) {
+    if (minDf < 1)
+      throw new IllegalArgumentException("minDf must be positive: " + minDf);
+    if (!(maxDf > 0 && maxDf <= 1))
+      throw new IllegalArgumentException("maxDf must be in (0, 1]: " + maxDf);
+    if (maxTerms < 1)
+      throw new IllegalArgumentException("maxTerms must be positive: " + maxTerms);
+    this.minDf = minDf;
+    this.maxDf = maxDf;
+    this.maxTerms = maxTerms;
+  }
+
+  /**
+   * Lower-case <code>text</code> from <code>start</code> to <code>end</code> into
+   * <code>sb</code>.
+   *
+   * @return <code>false</code> if the token is too long to be a term
+   */
+  static boolean term(final CharSequence text, final int start, final int end, final StringBuilder sb) {
+    if (end - start > MAX_TERM_LENGTH)
+      return false;
+    sb.setLength(0);
+    for (int i = start; i < end; i++)
+      sb.append(Character.toLowerCase(text.charAt(i)));
+    return true;
+  }
+
+  /**
+   * Count the bodies of the whole corpus and build the pruned vocabulary. Spilled runs go to a
+   * temporary directory under <code>workDir</code>, removed when done.
+   *
+   * @param reader the {@link CorpusReader} to read from
+   * @param workDir the directory for spilled runs; created if needed
+   * @param threads the number of worker threads
+   * @return the {@link Vocabulary}
+   * @throws IOException on errors reading the corpus or writing runs
+   */
+  public Vocabulary build(final CorpusReader reader, final Path workDir, final int threads) throws IOException {
+    Files.createDirectories(workDir);
+    try (TempDirectory tmp = new TempDirectory(workDir, "runs")) {
+      final List<Path> runs = new ArrayList<>();
+      long documents = 0;
+      for (Shard s : reader.readPerThread(threads, () -> new Shard(tmp))) {
+        s.spill();
+        runs.addAll(s.runs);
+        documents += s.documents;
+      }
+      LOGGER.info("Merging {} runs over {} documents.", runs.size(), documents);
+      return this.merge(runs, documents);
+    }
+  }
+
+  /**
+   * Merge sorted runs, summing the frequencies of equal terms, and prune.
+   */
+  private Vocabulary merge(final List<Path> runs, final long documents) throws IOException {
+    final long maxDocs = (long) Math.floor(this.maxDf * documents);
+    String[] terms = new String[1024];
+    int[] dfs = new int[1024];
+    long[] cfs = new long[1024];
+    int n = 0;
+    try (RunMerger<Run> m = new RunMerger<>(runs, Run::new)) {
+      while (m.hasNext()) {
+        final String term = m.peek().term;
+        long df = 0;
+        long cf = 0;
+        while (m.hasNext() && m.peek().term.equals(term)) {
+          df += m.peek().df;
+          cf += m.peek().cf;
+          m.advance();
+        }
+        if (df < this.minDf || df > maxDocs)
+          continue;
+        if (n == terms.length) {
+          terms = Arrays.copyOf(terms, n * 2);
+          dfs = Arrays.copyOf(dfs, n * 2);
+          cfs = Arrays.copyOf(cfs, n * 2);
+        }
+        terms[n] = term;
+        dfs[n] = (int) df;
+        cfs[n] = cf;
+        n++;
+      }
+    }
+    return new Vocabulary(Arrays.copyOf(terms, n), Arrays.copyOf(dfs, n), Arrays.copyOf(cfs, n));
+  }
+
+  /**
+   * Counts the terms of one thread.
+   */
+  private final class Shard implements CorpusReader.DocumentHandler {
+    private final TempDirectory tmp;
+    private final List<Path> runs = new ArrayList<>();
+    private final TermCounts counts = new TermCounts();
+    private final TokenBuffer tokens = new TokenBuffer();
+    private final StringBuilder sb = new StringBuilder();
+    private int documents;
+
+    Shard(final TempDirectory tmp) {
+      this.tmp = tmp;
+    }
+
+    @Override
+    public void handle(final NYTCorpusDocument doc) {
+      final int d = ++this.documents;
+      final String body = doc.getBody();
+      if (body == null)
+        return;
+      this.tokens.clear();
+      Tokenizer.tokenize(body, this.tokens);
+      for (int i = 0; i < this.tokens.size(); i++)
+        if (term(body, this.tokens.start(i), this.tokens.end(i), this.sb))
+          this.counts.add(this.sb, d);
+      if (this.counts.size() >= VocabularyBuilder.this.maxTerms) {
+        try {
+          this.spill();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+
+    /**
+     * Write the terms counted so far as a run sorted by term, and empty the map.
+     */
+    void spill() throws IOException {
+      if (this.counts.size() == 0)
+        return;
+      final Path run = this.tmp.newFile("run", ".bin");
+      LOGGER.debug("Spilling {} terms to {}", this.counts.size(), run);
+      this.counts.spill(run);
+      this.runs.add(run);
+    }
+  }
+
+  /**
+   * A cursor over a spilled run.
+   */
+  private static final class Run extends RunMerger.Cursor<Run> {
+    // -1 until the header is read
+    private int remaining = -1;
+    private String term;
+    private int df;
+    private long cf;
+
+    Run(final Path path) throws IOException {
+      super(path);
+    }
+
+    @Override
+    protected boolean next() throws IOException {
+      if (this.remaining < 0)
+        this.remaining = this.in.readInt();
+      if (this.remaining == 0)
+        return false;
+      this.remaining--;
+      this.term = this.in.readUTF();
+      this.df = this.in.readInt();
+      this.cf = this.in.readLong();
+      return true;
+    }
+
+    @Override
+    public int compareTo(final Run o) {
+      return this.term.compareTo(o.term);
+    }
+  }
+}
@@ -0,0 +1,11 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+
+/**
+ * Bag-of-words export: a pruned corpus {@link edu.jhu.hlt.annotatednyt.matrix.Vocabulary}, and
+ * a sparse document-term matrix of article bodies in compressed sparse row form, for topic
+ * models and other tools reading raw little-endian arrays.
+ */
+package edu.jhu.hlt.annotatednyt.matrix;
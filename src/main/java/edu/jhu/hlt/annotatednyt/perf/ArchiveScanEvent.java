@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.perf;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event spanning one archive, from open to close, in
+ * {@link edu.jhu.hlt.annotatednyt.CorpusReader#readEntries(java.nio.file.Path,
+ * edu.jhu.hlt.annotatednyt.CorpusReader.EntryHandler)}. Its duration includes the time spent
+ * in the caller's handler. Disabled by default; see {@link FlightEvents}.
+ */
+@Name(FlightEvents.PREFIX + "ArchiveScan")
+@Label("Archive Scan")
+@Category({ FlightEvents.CATEGORY, "Reader" })
+@Description("Read of every entry of one .tgz archive")
+@Enabled(false)
+@StackTrace(false)
+public class ArchiveScanEvent extends Event {
+
+  @Label("Archive")
+  String archive;
+
+  @Label("Compressed Size")
+  @DataAmount
+  long compressedBytes;
+
+  @Label("Uncompressed Size")
+  @DataAmount
+  long uncompressedBytes;
+
+  @Label("Entries")
+  int entries;
+
+  @Label("Completed")
+  @Description("False if reading or handling an entry threw")
+  boolean completed;
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.perf;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event spanning the parse of one document by
+ * {@link com.nytlabs.corpus.NYTCorpusDocumentParser#fromByteArray(byte[], boolean)}.
+ * Disabled by default; see {@link FlightEvents}.
+ */
+@Name(FlightEvents.PREFIX + "DocumentParse")
+@Label("Document Parse")
+@Category({ FlightEvents.CATEGORY, "Parser" })
+@Description("Parse of one NITF document, from bytes to fields")
+@Enabled(false)
+@StackTrace(false)
+public class DocumentParseEvent extends Event {
+
+  @Label("GUID")
+  @Description("The document's GUID, or 0 if the parse failed before reaching it")
+  int guid;
+
+  @Label("Size")
+  @DataAmount
+  long bytes;
+
+  @Label("Fields")
+  @Description("Number of fields with a value (lists: non-empty)")
+  int fields;
+
+  @Label("List Values")
+  @Description("Total number of values in list fields")
+  int listValues;
+
+  @Label("Succeeded")
+  boolean succeeded;
+}
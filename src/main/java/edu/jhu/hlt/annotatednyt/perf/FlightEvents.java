@@ -0,0 +1,164 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.perf;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.DocumentField;
+
+/**
+ * Emits the custom JDK Flight Recorder events of the parser and the corpus reader:
+ * {@link DocumentParseEvent}, {@link ArchiveScanEvent}, and {@link ParseFailureEvent}.
+ * <br><br>
+ * All three are disabled by default, so a recording with the stock <code>default</code> or
+ * <code>profile</code> settings does not include them. Enable them by name
+ * (<code>edu.jhu.hlt.annotatednyt.*</code>) in a <code>.jfc</code> settings file, or
+ * programmatically with <code>Recording.enable(DocumentParseEvent.class)</code>.
+ * <br><br>
+ * The hooks hand an opaque event object from <code>begin*</code> to <code>end*</code>; it is
+ * <code>null</code> when the event is disabled, in which case the <code>end*</code> call does
+ * nothing. On a JVM without <code>jdk.jfr</code> (Java 8 before 8u262), {@link #AVAILABLE}
+ * is false and the event classes are never loaded.
+ */
+public final class FlightEvents {
+
+  /** Prefix of the event names. */
+  public static final String PREFIX = "edu.jhu.hlt.annotatednyt.";
+
+  /** Top-level category of the events. */
+  public static final String CATEGORY = "Annotated NYT";
+
+  /** True iff this JVM has the <code>jdk.jfr</code> API. */
+  public static final boolean AVAILABLE = isAvailable();
+
+  /** Longest field value recorded by {@link ParseFailureEvent}. */
+  private static final int MAX_VALUE_LENGTH = 256;
+
+  private FlightEvents() {
+  }
+
+  private static boolean isAvailable() {
+    try {
+      Class.forName("jdk.jfr.Event", false, FlightEvents.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  /**
+   * @return a started {@link DocumentParseEvent}, or <code>null</code> if it is disabled
+   */
+  public static Object beginParse() {
+    if (!AVAILABLE)
+      return null;
+    final DocumentParseEvent event = new DocumentParseEvent();
+    if (!event.isEnabled())
+      return null;
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Commit the event from {@link #beginParse()}, if it is over its threshold.
+   *
+   * @param event the result of {@link #beginParse()}
+   * @param bytes the size of the document source
+   * @param doc the parsed document, or <code>null</code> if the parse failed
+   */
+  public static void endParse(final Object event, final int bytes, final NYTCorpusDocument doc) {
+    if (event == null)
+      return;
+    final DocumentParseEvent e = (DocumentParseEvent) event;
+    e.end();
+    if (!e.shouldCommit())
+      return;
+    e.bytes = bytes;
+    if (doc != null) {
+      e.succeeded = true;
+      e.guid = doc.getGuid();
+      for (DocumentField f : DocumentField.values()) {
+        final Object v = f.get(doc);
+        if (v instanceof List) {
+          final int n = ((List<?>) v).size();
+          e.listValues += n;
+          if (n > 0)
+            e.fields++;
+        } else if (v != null) {
+          e.fields++;
+        }
+      }
+    }
+    e.commit();
+  }
+
+  /**
+   * @param archive the archive being opened
+   * @return a started {@link ArchiveScanEvent}, or <code>null</code> if it is disabled
+   */
+  public static Object beginArchive(final Path archive) {
+    if (!AVAILABLE)
+      return null;
+    final ArchiveScanEvent event = new ArchiveScanEvent();
+    if (!event.isEnabled())
+      return null;
+    event.archive = archive.toString();
+    try {
+      event.compressedBytes = Files.size(archive);
+    } catch (IOException e) {
+      event.compressedBytes = -1;
+    }
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Commit the event from {@link #beginArchive(Path)}, if it is over its threshold.
+   *
+   * @param event the result of {@link #beginArchive(Path)}
+   * @param entries the number of entries read
+   * @param uncompressedBytes the total size of the entries read
+   * @param completed false if the archive was abandoned on an exception
+   */
+  public static void endArchive(final Object event, final int entries, final long uncompressedBytes,
+      final boolean completed) {
+    if (event == null)
+      return;
+    final ArchiveScanEvent e = (ArchiveScanEvent) event;
+    e.end();
+    if (!e.shouldCommit())
+      return;
+    e.entries = entries;
+    e.uncompressedBytes = uncompressedBytes;
+    e.completed = completed;
+    e.commit();
+  }
+
+  /**
+   * Commit a {@link ParseFailureEvent}, if it is enabled.
+   *
+   * @param field the NITF attribute or element being parsed, or <code>"document"</code>
+   * @param value the value that failed to parse, or <code>null</code>
+   * @param cause the error
+   */
+  public static void parseFailure(final String field, final String value, final Throwable cause) {
+    if (!AVAILABLE)
+      return;
+    final ParseFailureEvent e = new ParseFailureEvent();
+    if (!e.shouldCommit())
+      return;
+    e.field = field;
+    e.value = value == null || value.length() <= MAX_VALUE_LENGTH ? value
+        : value.substring(0, MAX_VALUE_LENGTH);
+    e.exception = cause.getClass();
+    e.message = cause.getMessage();
+    e.commit();
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.perf;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for an error in {@link com.nytlabs.corpus.NYTCorpusDocumentParser}: a document
+ * that is not well-formed, or a field value that does not parse. The parser reports these on
+ * standard out and carries on; this event makes them visible in a recording, nested in the
+ * {@link DocumentParseEvent} on the same thread. Disabled by default; see {@link FlightEvents}.
+ */
+@Name(FlightEvents.PREFIX + "ParseFailure")
+@Label("Parse Failure")
+@Category({ FlightEvents.CATEGORY, "Parser" })
+@Description("A document or field value that could not be parsed")
+@Enabled(false)
+public class ParseFailureEvent extends Event {
+
+  @Label("Field")
+  @Description("The NITF attribute or element being parsed, or \"document\"")
+  String field;
+
+  @Label("Value")
+  String value;
+
+  @Label("Exception")
+  Class<?> exception;
+
+  @Label("Message")
+  String message;
+}
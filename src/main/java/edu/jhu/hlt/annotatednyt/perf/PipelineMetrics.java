@@ -0,0 +1,427 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.perf;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide latency histograms and counters for the stages of corpus processing (see
+ * {@link PipelineStage}), recorded by hooks in the corpus reader, the parser, and the wrapper.
+ * <br><br>
+ * Recording is off by default, and is turned on with {@link #setEnabled(boolean)}, over JMX, or
+ * by starting the JVM with <code>-Dannotatednyt.metrics=true</code>. While off, each hook costs
+ * one volatile read. While on, latencies are recorded in nanoseconds into HdrHistogram
+ * {@link Recorder}s, which are wait-free for recording threads, with three significant digits
+ * over any range.
+ * <br><br>
+ * Metrics are read in two ways: {@link #snapshot()} returns the histograms of the interval since
+ * the previous snapshot along with the totals, and {@link #schedule} takes snapshots
+ * periodically; and {@link #registerMBeans()} exposes the totals, with percentiles, as JMX
+ * MXBeans under <code>edu.jhu.hlt.annotatednyt:type=PipelineMetrics</code>.
+ */
+public final class PipelineMetrics {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PipelineMetrics.class);
+
+  /**
+   * The system property that enables recording at startup.
+   */
+  public static final String ENABLED_PROPERTY = "annotatednyt.metrics";
+
+  /**
+   * The JMX domain of the MXBeans.
+   */
+  public static final String JMX_DOMAIN = "edu.jhu.hlt.annotatednyt";
+
+  /** Returned by {@link #start()} while disabled; never a recorded start time. */
+  private static final long DISABLED = Long.MIN_VALUE;
+
+  private static final int SIGNIFICANT_DIGITS = 3;
+
+  private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+  private static final StageMetrics[] STAGES = new StageMetrics[PipelineStage.values().length];
+  static {
+    for (PipelineStage s : PipelineStage.values())
+      STAGES[s.ordinal()] = new StageMetrics(s);
+  }
+
+  private static final LongAdder DOCUMENTS = new LongAdder();
+  private static final LongAdder INFLATED_BYTES = new LongAdder();
+  private static long lastSnapshotNanos = System.nanoTime();
+
+  private PipelineMetrics() {
+  }
+
+  /**
+   * @return whether recording is on
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @param on whether to record; metrics recorded so far are kept
+   */
+  public static void setEnabled(final boolean on) {
+    enabled = on;
+  }
+
+  /**
+   * Begin timing a stage. Pass the result to {@link #record(PipelineStage, long)} when the stage
+   * ends.
+   *
+   * @return the start time, or a sentinel that {@link #record(PipelineStage, long)} ignores if
+   * recording is off
+   */
+  public static long start() {
+    return enabled ? System.nanoTime() : DISABLED;
+  }
+
+  /**
+   * @param stage the stage that ended
+   * @param start the result of {@link #start()} when the stage began
+   */
+  public static void record(final PipelineStage stage, final long start) {
+    if (start != DISABLED)
+      STAGES[stage.ordinal()].recorder.recordValue(Math.max(0, System.nanoTime() - start));
+  }
+
+  /**
+   * Record the inflation of one archive entry: its latency, and one document of
+   * <code>bytes</code> bytes.
+   *
+   * @param start the result of {@link #start()} before the entry was read
+   * @param bytes the size of the entry
+   */
+  public static void recordEntry(final long start, final int bytes) {
+    if (start != DISABLED) {
+      STAGES[PipelineStage.INFLATE.ordinal()].recorder.recordValue(Math.max(0, System.nanoTime() - start));
+      DOCUMENTS.increment();
+      INFLATED_BYTES.add(bytes);
+    }
+  }
+
+  /**
+   * @return the histograms and counters of the interval since the previous snapshot (or since
+   * the first use), and the totals since the last {@link #reset()}
+   */
+  public static synchronized Snapshot snapshot() {
+    final long now = System.nanoTime();
+    final Map<PipelineStage, Histogram> interval = new EnumMap<>(PipelineStage.class);
+    final Map<PipelineStage, Histogram> total = new EnumMap<>(PipelineStage.class);
+    for (StageMetrics s : STAGES) {
+      synchronized (s) {
+        s.drain();
+        interval.put(s.stage, s.sinceSnapshot.copy());
+        total.put(s.stage, s.total.copy());
+        s.sinceSnapshot.reset();
+      }
+    }
+    final Snapshot snap = new Snapshot(now - lastSnapshotNanos, interval, total, DOCUMENTS.sum(),
+        INFLATED_BYTES.sum());
+    lastSnapshotNanos = now;
+    return snap;
+  }
+
+  /**
+   * Take a snapshot every <code>period</code> on a daemon thread, and pass it to
+   * <code>listener</code>. Snapshots taken by other callers shorten the intervals seen here.
+   *
+   * @param period the time between snapshots
+   * @param unit the unit of <code>period</code>
+   * @param listener receives each {@link Snapshot}; exceptions are logged, and do not stop
+   * the schedule
+   * @return a handle that stops the schedule when closed
+   */
+  public static Closeable schedule(final long period, final TimeUnit unit, final Consumer<Snapshot> listener) {
+    final ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor(r -> {
+      final Thread t = new Thread(r, "pipeline-metrics");
+      t.setDaemon(true);
+      return t;
+    });
+    exec.scheduleAtFixedRate(() -> {
+      try {
+        listener.accept(snapshot());
+      } catch (RuntimeException e) {
+        LOGGER.warn("Metrics listener failed.", e);
+      }
+    }, period, period, unit);
+    return exec::shutdownNow;
+  }
+
+  /**
+   * Clear all histograms and counters.
+   */
+  public static synchronized void reset() {
+    for (StageMetrics s : STAGES) {
+      synchronized (s) {
+        s.drain();
+        s.total.reset();
+        s.sinceSnapshot.reset();
+      }
+    }
+    DOCUMENTS.reset();
+    INFLATED_BYTES.reset();
+    lastSnapshotNanos = System.nanoTime();
+  }
+
+  /**
+   * Register the MXBeans with the platform MBean server: one
+   * <code>type=PipelineMetrics</code> bean for the switch and counters, and one
+   * <code>type=PipelineMetrics,stage=...</code> bean per {@link PipelineStage}. Registering
+   * again does nothing.
+   *
+   * @throws JMException if a bean cannot be registered
+   */
+  public static synchronized void registerMBeans() throws JMException {
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    final ObjectName name = new ObjectName(JMX_DOMAIN + ":type=PipelineMetrics");
+    if (!server.isRegistered(name))
+      server.registerMBean(new Control(), name);
+    for (StageMetrics s : STAGES) {
+      final ObjectName stageName = new ObjectName(JMX_DOMAIN + ":type=PipelineMetrics,stage=" + s.stage.getKey());
+      if (!server.isRegistered(stageName))
+        server.registerMBean(s, stageName);
+    }
+  }
+
+  /**
+   * Unregister the MXBeans registered by {@link #registerMBeans()}, if any.
+   *
+   * @throws JMException if a bean cannot be unregistered
+   */
+  public static synchronized void unregisterMBeans() throws JMException {
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    for (ObjectName n : server.queryNames(new ObjectName(JMX_DOMAIN + ":type=PipelineMetrics,*"), null))
+      server.unregisterMBean(n);
+  }
+
+  /**
+   * The JMX view of the switch and counters.
+   */
+  public interface PipelineMetricsMXBean {
+    /** @return whether recording is on */
+    boolean isEnabled();
+
+    /** @param on whether to record */
+    void setEnabled(boolean on);
+
+    /** @return the number of archive entries read while recording */
+    long getDocuments();
+
+    /** @return the total size of the archive entries read while recording */
+    long getInflatedBytes();
+
+    /** Clear all histograms and counters. */
+    void reset();
+  }
+
+  /**
+   * The JMX view of the total latencies of one stage, in nanoseconds.
+   */
+  public interface StageMetricsMXBean {
+    /** @return the number of recorded latencies */
+    long getCount();
+
+    /** @return the mean latency */
+    double getMeanNanos();
+
+    /** @return the median latency */
+    long getP50Nanos();
+
+    /** @return the 90th percentile latency */
+    long getP90Nanos();
+
+    /** @return the 99th percentile latency */
+    long getP99Nanos();
+
+    /** @return the 99.9th percentile latency */
+    long getP999Nanos();
+
+    /** @return the largest latency */
+    long getMaxNanos();
+  }
+
+  private static final class Control implements PipelineMetricsMXBean {
+    @Override
+    public boolean isEnabled() {
+      return PipelineMetrics.isEnabled();
+    }
+
+    @Override
+    public void setEnabled(final boolean on) {
+      PipelineMetrics.setEnabled(on);
+    }
+
+    @Override
+    public long getDocuments() {
+      return DOCUMENTS.sum();
+    }
+
+    @Override
+    public long getInflatedBytes() {
+      return INFLATED_BYTES.sum();
+    }
+
+    @Override
+    public void reset() {
+      PipelineMetrics.reset();
+    }
+  }
+
+  /**
+   * Recording threads write to the {@link Recorder} only; readers move its contents into the
+   * total and since-snapshot histograms under the lock.
+   */
+  private static final class StageMetrics implements StageMetricsMXBean {
+    private final PipelineStage stage;
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+    private final Histogram sinceSnapshot = new Histogram(SIGNIFICANT_DIGITS);
+    private Histogram recycled;
+
+    private StageMetrics(final PipelineStage stage) {
+      this.stage = stage;
+    }
+
+    // callers hold the lock
+    private void drain() {
+      this.recycled = this.recorder.getIntervalHistogram(this.recycled);
+      this.total.add(this.recycled);
+      this.sinceSnapshot.add(this.recycled);
+    }
+
+    // callers hold the lock
+    private Histogram drained() {
+      this.drain();
+      return this.total;
+    }
+
+    @Override
+    public synchronized long getCount() {
+      return this.drained().getTotalCount();
+    }
+
+    @Override
+    public synchronized double getMeanNanos() {
+      return this.drained().getMean();
+    }
+
+    @Override
+    public synchronized long getP50Nanos() {
+      return this.drained().getValueAtPercentile(50);
+    }
+
+    @Override
+    public synchronized long getP90Nanos() {
+      return this.drained().getValueAtPercentile(90);
+    }
+
+    @Override
+    public synchronized long getP99Nanos() {
+      return this.drained().getValueAtPercentile(99);
+    }
+
+    @Override
+    public synchronized long getP999Nanos() {
+      return this.drained().getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public synchronized long getMaxNanos() {
+      return this.drained().getMaxValue();
+    }
+  }
+
+  /**
+   * The metrics of one interval, and the totals at its end. Histograms are copies, and values
+   * are in nanoseconds.
+   */
+  public static final class Snapshot {
+    private final long intervalNanos;
+    private final Map<PipelineStage, Histogram> interval;
+    private final Map<PipelineStage, Histogram> total;
+    private final long documents;
+    private final long inflatedBytes;
+
+    private Snapshot(final long intervalNanos, final Map<PipelineStage, Histogram> interval,
+        final Map<PipelineStage, Histogram> total, final long documents, final long inflatedBytes) {
+      this.intervalNanos = intervalNanos;
+      this.interval = interval;
+      this.total = total;
+      this.documents = documents;
+      this.inflatedBytes = inflatedBytes;
+    }
+
+    /** @return the length of the interval */
+    public long getIntervalNanos() {
+      return this.intervalNanos;
+    }
+
+    /**
+     * @param stage a {@link PipelineStage}
+     * @return the latencies of <code>stage</code> recorded in the interval
+     */
+    public Histogram getInterval(final PipelineStage stage) {
+      return this.interval.get(stage);
+    }
+
+    /**
+     * @param stage a {@link PipelineStage}
+     * @return the latencies of <code>stage</code> recorded since the last reset
+     */
+    public Histogram getTotal(final PipelineStage stage) {
+      return this.total.get(stage);
+    }
+
+    /** @return the number of archive entries read since the last reset */
+    public long getDocuments() {
+      return this.documents;
+    }
+
+    /** @return the total size of the archive entries read since the last reset */
+    public long getInflatedBytes() {
+      return this.inflatedBytes;
+    }
+
+    /**
+     * @return one line per stage of the interval's count, rate, mean, percentiles, and maximum,
+     * in microseconds
+     */
+    @Override
+    public String toString() {
+      final StringBuilder sb = new StringBuilder(String.format(Locale.US,
+          "%-8s %10s %10s %10s %10s %10s %10s %10s%n", "stage", "count", "per s", "mean us", "p50 us",
+          "p99 us", "p99.9 us", "max us"));
+      for (PipelineStage s : PipelineStage.values()) {
+        final Histogram h = this.interval.get(s);
+        sb.append(String.format(Locale.US, "%-8s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+            s.getKey(), h.getTotalCount(), h.getTotalCount() * 1e9 / Math.max(1, this.intervalNanos),
+            h.getMean() / 1e3, h.getValueAtPercentile(50) / 1e3, h.getValueAtPercentile(99) / 1e3,
+            h.getValueAtPercentile(99.9) / 1e3, h.getMaxValue() / 1e3));
+      }
+      return sb.toString();
+    }
+  }
+}
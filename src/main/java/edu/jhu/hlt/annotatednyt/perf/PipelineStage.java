@@ -0,0 +1,33 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.perf;
+
+import java.util.Locale;
+
+/**
+ * The stages of corpus processing timed by {@link PipelineMetrics}.
+ */
+public enum PipelineStage {
+  /** Inflating and untarring one archive entry, in {@link edu.jhu.hlt.annotatednyt.CorpusReader}. */
+  INFLATE,
+  /** Building the DOM of one document, in {@link com.nytlabs.corpus.NYTCorpusDocumentParser}. */
+  DOM,
+  /** Extracting the fields of one document from its DOM (the <code>handle*Node</code> methods). */
+  EXTRACT,
+  /**
+   * Wrapping one document in an {@link edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument}, by a
+   * {@link edu.jhu.hlt.annotatednyt.CorpusReader.DocumentHandler#wrapping} handler.
+   */
+  WRAP,
+  /** Passing one document to the caller's {@link edu.jhu.hlt.annotatednyt.CorpusReader.DocumentHandler}. */
+  SINK;
+
+  /**
+   * @return the lower-case name, as used in JMX object names
+   */
+  public String getKey() {
+    return this.name().toLowerCase(Locale.US);
+  }
+}
@@ -0,0 +1,490 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.perf;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+import com.nytlabs.corpus.NYTCorpusDocumentParser;
+
+import edu.jhu.hlt.acute.iterators.tar.TarGzArchiveEntryByteIterator;
+import edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument;
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+
+/**
+ * Measures the end-to-end throughput of the corpus pipeline: read each archive from disk,
+ * inflate and untar it, parse each document, and wrap it in an {@link AnnotatedNYTDocument}.
+ * Archives are spread over threads with {@link CorpusReader#processArchives}, as in the
+ * library's own corpus passes.
+ * <br><br>
+ * Each run reports documents and compressed and uncompressed megabytes per second, the CPU time
+ * of each stage summed over worker threads, the process CPU time, the GC count and time, and
+ * the peak heap. Stage CPU times come from {@link ThreadMXBean#getCurrentThreadCpuTime()}, or
+ * from wall-clock time where the JVM does not support it. The peak heap is the sum of the peaks
+ * of the heap memory pools, reset at the start of each run, and so an upper bound. Reading is
+ * separated from inflating by loading each archive fully into memory first, so runs hold up to
+ * <code>2 * threads</code> compressed archives at once.
+ * <br><br>
+ * Run from the command line, results print as a table, with the speedup over the fewest
+ * threads of each mode, and optionally as JSON.
+ */
+public class ThroughputBenchmark {
+
+  /**
+   * How much of each document to parse.
+   */
+  public enum ParseMode {
+    /** Read and inflate only. */
+    NONE,
+    /** Parse only the <code>head</code> element, with {@link NYTCorpusDocumentParser#parseHead}. */
+    HEAD,
+    /** Parse the whole document, with {@link NYTCorpusDocumentParser#fromByteArray}. */
+    FULL
+  }
+
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+  private static final boolean THREAD_CPU = THREADS.isCurrentThreadCpuTimeSupported();
+  static {
+    if (THREAD_CPU && !THREADS.isThreadCpuTimeEnabled())
+      THREADS.setThreadCpuTimeEnabled(true);
+  }
+
+  private final CorpusReader reader;
+
+  /**
+   * @param reader the {@link CorpusReader} over the corpus to measure
+   */
+  public ThroughputBenchmark(final CorpusReader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * Process the whole corpus once.
+   *
+   * @param threads the number of archives to process concurrently
+   * @param mode the {@link ParseMode}
+   * @param wrap whether to wrap parsed documents and read their text and lists; ignored when
+   * <code>mode</code> is {@link ParseMode#NONE}
+   * @return the {@link Result}
+   * @throws IOException on errors reading the corpus
+   */
+  public Result run(final int threads, final ParseMode mode, final boolean wrap) throws IOException {
+    final Result r = new Result(threads, mode, wrap && mode != ParseMode.NONE);
+    final List<MemoryPoolMXBean> heap = new ArrayList<>();
+    for (MemoryPoolMXBean p : ManagementFactory.getMemoryPoolMXBeans())
+      if (p.getType() == MemoryType.HEAP && p.isValid())
+        heap.add(p);
+    // start each run from a collected heap, so peaks and GC counts are comparable
+    System.gc();
+    for (MemoryPoolMXBean p : heap)
+      p.resetPeakUsage();
+    final long gcCount0 = gcCount();
+    final long gcMillis0 = gcMillis();
+    final long processCpu0 = processCpuNanos();
+    final long start = System.nanoTime();
+
+    this.reader.processArchives(threads, archive -> process(archive, mode, r.wrap), (archive, s) -> r.add(s));
+
+    r.wallNanos = System.nanoTime() - start;
+    final long processCpu1 = processCpuNanos();
+    r.processCpuNanos = processCpu0 < 0 || processCpu1 < 0 ? -1 : processCpu1 - processCpu0;
+    r.gcCount = gcCount() - gcCount0;
+    r.gcNanos = (gcMillis() - gcMillis0) * 1_000_000L;
+    for (MemoryPoolMXBean p : heap)
+      r.peakHeapBytes += p.getPeakUsage().getUsed();
+    return r;
+  }
+
+  private static Stages process(final Path archive, final ParseMode mode, final boolean wrap) throws IOException {
+    final Stages s = new Stages();
+    final NYTCorpusDocumentParser parser = new NYTCorpusDocumentParser();
+    long t0 = cpuNanos();
+    final byte[] compressed = Files.readAllBytes(archive);
+    long t1 = cpuNanos();
+    s.readCpuNanos += t1 - t0;
+    s.compressedBytes += compressed.length;
+    try (TarGzArchiveEntryByteIterator iter = new TarGzArchiveEntryByteIterator(new ByteArrayInputStream(compressed))) {
+      t0 = t1;
+      while (iter.hasNext()) {
+        final byte[] bytes = iter.next();
+        t1 = cpuNanos();
+        s.inflateCpuNanos += t1 - t0;
+        s.documents++;
+        s.uncompressedBytes += bytes.length;
+        final NYTCorpusDocument doc;
+        switch (mode) {
+        case FULL:
+          doc = parser.fromByteArray(bytes, false);
+          break;
+        case HEAD:
+          doc = parser.parseHead(bytes);
+          break;
+        default:
+          doc = null;
+        }
+        final long t2 = cpuNanos();
+        s.parseCpuNanos += t2 - t1;
+        if (wrap && doc != null)
+          s.paragraphs += wrap(doc);
+        t0 = cpuNanos();
+        s.wrapCpuNanos += t0 - t2;
+      }
+    }
+    return s;
+  }
+
+  /** @return the number of body paragraphs, read through the wrapper as a typical consumer would */
+  private static int wrap(final NYTCorpusDocument doc) {
+    final AnnotatedNYTDocument d = new AnnotatedNYTDocument(doc);
+    d.getHeadline();
+    d.getLeadParagraphAsList();
+    d.getOnlineSectionAsList();
+    d.getDescriptors();
+    d.getPeople();
+    d.getOrganizations();
+    d.getLocations();
+    d.getPublicationDate();
+    return d.getBodyAsList().size();
+  }
+
+  private static long cpuNanos() {
+    return THREAD_CPU ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+  }
+
+  private static long processCpuNanos() {
+    final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (os instanceof com.sun.management.OperatingSystemMXBean)
+      return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+    return -1;
+  }
+
+  private static long gcCount() {
+    long n = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+      n += Math.max(0, gc.getCollectionCount());
+    return n;
+  }
+
+  private static long gcMillis() {
+    long n = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+      n += Math.max(0, gc.getCollectionTime());
+    return n;
+  }
+
+  /** Per-archive totals, combined on the calling thread. */
+  private static final class Stages {
+    long documents;
+    long paragraphs;
+    long compressedBytes;
+    long uncompressedBytes;
+    long readCpuNanos;
+    long inflateCpuNanos;
+    long parseCpuNanos;
+    long wrapCpuNanos;
+  }
+
+  /**
+   * The measurements of one run.
+   */
+  public static class Result {
+    private final int threads;
+    private final ParseMode mode;
+    private final boolean wrap;
+    private long documents;
+    private long paragraphs;
+    private long compressedBytes;
+    private long uncompressedBytes;
+    private long readCpuNanos;
+    private long inflateCpuNanos;
+    private long parseCpuNanos;
+    private long wrapCpuNanos;
+    private long wallNanos;
+    private long processCpuNanos;
+    private long gcCount;
+    private long gcNanos;
+    private long peakHeapBytes;
+
+    private Result(final int threads, final ParseMode mode, final boolean wrap) {
+      this.threads = threads;
+      this.mode = mode;
+      this.wrap = wrap;
+    }
+
+    private void add(final Stages s) {
+      this.documents += s.documents;
+      this.paragraphs += s.paragraphs;
+      this.compressedBytes += s.compressedBytes;
+      this.uncompressedBytes += s.uncompressedBytes;
+      this.readCpuNanos += s.readCpuNanos;
+      this.inflateCpuNanos += s.inflateCpuNanos;
+      this.parseCpuNanos += s.parseCpuNanos;
+      this.wrapCpuNanos += s.wrapCpuNanos;
+    }
+
+    /** @return the number of worker threads */
+    public int getThreads() {
+      return this.threads;
+    }
+
+    /** @return the {@link ParseMode} */
+    public ParseMode getMode() {
+      return this.mode;
+    }
+
+    /** @return whether documents were wrapped */
+    public boolean isWrap() {
+      return this.wrap;
+    }
+
+    /** @return the number of documents processed */
+    public long getDocuments() {
+      return this.documents;
+    }
+
+    /** @return the number of body paragraphs read through the wrapper */
+    public long getParagraphs() {
+      return this.paragraphs;
+    }
+
+    /** @return the total size of the archives */
+    public long getCompressedBytes() {
+      return this.compressedBytes;
+    }
+
+    /** @return the total size of the documents */
+    public long getUncompressedBytes() {
+      return this.uncompressedBytes;
+    }
+
+    /** @return the CPU time spent reading archives, over all threads */
+    public long getReadCpuNanos() {
+      return this.readCpuNanos;
+    }
+
+    /** @return the CPU time spent inflating and untarring, over all threads */
+    public long getInflateCpuNanos() {
+      return this.inflateCpuNanos;
+    }
+
+    /** @return the CPU time spent parsing, over all threads */
+    public long getParseCpuNanos() {
+      return this.parseCpuNanos;
+    }
+
+    /** @return the CPU time spent wrapping, over all threads */
+    public long getWrapCpuNanos() {
+      return this.wrapCpuNanos;
+    }
+
+    /** @return the elapsed time of the run */
+    public long getWallNanos() {
+      return this.wallNanos;
+    }
+
+    /** @return the CPU time of the whole process, including GC and compilation, or -1 if unknown */
+    public long getProcessCpuNanos() {
+      return this.processCpuNanos;
+    }
+
+    /** @return the number of garbage collections */
+    public long getGcCount() {
+      return this.gcCount;
+    }
+
+    /** @return the time spent in garbage collection, as reported by the collectors */
+    public long getGcNanos() {
+      return this.gcNanos;
+    }
+
+    /** @return the peak heap use, as the sum of the peaks of the heap pools */
+    public long getPeakHeapBytes() {
+      return this.peakHeapBytes;
+    }
+
+    /** @return documents per second */
+    public double getDocumentsPerSecond() {
+      return this.documents * 1e9 / this.wallNanos;
+    }
+
+    /** @return megabytes (10^6 bytes) of archive per second */
+    public double getCompressedMBPerSecond() {
+      return this.compressedBytes * 1e3 / this.wallNanos;
+    }
+
+    /** @return megabytes (10^6 bytes) of documents per second */
+    public double getUncompressedMBPerSecond() {
+      return this.uncompressedBytes * 1e3 / this.wallNanos;
+    }
+
+    /**
+     * Write this result as a JSON object.
+     *
+     * @param out the {@link Appendable} to write to
+     * @throws IOException on errors writing to <code>out</code>
+     */
+    public void writeJson(final Appendable out) throws IOException {
+      out.append(String.format(Locale.US,
+          "{\"threads\":%d,\"mode\":\"%s\",\"wrap\":%b,\"documents\":%d,\"paragraphs\":%d,"
+              + "\"compressedBytes\":%d,\"uncompressedBytes\":%d,\"wallNanos\":%d,"
+              + "\"documentsPerSecond\":%.1f,\"compressedMBPerSecond\":%.3f,\"uncompressedMBPerSecond\":%.3f,"
+              + "\"readCpuNanos\":%d,\"inflateCpuNanos\":%d,\"parseCpuNanos\":%d,\"wrapCpuNanos\":%d,"
+              + "\"processCpuNanos\":%d,\"gcCount\":%d,\"gcNanos\":%d,\"peakHeapBytes\":%d}",
+          this.threads, this.mode, this.wrap, this.documents, this.paragraphs,
+          this.compressedBytes, this.uncompressedBytes, this.wallNanos,
+          this.getDocumentsPerSecond(), this.getCompressedMBPerSecond(), this.getUncompressedMBPerSecond(),
+          this.readCpuNanos, this.inflateCpuNanos, this.parseCpuNanos, this.wrapCpuNanos,
+          this.processCpuNanos, this.gcCount, this.gcNanos, this.peakHeapBytes));
+    }
+  }
+
+  /**
+   * Write <code>results</code> as a table, one row per run. The speedup of a run is its
+   * documents per second over that of the run of the same mode and wrapping with the fewest
+   * threads.
+   *
+   * @param results the {@link Result}s to write
+   * @param out the {@link Appendable} to write to
+   * @throws IOException on errors writing to <code>out</code>
+   */
+  public static void writeTable(final List<Result> results, final Appendable out) throws IOException {
+    out.append(String.format(Locale.US, "%-5s %-4s %7s %10s %10s %9s %9s %8s %8s %8s %8s %8s %6s %8s %9s %7s%n",
+        "mode", "wrap", "threads", "docs", "docs/s", "MB/s in", "MB/s out", "read s", "inflt s", "parse s",
+        "wrap s", "cpu s", "gc", "gc s", "heap MB", "speedup"));
+    for (Result r : results) {
+      Result base = r;
+      for (Result o : results)
+        if (o.mode == r.mode && o.wrap == r.wrap && o.threads < base.threads)
+          base = o;
+      out.append(String.format(Locale.US,
+          "%-5s %-4s %7d %10d %10.1f %9.2f %9.2f %8.2f %8.2f %8.2f %8.2f %8s %6d %8.2f %9.1f %6.2fx%n",
+          r.mode.name().toLowerCase(Locale.US), r.wrap ? "yes" : "no", r.threads, r.documents,
+          r.getDocumentsPerSecond(), r.getCompressedMBPerSecond(), r.getUncompressedMBPerSecond(),
+          r.readCpuNanos / 1e9, r.inflateCpuNanos / 1e9, r.parseCpuNanos / 1e9, r.wrapCpuNanos / 1e9,
+          r.processCpuNanos < 0 ? "n/a" : String.format(Locale.US, "%.2f", r.processCpuNanos / 1e9),
+          r.gcCount, r.gcNanos / 1e9, r.peakHeapBytes / 1e6,
+          r.getDocumentsPerSecond() / base.getDocumentsPerSecond()));
+    }
+  }
+
+  /**
+   * Write <code>results</code> as a JSON array of objects.
+   *
+   * @param results the {@link Result}s to write
+   * @param out the {@link Appendable} to write to
+   * @throws IOException on errors writing to <code>out</code>
+   */
+  public static void writeJson(final List<Result> results, final Appendable out) throws IOException {
+    out.append('[');
+    for (int i = 0; i < results.size(); i++) {
+      if (i > 0)
+        out.append(',');
+      out.append('\n');
+      results.get(i).writeJson(out);
+    }
+    out.append("\n]\n");
+  }
+
+  private static final String USAGE =
+      "Usage: ThroughputBenchmark DATA_PATH [--threads 1,2,4] [--modes full,head,none] [--no-wrap]\n"
+    + "                           [--warmup RUNS] [--json FILE]";
+
+  /**
+   * Run every combination of the given thread counts and parse modes, in that order, and print
+   * a table to standard output.
+   * <br><br>
+   * Usage: <code>ThroughputBenchmark DATA_PATH [--threads 1,2,4] [--modes full,head,none]
+   * [--no-wrap] [--warmup RUNS] [--json FILE]</code>. Thread counts default to 1 and the number
+   * of processors, modes to <code>full</code>, and warmup runs, made with the first mode and the
+   * most threads, to 1.
+   *
+   * @param args the command line arguments
+   * @throws IOException on errors reading the corpus or writing the JSON file
+   */
+  public static void main(final String[] args) throws IOException {
+    Path dataPath = null;
+    int[] threads = { 1, Runtime.getRuntime().availableProcessors() };
+    List<ParseMode> modes = new ArrayList<>();
+    boolean wrap = true;
+    int warmup = 1;
+    Path json = null;
+    try {
+      for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+        case "--threads":
+          final String[] ts = args[++i].split(",");
+          threads = new int[ts.length];
+          for (int t = 0; t < ts.length; t++)
+            threads[t] = Integer.parseInt(ts[t].trim());
+          break;
+        case "--modes":
+          for (String m : args[++i].split(","))
+            modes.add(ParseMode.valueOf(m.trim().toUpperCase(Locale.US)));
+          break;
+        case "--no-wrap":
+          wrap = false;
+          break;
+        case "--warmup":
+          warmup = Integer.parseInt(args[++i]);
+          break;
+        case "--json":
+          json = Paths.get(args[++i]);
+          break;
+        default:
+          if (args[i].startsWith("--") || dataPath != null)
+            throw new IllegalArgumentException("Unknown argument: " + args[i]);
+          dataPath = Paths.get(args[i]);
+        }
+      }
+      if (dataPath == null)
+        throw new IllegalArgumentException("No DATA_PATH given.");
+    } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+      System.err.println(e.getMessage() == null ? "Missing argument value." : e.getMessage());
+      System.err.println(USAGE);
+      System.exit(1);
+      return;
+    }
+    if (modes.isEmpty())
+      modes.add(ParseMode.FULL);
+    if (threads.length == 2 && threads[0] == threads[1])
+      threads = new int[] { 1 };
+
+    final ThroughputBenchmark bench = new ThroughputBenchmark(new CorpusReader(dataPath));
+    int maxThreads = 1;
+    for (int t : threads)
+      maxThreads = Math.max(maxThreads, t);
+    for (int i = 0; i < warmup; i++)
+      bench.run(maxThreads, modes.get(0), wrap);
+    final List<Result> results = new ArrayList<>();
+    for (ParseMode mode : modes) {
+      for (int t : threads) {
+        final Result r = bench.run(t, mode, wrap);
+        results.add(r);
+        System.err.println(String.format(Locale.US, "%s, %d threads: %.1f docs/s", mode, t, r.getDocumentsPerSecond()));
+      }
+    }
+    writeTable(results, System.out);
+    if (json != null) {
+      try (Writer w = Files.newBufferedWriter(json, StandardCharsets.UTF_8)) {
+        writeJson(results, w);
+      }
+    }
+  }
+}
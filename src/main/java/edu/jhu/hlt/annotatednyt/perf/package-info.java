@@ -0,0 +1,10 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+
+/**
+ * Measurement of corpus-processing throughput and resource use, for sizing hardware and
+ * checking parallel scaling, and the JDK Flight Recorder events of the parser and reader.
+ */
+package edu.jhu.hlt.annotatednyt.perf;
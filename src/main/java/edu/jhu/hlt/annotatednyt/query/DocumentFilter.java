@@ -0,0 +1,289 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.query;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+import com.nytlabs.corpus.NYTCorpusDocumentParser;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.DocumentField;
+
+/**
+ * A predicate over documents, written in a small query language:
+ * <pre>
+ * section = "Sports" AND year BETWEEN 1990 AND 1995 AND descriptors CONTAINS "Baseball"
+ * </pre>
+ * Fields are named by property name (case-insensitive, e.g. <code>newsDesk</code>), or by the
+ * aliases <code>year</code>, <code>month</code>, and <code>day</code> for the publication date
+ * fields. The predicates are:
+ * <ul>
+ * <li><code>field = value</code>; on list fields, it matches if any element equals the
+ * value. <code>field != value</code> is <code>NOT field = value</code>.</li>
+ * <li><code>&lt;</code>, <code>&lt;=</code>, <code>&gt;</code>, <code>&gt;=</code>, and
+ * <code>field BETWEEN low AND high</code> (inclusive), on integer fields</li>
+ * <li><code>field CONTAINS "text"</code>: an element of a list field, or a substring of a string
+ * field</li>
+ * <li><code>field IN (value, ...)</code></li>
+ * <li><code>field IS NULL</code> and <code>field IS NOT NULL</code>; empty lists are null</li>
+ * </ul>
+ * combined with <code>AND</code>, <code>OR</code>, <code>NOT</code>, and parentheses. Strings
+ * are double-quoted, with <code>\"</code> and <code>\\</code> escapes; keywords are
+ * case-insensitive. A predicate on a missing value is false.
+ * <br><br>
+ * {@link #filter(NYTCorpusDocumentParser, byte[])} evaluates the filter while parsing: it first
+ * parses only the NITF <code>head</code>, which holds every field but the headline, byline,
+ * and text (see {@link #BODY_FIELDS}), and evaluates the filter with three-valued logic, body
+ * fields being unknown. A document that cannot match is dropped without its body ever being
+ * parsed, so a selective filter over metadata costs about as much as reading the heads.
+ * <br><br>
+ * Filters are immutable and may be shared between threads.
+ */
+public abstract class DocumentFilter {
+
+  /**
+   * The fields read from the NITF <code>body</code> element; all others, except
+   * {@link DocumentField#SOURCE_FILE}, come from the <code>head</code>.
+   */
+  public static final Set<DocumentField> BODY_FIELDS = Collections.unmodifiableSet(EnumSet.of(
+      DocumentField.ARTICLE_ABSTRACT, DocumentField.AUTHOR_BIOGRAPHY, DocumentField.BODY,
+      DocumentField.BYLINE, DocumentField.CORRECTION_TEXT, DocumentField.DATELINE,
+      DocumentField.HEADLINE, DocumentField.LEAD_PARAGRAPH, DocumentField.NORMALIZED_BYLINE,
+      DocumentField.ONLINE_HEADLINE, DocumentField.ONLINE_LEAD_PARAGRAPH));
+
+  /**
+   * A three-valued truth value; {@link #UNKNOWN} while a referenced field is not parsed yet.
+   */
+  enum Truth {
+    TRUE, FALSE, UNKNOWN;
+
+    static Truth of(final boolean b) {
+      return b ? TRUE : FALSE;
+    }
+  }
+
+  DocumentFilter() {
+  }
+
+  /**
+   * @param doc a document
+   * @param complete <code>false</code> if only the head of <code>doc</code> has been parsed
+   * @return whether <code>doc</code> matches
+   */
+  abstract Truth evaluate(NYTCorpusDocument doc, boolean complete);
+
+  abstract void collectFields(Set<DocumentField> out);
+
+  /**
+   * @param query a query in the language above
+   * @return the filter
+   * @throws IllegalArgumentException if <code>query</code> is malformed, or names an unknown
+   * field or applies an operator to a field of the wrong kind
+   */
+  public static DocumentFilter parse(final String query) {
+    return new FilterParser(query).parse();
+  }
+
+  /**
+   * @return the fields referenced by this filter
+   */
+  public Set<DocumentField> getFields() {
+    final Set<DocumentField> out = EnumSet.noneOf(DocumentField.class);
+    this.collectFields(out);
+    return out;
+  }
+
+  /**
+   * @param doc a fully parsed document
+   * @return <code>true</code> if <code>doc</code> matches
+   */
+  public boolean matches(final NYTCorpusDocument doc) {
+    return this.evaluate(doc, true) == Truth.TRUE;
+  }
+
+  /**
+   * Parse <code>nitf</code> if it matches this filter. The head is parsed first; if the filter
+   * is already false, parsing stops there.
+   *
+   * @param parser the {@link NYTCorpusDocumentParser} to parse with
+   * @param nitf the NITF document
+   * @return the parsed document, or <code>null</code> if it does not match
+   */
+  public NYTCorpusDocument filter(final NYTCorpusDocumentParser parser, final byte[] nitf) {
+    final NYTCorpusDocument head = parser.parseHead(nitf);
+    final Truth t = head == null ? Truth.UNKNOWN : this.evaluate(head, false);
+    if (t == Truth.FALSE)
+      return null;
+    final NYTCorpusDocument doc = parser.fromByteArray(nitf, false);
+    return doc != null && (t == Truth.TRUE || this.matches(doc)) ? doc : null;
+  }
+
+  /**
+   * Pass the matching documents of <code>archive</code> to <code>handler</code>, in archive
+   * order. Safe to call from several threads with different archives.
+   *
+   * @param reader the {@link CorpusReader} to read from
+   * @param archive an archive of the corpus
+   * @param handler the {@link CorpusReader.DocumentHandler} to pass matching documents to
+   * @throws IOException on errors reading <code>archive</code>, or from <code>handler</code>
+   */
+  public void read(final CorpusReader reader, final Path archive, final CorpusReader.DocumentHandler handler)
+      throws IOException {
+    final NYTCorpusDocumentParser parser = new NYTCorpusDocumentParser();
+    reader.readEntries(archive, bytes -> {
+      final NYTCorpusDocument doc = this.filter(parser, bytes);
+      if (doc != null)
+        handler.handle(doc);
+    });
+  }
+
+  static final class And extends DocumentFilter {
+    private final DocumentFilter[] clauses;
+
+    And(final List<DocumentFilter> clauses) {
+      this.clauses = clauses.toArray(new DocumentFilter[clauses.size()]);
+    }
+
+    @Override
+    Truth evaluate(final NYTCorpusDocument doc, final boolean complete) {
+      Truth t = Truth.TRUE;
+      for (DocumentFilter c : this.clauses) {
+        final Truth ct = c.evaluate(doc, complete);
+        if (ct == Truth.FALSE)
+          return Truth.FALSE;
+        if (ct == Truth.UNKNOWN)
+          t = Truth.UNKNOWN;
+      }
+      return t;
+    }
+
+    @Override
+    void collectFields(final Set<DocumentField> out) {
+      for (DocumentFilter c : this.clauses)
+        c.collectFields(out);
+    }
+
+    @Override
+    public String toString() {
+      return Arrays.stream(this.clauses).map(Object::toString).collect(Collectors.joining(" AND ", "(", ")"));
+    }
+  }
+
+  static final class Or extends DocumentFilter {
+    private final DocumentFilter[] clauses;
+
+    Or(final List<DocumentFilter> clauses) {
+      this.clauses = clauses.toArray(new DocumentFilter[clauses.size()]);
+    }
+
+    @Override
+    Truth evaluate(final NYTCorpusDocument doc, final boolean complete) {
+      Truth t = Truth.FALSE;
+      for (DocumentFilter c : this.clauses) {
+        final Truth ct = c.evaluate(doc, complete);
+        if (ct == Truth.TRUE)
+          return Truth.TRUE;
+        if (ct == Truth.UNKNOWN)
+          t = Truth.UNKNOWN;
+      }
+      return t;
+    }
+
+    @Override
+    void collectFields(final Set<DocumentField> out) {
+      for (DocumentFilter c : this.clauses)
+        c.collectFields(out);
+    }
+
+    @Override
+    public String toString() {
+      return Arrays.stream(this.clauses).map(Object::toString).collect(Collectors.joining(" OR ", "(", ")"));
+    }
+  }
+
+  static final class Not extends DocumentFilter {
+    private final DocumentFilter clause;
+
+    Not(final DocumentFilter clause) {
+      this.clause = clause;
+    }
+
+    @Override
+    Truth evaluate(final NYTCorpusDocument doc, final boolean complete) {
+      switch (this.clause.evaluate(doc, complete)) {
+      case TRUE:
+        return Truth.FALSE;
+      case FALSE:
+        return Truth.TRUE;
+      default:
+        return Truth.UNKNOWN;
+      }
+    }
+
+    @Override
+    void collectFields(final Set<DocumentField> out) {
+      this.clause.collectFields(out);
+    }
+
+    @Override
+    public String toString() {
+      return "NOT " + this.clause;
+    }
+  }
+
+  /**
+   * A predicate on the value of one field.
+   */
+  abstract static class Leaf extends DocumentFilter {
+    final DocumentField field;
+    private final boolean inBody;
+
+    Leaf(final DocumentField field) {
+      this.field = field;
+      this.inBody = BODY_FIELDS.contains(field);
+    }
+
+    @Override
+    final Truth evaluate(final NYTCorpusDocument doc, final boolean complete) {
+      if (!complete && this.inBody)
+        return Truth.UNKNOWN;
+      final Object v = this.field.get(doc);
+      if (v == null || v instanceof List && ((List<?>) v).isEmpty())
+        return Truth.of(this.testNull());
+      if (v instanceof List) {
+        for (Object o : (List<?>) v)
+          if (this.test(o))
+            return Truth.TRUE;
+        return Truth.FALSE;
+      }
+      return Truth.of(this.test(v));
+    }
+
+    /**
+     * @param value a non-null value, or one element of a list
+     */
+    abstract boolean test(Object value);
+
+    /**
+     * @return the result for a missing value
+     */
+    boolean testNull() {
+      return false;
+    }
+
+    @Override
+    final void collectFields(final Set<DocumentField> out) {
+      out.add(this.field);
+    }
+  }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.query;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import edu.jhu.hlt.annotatednyt.DocumentField;
+
+/**
+ * A recursive-descent parser for the {@link DocumentFilter} query language:
+ * <pre>
+ * or        := and ("OR" and)*
+ * and       := unary ("AND" unary)*
+ * unary     := "NOT" unary | "(" or ")" | predicate
+ * predicate := field ( op literal | "BETWEEN" int "AND" int | "CONTAINS" string
+ *                    | "IN" "(" literal ("," literal)* ")" | "IS" ["NOT"] "NULL" )
+ * op        := "=" | "!=" | "&lt;&gt;" | "&lt;" | "&lt;=" | "&gt;" | "&gt;="
+ * </pre>
+ */
+final class FilterParser {
+
+  private final String text;
+  private int pos;
+
+  FilterParser(final String text) {
+    this.text = text;
+  }
+
+  DocumentFilter parse() {
+    final DocumentFilter f = this.or();
+    this.skipSpace();
+    if (this.pos < this.text.length())
+      throw this.error("Unexpected input");
+    return f;
+  }
+
+  private DocumentFilter or() {
+    final List<DocumentFilter> clauses = new ArrayList<>();
+    clauses.add(this.and());
+    while (this.keyword("OR"))
+      clauses.add(this.and());
+    return clauses.size() == 1 ? clauses.get(0) : new DocumentFilter.Or(clauses);
+  }
+
+  private DocumentFilter and() {
+    final List<DocumentFilter> clauses = new ArrayList<>();
+    clauses.add(this.unary());
+    while (this.keyword("AND"))
+      clauses.add(this.unary());
+    return clauses.size() == 1 ? clauses.get(0) : new DocumentFilter.And(clauses);
+  }
+
+  private DocumentFilter unary() {
+    if (this.keyword("NOT"))
+      return new DocumentFilter.Not(this.unary());
+    if (this.symbol("(")) {
+      final DocumentFilter f = this.or();
+      this.expect(")");
+      return f;
+    }
+    return this.predicate();
+  }
+
+  private DocumentFilter predicate() {
+    final int start = this.skipSpace();
+    final DocumentField field = field(this.word());
+    if (field == null) {
+      this.pos = start;
+      throw this.error("Unknown field");
+    }
+    final DocumentField.Kind kind = field.getKind();
+    if (this.keyword("BETWEEN")) {
+      requireInteger(field);
+      final long lo = this.integer();
+      if (!this.keyword("AND"))
+        throw this.error("Expected AND");
+      return new Range(field, lo, this.integer());
+    }
+    if (this.keyword("CONTAINS")) {
+      if (kind != DocumentField.Kind.STRING && kind != DocumentField.Kind.STRING_LIST)
+        throw new IllegalArgumentException("CONTAINS needs a string or string list field: " + field);
+      return new Contains(field, this.string());
+    }
+    if (this.keyword("IN")) {
+      this.expect("(");
+      final Set<Object> values = new HashSet<>();
+      do {
+        values.add(this.literal(field));
+      } while (this.symbol(","));
+      this.expect(")");
+      return new In(field, values);
+    }
+    if (this.keyword("IS")) {
+      final boolean not = this.keyword("NOT");
+      if (!this.keyword("NULL"))
+        throw this.error("Expected NULL");
+      return not ? new DocumentFilter.Not(new IsNull(field)) : new IsNull(field);
+    }
+    if (this.symbol("!=") || this.symbol("<>"))
+      return new DocumentFilter.Not(new In(field, this.single(field)));
+    if (this.symbol("="))
+      return new In(field, this.single(field));
+    for (String op : new String[] { "<=", ">=", "<", ">" }) {
+      if (this.symbol(op)) {
+        requireInteger(field);
+        final long v = this.integer();
+        switch (op) {
+        case "<=":
+          return new Range(field, Long.MIN_VALUE, v);
+        case ">=":
+          return new Range(field, v, Long.MAX_VALUE);
+        case "<":
+          return new Range(field, Long.MIN_VALUE, v - 1);
+        default:
+          return new Range(field, v + 1, Long.MAX_VALUE);
+        }
+      }
+    }
+    throw this.error("Expected an operator");
+  }
+
+  private static DocumentField field(final String name) {
+    switch (name.toLowerCase(Locale.ROOT)) {
+    case "year":
+      return DocumentField.PUBLICATION_YEAR;
+    case "month":
+      return DocumentField.PUBLICATION_MONTH;
+    case "day":
+      return DocumentField.PUBLICATION_DAY_OF_MONTH;
+    default:
+      for (DocumentField f : DocumentField.values())
+        if (f.getPropertyName().equalsIgnoreCase(name) || f.name().equalsIgnoreCase(name))
+          return f;
+      return null;
+    }
+  }
+
+  private static void requireInteger(final DocumentField field) {
+    if (field.getKind() != DocumentField.Kind.INTEGER)
+      throw new IllegalArgumentException("Range predicates need an integer field: " + field);
+  }
+
+  private Set<Object> single(final DocumentField field) {
+    final Set<Object> s = new HashSet<>();
+    s.add(this.literal(field));
+    return s;
+  }
+
+  /**
+   * @return a {@link Long} for integer fields, a {@link String} otherwise
+   */
+  private Object literal(final DocumentField field) {
+    switch (field.getKind()) {
+    case INTEGER:
+      return this.integer();
+    case STRING:
+    case STRING_LIST:
+    case URL:
+      return this.string();
+    default:
+      throw new IllegalArgumentException("Cannot compare values of " + field.getKind() + " field " + field);
+    }
+  }
+
+  static Object normalize(final Object value) {
+    return value instanceof Integer ? Long.valueOf((Integer) value) : value.toString();
+  }
+
+  // lexing
+
+  private int skipSpace() {
+    while (this.pos < this.text.length() && Character.isWhitespace(this.text.charAt(this.pos)))
+      this.pos++;
+    return this.pos;
+  }
+
+  private String word() {
+    final int start = this.skipSpace();
+    while (this.pos < this.text.length()
+        && (Character.isLetterOrDigit(this.text.charAt(this.pos)) || this.text.charAt(this.pos) == '_'))
+      this.pos++;
+    if (start == this.pos)
+      throw this.error("Expected a field name");
+    return this.text.substring(start, this.pos);
+  }
+
+  private boolean keyword(final String k) {
+    final int start = this.skipSpace();
+    final int end = start + k.length();
+    if (end <= this.text.length() && this.text.regionMatches(true, start, k, 0, k.length())
+        && (end == this.text.length() || !Character.isLetterOrDigit(this.text.charAt(end)))) {
+      this.pos = end;
+      return true;
+    }
+    return false;
+  }
+
+  private boolean symbol(final String s) {
+    final int start = this.skipSpace();
+    if (this.text.startsWith(s, start)) {
+      this.pos = start + s.length();
+      return true;
+    }
+    return false;
+  }
+
+  private void expect(final String s) {
+    if (!this.symbol(s))
+      throw this.error("Expected '" + s + "'");
+  }
+
+  private long integer() {
+    final int start = this.skipSpace();
+    if (this.pos < this.text.length() && this.text.charAt(this.pos) == '-')
+      this.pos++;
+    while (this.pos < this.text.length() && Character.isDigit(this.text.charAt(this.pos)))
+      this.pos++;
+    try {
+      return Long.parseLong(this.text.substring(start, this.pos));
+    } catch (NumberFormatException e) {
+      this.pos = start;
+      throw this.error("Expected an integer");
+    }
+  }
+
+  private String string() {
+    this.skipSpace();
+    if (this.pos == this.text.length() || this.text.charAt(this.pos) != '"')
+      throw this.error("Expected a string");
+    final StringBuilder sb = new StringBuilder();
+    for (this.pos++; this.pos < this.text.length(); this.pos++) {
+      char c = this.text.charAt(this.pos);
+      if (c == '"') {
+        this.pos++;
+        return sb.toString();
+      }
+      if (c == '\\' && this.pos + 1 < this.text.length())
+        c = this.text.charAt(++this.pos);
+      sb.append(c);
+    }
+    throw this.error("Unterminated string");
+  }
+
+  private IllegalArgumentException error(final String message) {
+    return new IllegalArgumentException(message + " at position " + this.pos + ": " + this.text);
+  }
+
+  private static String quote(final Object v) {
+    return v instanceof String ? "\"" + ((String) v).replace("\\", "\\\\").replace("\"", "\\\"") + "\"" : v.toString();
+  }
+
+  // predicates
+
+  private static final class In extends DocumentFilter.Leaf {
+    private final Set<Object> values;
+
+    In(final DocumentField field, final Set<Object> values) {
+      super(field);
+      this.values = values;
+    }
+
+    @Override
+    boolean test(final Object value) {
+      return this.values.contains(normalize(value));
+    }
+
+    @Override
+    public String toString() {
+      if (this.values.size() == 1)
+        return this.field.getPropertyName() + " = " + quote(this.values.iterator().next());
+      return this.values.stream().map(FilterParser::quote)
+          .collect(Collectors.joining(", ", this.field.getPropertyName() + " IN (", ")"));
+    }
+  }
+
+  private static final class Range extends DocumentFilter.Leaf {
+    private final long lo;
+    private final long hi;
+
+    Range(final DocumentField field, final long lo, final long hi) {
+      super(field);
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+    @Override
+    boolean test(final Object value) {
+      final long v = (Integer) value;
+      return v >= this.lo && v <= this.hi;
+    }
+
+    @Override
+    public String toString() {
+      return this.field.getPropertyName() + " BETWEEN " + this.lo + " AND " + this.hi;
+    }
+  }
+
+  private static final class Contains extends DocumentFilter.Leaf {
+    private final String value;
+    private final boolean list;
+
+    Contains(final DocumentField field, final String value) {
+      super(field);
+      this.value = value;
+      this.list = field.getKind() == DocumentField.Kind.STRING_LIST;
+    }
+
+    @Override
+    boolean test(final Object v) {
+      return this.list ? this.value.equals(v) : ((String) v).contains(this.value);
+    }
+
+    @Override
+    public String toString() {
+      return this.field.getPropertyName() + " CONTAINS " + quote(this.value);
+    }
+  }
+
+  private static final class IsNull extends DocumentFilter.Leaf {
+    IsNull(final DocumentField field) {
+      super(field);
+    }
+
+    @Override
+    boolean test(final Object value) {
+      return false;
+    }
+
+    @Override
+    boolean testNull() {
+      return true;
+    }
+
+    @Override
+    public String toString() {
+      return this.field.getPropertyName() + " IS NULL";
+    }
+  }
+}
@@ -0,0 +1,9 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+
+/**
+ * Filtering {@link com.nytlabs.corpus.NYTCorpusDocument}s with a small query language.
+ */
+package edu.jhu.hlt.annotatednyt.query;
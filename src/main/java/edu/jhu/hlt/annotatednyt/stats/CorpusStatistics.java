@@ -0,0 +1,367 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.stats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.DocumentField;
+import edu.jhu.hlt.annotatednyt.text.TokenBuffer;
+import edu.jhu.hlt.annotatednyt.text.Tokenizer;
+
+/**
+ * Approximate corpus statistics per publication year: a {@link HyperLogLog} of the distinct
+ * values of each chosen field, and a {@link CountMinSketch} of the case-folded
+ * {@link Tokenizer} tokens of bodies. Documents without a publication year are counted under
+ * year 0.
+ * <br><br>
+ * A {@link CorpusStatistics} is a {@link CorpusReader.DocumentHandler}, so it can be chained
+ * onto any corpus pass. Statistics with the same configuration merge losslessly, and serialize
+ * with {@link #write(Path)}, so partial results from several threads, processes, or machines
+ * can be combined.
+ * <br><br>
+ * Not thread-safe.
+ */
+public class CorpusStatistics implements CorpusReader.DocumentHandler {
+
+  /**
+   * The fields whose distinct values are counted by default: people, organizations, and
+   * descriptors.
+   */
+  public static final Set<DocumentField> DEFAULT_FIELDS = Collections.unmodifiableSet(EnumSet.of(
+      DocumentField.PEOPLE, DocumentField.ORGANIZATIONS, DocumentField.DESCRIPTORS));
+
+  private static final int MAGIC = 0x414e5353; // "ANSS"
+  private static final int VERSION = 1;
+
+  private final DocumentField[] fields;
+  private final int precision;
+  private final int width;
+  private final int depth;
+  private final TreeMap<Integer, Bucket> buckets = new TreeMap<>();
+  private final TokenBuffer tokens = new TokenBuffer();
+  private final StringBuilder term = new StringBuilder();
+
+  /**
+   * Count {@link #DEFAULT_FIELDS} with sketches of the default sizes.
+   */
+  public CorpusStatistics() {
+    this(DEFAULT_FIELDS, HyperLogLog.DEFAULT_PRECISION, CountMinSketch.DEFAULT_WIDTH, CountMinSketch.DEFAULT_DEPTH);
+  }
+
+  /**
+   * @param fields the fields whose distinct values to count: string, string list, or integer
+   * fields
+   * @param precision the {@link HyperLogLog} precision
+   * @param width the {@link CountMinSketch} width
+   * @param depth the {@link CountMinSketch} depth
+   */
+  public CorpusStatistics(final Set<DocumentField> fields, final int precision, final int width, final int depth) {
+    for (DocumentField f : fields) {
+      switch (f.getKind()) {
+      case STRING:
+      case STRING_LIST:
+      case INTEGER:
+        break;
+      default:
+        throw new IllegalArgumentException("Cannot count values of kind " + f.getKind() + ": " + f);
+      }
+    }
+    this.fields = fields.isEmpty() ? new DocumentField[0] : EnumSet.copyOf(fields).toArray(new DocumentField[0]);
+    if (precision < 4 || precision > 18)
+      throw new IllegalArgumentException("precision must be in [4, 18]: " + precision);
+    if (width < 1 || Integer.bitCount(width) != 1)
+      throw new IllegalArgumentException("width must be a power of two: " + width);
+    if (depth < 1 || (long) width * depth > Integer.MAX_VALUE)
+      throw new IllegalArgumentException("Invalid depth: " + depth);
+    this.precision = precision;
+    this.width = width;
+    this.depth = depth;
+  }
+
+  private CorpusStatistics(final DocumentField[] fields, final int precision, final int width, final int depth) {
+    this.fields = fields;
+    this.precision = precision;
+    this.width = width;
+    this.depth = depth;
+  }
+
+  /**
+   * @return new, empty statistics with this configuration
+   */
+  public CorpusStatistics newEmpty() {
+    return new CorpusStatistics(this.fields, this.precision, this.width, this.depth);
+  }
+
+  /**
+   * Collect statistics over the whole corpus, one archive per thread.
+   *
+   * @param reader the {@link CorpusReader} to read from
+   * @param threads the number of archives to process concurrently
+   * @return the statistics, merged into this object
+   * @throws IOException on errors reading the corpus
+   */
+  public CorpusStatistics collect(final CorpusReader reader, final int threads) throws IOException {
+    reader.processArchives(threads, archive -> {
+      final CorpusStatistics s = this.newEmpty();
+      reader.read(archive, s);
+      return s;
+    }, (archive, s) -> this.merge(s));
+    return this;
+  }
+
+  @Override
+  public void handle(final NYTCorpusDocument doc) {
+    this.add(doc);
+  }
+
+  /**
+   * @param doc the document to count
+   */
+  public void add(final NYTCorpusDocument doc) {
+    final Integer year = doc.getPublicationYear();
+    final Bucket b = this.bucket(year == null ? 0 : year);
+    b.documents++;
+    for (int f = 0; f < this.fields.length; f++) {
+      final Object v = this.fields[f].get(doc);
+      if (v instanceof List) {
+        for (Object o : (List<?>) v)
+          b.distinct[f].add((String) o);
+      } else if (v != null) {
+        b.distinct[f].add(v.toString());
+      }
+    }
+    final String body = doc.getBody();
+    if (body != null) {
+      this.tokens.clear();
+      Tokenizer.tokenize(body, this.tokens);
+      for (int t = 0; t < this.tokens.size(); t++) {
+        this.term.setLength(0);
+        fold(body, this.tokens.start(t), this.tokens.end(t), this.term);
+        b.terms.add(this.term, 1);
+      }
+    }
+  }
+
+  /**
+   * Append <code>s[start, end)</code> to <code>sb</code>, case-folded one <code>char</code>
+   * at a time. Unlike {@link String#toLowerCase()}, this ignores the default locale and never
+   * changes the length, so terms and queries fold alike.
+   */
+  private static StringBuilder fold(final CharSequence s, final int start, final int end,
+      final StringBuilder sb) {
+    for (int i = start; i < end; i++)
+      sb.append(Character.toLowerCase(s.charAt(i)));
+    return sb;
+  }
+
+  private static StringBuilder fold(final String term) {
+    return fold(term, 0, term.length(), new StringBuilder(term.length()));
+  }
+
+  private Bucket bucket(final int year) {
+    Bucket b = this.buckets.get(year);
+    if (b == null) {
+      b = new Bucket(this.fields.length, this.precision, this.width, this.depth);
+      this.buckets.put(year, b);
+    }
+    return b;
+  }
+
+  /**
+   * @return the fields whose distinct values are counted
+   */
+  public Set<DocumentField> getFields() {
+    final Set<DocumentField> s = EnumSet.noneOf(DocumentField.class);
+    s.addAll(Arrays.asList(this.fields));
+    return s;
+  }
+
+  /**
+   * @return the years with at least one document
+   */
+  public SortedSet<Integer> getYears() {
+    return Collections.unmodifiableSortedSet(this.buckets.navigableKeySet());
+  }
+
+  /**
+   * @param year a publication year
+   * @return the number of documents of <code>year</code>
+   */
+  public long getDocumentCount(final int year) {
+    final Bucket b = this.buckets.get(year);
+    return b == null ? 0 : b.documents;
+  }
+
+  /**
+   * @param field a counted field
+   * @param year a publication year
+   * @return the estimated number of distinct values of <code>field</code> in <code>year</code>
+   */
+  public long distinctCount(final DocumentField field, final int year) {
+    final int f = this.fieldIndex(field);
+    final Bucket b = this.buckets.get(year);
+    return b == null ? 0 : b.distinct[f].estimate();
+  }
+
+  /**
+   * @param field a counted field
+   * @return the estimated number of distinct values of <code>field</code> over all years
+   */
+  public long distinctCount(final DocumentField field) {
+    final int f = this.fieldIndex(field);
+    final HyperLogLog all = new HyperLogLog(this.precision);
+    for (Bucket b : this.buckets.values())
+      all.merge(b.distinct[f]);
+    return all.estimate();
+  }
+
+  /**
+   * @param term a term; matched case-insensitively
+   * @param year a publication year
+   * @return an estimate, never low, of the number of occurrences of <code>term</code> in bodies
+   * of <code>year</code>
+   */
+  public long termFrequency(final String term, final int year) {
+    final Bucket b = this.buckets.get(year);
+    return b == null ? 0 : b.terms.estimate(fold(term));
+  }
+
+  /**
+   * @param term a term; matched case-insensitively
+   * @return an estimate, never low, of the number of occurrences of <code>term</code> in bodies
+   */
+  public long termFrequency(final String term) {
+    final CharSequence t = fold(term);
+    long n = 0;
+    for (Bucket b : this.buckets.values())
+      n += b.terms.estimate(t);
+    return n;
+  }
+
+  /**
+   * @param year a publication year
+   * @return the number of body tokens of <code>year</code>
+   */
+  public long getTokenCount(final int year) {
+    final Bucket b = this.buckets.get(year);
+    return b == null ? 0 : b.terms.getTotal();
+  }
+
+  private int fieldIndex(final DocumentField field) {
+    for (int f = 0; f < this.fields.length; f++)
+      if (this.fields[f] == field)
+        return f;
+    throw new IllegalArgumentException("Field is not counted: " + field);
+  }
+
+  /**
+   * Add the statistics of <code>other</code> to these.
+   *
+   * @param other statistics with the same fields and sketch sizes
+   */
+  public void merge(final CorpusStatistics other) {
+    if (!Arrays.equals(other.fields, this.fields) || other.precision != this.precision || other.width != this.width
+        || other.depth != this.depth)
+      throw new IllegalArgumentException("Cannot merge statistics of a different configuration.");
+    for (Map.Entry<Integer, Bucket> e : other.buckets.entrySet()) {
+      final Bucket b = this.bucket(e.getKey());
+      final Bucket o = e.getValue();
+      b.documents += o.documents;
+      for (int f = 0; f < this.fields.length; f++)
+        b.distinct[f].merge(o.distinct[f]);
+      b.terms.merge(o.terms);
+    }
+  }
+
+  /**
+   * @param path the file to write; replaced if it exists
+   * @throws IOException on errors writing <code>path</code>
+   */
+  public void write(final Path path) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(this.fields.length);
+      for (DocumentField f : this.fields)
+        out.writeUTF(f.getPropertyName());
+      out.writeInt(this.precision);
+      out.writeInt(this.width);
+      out.writeInt(this.depth);
+      out.writeInt(this.buckets.size());
+      for (Map.Entry<Integer, Bucket> e : this.buckets.entrySet()) {
+        out.writeInt(e.getKey());
+        out.writeLong(e.getValue().documents);
+        for (HyperLogLog h : e.getValue().distinct)
+          h.write(out);
+        e.getValue().terms.write(out);
+      }
+    }
+  }
+
+  /**
+   * @param path a file written by {@link #write(Path)}
+   * @return the statistics
+   * @throws IOException on errors reading <code>path</code>, or if it does not hold statistics
+   */
+  public static CorpusStatistics read(final Path path) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+      if (in.readInt() != MAGIC)
+        throw new IOException("Not corpus statistics: " + path);
+      final int version = in.readInt();
+      if (version != VERSION)
+        throw new IOException("Unsupported corpus statistics version: " + version);
+      final DocumentField[] fields = new DocumentField[in.readInt()];
+      for (int f = 0; f < fields.length; f++)
+        fields[f] = DocumentField.forPropertyName(in.readUTF());
+      final CorpusStatistics s = new CorpusStatistics(fields, in.readInt(), in.readInt(), in.readInt());
+      final int n = in.readInt();
+      for (int i = 0; i < n; i++) {
+        final int year = in.readInt();
+        final Bucket b = new Bucket(in.readLong(), new HyperLogLog[fields.length], null);
+        for (int f = 0; f < fields.length; f++)
+          b.distinct[f] = HyperLogLog.read(in);
+        b.terms = CountMinSketch.read(in);
+        s.buckets.put(year, b);
+      }
+      return s;
+    }
+  }
+
+  private static final class Bucket {
+    private long documents;
+    private final HyperLogLog[] distinct;
+    private CountMinSketch terms;
+
+    Bucket(final int fields, final int precision, final int width, final int depth) {
+      this.distinct = new HyperLogLog[fields];
+      for (int f = 0; f < fields; f++)
+        this.distinct[f] = new HyperLogLog(precision);
+      this.terms = new CountMinSketch(width, depth);
+    }
+
+    Bucket(final long documents, final HyperLogLog[] distinct, final CountMinSketch terms) {
+      this.documents = documents;
+      this.distinct = distinct;
+      this.terms = terms;
+    }
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A Count-Min sketch estimating the frequencies of strings.
+ * <br><br>
+ * Estimates never undercount. With width <code>w</code> and depth <code>d</code>, an estimate
+ * exceeds the true count by more than <code>e / w</code> times the total count with probability
+ * at most <code>e^-d</code>. The default of 4 rows of 65536 counters takes 2 MB. Sketches of the
+ * same dimensions merge losslessly by adding counters.
+ * <br><br>
+ * Not thread-safe.
+ */
+public final class CountMinSketch {
+
+  /** The default number of counters per row. */
+  public static final int DEFAULT_WIDTH = 1 << 16;
+  /** The default number of rows. */
+  public static final int DEFAULT_DEPTH = 4;
+
+  private final int width;
+  private final int depth;
+  private final long[] counts;
+  private long total;
+
+  /**
+   * A sketch of {@link #DEFAULT_WIDTH} and {@link #DEFAULT_DEPTH}.
+   */
+  public CountMinSketch() {
+    this(DEFAULT_WIDTH, DEFAULT_DEPTH);
+  }
+
+  /**
+   * @param width the number of counters per row, a power of two
+   * @param depth the number of rows
+   */
+  public CountMinSketch(final int width, final int depth) {
+    if (width < 1 || Integer.bitCount(width) != 1)
+      throw new IllegalArgumentException("width must be a power of two: " + width);
+    if (depth < 1 || (long) width * depth > Integer.MAX_VALUE)
+      throw new IllegalArgumentException("Invalid depth: " + depth);
+    this.width = width;
+    this.depth = depth;
+    this.counts = new long[width * depth];
+  }
+
+  /**
+   * @return the number of counters per row
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * @return the number of rows
+   */
+  public int getDepth() {
+    return this.depth;
+  }
+
+  /**
+   * @return the sum of all counts added
+   */
+  public long getTotal() {
+    return this.total;
+  }
+
+  /**
+   * @param s a string
+   * @param n the amount to add to its count
+   */
+  public void add(final CharSequence s, final long n) {
+    this.addHash(Hashing.hash(s), n);
+  }
+
+  /**
+   * @param hash a well-mixed 64-bit hash of an item
+   * @param n the amount to add to its count
+   */
+  public void addHash(final long hash, final long n) {
+    // row i uses h1 + i * h2 (Kirsch and Mitzenmacher)
+    final int h1 = (int) hash;
+    final int h2 = (int) (hash >>> 32) | 1;
+    final int mask = this.width - 1;
+    for (int i = 0; i < this.depth; i++)
+      this.counts[i * this.width + ((h1 + i * h2) & mask)] += n;
+    this.total += n;
+  }
+
+  /**
+   * @param s a string
+   * @return an estimate of the count of <code>s</code>; never less than the true count
+   */
+  public long estimate(final CharSequence s) {
+    return this.estimateHash(Hashing.hash(s));
+  }
+
+  /**
+   * @param hash the hash given to {@link #addHash(long, long)}
+   * @return an estimate of the count of the item
+   */
+  public long estimateHash(final long hash) {
+    final int h1 = (int) hash;
+    final int h2 = (int) (hash >>> 32) | 1;
+    final int mask = this.width - 1;
+    long min = Long.MAX_VALUE;
+    for (int i = 0; i < this.depth; i++)
+      min = Math.min(min, this.counts[i * this.width + ((h1 + i * h2) & mask)]);
+    return min;
+  }
+
+  /**
+   * Add the counts of <code>other</code> to this sketch.
+   *
+   * @param other a sketch of the same width and depth
+   */
+  public void merge(final CountMinSketch other) {
+    if (other.width != this.width || other.depth != this.depth)
+      throw new IllegalArgumentException("Cannot merge a " + other.depth + "x" + other.width + " sketch into a "
+          + this.depth + "x" + this.width + " sketch.");
+    for (int i = 0; i < this.counts.length; i++)
+      this.counts[i] += other.counts[i];
+    this.total += other.total;
+  }
+
+  /**
+   * @param out the {@link DataOutput} to write the dimensions and counters to
+   * @throws IOException on errors writing
+   */
+  public void write(final DataOutput out) throws IOException {
+    out.writeInt(this.width);
+    out.writeInt(this.depth);
+    out.writeLong(this.total);
+    for (long c : this.counts)
+      out.writeLong(c);
+  }
+
+  /**
+   * @param in a {@link DataInput} positioned at a sketch written by {@link #write(DataOutput)}
+   * @return the sketch
+   * @throws IOException on errors reading, or invalid dimensions
+   */
+  public static CountMinSketch read(final DataInput in) throws IOException {
+    final int width = in.readInt();
+    final int depth = in.readInt();
+    final CountMinSketch s;
+    try {
+      s = new CountMinSketch(width, depth);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Invalid Count-Min sketch dimensions: " + depth + "x" + width, e);
+    }
+    s.total = in.readLong();
+    for (int i = 0; i < s.counts.length; i++)
+      s.counts[i] = in.readLong();
+    return s;
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.stats;
+
+/**
+ * 64-bit hashing of character sequences for the sketches. The hashes are stable across JVMs,
+ * so sketches built on different machines can be merged.
+ */
+final class Hashing {
+
+  private Hashing() {
+  }
+
+  /**
+   * @return FNV-1a over the UTF-16 code units of <code>s</code>, finished with the MurmurHash3
+   * 64-bit mixer so every bit depends on every input bit
+   */
+  static long hash(final CharSequence s) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < s.length(); i++) {
+      final char c = s.charAt(i);
+      h = (h ^ (c & 0xff)) * 0x100000001b3L;
+      h = (h ^ (c >>> 8)) * 0x100000001b3L;
+    }
+    return mix(h);
+  }
+
+  static long mix(long h) {
+    h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+    h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return h ^ (h >>> 33);
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A HyperLogLog sketch estimating the number of distinct strings added to it.
+ * <br><br>
+ * With precision <code>p</code>, the sketch holds <code>2^p</code> one-byte registers and has a
+ * relative standard error of about <code>1.04 / sqrt(2^p)</code>: 0.8% at the default of 14,
+ * in 16 KB. Small cardinalities are counted exactly enough by linear counting. Sketches of the
+ * same precision merge losslessly, so partial sketches can be built on several threads or
+ * machines and combined.
+ * <br><br>
+ * Not thread-safe.
+ */
+public final class HyperLogLog {
+
+  /** The default precision. */
+  public static final int DEFAULT_PRECISION = 14;
+
+  private final int p;
+  private final byte[] registers;
+
+  /**
+   * A sketch of {@link #DEFAULT_PRECISION}.
+   */
+  public HyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  /**
+   * @param precision the number of index bits, from 4 to 18
+   */
+  public HyperLogLog(final int precision) {
+    if (precision < 4 || precision > 18)
+      throw new IllegalArgumentException("precision must be in [4, 18]: " + precision);
+    this.p = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  /**
+   * @return the precision
+   */
+  public int getPrecision() {
+    return this.p;
+  }
+
+  /**
+   * @param s a string to count
+   */
+  public void add(final CharSequence s) {
+    this.addHash(Hashing.hash(s));
+  }
+
+  /**
+   * @param hash a well-mixed 64-bit hash of an item
+   */
+  public void addHash(final long hash) {
+    final int index = (int) (hash >>> (64 - this.p));
+    // position of the first 1 bit after the index bits; the sentinel bit bounds it
+    final int rank = Long.numberOfLeadingZeros((hash << this.p) | (1L << (this.p - 1))) + 1;
+    if (rank > this.registers[index])
+      this.registers[index] = (byte) rank;
+  }
+
+  /**
+   * @return the estimated number of distinct items added
+   */
+  public long estimate() {
+    final int m = this.registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte r : this.registers) {
+      sum += 1.0 / (1L << r);
+      if (r == 0)
+        zeros++;
+    }
+    final double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+    final double e = alpha * m * (double) m / sum;
+    if (e <= 2.5 * m && zeros > 0)
+      return Math.round(m * Math.log((double) m / zeros));
+    return Math.round(e);
+  }
+
+  /**
+   * Add every item of <code>other</code> to this sketch.
+   *
+   * @param other a sketch of the same precision
+   */
+  public void merge(final HyperLogLog other) {
+    if (other.p != this.p)
+      throw new IllegalArgumentException("Cannot merge precision " + other.p + " into " + this.p);
+    for (int i = 0; i < this.registers.length; i++)
+      if (other.registers[i] > this.registers[i])
+        this.registers[i] = other.registers[i];
+  }
+
+  /**
+   * @return a copy of this sketch
+   */
+  public HyperLogLog copy() {
+    final HyperLogLog c = new HyperLogLog(this.p);
+    System.arraycopy(this.registers, 0, c.registers, 0, this.registers.length);
+    return c;
+  }
+
+  /**
+   * @param out the {@link DataOutput} to write the precision and registers to
+   * @throws IOException on errors writing
+   */
+  public void write(final DataOutput out) throws IOException {
+    out.writeByte(this.p);
+    out.write(this.registers);
+  }
+
+  /**
+   * @param in a {@link DataInput} positioned at a sketch written by {@link #write(DataOutput)}
+   * @return the sketch
+   * @throws IOException on errors reading, or an invalid precision
+   */
+  public static HyperLogLog read(final DataInput in) throws IOException {
+    final int p = in.readByte();
+    if (p < 4 || p > 18)
+      throw new IOException("Invalid HyperLogLog precision: " + p);
+    final HyperLogLog h = new HyperLogLog(p);
+    in.readFully(h.registers);
+    return h;
+  }
+}
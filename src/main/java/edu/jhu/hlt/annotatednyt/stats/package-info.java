@@ -0,0 +1,10 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+
+/**
+ * Mergeable approximate statistics over {@link com.nytlabs.corpus.NYTCorpusDocument}
+ * collections.
+ */
+package edu.jhu.hlt.annotatednyt.stats;
@@ -0,0 +1,753 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.synth;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.TextStyle;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Generates synthetic NITF 3.3 documents shaped like those of the Annotated NYT corpus.
+ * <br><br>
+ * Every element and attribute that {@link com.nytlabs.corpus.NYTCorpusDocumentParser} reads
+ * is produced, at roughly the frequency it has in the corpus: optional fields (abstracts,
+ * bylines, corrections, online metadata, and so on) are often missing, body lengths are
+ * log-normal with a long tail, and words, people, organizations, and descriptors are drawn
+ * from Zipfian distributions, so term and entity statistics look like real text. Text includes
+ * escaped characters, numeric character references, non-ASCII letters, and inline markup.
+ * <br><br>
+ * A small fraction of documents, set by the anomaly rate, have one of the rarer defects the
+ * parser must survive: a malformed integer, a <code>meta</code> without content, an empty or
+ * unknown block, and so on. Documents are always well-formed XML.
+ * <br><br>
+ * Output depends only on the seed, the guid, and the date, so documents can be generated in
+ * any order, on any number of threads, and are the same on every run. Instances are immutable
+ * and may be shared between threads.
+ */
+public class NitfGenerator {
+
+  /**
+   * The default fraction of documents with a defect, 0.1%.
+   */
+  public static final double DEFAULT_ANOMALY_RATE = 0.001;
+
+  private static final String DOCTYPE =
+      "<!DOCTYPE nitf SYSTEM \"http://www.nitf.org/IPTC/NITF/3.3/specification/dtd/nitf-3-3.dtd\">";
+
+  private static final String[] COMMON_WORDS = {
+      "the", "of", "to", "and", "a", "in", "that", "said", "for", "is", "on", "it", "was", "he",
+      "with", "as", "at", "by", "his", "but", "from", "have", "be", "are", "has", "not", "an",
+      "they", "who", "this", "were", "had", "would", "will", "or", "their", "been", "its", "which",
+      "one", "new", "year", "more", "about", "there", "when", "after", "we", "than", "all", "last",
+      "two", "out", "up", "she", "so", "her", "people", "city", "some", "what", "if", "can", "no",
+      "could", "first", "only", "into", "time", "years", "other", "state", "also", "like", "over",
+      "just", "many", "company", "government", "president", "now", "world", "before", "because",
+      "percent", "three", "million", "most", "week", "officials", "day", "any", "back", "where",
+      "school", "police", "house", "while", "those", "even", "through", "made", "still", "how",
+      "country", "since", "market", "money", "program", "family", "public", "yesterday", "today",
+      "report", "plan", "board", "court", "home", "team", "game", "season", "night", "business",
+      "law", "group", "work", "life", "children", "members", "building", "street", "council",
+      "mayor", "federal", "national", "political", "health", "hospital", "economy", "prices",
+      "students", "music", "show", "election", "campaign", "vote", "budget", "tax", "bank",
+      "industry", "workers", "union", "director", "officer", "agency", "department", "museum"};
+
+  private static final String[] SYLLABLES = {
+      "ba", "ker", "lin", "to", "mar", "ven", "so", "ri", "dal", "en", "co", "tra", "mi", "nel",
+      "por", "an", "ges", "li", "ton", "var", "de", "ru", "sam", "el", "pi", "cor", "na", "ster",
+      "wo", "lo", "in", "ham"};
+
+  private static final String[] ACCENTED_WORDS = {
+      "caf\u00e9", "r\u00e9sum\u00e9", "na\u00efve", "fa\u00e7ade", "se\u00f1or", "d\u00e9j\u00e0",
+      "pi\u00f1ata", "\u00fcber", "fianc\u00e9e", "ma\u00f1ana"};
+
+  private static final String[] SURNAMES = {
+      "SMITH", "JOHNSON", "WILLIAMS", "BROWN", "JONES", "MILLER", "DAVIS", "GARCIA", "RODRIGUEZ",
+      "WILSON", "MARTINEZ", "ANDERSON", "TAYLOR", "THOMAS", "HERNANDEZ", "MOORE", "MARTIN",
+      "JACKSON", "THOMPSON", "WHITE", "LOPEZ", "LEE", "GONZALEZ", "HARRIS", "CLARK", "LEWIS",
+      "ROBINSON", "WALKER", "PEREZ", "HALL", "YOUNG", "ALLEN", "SANCHEZ", "WRIGHT", "KING",
+      "SCOTT", "GREEN", "BAKER", "ADAMS", "NELSON", "HILL", "RAMIREZ", "CAMPBELL", "MITCHELL",
+      "ROBERTS", "CARTER", "PHILLIPS", "EVANS", "TURNER", "TORRES", "COHEN", "GOLDBERG",
+      "O'BRIEN", "McQUISTON", "MU\u00d1OZ", "M\u00dcLLER", "NG", "KIM", "NGUYEN", "ALVAREZ"};
+
+  private static final String[] GIVEN_NAMES = {
+      "JAMES", "JOHN", "ROBERT", "MICHAEL", "WILLIAM", "DAVID", "RICHARD", "JOSEPH", "THOMAS",
+      "CHARLES", "MARY", "PATRICIA", "LINDA", "BARBARA", "ELIZABETH", "JENNIFER", "MARIA",
+      "SUSAN", "MARGARET", "DOROTHY", "LISA", "NANCY", "KAREN", "BETTY", "HELEN", "SANDRA",
+      "DONNA", "CAROL", "RUTH", "SHARON", "MICHELLE", "LAURA", "SARAH", "KIMBERLY", "DEBORAH",
+      "JOS\u00c9", "ANDR\u00c9", "PAUL", "MARK", "DONALD"};
+
+  private static final String[] ORGANIZATION_STEMS = {
+      "FLUSHING", "HUDSON", "EMPIRE", "ATLANTIC", "LIBERTY", "GENERAL", "NATIONAL", "UNITED",
+      "FIRST", "METROPOLITAN", "COLUMBIA", "PACIFIC", "CONTINENTAL", "AMERICAN", "KNICKERBOCKER",
+      "MANHATTAN", "BROOKLYN", "CITIZENS", "AT&T", "MERIDIAN", "HARBOR", "CENTRAL", "PIONEER",
+      "SOUTHERN"};
+
+  private static final String[] ORGANIZATION_SUFFIXES = {
+      "CORP", "INC", "BANK", "UNIVERSITY", "HOSPITAL MEDICAL CENTER", "MUSEUM", "CO", "ASSN",
+      "COUNCIL", "PARTY", "GROUP", "FUND", "AUTHORITY", "COLLEGE"};
+
+  private static final String[] LOCATIONS = {
+      "NEW YORK CITY", "MANHATTAN (NYC)", "BROOKLYN (NYC)", "QUEENS (NYC)", "BRONX (NYC)",
+      "NEW JERSEY", "CONNECTICUT", "LONG ISLAND (NY)", "WASHINGTON (DC)", "CALIFORNIA", "TEXAS",
+      "FLORIDA", "CHICAGO (ILL)", "LOS ANGELES (CALIF)", "BOSTON (MASS)", "STATEN ISLAND (NYC)",
+      "ENGLAND", "LONDON (ENGLAND)", "FRANCE", "PARIS (FRANCE)", "GERMANY", "RUSSIA", "CHINA",
+      "JAPAN", "ISRAEL", "IRAQ", "MEXICO", "CANADA", "ITALY", "SPAIN", "BRAZIL", "INDIA",
+      "SOUTH AFRICA", "EGYPT", "MONTR\u00c9AL (QUEBEC)", "S\u00c3O PAULO (BRAZIL)"};
+
+  private static final String[] DESCRIPTORS = {
+      "POLITICS AND GOVERNMENT", "ELECTIONS", "FINANCES", "UNITED STATES INTERNATIONAL RELATIONS",
+      "MURDERS AND ATTEMPTED MURDERS", "EDUCATION AND SCHOOLS", "BASEBALL", "FOOTBALL",
+      "BASKETBALL", "REAL ESTATE", "HOSPITALS", "MEDICINE AND HEALTH", "STOCKS AND BONDS",
+      "MERGERS, ACQUISITIONS AND DIVESTITURES", "TELEVISION", "MUSIC", "THEATER",
+      "BOOKS AND LITERATURE", "COMPUTERS AND THE INTERNET", "ART", "DANCE", "MOTION PICTURES",
+      "WEDDINGS AND ENGAGEMENTS", "DEATHS (OBITUARIES)", "TERRORISM", "IMMIGRATION AND REFUGEES",
+      "TAXATION", "BUDGETS AND BUDGETING", "LABOR", "PRICES (FARES, FEES AND RATES)",
+      "AIRLINES AND AIRPLANES", "AUTOMOBILES", "RESTAURANTS", "FOOD", "TRAVEL AND VACATIONS",
+      "ENVIRONMENT", "WEATHER", "CRIME AND CRIMINALS", "SUITS AND LITIGATION", "POLICE", "ZONING",
+      "HOUSING", "TRANSIT SYSTEMS", "CHILDREN AND YOUTH", "WOMEN", "RELIGION AND CHURCHES",
+      "SCIENCE AND TECHNOLOGY", "OIL (PETROLEUM) AND GASOLINE", "BANKS AND BANKING",
+      "INTEREST RATES", "ARMAMENT, DEFENSE AND MILITARY FORCES"};
+
+  private static final String[] BIOGRAPHICAL_CATEGORIES = {
+      "Politics and Government", "Medicine and Health", "Sports", "Arts", "Business", "Law",
+      "Education", "Religion"};
+
+  private static final String[] TITLE_KINDS = {"(Book)", "(Movie)", "(Play)", "(Report)", "(Album)"};
+
+  private static final String[] SERIES = {
+      "THE NEIGHBORHOOD REPORT", "ON LANGUAGE", "THE CHANGING CITY", "A NATION CHALLENGED",
+      "THE YEAR IN REVIEW"};
+
+  private static final String[] COLUMN_NAMES = {
+      "Our Towns", "About New York", "Sports of The Times", "Essay", "Public Lives",
+      "Metro Matters", "Market Place", "Abroad at Home", "Critic's Notebook"};
+
+  private static final String[] FEATURE_PAGES = {"Weekend Page", "Living Page", "Home Page"};
+
+  private static final String[] MONTHS = {
+      "Jan.", "Feb.", "March", "April", "May", "June", "July", "Aug.", "Sept.", "Oct.", "Nov.",
+      "Dec."};
+
+  // desk, print section, online sections, taxonomic classifier, url path
+  private static final String[][] SECTIONS = {
+      {"Metropolitan Desk", "B", "New York and Region", "Top/News/New York and Region", "nyregion"},
+      {"Foreign Desk", "A", "World", "Top/News/World", "world"},
+      {"National Desk", "A", "U.S.", "Top/News/U.S.", "us"},
+      {"Business/Financial Desk", "D", "Business", "Top/News/Business", "business"},
+      {"Sports Desk", "C", "Sports", "Top/News/Sports", "sports"},
+      {"Editorial Desk", "A", "Opinion", "Top/Opinion/Opinion/Editorials", "opinion"},
+      {"Cultural Desk", "C", "Arts", "Top/Features/Arts", "arts"},
+      {"Science Desk", "F", "Science; Health", "Top/News/Science", "science"},
+      {"Obituary", "B", "New York and Region; Obituaries", "Top/News/Obituaries", "obituaries"},
+      {"Style Desk", "9", "Style", "Top/Features/Style", "style"},
+      {"Book Review Desk", "7", "Arts; Books", "Top/Features/Books", "books"},
+      {"Real Estate Desk", "11", "Real Estate", "Top/Classifieds/Real Estate", "realestate"},
+      {"Travel Desk", "5", "Travel", "Top/Features/Travel", "travel"},
+      {"Magazine Desk", "6", "Magazine", "Top/Magazine", "magazine"}};
+
+  private static final String[] TYPES_OF_MATERIAL = {
+      "News", "Review", "Letter", "Biography", "Interview", "Chronology", "List", "Op-Ed"};
+
+  private static final int VOCABULARY_SIZE = 1 << 16;
+  private static final String[] VOCABULARY = new String[VOCABULARY_SIZE];
+  static {
+    for (int i = 0; i < VOCABULARY_SIZE; i++)
+      VOCABULARY[i] = i < COMMON_WORDS.length ? COMMON_WORDS[i] : pseudoWord(i);
+  }
+
+  private static final Zipf WORDS = new Zipf(VOCABULARY_SIZE, 1.05);
+  private static final Zipf PEOPLE = new Zipf(SURNAMES.length * GIVEN_NAMES.length * 26, 0.9);
+  private static final Zipf ORGANIZATIONS = new Zipf(ORGANIZATION_STEMS.length * ORGANIZATION_SUFFIXES.length, 0.9);
+  private static final Zipf LOCATION_RANKS = new Zipf(LOCATIONS.length, 1.0);
+  private static final Zipf DESCRIPTOR_RANKS = new Zipf(DESCRIPTORS.length, 0.8);
+  private static final Zipf SECTION_RANKS = new Zipf(SECTIONS.length, 0.7);
+  private static final Zipf TITLES = new Zipf(1 << 12, 0.9);
+
+  private final long seed;
+  private final double anomalyRate;
+
+  /**
+   * Generate documents with the {@link #DEFAULT_ANOMALY_RATE}.
+   *
+   * @param seed the seed; the same seed always gives the same documents
+   */
+  public NitfGenerator(final long seed) {
+    this(seed, DEFAULT_ANOMALY_RATE);
+  }
+
+  /**
+   * @param seed the seed; the same seed always gives the same documents
+   * @param anomalyRate the fraction of documents, from 0 to 1, with a defect
+   */
+  public NitfGenerator(final long seed, final double anomalyRate) {
+    if (!(anomalyRate >= 0 && anomalyRate <= 1))
+      throw new IllegalArgumentException("anomalyRate must be between 0 and 1: " + anomalyRate);
+    this.seed = seed;
+    this.anomalyRate = anomalyRate;
+  }
+
+  /**
+   * @return the seed
+   */
+  public long getSeed() {
+    return this.seed;
+  }
+
+  /**
+   * @return the fraction of documents with a defect
+   */
+  public double getAnomalyRate() {
+    return this.anomalyRate;
+  }
+
+  /**
+   * @param guid the guid of the document
+   * @param date the publication date of the document
+   * @return the UTF-8 bytes of a NITF document
+   */
+  public byte[] generate(final int guid, final LocalDate date) {
+    return this.generateString(guid, date).getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @param guid the guid of the document
+   * @param date the publication date of the document
+   * @return the text of a NITF document
+   */
+  public String generateString(final int guid, final LocalDate date) {
+    final SplittableRandom r = new SplittableRandom(mix(this.seed ^ (guid * 0x9e3779b97f4a7c15L)));
+    final Anomaly anomaly = r.nextDouble() < this.anomalyRate
+        ? Anomaly.values()[r.nextInt(Anomaly.values().length)]
+        : null;
+    final String[] section = SECTIONS[SECTION_RANKS.sample(r)];
+    final boolean obituary = section[0].equals("Obituary");
+    final boolean online = date.getYear() >= 1996 ? r.nextDouble() < 0.9 : r.nextDouble() < 0.1;
+
+    // the body is generated first, for the word count and the lead paragraph
+    final int paragraphs = r.nextDouble() < 0.04 ? 0 : logNormal(r, 12, 0.8, 1, 600);
+    final StringBuilder body = new StringBuilder(paragraphs * 200 + 16);
+    final int leadEnd;
+    int words = 0;
+    if (paragraphs > 0) {
+      final int lead = Math.min(paragraphs, r.nextDouble() < 0.7 ? 1 : 2);
+      int end = 0;
+      for (int i = 0; i < paragraphs; i++) {
+        body.append("        <p>");
+        words += paragraph(r, body);
+        body.append("</p>\n");
+        if (i == lead - 1)
+          end = body.length();
+      }
+      leadEnd = end;
+    } else {
+      leadEnd = 0;
+    }
+    final String headline = headline(r);
+    final StringBuilder sb = new StringBuilder(body.length() + 4096);
+
+    sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n").append(DOCTYPE).append('\n');
+    sb.append("<nitf change.date=\"June 10, 2005\" change.time=\"19:30\" version=\"-//IPTC//DTD NITF 3.3//EN\">\n");
+    sb.append("  <head>\n");
+    sb.append("    <title>");
+    text(sb, headline);
+    sb.append("</title>\n");
+
+    // meta
+    meta(sb, "publication_day_of_month", Integer.toString(date.getDayOfMonth()));
+    meta(sb, "publication_month", Integer.toString(date.getMonthValue()));
+    meta(sb, "publication_year", Integer.toString(date.getYear()));
+    meta(sb, "publication_day_of_week", date.getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.US));
+    if (r.nextDouble() < 0.97)
+      meta(sb, "dsk", section[0]);
+    if (anomaly == Anomaly.MALFORMED_PAGE)
+      meta(sb, "print_page_number", section[1] + (1 + r.nextInt(30)));
+    else if (r.nextDouble() < 0.95)
+      meta(sb, "print_page_number", Integer.toString(logNormal(r, 3, 1.0, 1, 120)));
+    if (r.nextDouble() < 0.95)
+      meta(sb, "print_section", section[1]);
+    if (anomaly == Anomaly.MALFORMED_COLUMN)
+      meta(sb, "print_column", "");
+    else if (r.nextDouble() < 0.9)
+      meta(sb, "print_column", (r.nextBoolean() ? " " : "") + (1 + r.nextInt(6)));
+    if (online)
+      meta(sb, "online_sections", section[2]);
+    final boolean corrected = r.nextDouble() < 0.015;
+    if (corrected) {
+      meta(sb, "banner", "Correction Appended");
+      meta(sb, "correction_date", timestamp(date.plusDays(1 + r.nextInt(14))));
+    } else if (r.nextDouble() < 0.01) {
+      meta(sb, "banner", "Editors' Note Appended");
+    }
+    if (r.nextDouble() < 0.02)
+      meta(sb, "feature_page", FEATURE_PAGES[r.nextInt(FEATURE_PAGES.length)]);
+    if (r.nextDouble() < 0.1)
+      meta(sb, "column_name", COLUMN_NAMES[r.nextInt(COLUMN_NAMES.length)]);
+    final String series = r.nextDouble() < 0.03 ? SERIES[r.nextInt(SERIES.length)] : null;
+    if (series != null)
+      meta(sb, "series_name", titleCase(series));
+    if (r.nextDouble() < 0.95) {
+      meta(sb, "slug", String.format(Locale.US, "%02d%s", date.getDayOfMonth(),
+          VOCABULARY[WORDS.sample(r)].toUpperCase(Locale.US)));
+    }
+    if (online) {
+      meta(sb, "alternate_url", String.format(Locale.US, "http://www.nytimes.com/%d/%02d/%02d/%s/%s.html",
+          date.getYear(), date.getMonthValue(), date.getDayOfMonth(), section[4], urlSlug(headline)));
+    }
+    if (anomaly == Anomaly.META_WITHOUT_CONTENT)
+      sb.append("    <meta name=\"slug\"/>\n");
+
+    // docdata
+    sb.append("    <docdata>\n");
+    sb.append("      <doc-id id-string=\"").append(guid).append("\"/>\n");
+    sb.append("      <doc.copyright holder=\"The New York Times\" year=\"").append(date.getYear()).append("\"/>\n");
+    if (series != null) {
+      sb.append("      <series series.name=\"");
+      attribute(sb, series);
+      sb.append("\"/>\n");
+    } else if (anomaly == Anomaly.SERIES_WITHOUT_NAME) {
+      sb.append("      <series/>\n");
+    }
+    sb.append("      <identified-content>\n");
+    final int[] descriptors = distinct(r, DESCRIPTOR_RANKS, logNormal(r, 3, 0.7, 0, 12));
+    for (int d : descriptors)
+      classifier(sb, "indexing_service", "descriptor", DESCRIPTORS[d]);
+    final int[] people = distinct(r, PEOPLE, obituary ? 1 + r.nextInt(2) : geometric(r, 0.45, 10));
+    if (obituary || r.nextDouble() < 0.03) {
+      if (people.length > 0)
+        classifier(sb, "indexing_service", "names", titleCase(indexName(people[0], false)));
+      classifier(sb, "indexing_service", "biographical_categories",
+          BIOGRAPHICAL_CATEGORIES[r.nextInt(BIOGRAPHICAL_CATEGORIES.length)]);
+    }
+    if (anomaly == Anomaly.UNKNOWN_CLASSIFIER)
+      classifier(sb, "indexing_service", "unknown_type", "UNCLASSIFIED");
+    final int[] locations = distinct(r, LOCATION_RANKS, geometric(r, 0.5, 8));
+    for (int l : locations)
+      element(sb, "location", "indexing_service", LOCATIONS[l]);
+    final int[] organizations = distinct(r, ORGANIZATIONS, geometric(r, 0.55, 8));
+    for (int o : organizations)
+      element(sb, "org", "indexing_service", organization(o));
+    for (int p : people)
+      element(sb, "person", "indexing_service", indexName(p, true));
+    final int[] titles = distinct(r, TITLES, r.nextDouble() < 0.06 ? 1 + r.nextInt(3) : 0);
+    for (int t : titles)
+      element(sb, "object.title", "indexing_service", title(t));
+    if (online) {
+      for (int d : descriptors)
+        classifier(sb, "online_producer", "descriptor", titleCase(DESCRIPTORS[d]));
+      if (descriptors.length > 0 && r.nextDouble() < 0.6)
+        classifier(sb, "online_producer", "general_descriptor", titleCase(DESCRIPTORS[descriptors[0]]));
+      classifier(sb, "online_producer", "taxonomic_classifier", section[3]);
+      if (r.nextDouble() < 0.4)
+        classifier(sb, "online_producer", "taxonomic_classifier", SECTIONS[SECTION_RANKS.sample(r)][3]);
+      if (r.nextDouble() < 0.9)
+        classifier(sb, "online_producer", "types_of_material", typeOfMaterial(r, section));
+      for (int l : locations)
+        if (r.nextDouble() < 0.7)
+          element(sb, "location", "online_producer", titleCase(LOCATIONS[l]));
+      for (int o : organizations)
+        if (r.nextDouble() < 0.7)
+          element(sb, "org", "online_producer", titleCase(organization(o)));
+      for (int p : people)
+        if (r.nextDouble() < 0.7)
+          element(sb, "person", "online_producer", titleCase(indexName(p, false)));
+      for (int t : titles)
+        element(sb, "object.title", "online_producer", title(t));
+    }
+    sb.append("      </identified-content>\n");
+    sb.append("    </docdata>\n");
+
+    // pubdata
+    sb.append("    <pubdata date.publication=\"").append(timestamp(date))
+        .append("\" ex-ref=\"http://query.nytimes.com/gst/fullpage.html?res=");
+    for (int i = 0; i < 4; i++)
+      sb.append(String.format(Locale.US, "%08X", r.nextInt()));
+    sb.append("\" item-length=\"");
+    if (anomaly == Anomaly.MALFORMED_WORD_COUNT)
+      sb.append("n/a");
+    else
+      sb.append(words);
+    sb.append("\" name=\"The New York Times\" unit-of-measure=\"word\"/>\n");
+    sb.append("  </head>\n");
+
+    // body.head
+    sb.append("  <body>\n");
+    sb.append("    <body.head>\n");
+    sb.append("      <hedline>\n");
+    if (r.nextDouble() < 0.98) {
+      sb.append("        <hl1>");
+      text(sb, headline);
+      sb.append("</hl1>\n");
+    }
+    if (anomaly == Anomaly.UNCLASSED_HEADLINE) {
+      sb.append("        <hl2>");
+      text(sb, headline(r));
+      sb.append("</hl2>\n");
+    } else if (online && r.nextDouble() < 0.6) {
+      sb.append("        <hl2 class=\"online_headline\">");
+      text(sb, headline(r));
+      sb.append("</hl2>\n");
+    }
+    sb.append("      </hedline>\n");
+    if (!obituary && r.nextDouble() < 0.7) {
+      final int author = PEOPLE.sample(r);
+      sb.append("      <byline class=\"print_byline\">By ");
+      text(sb, bylineName(author));
+      sb.append("</byline>\n");
+      if (r.nextDouble() < 0.9)
+        element(sb, "byline", "normalized_byline", titleCase(indexName(author, true)), "      ");
+    }
+    if (r.nextDouble() < 0.35) {
+      final String place = LOCATIONS[LOCATION_RANKS.sample(r)];
+      final int paren = place.indexOf(" (");
+      sb.append("      <dateline>");
+      text(sb, paren < 0 ? place : place.substring(0, paren));
+      sb.append(", ").append(MONTHS[date.getMonthValue() - 1]).append(' ').append(date.getDayOfMonth());
+      sb.append("</dateline>\n");
+    }
+    if (r.nextDouble() < 0.3) {
+      sb.append("      <abstract>\n        <p>");
+      sentence(r, sb);
+      sb.append(' ');
+      sentence(r, sb);
+      sb.append("</p>\n      </abstract>\n");
+    }
+    sb.append("    </body.head>\n");
+
+    // body.content
+    sb.append("    <body.content>\n");
+    if (leadEnd > 0 && r.nextDouble() < 0.9) {
+      sb.append("      <block class=\"lead_paragraph\">\n");
+      sb.append(body, 0, leadEnd);
+      sb.append("      </block>\n");
+    }
+    if (online && r.nextDouble() < 0.5) {
+      sb.append("      <block class=\"online_lead_paragraph\">\n        <p>");
+      paragraph(r, sb);
+      sb.append("</p>\n      </block>\n");
+    }
+    if (anomaly == Anomaly.EMPTY_BLOCK) {
+      sb.append("      <block class=\"full_text\"/>\n");
+    } else if (paragraphs > 0) {
+      sb.append("      <block class=\"full_text\">\n");
+      sb.append(body);
+      sb.append("      </block>\n");
+    }
+    if (anomaly == Anomaly.UNKNOWN_BLOCK) {
+      sb.append("      <block class=\"unknown_block\">\n        <p>");
+      paragraph(r, sb);
+      sb.append("</p>\n      </block>\n");
+    }
+    if (corrected) {
+      sb.append("      <block class=\"correction_text\">\n        <p>");
+      paragraph(r, sb);
+      sb.append("</p>\n      </block>\n");
+    }
+    sb.append("    </body.content>\n");
+
+    // body.end
+    if (r.nextDouble() < 0.04) {
+      sb.append("    <body.end>\n");
+      sb.append("      <tagline class=\"author_info\">");
+      text(sb, titleCase(bylineName(PEOPLE.sample(r))));
+      sb.append(" is a writer in ");
+      text(sb, titleCase(LOCATIONS[LOCATION_RANKS.sample(r)]));
+      sb.append(".</tagline>\n");
+      sb.append("    </body.end>\n");
+    }
+    sb.append("  </body>\n");
+    sb.append("</nitf>\n");
+    return sb.toString();
+  }
+
+  /** The rare defects, at most one per document. */
+  private enum Anomaly {
+    MALFORMED_PAGE, MALFORMED_COLUMN, MALFORMED_WORD_COUNT, META_WITHOUT_CONTENT,
+    SERIES_WITHOUT_NAME, UNKNOWN_CLASSIFIER, UNCLASSED_HEADLINE, EMPTY_BLOCK, UNKNOWN_BLOCK
+  }
+
+  /** @return the number of words appended */
+  private static int paragraph(final SplittableRandom r, final StringBuilder sb) {
+    final int sentences = 1 + geometric(r, 0.5, 5);
+    int words = 0;
+    for (int i = 0; i < sentences; i++) {
+      if (i > 0)
+        sb.append(' ');
+      words += sentence(r, sb);
+    }
+    return words;
+  }
+
+  /** @return the number of words appended */
+  private static int sentence(final SplittableRandom r, final StringBuilder sb) {
+    final int n = logNormal(r, 18, 0.4, 3, 90);
+    final boolean quote = r.nextDouble() < 0.12;
+    if (quote)
+      sb.append('"');
+    int words = 0;
+    for (int i = 0; i < n; i++) {
+      if (i > 0)
+        sb.append(' ');
+      final double p = r.nextDouble();
+      String word;
+      if (p < 0.03) {
+        text(sb, titleCase(givenName(PEOPLE.sample(r))));
+        sb.append(' ');
+        word = titleCase(surname(PEOPLE.sample(r)));
+        words++;
+      } else if (p < 0.05) {
+        word = r.nextBoolean() ? Integer.toString(r.nextInt(1000)) : "$" + (1 + r.nextInt(500)) + " million";
+      } else if (p < 0.053) {
+        word = ACCENTED_WORDS[r.nextInt(ACCENTED_WORDS.length)];
+      } else if (p < 0.056) {
+        sb.append("&amp;");
+        words++;
+        continue;
+      } else if (p < 0.058) {
+        sb.append("&#8212;");
+        continue;
+      } else {
+        word = VOCABULARY[WORDS.sample(r)];
+      }
+      if (i == 0)
+        word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+      if (r.nextDouble() < 0.005) {
+        sb.append("<em>");
+        text(sb, word);
+        sb.append("</em>");
+      } else {
+        text(sb, word);
+      }
+      words++;
+      if (i < n - 1 && r.nextDouble() < 0.06)
+        sb.append(',');
+    }
+    if (quote) {
+      sb.append(",\" said ");
+      text(sb, titleCase(surname(PEOPLE.sample(r))));
+      sb.append('.');
+      words += 2;
+    } else {
+      final double p = r.nextDouble();
+      sb.append(p < 0.92 ? '.' : p < 0.97 ? '?' : '!');
+    }
+    return words;
+  }
+
+  private static String headline(final SplittableRandom r) {
+    final int n = 3 + r.nextInt(8);
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < n; i++) {
+      if (i > 0)
+        sb.append(' ');
+      final String w = VOCABULARY[WORDS.sample(r)];
+      sb.append(Character.toUpperCase(w.charAt(0))).append(w, 1, w.length());
+    }
+    return sb.toString();
+  }
+
+  private static String urlSlug(final String headline) {
+    return headline.toLowerCase(Locale.US).replace(' ', '-');
+  }
+
+  private static String typeOfMaterial(final SplittableRandom r, final String[] section) {
+    if (section[0].equals("Obituary"))
+      return "Obituary";
+    if (section[0].equals("Editorial Desk"))
+      return r.nextDouble() < 0.6 ? "Editorial" : "Letter";
+    final double p = r.nextDouble();
+    return p < 0.85 ? TYPES_OF_MATERIAL[0] : TYPES_OF_MATERIAL[1 + r.nextInt(TYPES_OF_MATERIAL.length - 1)];
+  }
+
+  private static String surname(final int rank) {
+    return SURNAMES[rank % SURNAMES.length];
+  }
+
+  private static String givenName(final int rank) {
+    return GIVEN_NAMES[(rank / SURNAMES.length) % GIVEN_NAMES.length];
+  }
+
+  private static char initial(final int rank) {
+    return (char) ('A' + (rank / (SURNAMES.length * GIVEN_NAMES.length)) % 26);
+  }
+
+  /** @return e.g. <code>ALVAREZ, MARIA J</code>, or without the initial */
+  private static String indexName(final int rank, final boolean initial) {
+    final String name = surname(rank) + ", " + givenName(rank);
+    return initial ? name + " " + initial(rank) : name;
+  }
+
+  /** @return e.g. <code>MARIA J. ALVAREZ</code> */
+  private static String bylineName(final int rank) {
+    return givenName(rank) + " " + initial(rank) + ". " + surname(rank);
+  }
+
+  private static String organization(final int rank) {
+    return ORGANIZATION_STEMS[rank % ORGANIZATION_STEMS.length] + " "
+        + ORGANIZATION_SUFFIXES[(rank / ORGANIZATION_STEMS.length) % ORGANIZATION_SUFFIXES.length];
+  }
+
+  private static String title(final int rank) {
+    final String a = VOCABULARY[COMMON_WORDS.length + rank];
+    final String b = VOCABULARY[rank % COMMON_WORDS.length];
+    return titleCase(b + " " + a) + " " + TITLE_KINDS[rank % TITLE_KINDS.length];
+  }
+
+  private static String pseudoWord(int rank) {
+    final StringBuilder sb = new StringBuilder();
+    sb.append(SYLLABLES[rank % SYLLABLES.length]);
+    rank /= SYLLABLES.length;
+    do {
+      sb.append(SYLLABLES[rank % SYLLABLES.length]);
+      rank /= SYLLABLES.length;
+    } while (rank > 0);
+    return sb.toString();
+  }
+
+  /** Upper-case the first letter of each word, and lower-case the rest. */
+  static String titleCase(final String s) {
+    final char[] cs = s.toCharArray();
+    boolean start = true;
+    for (int i = 0; i < cs.length; i++) {
+      final char c = cs[i];
+      if (Character.isLetter(c)) {
+        cs[i] = start ? Character.toUpperCase(c) : Character.toLowerCase(c);
+        start = false;
+      } else {
+        start = c != '\'';
+      }
+    }
+    return new String(cs);
+  }
+
+  private static String timestamp(final LocalDate date) {
+    return String.format(Locale.US, "%04d%02d%02dT000000", date.getYear(), date.getMonthValue(),
+        date.getDayOfMonth());
+  }
+
+  private static void meta(final StringBuilder sb, final String name, final String content) {
+    sb.append("    <meta content=\"");
+    attribute(sb, content);
+    sb.append("\" name=\"").append(name).append("\"/>\n");
+  }
+
+  private static void classifier(final StringBuilder sb, final String cls, final String type, final String value) {
+    sb.append("        <classifier class=\"").append(cls).append("\" type=\"").append(type).append("\">");
+    text(sb, value);
+    sb.append("</classifier>\n");
+  }
+
+  private static void element(final StringBuilder sb, final String name, final String cls, final String value) {
+    element(sb, name, cls, value, "        ");
+  }
+
+  private static void element(final StringBuilder sb, final String name, final String cls, final String value,
+      final String indent) {
+    sb.append(indent).append('<').append(name).append(" class=\"").append(cls).append("\">");
+    text(sb, value);
+    sb.append("</").append(name).append(">\n");
+  }
+
+  private static void text(final StringBuilder sb, final String s) {
+    escape(sb, s, false);
+  }
+
+  private static void attribute(final StringBuilder sb, final String s) {
+    escape(sb, s, true);
+  }
+
+  private static void escape(final StringBuilder sb, final String s, final boolean quotes) {
+    for (int i = 0; i < s.length(); i++) {
+      final char c = s.charAt(i);
+      switch (c) {
+      case '&':
+        sb.append("&amp;");
+        break;
+      case '<':
+        sb.append("&lt;");
+        break;
+      case '>':
+        sb.append("&gt;");
+        break;
+      case '"':
+        sb.append(quotes ? "&quot;" : "\"");
+        break;
+      default:
+        sb.append(c);
+      }
+    }
+  }
+
+  /** @return <code>n</code> distinct ranks from <code>z</code>, or fewer after repeated collisions */
+  private static int[] distinct(final SplittableRandom r, final Zipf z, final int n) {
+    final int[] out = new int[n];
+    int k = 0;
+    outer: for (int tries = 0; k < n && tries < 4 * n; tries++) {
+      final int v = z.sample(r);
+      for (int i = 0; i < k; i++)
+        if (out[i] == v)
+          continue outer;
+      out[k++] = v;
+    }
+    return k == n ? out : Arrays.copyOf(out, k);
+  }
+
+  /** @return a log-normal value with the given median, clamped to <code>[min, max]</code> */
+  private static int logNormal(final SplittableRandom r, final double median, final double sigma,
+      final int min, final int max) {
+    final double v = median * Math.exp(sigma * gaussian(r));
+    return (int) Math.max(min, Math.min(max, Math.round(v)));
+  }
+
+  /** @return the number of failures before the first success, at most <code>max</code> */
+  private static int geometric(final SplittableRandom r, final double p, final int max) {
+    int n = 0;
+    while (n < max && r.nextDouble() >= p)
+      n++;
+    return n;
+  }
+
+  // Box-Muller; SplittableRandom has no nextGaussian()
+  private static double gaussian(final SplittableRandom r) {
+    final double u = 1.0 - r.nextDouble();
+    return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * r.nextDouble());
+  }
+
+  private static long mix(long z) {
+    z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+    z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return z ^ (z >>> 33);
+  }
+
+  /** Samples ranks <code>0</code> to <code>n - 1</code> with probability proportional to <code>1 / (rank + 1)^s</code>. */
+  private static final class Zipf {
+    private final double[] cdf;
+
+    Zipf(final int n, final double s) {
+      this.cdf = new double[n];
+      double sum = 0;
+      for (int i = 0; i < n; i++) {
+        sum += 1 / Math.pow(i + 1, s);
+        this.cdf[i] = sum;
+      }
+    }
+
+    int sample(final SplittableRandom r) {
+      final double u = r.nextDouble() * this.cdf[this.cdf.length - 1];
+      int lo = 0;
+      int hi = this.cdf.length - 1;
+      while (lo < hi) {
+        final int mid = (lo + hi) >>> 1;
+        if (this.cdf[mid] <= u)
+          lo = mid + 1;
+        else
+          hi = mid;
+      }
+      return lo;
+    }
+  }
+}
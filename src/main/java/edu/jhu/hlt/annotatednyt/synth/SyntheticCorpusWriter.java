@@ -0,0 +1,224 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.synth;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a synthetic corpus laid out like the <code>data</code> directory of the Annotated NYT
+ * corpus: one directory per year, each holding one <code>.tgz</code> archive per month, whose
+ * entries are named <code>MM/DD/GUID.xml</code>. The result can be read with
+ * {@link edu.jhu.hlt.annotatednyt.CorpusReader}.
+ * <br><br>
+ * At scale 1, each month has about {@link #DOCUMENTS_PER_MONTH} documents, the monthly average
+ * of the real corpus, varying by up to 15% from month to month; over the real corpus's span,
+ * {@link #FIRST_MONTH} to {@link #LAST_MONTH}, that is about 1.86 million documents. Scales up
+ * to {@link #MAX_SCALE} are allowed. Documents are spread evenly over the days of their month,
+ * and guids are assigned consecutively from 0 in date order.
+ * <br><br>
+ * Archives are byte-for-byte reproducible: their contents depend only on the generator's seed,
+ * the scale, and the months written, and entries carry their publication date as modification
+ * time.
+ */
+public class SyntheticCorpusWriter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SyntheticCorpusWriter.class);
+
+  /**
+   * The average number of documents per month in the real corpus.
+   */
+  public static final int DOCUMENTS_PER_MONTH = 7543;
+
+  /**
+   * The largest allowed scale, 10 times the real corpus.
+   */
+  public static final double MAX_SCALE = 10;
+
+  /**
+   * The first month of the real corpus, January 1987.
+   */
+  public static final YearMonth FIRST_MONTH = YearMonth.of(1987, 1);
+
+  /**
+   * The last month of the real corpus, June 2007.
+   */
+  public static final YearMonth LAST_MONTH = YearMonth.of(2007, 6);
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final NitfGenerator generator;
+  private final double scale;
+
+  /**
+   * @param generator the {@link NitfGenerator} to generate documents with
+   * @param scale the size relative to the real corpus, greater than 0 and at most
+   * {@link #MAX_SCALE}
+   */
+  public SyntheticCorpusWriter(final NitfGenerator generator, final double scale) {
+    if (!(scale > 0 && scale <= MAX_SCALE))
+      throw new IllegalArgumentException("scale must be in (0, " + MAX_SCALE + "]: " + scale);
+    this.generator = generator;
+    this.scale = scale;
+  }
+
+  /**
+   * @param month a month
+   * @return the number of documents written for <code>month</code>; at least 1
+   */
+  public int getDocumentCount(final YearMonth month) {
+    final long m = month.getYear() * 12L + month.getMonthValue();
+    final SplittableRandom r = new SplittableRandom(this.generator.getSeed() ^ m);
+    final double jitter = 0.85 + 0.3 * r.nextDouble();
+    return (int) Math.max(1, Math.round(DOCUMENTS_PER_MONTH * this.scale * jitter));
+  }
+
+  /**
+   * Write the archives of every month from <code>from</code> to <code>to</code>, replacing any
+   * that exist.
+   *
+   * @param dataPath the <code>data</code> directory to write to; created if needed
+   * @param from the first month, inclusive
+   * @param to the last month, inclusive
+   * @param threads the number of archives to write concurrently
+   * @return the number of documents written
+   * @throws IOException on errors writing the archives
+   */
+  public long write(final Path dataPath, final YearMonth from, final YearMonth to, final int threads)
+      throws IOException {
+    if (threads < 1)
+      throw new IllegalArgumentException("threads must be positive: " + threads);
+    final int months = (int) ChronoUnit.MONTHS.between(from, to) + 1;
+    if (months < 1)
+      throw new IllegalArgumentException("Empty range: " + from + " to " + to);
+    final ExecutorService pool = Executors.newFixedThreadPool(threads);
+    final List<Future<Integer>> futures = new ArrayList<>(months);
+    long guid = 0;
+    try {
+      for (int i = 0; i < months; i++) {
+        final YearMonth month = from.plusMonths(i);
+        final int firstGuid = (int) guid;
+        guid += this.getDocumentCount(month);
+        if (guid > Integer.MAX_VALUE)
+          throw new IllegalArgumentException("Too many documents for int guids: " + guid);
+        final Path archive = dataPath.resolve(String.format(Locale.US, "%04d/%02d.tgz",
+            month.getYear(), month.getMonthValue()));
+        futures.add(pool.submit(() -> this.writeArchive(archive, month, firstGuid)));
+      }
+      for (Future<Integer> f : futures)
+        await(f);
+    } finally {
+      pool.shutdownNow();
+    }
+    return guid;
+  }
+
+  /**
+   * Write the archive of one month, replacing it if it exists.
+   *
+   * @param archive the <code>.tgz</code> file to write; its directory is created if needed
+   * @param month the month of the documents
+   * @param firstGuid the guid of the first document
+   * @return the number of documents written
+   * @throws IOException on errors writing <code>archive</code>
+   */
+  public int writeArchive(final Path archive, final YearMonth month, final int firstGuid) throws IOException {
+    final int n = this.getDocumentCount(month);
+    final int days = month.lengthOfMonth();
+    Files.createDirectories(archive.toAbsolutePath().getParent());
+    // write aside and rename, so an interrupted run never leaves a truncated archive
+    final Path tmp = archive.resolveSibling(archive.getFileName() + ".tmp");
+    try (OutputStream os = Files.newOutputStream(tmp);
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(
+            new GZIPOutputStream(new BufferedOutputStream(os, BUFFER_SIZE), BUFFER_SIZE))) {
+      tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+      for (int i = 0; i < n; i++) {
+        final LocalDate date = month.atDay(1 + (int) ((long) i * days / n));
+        final int guid = firstGuid + i;
+        final byte[] doc = this.generator.generate(guid, date);
+        final TarArchiveEntry e = new TarArchiveEntry(String.format(Locale.US, "%02d/%02d/%07d.xml",
+            date.getMonthValue(), date.getDayOfMonth(), guid));
+        e.setSize(doc.length);
+        e.setModTime(Date.from(date.atStartOfDay(ZoneOffset.UTC).toInstant()));
+        // the default owner is the current user, which would make archives differ by machine
+        e.setUserName("");
+        e.setGroupName("");
+        tar.putArchiveEntry(e);
+        tar.write(doc);
+        tar.closeArchiveEntry();
+      }
+    }
+    Files.move(tmp, archive, StandardCopyOption.REPLACE_EXISTING);
+    LOGGER.debug("Wrote {} documents to {}", n, archive);
+    return n;
+  }
+
+  private static <T> T await(final Future<T> f) throws IOException {
+    try {
+      return f.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while writing the corpus.");
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Write a synthetic corpus spanning the real corpus's months.
+   * <br><br>
+   * Usage: <code>SyntheticCorpusWriter DATA_PATH [SCALE [SEED [THREADS]]]</code>; the scale
+   * defaults to 1, the seed to 0, and the threads to the number of processors.
+   *
+   * @param args the command line arguments
+   * @throws IOException on errors writing the corpus
+   */
+  public static void main(final String[] args) throws IOException {
+    if (args.length < 1 || args.length > 4) {
+      System.err.println("Usage: SyntheticCorpusWriter DATA_PATH [SCALE [SEED [THREADS]]]");
+      System.exit(1);
+    }
+    final Path dataPath = Paths.get(args[0]);
+    final double scale = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+    final long seed = args.length > 2 ? Long.parseLong(args[2]) : 0;
+    final int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+    final long start = System.nanoTime();
+    final long n = new SyntheticCorpusWriter(new NitfGenerator(seed), scale)
+        .write(dataPath, FIRST_MONTH, LAST_MONTH, threads);
+    LOGGER.info("Wrote {} documents to {} in {} s", n, dataPath, (System.nanoTime() - start) / 1_000_000_000L);
+  }
+}
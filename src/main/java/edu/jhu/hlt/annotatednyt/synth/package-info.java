@@ -0,0 +1,10 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+
+/**
+ * Deterministic synthetic NITF documents and corpora, for load and correctness testing without
+ * the licensed LDC corpus.
+ */
+package edu.jhu.hlt.annotatednyt.synth;
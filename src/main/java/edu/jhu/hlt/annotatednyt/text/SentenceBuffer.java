@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.text;
+
+import java.util.Arrays;
+
+/**
+ * A reusable buffer of sentences, each stored as a range of token indexes into a
+ * {@link TokenBuffer}: sentence <code>i</code> is tokens <code>start(i)</code> to
+ * <code>end(i)</code>, exclusive. Like {@link TokenBuffer}, the arrays are kept across
+ * {@link #clear()}.
+ * <br><br>
+ * Not thread-safe.
+ */
+public final class SentenceBuffer {
+
+  private int[] starts = new int[64];
+  private int[] ends = new int[64];
+  private int size;
+
+  /**
+   * Remove every sentence, keeping the arrays.
+   */
+  public void clear() {
+    this.size = 0;
+  }
+
+  /**
+   * @return the number of sentences
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * @param i a sentence index
+   * @return the index of the first token of sentence <code>i</code>
+   */
+  public int start(final int i) {
+    return this.starts[i];
+  }
+
+  /**
+   * @param i a sentence index
+   * @return the index one past the last token of sentence <code>i</code>
+   */
+  public int end(final int i) {
+    return this.ends[i];
+  }
+
+  /**
+   * Append a sentence.
+   *
+   * @param start the index of its first token
+   * @param end the index one past its last token
+   */
+  public void add(final int start, final int end) {
+    if (this.size == this.starts.length) {
+      final int c = this.size * 2;
+      this.starts = Arrays.copyOf(this.starts, c);
+      this.ends = Arrays.copyOf(this.ends, c);
+    }
+    this.starts[this.size] = start;
+    this.ends[this.size] = end;
+    this.size++;
+  }
+}
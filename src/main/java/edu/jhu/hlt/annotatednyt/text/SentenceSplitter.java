@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.text;
+
+import edu.jhu.hlt.annotatednyt.ParagraphView;
+
+/**
+ * A rule-based sentence splitter for newswire, working on the output of
+ * {@link Tokenizer#tokenizeNewswire(CharSequence, int, int, TokenBuffer)}. No strings are
+ * created.
+ * <br><br>
+ * A sentence ends after a run of <code>.</code>, <code>!</code>, or <code>?</code> tokens, and
+ * any closing quotes or brackets attached to it, when the next token is separated by space and
+ * starts with an upper-case letter, a digit, or an opening quote or bracket. Periods inside
+ * abbreviation tokens do not end sentences, except that initials such as <code>U.S.</code> and
+ * abbreviations such as <code>Inc.</code> do when followed by a common sentence opener
+ * (<code>The</code>, <code>He</code>, ...). Titles, months, and single initials never do, so
+ * datelines such as <code>ST. LOUIS, Jan. 5</code> and names such as <code>Rudolph W.
+ * Giuliani</code> stay whole. Paragraph ends always end sentences.
+ */
+public final class SentenceSplitter {
+
+  // capitalized words that open a sentence far more often than they continue a name
+  private static final String[] OPENERS = { "A", "After", "An", "And", "As", "At", "But", "By", "For",
+      "He", "Her", "His", "However", "I", "If", "In", "It", "Its", "Many", "Most", "Mr", "Mrs", "Ms",
+      "On", "One", "Some", "She", "So", "That", "The", "Their", "There", "These", "They", "This",
+      "Those", "To", "We", "What", "When", "While", "Yet" };
+
+  private SentenceSplitter() {
+  }
+
+  /**
+   * Tokenize every paragraph of <code>view</code> and split it into sentences. Token offsets
+   * are offsets into {@link ParagraphView#getText()}; no sentence spans two paragraphs.
+   *
+   * @param view the paragraphs, e.g. {@link edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument#getBodyParagraphView()}
+   * @param tokens the {@link TokenBuffer} to fill; cleared first
+   * @param sentences the {@link SentenceBuffer} to fill; cleared first
+   */
+  public static void split(final ParagraphView view, final TokenBuffer tokens, final SentenceBuffer sentences) {
+    tokens.clear();
+    sentences.clear();
+    final CharSequence text = view.getText();
+    for (int p = 0; p < view.size(); p++) {
+      final int from = tokens.size();
+      Tokenizer.tokenizeNewswire(text, view.start(p), view.end(p), tokens);
+      split(text, tokens, from, sentences);
+    }
+  }
+
+  /**
+   * Append the sentences of tokens <code>from</code> to the end of <code>tokens</code> to
+   * <code>sentences</code>. The tokens are taken as one paragraph: the last sentence ends
+   * with the last token.
+   *
+   * @param text the tokenized text
+   * @param tokens tokens of <code>text</code> from
+   * {@link Tokenizer#tokenizeNewswire(CharSequence, int, int, TokenBuffer)}
+   * @param from the index of the first token to split
+   * @param sentences the {@link SentenceBuffer} to append to; not cleared
+   */
+  public static void split(final CharSequence text, final TokenBuffer tokens, final int from,
+      final SentenceBuffer sentences) {
+    final int n = tokens.size();
+    int start = from;
+    int i = from;
+    while (i < n) {
+      final int end = endOfSentence(text, tokens, i, n);
+      if (end < 0) {
+        i++;
+        continue;
+      }
+      sentences.add(start, end);
+      start = i = end;
+    }
+    if (start < n)
+      sentences.add(start, n);
+  }
+
+  /**
+   * @return the index one past the last token of the sentence ending at token <code>i</code>,
+   * or -1 if no sentence ends there
+   */
+  private static int endOfSentence(final CharSequence text, final TokenBuffer tokens, final int i, final int n) {
+    final int type = tokens.type(i);
+    final boolean abbreviation;
+    if (type == Tokenizer.PUNCTUATION && isTerminal(text.charAt(tokens.start(i)))) {
+      abbreviation = false;
+    } else if (type == Tokenizer.ABBREVIATION && mayEndSentence(text, tokens.start(i), tokens.end(i))) {
+      abbreviation = true;
+    } else {
+      return -1;
+    }
+    int j = i + 1;
+    // "?!", then closing quotes and brackets, attached to the previous token
+    while (j < n && tokens.type(j) == Tokenizer.PUNCTUATION && tokens.start(j) == tokens.end(j - 1)) {
+      final char c = text.charAt(tokens.start(j));
+      if (!isTerminal(c) && !isClosing(c))
+        break;
+      j++;
+    }
+    if (j == n)
+      return n;
+    if (tokens.start(j) == tokens.end(j - 1))
+      return -1;
+    final int s = tokens.start(j);
+    final char c = text.charAt(s);
+    if (abbreviation)
+      return tokens.type(j) == Tokenizer.WORD && Tokenizer.indexOf(OPENERS, text, s, tokens.end(j)) >= 0
+          && Character.isUpperCase(c) ? j : -1;
+    return Character.isUpperCase(c) || Character.isDigit(c) || isOpening(c) ? j : -1;
+  }
+
+  // dotted initials and ABBREVIATIONS, but not single initials or TITLES
+  private static boolean mayEndSentence(final CharSequence text, final int start, final int end) {
+    if (end - start == 2)
+      return false;
+    for (int k = start; k < end - 1; k++)
+      if (text.charAt(k) == '.')
+        return true;
+    return Tokenizer.indexOf(Tokenizer.ABBREVIATIONS, text, start, end - 1) >= 0;
+  }
+
+  private static boolean isTerminal(final char c) {
+    return c == '.' || c == '!' || c == '?';
+  }
+
+  private static boolean isClosing(final char c) {
+    return c == '"' || c == '\'' || c == ')' || c == ']' || c == '\u201d' || c == '\u2019';
+  }
+
+  private static boolean isOpening(final char c) {
+    return c == '"' || c == '\'' || c == '(' || c == '[' || c == '\u201c' || c == '\u2018';
+  }
+}
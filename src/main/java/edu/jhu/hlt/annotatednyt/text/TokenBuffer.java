@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.text;
+
+import java.util.Arrays;
+
+/**
+ * A reusable buffer of tokens, each stored as <code>(start, end, type)</code> in parallel
+ * <code>int</code> arrays. Offsets are character offsets into the tokenized text, with
+ * <code>end</code> exclusive. The arrays grow as needed and are kept across {@link #clear()},
+ * so a buffer reused across documents stops allocating once it has seen the longest one.
+ * <br><br>
+ * Not thread-safe.
+ */
+public final class TokenBuffer {
+
+  private int[] starts;
+  private int[] ends;
+  private int[] types;
+  private int size;
+
+  /**
+   * Create an empty buffer.
+   */
+  public TokenBuffer() {
+    this(256);
+  }
+
+  /**
+   * @param capacity the initial number of tokens the buffer can hold
+   */
+  public TokenBuffer(final int capacity) {
+    final int c = Math.max(1, capacity);
+    this.starts = new int[c];
+    this.ends = new int[c];
+    this.types = new int[c];
+  }
+
+  /**
+   * Remove every token, keeping the arrays.
+   */
+  public void clear() {
+    this.size = 0;
+  }
+
+  /**
+   * @return the number of tokens
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * @param i a token index
+   * @return the offset of the first character of token <code>i</code>
+   */
+  public int start(final int i) {
+    return this.starts[i];
+  }
+
+  /**
+   * @param i a token index
+   * @return the offset one past the last character of token <code>i</code>
+   */
+  public int end(final int i) {
+    return this.ends[i];
+  }
+
+  /**
+   * @param i a token index
+   * @return the type of token <code>i</code>, one of the {@link Tokenizer} type constants
+   */
+  public int type(final int i) {
+    return this.types[i];
+  }
+
+  /**
+   * Append a token.
+   *
+   * @param start the offset of its first character
+   * @param end the offset one past its last character
+   * @param type its type
+   */
+  public void add(final int start, final int end, final int type) {
+    if (this.size == this.starts.length) {
+      final int c = this.size * 2;
+      this.starts = Arrays.copyOf(this.starts, c);
+      this.ends = Arrays.copyOf(this.ends, c);
+      this.types = Arrays.copyOf(this.types, c);
+    }
+    this.starts[this.size] = start;
+    this.ends[this.size] = end;
+    this.types[this.size] = type;
+    this.size++;
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.text;
+
+/**
+ * Splits text into tokens reported as offsets into a {@link TokenBuffer}; no strings are
+ * created.
+ * <br><br>
+ * {@link #tokenize(CharSequence, TokenBuffer)} keeps only words and numbers, maximal runs of
+ * letters or digits, and is what the indexes use. {@link #tokenizeNewswire(CharSequence, int,
+ * int, TokenBuffer)} also keeps punctuation and follows newswire conventions, and is the input
+ * of the {@link SentenceSplitter}.
+ */
+public final class Tokenizer {
+
+  /** A run containing at least one letter. */
+  public static final int WORD = 0;
+  /** A run of digits only. */
+  public static final int NUMBER = 1;
+  /** A punctuation mark, or a run of the same mark such as <code>...</code> or <code>--</code>. */
+  public static final int PUNCTUATION = 2;
+  /** A word with its trailing period: initials such as <code>U.S.</code>, or a known abbreviation. */
+  public static final int ABBREVIATION = 3;
+
+  // abbreviations keeping their period; matched ignoring case, so datelines such as
+  // "ST. LOUIS" are covered. SentenceSplitter sorts them into titles and the rest.
+  static final String[] TITLES = { "Adm", "Ave", "Brig", "Capt", "Cmdr", "Col", "Dr", "Ft", "Gen", "Gov",
+      "Hon", "Lieut", "Lt", "Maj", "Messrs", "Mr", "Mrs", "Ms", "Mt", "Prof", "Rep", "Rev", "Sen", "Sgt",
+      "St", "Supt", "vs", "Jan", "Feb", "Aug", "Sept", "Oct", "Nov", "Dec" };
+  static final String[] ABBREVIATIONS = { "Bros", "Co", "Corp", "Inc", "Jr", "Ltd", "Sr", "etc",
+      "Ala", "Ariz", "Ark", "Calif", "Colo", "Conn", "Del", "Fla", "Ga", "Ill", "Ind", "Kan", "Ky",
+      "La", "Md", "Mass", "Mich", "Minn", "Miss", "Mo", "Mont", "Neb", "Nev", "Okla", "Ore", "Pa",
+      "Tenn", "Tex", "Va", "Vt", "Wash", "Wis", "Wyo" };
+
+  private Tokenizer() {
+  }
+
+  /**
+   * Append the tokens of <code>text</code> to <code>out</code>.
+   *
+   * @param text the text to tokenize
+   * @param out the {@link TokenBuffer} to append to; not cleared
+   */
+  public static void tokenize(final CharSequence text, final TokenBuffer out) {
+    final int len = text.length();
+    int i = 0;
+    while (i < len) {
+      char c = text.charAt(i);
+      if (!Character.isLetterOrDigit(c)) {
+        i++;
+        continue;
+      }
+      final int start = i;
+      boolean digits = true;
+      do {
+        digits &= c >= '0' && c <= '9';
+        if (++i == len)
+          break;
+        c = text.charAt(i);
+      } while (Character.isLetterOrDigit(c));
+      out.add(start, i, digits ? NUMBER : WORD);
+    }
+  }
+
+  /**
+   * Append the newswire tokens of <code>text</code> from <code>from</code> to <code>to</code>
+   * to <code>out</code>. Offsets are offsets into <code>text</code>, so the paragraphs of a
+   * field can be tokenized in place, e.g. over {@link edu.jhu.hlt.annotatednyt.ParagraphView#getText()}.
+   * <br><br>
+   * Words may contain an apostrophe, ampersand, or hyphen followed by a letter
+   * (<code>O'Brien</code>, <code>AT&amp;T</code>, <code>mother-in-law</code>); numbers may contain
+   * a comma or period followed by a digit (<code>1,250.50</code>). Initials and the words of a
+   * short list of newswire abbreviations keep their period as one {@link #ABBREVIATION}. Any
+   * other character that is neither a letter, a digit, nor a space is a {@link #PUNCTUATION}
+   * token, and runs of <code>.</code>, <code>-</code>, <code>!</code>, or <code>?</code> are
+   * grouped.
+   *
+   * @param text the text to tokenize
+   * @param from the offset to start at
+   * @param to the offset to stop at, exclusive
+   * @param out the {@link TokenBuffer} to append to; not cleared
+   */
+  public static void tokenizeNewswire(final CharSequence text, final int from, final int to, final TokenBuffer out) {
+    int i = from;
+    while (i < to) {
+      final char c = text.charAt(i);
+      if (isSpace(c)) {
+        i++;
+        continue;
+      }
+      final int start = i;
+      if (!Character.isLetterOrDigit(c)) {
+        i++;
+        if (c == '.' || c == '-' || c == '!' || c == '?')
+          while (i < to && text.charAt(i) == c)
+            i++;
+        out.add(start, i, PUNCTUATION);
+        continue;
+      }
+      boolean digits = true;
+      boolean dotted = false;
+      while (true) {
+        char d = text.charAt(i);
+        while (Character.isLetterOrDigit(d)) {
+          digits &= d >= '0' && d <= '9';
+          if (++i == to)
+            break;
+          d = text.charAt(i);
+        }
+        if (i + 1 >= to)
+          break;
+        final char n = text.charAt(i + 1);
+        if (digits ? (d == ',' || d == '.') && n >= '0' && n <= '9'
+            : (d == '\'' || d == '\u2019' || d == '&') && Character.isLetter(n)
+                || d == '-' && Character.isLetterOrDigit(n)
+                || d == '.' && isInitial(text, start, i) && Character.isLetter(n)
+                    && (i + 2 == to || !Character.isLetterOrDigit(text.charAt(i + 2)))) {
+          dotted |= d == '.' && !digits;
+          i++;
+          continue;
+        }
+        break;
+      }
+      int type = digits ? NUMBER : WORD;
+      if (!digits && i < to && text.charAt(i) == '.'
+          && (dotted || isInitial(text, start, i) && Character.isUpperCase(text.charAt(i - 1))
+              || indexOf(TITLES, text, start, i) >= 0 || indexOf(ABBREVIATIONS, text, start, i) >= 0)) {
+        i++;
+        type = ABBREVIATION;
+      }
+      out.add(start, i, type);
+    }
+  }
+
+  static boolean isSpace(final char c) {
+    return c <= ' ' || Character.isWhitespace(c) || Character.isSpaceChar(c);
+  }
+
+  // the letter before end is a single letter: the token so far is "X" or ends in ".X"
+  private static boolean isInitial(final CharSequence text, final int start, final int end) {
+    return Character.isLetter(text.charAt(end - 1)) && (end - 1 == start || text.charAt(end - 2) == '.');
+  }
+
+  /**
+   * @return the index of the entry of <code>list</code> equal, ignoring case, to
+   * <code>text</code> from <code>start</code> to <code>end</code>, or -1
+   */
+  static int indexOf(final String[] list, final CharSequence text, final int start, final int end) {
+    final int len = end - start;
+    outer: for (int k = 0; k < list.length; k++) {
+      final String s = list[k];
+      if (s.length() != len)
+        continue;
+      for (int j = 0; j < len; j++)
+        if (Character.toLowerCase(s.charAt(j)) != Character.toLowerCase(text.charAt(start + j)))
+          continue outer;
+      return k;
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,10 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+
+/**
+ * Text processing over document text: tokenization and sentence splitting into reusable
+ * offset buffers.
+ */
+package edu.jhu.hlt.annotatednyt.text;
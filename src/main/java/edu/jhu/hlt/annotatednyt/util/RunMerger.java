@@ -0,0 +1,146 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.util;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Merges sorted runs spilled to disk, streaming: a priority queue of {@link Cursor}s, one per
+ * run, ordered by their current records. Callers read the least record with {@link #peek()},
+ * then {@link #advance()} past it; records that compare equal come out one after another, so
+ * they can be combined.
+ *
+ * @param <C> the cursor type, which reads one record at a time and compares current records
+ */
+public final class RunMerger<C extends RunMerger.Cursor<C>> implements Closeable {
+
+  /**
+   * Reads the records of one run, in order. Subclasses hold the current record in fields.
+   *
+   * @param <C> the subclass itself
+   */
+  public abstract static class Cursor<C extends Cursor<C>> implements Comparable<C>, Closeable {
+
+    /** The run being read. */
+    protected final DataInputStream in;
+
+    /**
+     * @param run the run to read
+     * @throws IOException on errors opening <code>run</code>
+     */
+    protected Cursor(final Path run) throws IOException {
+      this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+    }
+
+    /**
+     * Read the next record into the fields of this cursor.
+     *
+     * @return <code>false</code> at the end of the run
+     * @throws IOException on errors reading
+     */
+    protected abstract boolean next() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+      this.in.close();
+    }
+  }
+
+  /**
+   * Opens a {@link Cursor} over a run.
+   *
+   * @param <C> the cursor type
+   */
+  @FunctionalInterface
+  public interface Opener<C> {
+    /**
+     * @param run the run to open
+     * @return a cursor before the first record of <code>run</code>
+     * @throws IOException on errors opening <code>run</code>
+     */
+    C open(Path run) throws IOException;
+  }
+
+  private final List<C> cursors = new ArrayList<>();
+  private final PriorityQueue<C> queue = new PriorityQueue<>();
+
+  /**
+   * @param runs the runs to merge
+   * @param opener opens a cursor over each run
+   * @throws IOException on errors opening or reading the runs
+   */
+  public RunMerger(final List<Path> runs, final Opener<C> opener) throws IOException {
+    try {
+      for (Path p : runs) {
+        final C c = opener.open(p);
+        this.cursors.add(c);
+        if (c.next())
+          this.queue.add(c);
+      }
+    } catch (IOException | RuntimeException e) {
+      try {
+        this.close();
+      } catch (IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * @return <code>true</code> if any run has records left
+   */
+  public boolean hasNext() {
+    return !this.queue.isEmpty();
+  }
+
+  /**
+   * @return the cursor on the least remaining record
+   */
+  public C peek() {
+    return this.queue.peek();
+  }
+
+  /**
+   * Move past the record of {@link #peek()}.
+   *
+   * @throws IOException on errors reading its run
+   */
+  public void advance() throws IOException {
+    final C c = this.queue.poll();
+    if (c.next())
+      this.queue.add(c);
+  }
+
+  /**
+   * Close every run.
+   *
+   * @throws IOException on errors closing a run; the others are still closed
+   */
+  @Override
+  public void close() throws IOException {
+    IOException failure = null;
+    for (C c : this.cursors) {
+      try {
+        c.close();
+      } catch (IOException e) {
+        if (failure == null)
+          failure = e;
+        else
+          failure.addSuppressed(e);
+      }
+    }
+    if (failure != null)
+      throw failure;
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.util;
+
+import java.util.Arrays;
+
+/**
+ * Assigns dense <code>int</code> ids, from 0, to strings, in order of first appearance, in an
+ * open-addressing (linear probing) table. Strings are looked up by {@link CharSequence}, so
+ * known strings are found without allocating; a {@link String} copy is made only when an id is
+ * assigned. Hashes follow {@link String#hashCode()}, so {@link String} keys use their cached
+ * hash.
+ * <br><br>
+ * Callers keep per-string values in arrays indexed by id. Not thread-safe, but once filled,
+ * {@link #find(CharSequence)} and {@link #get(int)} may be called from several threads.
+ */
+public final class StringIds {
+
+  private String[] keys;
+  private int[] hashes;
+  // id + 1 per slot, 0 if empty
+  private int[] table;
+  private int size;
+
+  /**
+   * Create a table with room for 64 strings.
+   */
+  public StringIds() {
+    this(64);
+  }
+
+  /**
+   * @param capacity the number of strings to make room for
+   */
+  public StringIds(final int capacity) {
+    final int c = Math.max(capacity, 16);
+    this.keys = new String[c];
+    this.hashes = new int[c];
+    int t = 32;
+    while (t < c * 2)
+      t <<= 1;
+    this.table = new int[t];
+  }
+
+  /**
+   * @return the number of strings, which is also the next id
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Forget every string, keeping the capacity; ids start over from 0.
+   */
+  public void clear() {
+    Arrays.fill(this.keys, 0, this.size, null);
+    Arrays.fill(this.table, 0);
+    this.size = 0;
+  }
+
+  /**
+   * @param id an id
+   * @return the string with id <code>id</code>
+   */
+  public String get(final int id) {
+    return this.keys[id];
+  }
+
+  /**
+   * @param s a string
+   * @return the id of <code>s</code>, or -1 if it has none
+   */
+  public int find(final CharSequence s) {
+    final int h = hash(s);
+    final int mask = this.table.length - 1;
+    for (int i = slot(h) & mask;; i = (i + 1) & mask) {
+      final int e = this.table[i];
+      if (e == 0)
+        return -1;
+      if (this.hashes[e - 1] == h && equal(this.keys[e - 1], s))
+        return e - 1;
+    }
+  }
+
+  /**
+   * @param s a string
+   * @return the id of <code>s</code>, assigning the next one if it has none
+   */
+  public int intern(final CharSequence s) {
+    final int h = hash(s);
+    final int mask = this.table.length - 1;
+    int i = slot(h) & mask;
+    for (;; i = (i + 1) & mask) {
+      final int e = this.table[i];
+      if (e == 0)
+        break;
+      if (this.hashes[e - 1] == h && equal(this.keys[e - 1], s))
+        return e - 1;
+    }
+    final int id = this.size++;
+    if (id == this.keys.length) {
+      this.keys = Arrays.copyOf(this.keys, id * 2);
+      this.hashes = Arrays.copyOf(this.hashes, id * 2);
+    }
+    this.keys[id] = s.toString();
+    this.hashes[id] = h;
+    this.table[i] = id + 1;
+    if (this.size * 2 > this.table.length)
+      this.rehash();
+    return id;
+  }
+
+  private void rehash() {
+    this.table = new int[this.table.length * 2];
+    final int mask = this.table.length - 1;
+    for (int id = 0; id < this.size; id++) {
+      int i = slot(this.hashes[id]) & mask;
+      while (this.table[i] != 0)
+        i = (i + 1) & mask;
+      this.table[i] = id + 1;
+    }
+  }
+
+  private static int hash(final CharSequence s) {
+    if (s instanceof String)
+      return s.hashCode();
+    int h = 0;
+    for (int i = 0; i < s.length(); i++)
+      h = 31 * h + s.charAt(i);
+    return h;
+  }
+
+  // spread the low-entropy bits of String.hashCode over the table index
+  private static int slot(final int h) {
+    return (h ^ (h >>> 16)) * 0x9e3779b9;
+  }
+
+  private static boolean equal(final String key, final CharSequence s) {
+    if (key.length() != s.length())
+      return false;
+    for (int i = 0; i < key.length(); i++)
+      if (key.charAt(i) != s.charAt(i))
+        return false;
+    return true;
+  }
+}
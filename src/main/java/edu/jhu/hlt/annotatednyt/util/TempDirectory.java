@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package edu.jhu.hlt.annotatednyt.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A temporary directory for intermediate files, such as spilled runs, removed with everything
+ * in it when closed. Use it in a <code>try</code>-with-resources statement.
+ */
+public final class TempDirectory implements Closeable {
+
+  private final Path path;
+
+  /**
+   * @param parent the existing directory to create it in
+   * @param prefix the prefix of its name
+   * @throws IOException on errors creating it
+   */
+  public TempDirectory(final Path parent, final String prefix) throws IOException {
+    this.path = Files.createTempDirectory(parent, prefix);
+  }
+
+  /**
+   * @return the path of this directory
+   */
+  public Path getPath() {
+    return this.path;
+  }
+
+  /**
+   * @param prefix the prefix of the file name
+   * @param suffix the suffix of the file name
+   * @return a new, empty file in this directory
+   * @throws IOException on errors creating the file
+   */
+  public Path newFile(final String prefix, final String suffix) throws IOException {
+    return Files.createTempFile(this.path, prefix, suffix);
+  }
+
+  /**
+   * @param prefix the prefix of the directory name
+   * @return a new, empty directory in this directory
+   * @throws IOException on errors creating the directory
+   */
+  public Path newDirectory(final String prefix) throws IOException {
+    return Files.createTempDirectory(this.path, prefix);
+  }
+
+  /**
+   * Delete this directory and everything in it.
+   *
+   * @throws IOException on errors deleting
+   */
+  @Override
+  public void close() throws IOException {
+    try (Stream<Path> s = Files.walk(this.path)) {
+      final List<Path> paths = new ArrayList<>();
+      s.forEach(paths::add);
+      // children before their parents
+      Collections.reverse(paths);
+      for (Path p : paths)
+        Files.deleteIfExists(p);
+    }
+  }
+}
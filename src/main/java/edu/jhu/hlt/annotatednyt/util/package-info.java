@@ -0,0 +1,11 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+
+/**
+ * Support code shared by the corpus-wide builders: a string table keyed by
+ * {@link java.lang.CharSequence}, and the temporary directories and sorted runs they spill
+ * to disk. Not intended for use outside this library.
+ */
+package edu.jhu.hlt.annotatednyt.util;
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+import com.nytlabs.corpus.NYTCorpusDocumentParser;
+
+import edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument;
+import edu.jhu.hlt.annotatednyt.ParagraphView;
+import edu.jhu.hlt.annotatednyt.synth.NitfGenerator;
+
+/**
+ * Per-document allocation budgets for the parse path, measured with the thread allocation
+ * counter of {@link com.sun.management.ThreadMXBean} over a fixed set of synthetic documents.
+ * <br><br>
+ * The budgets are the mean bytes allocated per document, after warm-up, with a margin of
+ * about 25% over the measured value at the time they were set. A test that fails here means
+ * something on the path now allocates more; a change that allocates much less should lower
+ * the budget, so the win stays won. They assume compact strings (Java 9+), and are skipped
+ * on Java 8.
+ */
+public class AllocationBudgetTest {
+
+  /** Seed of the fixed input set. */
+  private static final long SEED = 2015;
+
+  /** Number of documents in the fixed input set. */
+  private static final int DOCUMENTS = 200;
+
+  /** Passes over the input set before measuring, so the measured code is compiled. */
+  private static final int WARMUP_ROUNDS = 5;
+
+  /** Passes over the input set that are measured. */
+  private static final int ROUNDS = 3;
+
+  /** {@link NYTCorpusDocumentParser#fromByteArray(byte[], boolean)}: measured 346 KB. */
+  private static final long PARSE_BUDGET = 430_000;
+
+  /** {@link AnnotatedNYTDocument#getBodyAsList()}: measured 6.4 KB. */
+  private static final long BODY_LIST_BUDGET = 8_000;
+
+  /** {@link AnnotatedNYTDocument#getBodyParagraphView()}, iterated: measured 8.7 KB. */
+  private static final long BODY_VIEW_BUDGET = 11_000;
+
+  /** Every accessor of {@link AnnotatedNYTDocument}: measured 15.7 KB. */
+  private static final long ACCESSORS_BUDGET = 20_000;
+
+  private static com.sun.management.ThreadMXBean threads;
+
+  private static List<byte[]> sources;
+
+  private static List<NYTCorpusDocument> documents;
+
+  @BeforeClass
+  public static void setUp() {
+    assumeTrue(!System.getProperty("java.specification.version").startsWith("1."));
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+    threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    NitfGenerator generator = new NitfGenerator(SEED, 0);
+    NYTCorpusDocumentParser parser = new NYTCorpusDocumentParser();
+    sources = new ArrayList<>(DOCUMENTS);
+    documents = new ArrayList<>(DOCUMENTS);
+    LocalDate date = LocalDate.of(1987, 1, 1);
+    for (int i = 0; i < DOCUMENTS; i++) {
+      byte[] bytes = generator.generate(i, date.plusDays(i * 37));
+      sources.add(bytes);
+      documents.add(parser.fromByteArray(bytes, false));
+    }
+  }
+
+  /**
+   * @return the mean bytes allocated by <code>f</code> per element of <code>inputs</code>
+   */
+  private static <T> long allocatedPerDocument(List<T> inputs, ToLongFunction<T> f) {
+    long sink = 0;
+    for (int r = 0; r < WARMUP_ROUNDS; r++)
+      for (T t : inputs)
+        sink += f.applyAsLong(t);
+    long id = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(id);
+    for (int r = 0; r < ROUNDS; r++)
+      for (T t : inputs)
+        sink += f.applyAsLong(t);
+    long allocated = threads.getThreadAllocatedBytes(id) - before;
+    assertTrue(sink != 0);
+    return allocated / ((long) ROUNDS * inputs.size());
+  }
+
+  private static void assertWithin(String what, long budget, long actual) {
+    assertTrue(String.format("%s allocated %,d bytes per document; the budget is %,d",
+        what, actual, budget), actual <= budget);
+  }
+
+  @Test
+  public void parse() {
+    NYTCorpusDocumentParser parser = new NYTCorpusDocumentParser();
+    assertWithin("fromByteArray", PARSE_BUDGET,
+        allocatedPerDocument(sources, b -> parser.fromByteArray(b, false).getGuid() + 1));
+  }
+
+  @Test
+  public void bodyAsList() {
+    assertWithin("getBodyAsList", BODY_LIST_BUDGET,
+        allocatedPerDocument(documents, d -> new AnnotatedNYTDocument(d).getBodyAsList().size() + 1));
+  }
+
+  @Test
+  public void bodyParagraphView() {
+    assertWithin("getBodyParagraphView", BODY_VIEW_BUDGET, allocatedPerDocument(documents, d -> {
+      long n = 1;
+      for (CharSequence p : new AnnotatedNYTDocument(d).getBodyParagraphView())
+        n += p.length();
+      return n;
+    }));
+  }
+
+  @Test
+  public void accessors() {
+    assertWithin("accessors", ACCESSORS_BUDGET,
+        allocatedPerDocument(documents, d -> touchAll(new AnnotatedNYTDocument(d))));
+  }
+
+  /**
+   * @return a value depending on every accessor of <code>d</code>, so none is dead code
+   */
+  private static long touchAll(AnnotatedNYTDocument d) {
+    ParagraphView view = d.getBodyParagraphView();
+    return d.getGuid()
+        + d.getOnlineSectionAsList().size()
+        + d.getLeadParagraphAsList().size()
+        + d.getOnlineLeadParagraphAsList().size()
+        + d.getBodyAsList().size()
+        + view.size()
+        + d.getHeadline().map(String::length).orElse(0)
+        + d.getOnlineHeadline().map(String::length).orElse(0)
+        + d.getByline().map(String::length).orElse(0)
+        + d.getDateline().map(String::length).orElse(0)
+        + d.getArticleAbstract().map(String::length).orElse(0)
+        + d.getLeadParagraph().map(String::length).orElse(0)
+        + d.getOnlineLeadParagraph().map(String::length).orElse(0)
+        + d.getCorrectionText().map(String::length).orElse(0)
+        + d.getKicker().map(String::length).orElse(0)
+        + (d.getAlternateURL().isPresent() ? 1 : 0)
+        + d.getDescriptors().size()
+        + d.getAuthorBiography().map(String::length).orElse(0)
+        + d.getBanner().map(String::length).orElse(0)
+        + d.getBiographicalCategories().size()
+        + d.getColumnName().map(String::length).orElse(0)
+        + d.getColumnNumber().orElse(0)
+        + (d.getCorrectionDate().isPresent() ? 1 : 0)
+        + (d.getCredit() == null ? 0 : d.getCredit().length())
+        + d.getDayOfWeek().map(String::length).orElse(0)
+        + d.getFeaturePage().map(String::length).orElse(0)
+        + d.getGeneralOnlineDescriptors().size()
+        + d.getLocations().size()
+        + d.getNames().size()
+        + d.getNewsDesk().map(String::length).orElse(0)
+        + d.getNormalizedByline().map(String::length).orElse(0)
+        + d.getOnlineDescriptors().size()
+        + d.getOnlineLocations().size()
+        + d.getOnlineOrganizations().size()
+        + d.getOnlinePeople().size()
+        + d.getOnlineSection().map(String::length).orElse(0)
+        + d.getOnlineTitles().size()
+        + d.getOrganizations().size()
+        + d.getPage().orElse(0)
+        + d.getPeople().size()
+        + (d.getPublicationDate().isPresent() ? 1 : 0)
+        + d.getPublicationDayOfMonth().orElse(0)
+        + d.getPublicationMonth().orElse(0)
+        + d.getPublicationYear().orElse(0)
+        + d.getSection().map(String::length).orElse(0)
+        + d.getSeriesName().map(String::length).orElse(0)
+        + d.getSlug().map(String::length).orElse(0)
+        + (d.getSourcePath().isPresent() ? 1 : 0)
+        + d.getTaxonomicClassifiers().size()
+        + d.getTitles().size()
+        + d.getTypesOfMaterial().size()
+        + (d.getUrl().isPresent() ? 1 : 0)
+        + d.getWordCount().orElse(0);
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+import com.nytlabs.corpus.NYTCorpusDocumentParser;
+
+import edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument;
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.io.ArrowMetadataWriter;
+
+/**
+ * Writes metadata with {@link ArrowMetadataWriter} and reads it back with Arrow.
+ */
+public class ArrowMetadataWriterTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static String decode(Map<Long, Dictionary> dicts, FieldVector v, int code) {
+    long id = v.getField().getDictionary().getId();
+    return ((VarCharVector) dicts.get(id).getVector()).getObject(code).toString();
+  }
+
+  private static List<String> decodeList(Map<Long, Dictionary> dicts, ListVector v, int row) {
+    IntVector items = (IntVector) v.getDataVector();
+    List<String> out = new ArrayList<>();
+    for (int i = v.getElementStartIndex(row); i < v.getElementEndIndex(row); i++)
+      out.add(decode(dicts, items, items.get(i)));
+    return out;
+  }
+
+  @Test
+  public void roundTrips() throws IOException {
+    AnnotatedNYTDocument sample = new AnnotatedNYTDocument(new NYTCorpusDocumentParser()
+        .fromByteArray(Fixtures.readResource("/nitf/sample.xml"), false));
+    NYTCorpusDocument bare = new NYTCorpusDocument();
+    bare.setGuid(5);
+    AnnotatedNYTDocument empty = new AnnotatedNYTDocument(bare);
+
+    // three rows in batches of two, through a chunk and directly
+    Path out = this.tmp.getRoot().toPath().resolve("meta.arrow");
+    try (ArrowMetadataWriter w = new ArrowMetadataWriter(FileChannel.open(out,
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE), 2)) {
+      ArrowMetadataWriter.Chunk chunk = new ArrowMetadataWriter.Chunk();
+      chunk.add(empty);
+      chunk.add(sample);
+      w.add(sample);
+      w.add(chunk);
+    }
+
+    AnnotatedNYTDocument[] expected = { sample, empty, sample };
+    int row = 0;
+    try (BufferAllocator allocator = new RootAllocator();
+        ArrowFileReader reader = new ArrowFileReader(FileChannel.open(out), allocator)) {
+      VectorSchemaRoot root = reader.getVectorSchemaRoot();
+      Map<Long, Dictionary> dicts = reader.getDictionaryVectors();
+      assertEquals(2, reader.getRecordBlocks().size());
+      while (reader.loadNextBatch()) {
+        for (int i = 0; i < root.getRowCount(); i++, row++) {
+          AnnotatedNYTDocument e = expected[row];
+          assertEquals(e.getGuid().intValue(), ((IntVector) root.getVector("guid")).get(i));
+          TimeStampMilliTZVector date = (TimeStampMilliTZVector) root.getVector("publicationDate");
+          assertEquals(e.getPublicationDate().isPresent(), !date.isNull(i));
+          if (!date.isNull(i))
+            assertEquals(e.getPublicationDate().get().getTime(), date.get(i));
+          IntVector section = (IntVector) root.getVector("section");
+          assertEquals(e.getSection().orElse(null), section.isNull(i) ? null : decode(dicts, section, section.get(i)));
+          IntVector page = (IntVector) root.getVector("page");
+          assertEquals(e.getPage().orElse(null), page.getObject(i));
+          assertEquals(e.getDescriptors(), decodeList(dicts, (ListVector) root.getVector("descriptors"), i));
+          assertEquals(e.getPeople(), decodeList(dicts, (ListVector) root.getVector("people"), i));
+        }
+      }
+    }
+    assertEquals(3, row);
+    assertFalse(sample.getDescriptors().isEmpty());
+    assertTrue(sample.getSection().isPresent());
+  }
+
+  @Test
+  public void writesCorpus() throws IOException {
+    Path root = this.tmp.getRoot().toPath();
+    CorpusReader reader = Fixtures.corpus(root, new String[] { "1995/01.tgz", "1995/02.tgz" }, 4);
+    List<AnnotatedNYTDocument> expected = new ArrayList<>();
+    Set<String> descriptors = new HashSet<>();
+    for (NYTCorpusDocument doc : Fixtures.readAll(reader)) {
+      AnnotatedNYTDocument d = new AnnotatedNYTDocument(doc);
+      expected.add(d);
+      descriptors.addAll(d.getDescriptors());
+    }
+    Path out = root.resolve("corpus.arrow");
+    assertEquals(8, ArrowMetadataWriter.writeCorpus(reader, out, 2));
+    try (BufferAllocator allocator = new RootAllocator();
+        ArrowFileReader r = new ArrowFileReader(FileChannel.open(out), allocator)) {
+      VectorSchemaRoot v = r.getVectorSchemaRoot();
+      Map<Long, Dictionary> dicts = r.getDictionaryVectors();
+      assertTrue(r.loadNextBatch());
+      assertEquals(8, v.getRowCount());
+      // rows in corpus order, each with its own values
+      for (int i = 0; i < 8; i++) {
+        AnnotatedNYTDocument e = expected.get(i);
+        assertEquals(Fixtures.guid(i / 4, i % 4), ((IntVector) v.getVector("guid")).get(i));
+        assertEquals(e.getDescriptors(), decodeList(dicts, (ListVector) v.getVector("descriptors"), i));
+        assertEquals(e.getPeople(), decodeList(dicts, (ListVector) v.getVector("people"), i));
+      }
+      // one dictionary entry per distinct descriptor, shared by all rows
+      long id = v.getVector("descriptors").getChildrenFromFields().get(0).getField().getDictionary().getId();
+      assertTrue(descriptors.size() > expected.get(0).getDescriptors().size());
+      assertEquals(descriptors.size(), dicts.get(id).getVector().getValueCount());
+    }
+  }
+}
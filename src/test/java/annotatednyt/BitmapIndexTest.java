@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.roaringbitmap.RoaringBitmap;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.DocumentField;
+import edu.jhu.hlt.annotatednyt.index.BitmapIndex;
+import edu.jhu.hlt.annotatednyt.index.BitmapQuery;
+
+/**
+ * Tests for {@link BitmapIndex} and {@link BitmapQuery}.
+ */
+public class BitmapIndexTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static NYTCorpusDocument doc(int guid, int year, String material, String... orgs) {
+    NYTCorpusDocument d = new NYTCorpusDocument();
+    d.setGuid(guid);
+    d.setPublicationYear(year);
+    d.setTypesOfMaterial(new ArrayList<>(Arrays.asList(material)));
+    d.setOrganizations(new ArrayList<>(Arrays.asList(orgs)));
+    return d;
+  }
+
+  private static BitmapIndex index() {
+    BitmapIndex.Builder first = new BitmapIndex.Builder();
+    first.add(doc(10, 1998, "Obituary", "Columbia University"));
+    first.add(doc(11, 1998, "News", "Columbia University", "NASA"));
+    BitmapIndex.Builder second = new BitmapIndex.Builder();
+    second.add(doc(12, 1997, "Obituary", "Columbia University"));
+    second.add(doc(13, 1998, "Obituary", "NASA"));
+    first.add(second);
+    return first.build();
+  }
+
+  @Test
+  public void answersBooleanQueries() {
+    BitmapIndex idx = index();
+    BitmapQuery obit = BitmapQuery.term(DocumentField.TYPES_OF_MATERIAL, "Obituary");
+    BitmapQuery columbia = BitmapQuery.term(DocumentField.ORGANIZATIONS, "Columbia University");
+    BitmapQuery y1998 = BitmapQuery.term(DocumentField.PUBLICATION_YEAR, "1998");
+
+    assertEquals(4, idx.size());
+    assertArrayEquals(new int[] { 10 }, idx.searchGuids(BitmapQuery.and(obit, columbia, y1998)));
+    assertArrayEquals(new int[] { 10, 12, 13 }, idx.searchGuids(BitmapQuery.or(obit, BitmapQuery.term(
+        DocumentField.ORGANIZATIONS, "Nobody"))));
+    assertArrayEquals(new int[] { 11 }, idx.searchGuids(BitmapQuery.not(obit)));
+    assertArrayEquals(new int[] { 13 }, idx.searchGuids(BitmapQuery.and(obit, BitmapQuery.not(columbia))));
+    assertEquals(0, idx.count(BitmapQuery.term(DocumentField.PEOPLE, "Nobody")));
+  }
+
+  @Test
+  public void searchResultsDoNotAliasTheIndex() {
+    BitmapIndex idx = index();
+    BitmapQuery obit = BitmapQuery.term(DocumentField.TYPES_OF_MATERIAL, "Obituary");
+    BitmapQuery nobody = BitmapQuery.term(DocumentField.ORGANIZATIONS, "Nobody");
+
+    ((RoaringBitmap) idx.search(obit)).add(1);
+    ((RoaringBitmap) idx.search(BitmapQuery.or(BitmapQuery.and(obit)))).add(1);
+    ((RoaringBitmap) idx.search(BitmapQuery.and(obit, nobody))).add(1);
+    ((RoaringBitmap) idx.search(nobody)).add(2);
+
+    assertArrayEquals(new int[] { 10, 12, 13 }, idx.searchGuids(obit));
+    assertEquals(0, idx.count(nobody));
+    assertEquals(0, idx.count(BitmapQuery.term(DocumentField.PEOPLE, "Nobody")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnindexedFields() {
+    index().count(BitmapQuery.term(DocumentField.SECTION, "Arts"));
+  }
+
+  @Test
+  public void persists() throws IOException {
+    BitmapIndex idx = index();
+    Path p = this.tmp.getRoot().toPath().resolve("index.bin");
+    idx.write(p);
+    BitmapIndex read = BitmapIndex.read(p);
+    assertEquals(idx.getFields(), read.getFields());
+    for (DocumentField f : idx.getFields()) {
+      assertEquals(idx.getValues(f), read.getValues(f));
+      for (String v : idx.getValues(f)) {
+        BitmapQuery q = BitmapQuery.term(f, v);
+        assertArrayEquals(q.toString(), idx.searchGuids(q), read.searchGuids(q));
+      }
+    }
+  }
+}
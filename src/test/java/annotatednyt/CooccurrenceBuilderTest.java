@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.DocumentField;
+import edu.jhu.hlt.annotatednyt.graph.CooccurrenceBuilder;
+import edu.jhu.hlt.annotatednyt.graph.CooccurrenceMatrix;
+
+/**
+ * Tests for {@link CooccurrenceBuilder} and {@link CooccurrenceMatrix}.
+ */
+public class CooccurrenceBuilderTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void countsPairsAcrossSpills() throws IOException {
+    byte[] sample = Fixtures.readResource("/nitf/sample.xml");
+    // ISO-8859-1 round-trips every byte
+    byte[] variant = new String(sample, StandardCharsets.ISO_8859_1)
+        .replace("GIULIANI, RUDOLPH W (MAYOR)", "DINKINS, DAVID N").getBytes(StandardCharsets.ISO_8859_1);
+    Path data = this.tmp.getRoot().toPath().resolve("data");
+    Fixtures.writeArchive(data.resolve("1995/01.tgz"), sample, sample, sample);
+    Fixtures.writeArchive(data.resolve("1995/02.tgz"), variant, variant);
+
+    Path out = this.tmp.getRoot().toPath().resolve("cooc");
+    // spill after every document
+    new CooccurrenceBuilder(CooccurrenceBuilder.DEFAULT_FIELDS, 1).build(new CorpusReader(data), out, 2);
+    CooccurrenceMatrix m = CooccurrenceMatrix.open(out);
+
+    assertEquals(6, m.size());
+    assertEquals(14, m.getNonZeroCount());
+    int alvarez = m.getId(DocumentField.PEOPLE, "ALVAREZ, MARIA");
+    int giuliani = m.getId(DocumentField.PEOPLE, "GIULIANI, RUDOLPH W (MAYOR)");
+    int dinkins = m.getId(DocumentField.PEOPLE, "DINKINS, DAVID N");
+    int nyc = m.getId(DocumentField.LOCATIONS, "NEW YORK CITY");
+    int queens = m.getId(DocumentField.LOCATIONS, "QUEENS (NYC)");
+    assertEquals(-1, m.getId(DocumentField.LOCATIONS, "ALVAREZ, MARIA"));
+    assertEquals(DocumentField.PEOPLE, m.getField(dinkins));
+    assertEquals("DINKINS, DAVID N", m.getName(dinkins));
+
+    assertEquals(5, m.getDocumentFrequency(alvarez));
+    assertEquals(3, m.get(giuliani, giuliani));
+    assertEquals(5, m.get(nyc, alvarez));
+    assertEquals(5, m.get(alvarez, nyc));
+    assertEquals(3, m.get(giuliani, nyc));
+    assertEquals(2, m.get(queens, dinkins));
+    assertEquals(0, m.get(giuliani, dinkins));
+
+    long[] total = new long[1];
+    m.forEach((row, col, count) -> {
+      assertTrue(row < col);
+      total[0] += count;
+    });
+    // 5 entities, so 10 pairs, per document
+    assertEquals(50, total[0]);
+    try (Stream<Path> s = Files.list(out)) {
+      assertEquals(2, s.count());
+    }
+  }
+}
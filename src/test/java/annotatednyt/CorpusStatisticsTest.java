@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.DocumentField;
+import edu.jhu.hlt.annotatednyt.stats.CorpusStatistics;
+import edu.jhu.hlt.annotatednyt.stats.CountMinSketch;
+import edu.jhu.hlt.annotatednyt.stats.HyperLogLog;
+
+/**
+ * Tests for {@link CorpusStatistics} and its sketches.
+ */
+public class CorpusStatisticsTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void sketchesAreAccurateAndMergeable() {
+    HyperLogLog a = new HyperLogLog();
+    HyperLogLog b = new HyperLogLog();
+    CountMinSketch c = new CountMinSketch(1 << 12, 4);
+    for (int i = 0; i < 100000; i++) {
+      (i % 2 == 0 ? a : b).add("v" + i);
+      c.add("t" + (i % 1000), 1);
+    }
+    a.merge(b);
+    assertEquals(100000, a.estimate(), 2000);
+    assertEquals(0, new HyperLogLog().estimate());
+    long sum = 0;
+    for (int t = 0; t < 1000; t++) {
+      long e = c.estimate("t" + t);
+      assertTrue(e >= 100);
+      sum += e;
+    }
+    // a few keys collide in every row, but the mean overestimate is small
+    assertTrue(sum < 1000 * 105);
+    assertEquals(100000, c.getTotal());
+  }
+
+  @Test
+  public void collectsPerYearAndRoundTrips() throws IOException {
+    byte[] sample = Fixtures.readResource("/nitf/sample.xml");
+    byte[] variant = new String(sample, StandardCharsets.ISO_8859_1)
+        .replace("GIULIANI, RUDOLPH W (MAYOR)", "DINKINS, DAVID N")
+        .replace("content=\"1995\" name=\"publication_year\"", "content=\"1996\" name=\"publication_year\"").getBytes(StandardCharsets.ISO_8859_1);
+    Path data = this.tmp.getRoot().toPath().resolve("data");
+    Fixtures.writeArchive(data.resolve("1995/01.tgz"), sample, sample);
+    Fixtures.writeArchive(data.resolve("1996/01.tgz"), variant, sample);
+
+    CorpusStatistics s = new CorpusStatistics().collect(new CorpusReader(data), 2);
+    assertEquals(Arrays.asList(1995, 1996), Arrays.asList(s.getYears().toArray()));
+    assertEquals(3, s.getDocumentCount(1995));
+    assertEquals(1, s.getDocumentCount(1996));
+    assertEquals(2, s.distinctCount(DocumentField.PEOPLE, 1995));
+    assertEquals(2, s.distinctCount(DocumentField.PEOPLE, 1996));
+    assertEquals(3, s.distinctCount(DocumentField.PEOPLE));
+    assertEquals(1, s.distinctCount(DocumentField.ORGANIZATIONS));
+    long hospital = s.termFrequency("hospital", 1996);
+    assertTrue(hospital > 0);
+    assertEquals(3 * hospital, s.termFrequency("HOSPITAL", 1995));
+    assertEquals(4 * s.getTokenCount(1996), s.getTokenCount(1995) + s.getTokenCount(1996));
+
+    Path file = this.tmp.getRoot().toPath().resolve("stats.bin");
+    s.write(file);
+    CorpusStatistics r = CorpusStatistics.read(file);
+    assertEquals(s.getFields(), r.getFields());
+    assertEquals(s.getYears(), r.getYears());
+    assertEquals(3, r.distinctCount(DocumentField.PEOPLE));
+    assertEquals(s.termFrequency("hospital"), r.termFrequency("hospital"));
+    r.merge(s);
+    assertEquals(6, r.getDocumentCount(1995));
+    assertEquals(3, r.distinctCount(DocumentField.PEOPLE));
+  }
+
+  @Test
+  public void foldsQueriesRegardlessOfLocale() throws IOException {
+    byte[] sample = Fixtures.readResource("/nitf/sample.xml");
+    Path data = this.tmp.getRoot().toPath().resolve("data");
+    Fixtures.writeArchive(data.resolve("1995/01.tgz"), sample);
+    Locale locale = Locale.getDefault();
+    try {
+      // in Turkish, "I".toLowerCase() is a dotless i
+      Locale.setDefault(new Locale("tr", "TR"));
+      CorpusStatistics s = new CorpusStatistics().collect(new CorpusReader(data), 1);
+      long hospital = s.termFrequency("hospital");
+      assertTrue(hospital > 0);
+      assertEquals(hospital, s.termFrequency("HOSPITAL"));
+      assertEquals(hospital, s.termFrequency("HOSPITAL", 1995));
+    } finally {
+      Locale.setDefault(locale);
+    }
+  }
+}
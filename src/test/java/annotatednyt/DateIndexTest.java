@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.EnumSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.index.DateIndex;
+
+/**
+ * Tests for {@link DateIndex}.
+ */
+public class DateIndexTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static NYTCorpusDocument doc(int guid, LocalDate day) {
+    NYTCorpusDocument d = new NYTCorpusDocument();
+    d.setGuid(guid);
+    if (day != null) {
+      d.setPublicationYear(day.getYear());
+      d.setPublicationMonth(day.getMonthValue());
+      d.setPublicationDayOfMonth(day.getDayOfMonth());
+    }
+    return d;
+  }
+
+  private static DateIndex index() {
+    DateIndex.Builder a = new DateIndex.Builder();
+    a.add(doc(1, LocalDate.of(1998, 3, 2)));
+    a.add(doc(2, LocalDate.of(1998, 3, 1)));
+    a.add(doc(3, null));
+    DateIndex.Builder b = new DateIndex.Builder();
+    b.add(doc(4, LocalDate.of(1998, 3, 1)));
+    b.add(doc(5, LocalDate.of(1998, 3, 7)));
+    a.add(b);
+    return a.build();
+  }
+
+  @Test
+  public void answersRangeQueries() {
+    DateIndex idx = index();
+    assertEquals(4, idx.size());
+    assertEquals(LocalDate.of(1998, 3, 1), idx.getFirstDay());
+    assertArrayEquals(new int[] { 2, 4, 1 }, idx.guids(LocalDate.of(1998, 3, 1), LocalDate.of(1998, 3, 6)));
+    assertArrayEquals(new int[] { 1, 3, 0 }, idx.ordinals(LocalDate.of(1998, 3, 1), LocalDate.of(1998, 3, 6)));
+    assertEquals(4, idx.count(LocalDate.MIN, LocalDate.MAX));
+    assertEquals(0, idx.count(LocalDate.of(1998, 3, 3), LocalDate.of(1998, 3, 6)));
+    assertArrayEquals(new int[] { 2, 1, 0, 0, 0, 0, 1 }, idx.countsPerDay(LocalDate.of(1998, 3, 1),
+        LocalDate.of(1998, 3, 7)));
+    // 1998-03-01 was a Sunday, 1998-03-07 a Saturday
+    assertArrayEquals(new int[] { 2, 4, 5 }, idx.guids(LocalDate.MIN, LocalDate.MAX,
+        EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY)));
+  }
+
+  @Test
+  public void treatsReversedRangesAsEmpty() {
+    DateIndex idx = index();
+    LocalDate from = LocalDate.of(1998, 3, 7);
+    LocalDate to = LocalDate.of(1998, 3, 1);
+    assertEquals(0, idx.count(from, to));
+    assertArrayEquals(new int[0], idx.guids(from, to));
+    assertArrayEquals(new int[0], idx.ordinals(from, to));
+    assertArrayEquals(new int[0], idx.guids(from, to, EnumSet.allOf(DayOfWeek.class)));
+    assertArrayEquals(new int[0], idx.countsPerDay(from, to));
+    assertArrayEquals(new int[0], idx.countsPerDay(from, from.minusDays(1)));
+    assertEquals(0, idx.count(LocalDate.MAX, LocalDate.MIN));
+  }
+
+  @Test
+  public void fallsBackOnInvalidDayFields() {
+    DateIndex.Builder b = new DateIndex.Builder();
+    b.add(doc(1, LocalDate.of(1998, 3, 1)));
+    NYTCorpusDocument feb30 = doc(2, LocalDate.of(1998, 2, 1));
+    feb30.setPublicationDayOfMonth(30);
+    feb30.setPublicationDate(
+        Date.from(LocalDate.of(1998, 2, 28).atStartOfDay(ZoneId.systemDefault()).toInstant()));
+    b.add(feb30);
+    NYTCorpusDocument month13 = doc(3, LocalDate.of(1998, 3, 1));
+    month13.setPublicationMonth(13);
+    b.add(month13);
+    b.add(doc(4, LocalDate.of(1998, 3, 2)));
+    DateIndex idx = b.build();
+
+    assertEquals(3, idx.size());
+    assertArrayEquals(new int[] { 2 }, idx.guids(LocalDate.of(1998, 2, 28), LocalDate.of(1998, 2, 28)));
+    // the undatable document keeps its ordinal
+    assertArrayEquals(new int[] { 1, 0, 3 }, idx.ordinals(LocalDate.MIN, LocalDate.MAX));
+  }
+
+  @Test
+  public void persists() throws IOException {
+    DateIndex idx = index();
+    Path p = this.tmp.getRoot().toPath().resolve("dates.bin");
+    idx.write(p);
+    DateIndex read = DateIndex.read(p);
+    assertArrayEquals(idx.guids(LocalDate.MIN, LocalDate.MAX), read.guids(LocalDate.MIN, LocalDate.MAX));
+    assertArrayEquals(idx.ordinals(LocalDate.MIN, LocalDate.MAX), read.ordinals(LocalDate.MIN, LocalDate.MAX));
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+import com.nytlabs.corpus.NYTCorpusDocumentParser;
+
+import edu.jhu.hlt.annotatednyt.cache.DocumentCache;
+
+/**
+ * Tests for {@link DocumentCache}.
+ */
+public class DocumentCacheTest {
+
+  private static NYTCorpusDocument doc(int guid, int bodyLength) {
+    NYTCorpusDocument d = new NYTCorpusDocument();
+    d.setGuid(guid);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < bodyLength; i++)
+      sb.append('x');
+    d.setBody(sb.toString());
+    return d;
+  }
+
+  @Test
+  public void servesHitsAndEvictsLeastRecentlyUsed() throws IOException {
+    AtomicInteger loads = new AtomicInteger();
+    long w = DocumentCache.estimateSize(doc(0, 1000));
+    // one segment holding three documents
+    DocumentCache cache = new DocumentCache(guid -> {
+      loads.incrementAndGet();
+      return guid < 0 ? null : doc(guid, 1000);
+    }, 3 * w + 10, 1);
+
+    NYTCorpusDocument a = cache.get(1);
+    assertSame(a, cache.get(1));
+    cache.get(2);
+    cache.get(3);
+    assertEquals(3, loads.get());
+    cache.get(1);
+    // 2 is now the least recently used
+    cache.get(4);
+    assertNull(cache.getIfPresent(2));
+    assertSame(a, cache.getIfPresent(1));
+    assertEquals(3, cache.size());
+    assertEquals(3 * w, cache.getWeight());
+    assertNull(cache.get(-5));
+
+    DocumentCache.Stats s = cache.getStats();
+    assertEquals(2, s.getHitCount());
+    assertEquals(5, s.getMissCount());
+    assertEquals(1, s.getEvictionCount());
+    assertEquals(2 / 7.0, s.getHitRate(), 1e-9);
+
+    cache.invalidate(1);
+    assertEquals(2 * w, cache.getWeight());
+    cache.invalidateAll();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getWeight());
+  }
+
+  @Test
+  public void weighsBySizeAndStaysBounded() throws IOException {
+    NYTCorpusDocument sample = new NYTCorpusDocumentParser()
+        .fromByteArray(Fixtures.readResource("/nitf/sample.xml"), false);
+    long s = DocumentCache.estimateSize(sample);
+    assertTrue(s > 2 * sample.getBody().length());
+    assertTrue(DocumentCache.estimateSize(doc(1, 10000)) > DocumentCache.estimateSize(doc(1, 100)) + 19000);
+
+    DocumentCache cache = new DocumentCache(guid -> doc(guid, 10 * (guid % 100)), 1 << 16, 4);
+    for (int i = 0; i < 10000; i++) {
+      cache.get(i % 500);
+      assertTrue(cache.getWeight() <= cache.getMaxWeight());
+    }
+    assertTrue(cache.getStats().getEvictionCount() > 0);
+    // too heavy for a segment: served, but not cached
+    DocumentCache small = new DocumentCache(guid -> doc(guid, 1000), 1000);
+    assertEquals(7, small.get(7).getGuid());
+    assertEquals(0, small.size());
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+import com.nytlabs.corpus.NYTCorpusDocumentParser;
+
+import edu.jhu.hlt.annotatednyt.io.DocumentCodec;
+
+/**
+ * Round-trip tests for {@link DocumentCodec}.
+ */
+public class DocumentCodecTest {
+
+  private static NYTCorpusDocument unusual() throws IOException {
+    NYTCorpusDocument doc = new NYTCorpusDocument();
+    doc.setGuid(-17);
+    doc.setBody("Caf\u00e9 \u2014 \ud83d\udcf0 \u00a0non-ASCII.\n" + new String(new char[300]).replace('\0', 'x'));
+    doc.setHeadline("");
+    doc.setDescriptors(null);
+    doc.setPeople(new ArrayList<>(Arrays.asList("Ng, Li", "\u00c9mile", "")));
+    doc.setPage(Integer.MIN_VALUE);
+    doc.setWordCount(Integer.MAX_VALUE);
+    doc.setPublicationDate(new Date(-1234567890123L));
+    doc.setUrl(new URL("http://www.nytimes.com/x?y=z"));
+    doc.setSourceFile(new File("data/1995/03/15/0752301.xml"));
+    return doc;
+  }
+
+  @Test
+  public void roundTripsParsedDocument() throws IOException {
+    NYTCorpusDocument doc = new NYTCorpusDocumentParser().fromByteArray(Fixtures.readResource("/nitf/sample.xml"), false);
+    DocumentCodec codec = new DocumentCodec();
+    NYTCorpusDocument decoded = codec.decode(codec.encode(doc));
+    Fixtures.assertSameFields(doc, decoded);
+    assertEquals(doc.toString(), decoded.toString());
+  }
+
+  @Test
+  public void roundTripsUnusualValues() throws IOException {
+    NYTCorpusDocument doc = unusual();
+    DocumentCodec codec = new DocumentCodec();
+    NYTCorpusDocument decoded = codec.decode(codec.encode(doc));
+    Fixtures.assertSameFields(doc, decoded);
+    assertNull(decoded.getDescriptors());
+    assertEquals(0, decoded.getTitles().size());
+  }
+
+  @Test
+  public void streamsAndBuffers() throws IOException {
+    NYTCorpusDocument a = unusual();
+    NYTCorpusDocument b = new NYTCorpusDocumentParser().fromByteArray(Fixtures.readResource("/nitf/sample.xml"), false);
+    DocumentCodec codec = new DocumentCodec();
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    codec.encode(a, baos);
+    codec.encode(b, baos);
+    InputStream is = new ByteArrayInputStream(baos.toByteArray());
+    Fixtures.assertSameFields(a, codec.decode(is));
+    Fixtures.assertSameFields(b, codec.decode(is));
+    assertNull(codec.decode(is));
+
+    ByteBuffer direct = ByteBuffer.allocateDirect(1 << 16);
+    codec.encode(b, direct);
+    codec.encode(a, direct);
+    direct.flip();
+    Fixtures.assertSameFields(b, codec.decode(direct));
+    Fixtures.assertSameFields(a, codec.decode(direct));
+    assertEquals(0, direct.remaining());
+  }
+}
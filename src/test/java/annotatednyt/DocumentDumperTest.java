@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+import com.nytlabs.corpus.NYTCorpusDocumentParser;
+
+import edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument;
+import edu.jhu.hlt.annotatednyt.DocumentField;
+import edu.jhu.hlt.annotatednyt.io.DocumentDumper;
+
+/**
+ * Checks {@link DocumentDumper} against the regular expression based formatting
+ * that {@link NYTCorpusDocument#toString()} used to do.
+ */
+public class DocumentDumperTest {
+
+  private static final char[] ALPHABET = { 'a', 'B', '.', ' ', ' ', '\t', '\n', '\r', '\f',
+      '\u000b', '\u0001', '\u001f', '\u00a0' };
+
+  private static String randomText(Random r) {
+    char[] cs = new char[r.nextInt(20)];
+    for (int i = 0; i < cs.length; i++)
+      cs[i] = ALPHABET[r.nextInt(ALPHABET.length)];
+    return new String(cs);
+  }
+
+  private static String reference(String name, Object value) {
+    if (value != null)
+      value = value.toString().replaceAll("\\s+", " ").trim();
+    StringBuilder sb = new StringBuilder(name).append(':');
+    while (sb.length() < 45)
+      sb.append(' ');
+    return sb.append(value).append('\n').toString();
+  }
+
+  @Test
+  public void collapsesLikeRegex() throws IOException {
+    Random r = new Random(3);
+    DocumentDumper dumper = new DocumentDumper(EnumSet.of(DocumentField.BODY, DocumentField.DESCRIPTORS));
+    for (int n = 0; n < 2000; n++) {
+      NYTCorpusDocument doc = new NYTCorpusDocument();
+      doc.setBody(randomText(r));
+      doc.setDescriptors(new ArrayList<>(Arrays.asList(randomText(r), randomText(r))));
+      StringBuilder sb = new StringBuilder();
+      dumper.dump(doc, sb);
+      assertEquals(reference("body", doc.getBody()) + reference("descriptors", doc.getDescriptors()),
+          sb.toString());
+    }
+  }
+
+  @Test
+  public void matchesToString() throws IOException {
+    Random r = new Random(5);
+    DocumentDumper dumper = new DocumentDumper();
+    for (int n = 0; n < 500; n++) {
+      NYTCorpusDocument doc = new NYTCorpusDocument();
+      doc.setGuid(n);
+      doc.setBody(randomText(r));
+      doc.setHeadline(randomText(r));
+      doc.setDescriptors(new ArrayList<>(Arrays.asList(randomText(r), randomText(r))));
+      StringBuilder sb = new StringBuilder();
+      dumper.dump(doc, sb);
+      assertEquals(sb.toString(), doc.toString());
+    }
+    NYTCorpusDocument sample = new NYTCorpusDocumentParser().fromByteArray(
+        Fixtures.readResource("/nitf/sample.xml"), false);
+    StringBuilder sb = new StringBuilder();
+    dumper.dump(sample, sb);
+    assertEquals(sb.toString(), sample.toString());
+  }
+
+  @Test
+  public void selectsFields() throws IOException {
+    NYTCorpusDocument doc = new NYTCorpusDocument();
+    doc.setGuid(42);
+    doc.setBody("One.\nTwo.\nThree.\nFour.");
+    doc.setAlternateURL(null);
+    DocumentDumper dumper = new DocumentDumper(EnumSet.of(DocumentField.ALTERNATE_URL, DocumentField.GUID,
+        DocumentField.BODY));
+
+    StringBuilder sb = new StringBuilder();
+    dumper.dump(doc, sb);
+    assertEquals(reference("alternativeURL", null) + reference("body", doc.getBody()) + reference("guid", 42),
+        sb.toString());
+
+    sb.setLength(0);
+    dumper.dump(new AnnotatedNYTDocument(doc), sb);
+    assertEquals("AnnotatedNYTDocument [getGuid()=42, getBodyAsList()=[One., Two., Three.], "
+        + "getAlternateURL()=Optional.empty]", sb.toString());
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+import com.nytlabs.corpus.NYTCorpusDocumentParser;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.DocumentField;
+import edu.jhu.hlt.annotatednyt.query.DocumentFilter;
+
+/**
+ * Tests for {@link DocumentFilter}.
+ */
+public class DocumentFilterTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static NYTCorpusDocument sample() throws IOException {
+    return new NYTCorpusDocumentParser().fromByteArray(Fixtures.readResource("/nitf/sample.xml"), false);
+  }
+
+  @Test
+  public void evaluatesPredicates() throws IOException {
+    NYTCorpusDocument doc = sample();
+    assertTrue(DocumentFilter.parse("section = \"B\" AND year BETWEEN 1990 AND 1995 "
+        + "AND descriptors CONTAINS \"HOSPITALS\"").matches(doc));
+    assertTrue(DocumentFilter.parse("(newsDesk IN (\"Sports Desk\", \"Metropolitan Desk\") OR page > 10) "
+        + "and not month < 3").matches(doc));
+    assertTrue(DocumentFilter.parse("headline CONTAINS \"Expansion\" AND kicker IS NOT NULL").matches(doc));
+    assertTrue(DocumentFilter.parse("featurePage IS NULL AND section != \"A\"").matches(doc));
+    assertFalse(DocumentFilter.parse("year >= 1996").matches(doc));
+    assertFalse(DocumentFilter.parse("people = \"Nobody\" OR page <= 0").matches(doc));
+    assertEquals(EnumSet.of(DocumentField.SECTION, DocumentField.PUBLICATION_YEAR),
+        DocumentFilter.parse("section = \"B\" or YEAR = 1995").getFields());
+  }
+
+  @Test
+  public void rejectsMalformedQueries() {
+    for (String q : new String[] { "", "section =", "nosuchfield = 1", "section > 3", "year = \"1995\"",
+        "section = \"B\" AND", "(year = 1995", "year = 1995 extra", "descriptors CONTAINS \"x" }) {
+      try {
+        DocumentFilter.parse(q);
+        throw new AssertionError("Parsed: " + q);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void stopsAfterTheHead() throws IOException {
+    NYTCorpusDocumentParser parser = new NYTCorpusDocumentParser();
+    byte[] bytes = Fixtures.readResource("/nitf/sample.xml");
+    NYTCorpusDocument head = parser.parseHead(bytes);
+    assertEquals(752301, head.getGuid());
+    assertEquals("B", head.getSection());
+    assertEquals(2, head.getDescriptors().size());
+    assertNull(head.getHeadline());
+    assertNull(head.getBody());
+
+    // a body the full parser cannot read: rejecting on metadata must never reach it
+    String s = new String(bytes, StandardCharsets.UTF_8);
+    byte[] broken = (s.substring(0, s.indexOf("</head>") + 7) + "<body><p></body></nitf>")
+        .getBytes(StandardCharsets.UTF_8);
+    assertNull(DocumentFilter.parse("year = 1990").filter(parser, broken));
+    assertNull(DocumentFilter.parse("year = 1995 AND NOT people CONTAINS \"ALVAREZ, MARIA\"").filter(parser, broken));
+
+    assertNotNull(DocumentFilter.parse("year = 1995").filter(parser, bytes).getBody());
+    assertNotNull(DocumentFilter.parse("headline CONTAINS \"Hospital\"").filter(parser, bytes));
+    assertNull(DocumentFilter.parse("year = 1995 AND body CONTAINS \"zebra\"").filter(parser, bytes));
+  }
+
+  private static List<Integer> read(CorpusReader reader, String query) throws IOException {
+    List<Integer> guids = new ArrayList<>();
+    DocumentFilter.parse(query).read(reader, reader.getArchives().get(0), doc -> guids.add(doc.getGuid()));
+    return guids;
+  }
+
+  @Test
+  public void readsMatchingDocuments() throws IOException {
+    Path root = this.tmp.getRoot().toPath();
+    CorpusReader reader = Fixtures.corpus(root, new String[] { "1995/03.tgz" }, 6);
+    List<NYTCorpusDocument> docs = Fixtures.readAll(reader);
+    assertEquals(Collections.singletonList(Fixtures.guid(0, 4)), read(reader, "guid = " + Fixtures.guid(0, 4)));
+    assertEquals(Collections.emptyList(), read(reader, "guid = 1"));
+    assertEquals(Arrays.asList(Fixtures.guid(0, 1), Fixtures.guid(0, 2), Fixtures.guid(0, 3)),
+        read(reader, "day BETWEEN 2 AND 4"));
+
+    // a body field and a metadata field, against the full documents
+    String word = docs.get(2).getHeadline().split(" ")[0];
+    String person = docs.get(5).getPeople().isEmpty() ? "" : docs.get(5).getPeople().get(0);
+    for (String query : new String[] { "headline CONTAINS \"" + word + "\"",
+        "people = \"" + person + "\" OR day = 1" }) {
+      DocumentFilter f = DocumentFilter.parse(query);
+      List<Integer> expected = new ArrayList<>();
+      for (NYTCorpusDocument d : docs)
+        if (f.matches(d))
+          expected.add(d.getGuid());
+      assertFalse(query, expected.isEmpty());
+      assertTrue(query, expected.size() < docs.size());
+      assertEquals(query, expected, read(reader, query));
+    }
+  }
+}
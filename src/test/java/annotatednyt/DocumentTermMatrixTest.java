@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.nytlabs.corpus.NYTCorpusDocumentParser;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.matrix.DocumentTermMatrix;
+import edu.jhu.hlt.annotatednyt.matrix.DocumentTermMatrixWriter;
+import edu.jhu.hlt.annotatednyt.matrix.Vocabulary;
+import edu.jhu.hlt.annotatednyt.matrix.VocabularyBuilder;
+import edu.jhu.hlt.annotatednyt.text.TokenBuffer;
+import edu.jhu.hlt.annotatednyt.text.Tokenizer;
+
+/**
+ * Tests for {@link VocabularyBuilder} and {@link DocumentTermMatrix}.
+ */
+public class DocumentTermMatrixTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private CorpusReader corpus(byte[] sample) throws IOException {
+    byte[] variant = new String(sample, StandardCharsets.ISO_8859_1)
+        .replace("Giuliani has", "Zyzzyva has").getBytes(StandardCharsets.ISO_8859_1);
+    Path data = this.tmp.getRoot().toPath().resolve("data");
+    Fixtures.writeArchive(data.resolve("1995/01.tgz"), sample, sample);
+    Fixtures.writeArchive(data.resolve("1995/02.tgz"), variant);
+    return new CorpusReader(data);
+  }
+
+  @Test
+  public void buildsVocabularyAndMatrix() throws IOException {
+    byte[] sample = Fixtures.readResource("/nitf/sample.xml");
+    String body = new NYTCorpusDocumentParser().fromByteArray(sample, false).getBody();
+    TokenBuffer tokens = new TokenBuffer();
+    Tokenizer.tokenize(body, tokens);
+    Map<String, Integer> expected = new HashMap<>();
+    for (int i = 0; i < tokens.size(); i++)
+      expected.merge(body.substring(tokens.start(i), tokens.end(i)).toLowerCase(), 1, Integer::sum);
+
+    CorpusReader reader = this.corpus(sample);
+    Path work = this.tmp.getRoot().toPath().resolve("work");
+    // spill after every document
+    Vocabulary v = new VocabularyBuilder(1, 1.0, 1).build(reader, work, 2);
+    assertEquals(0, work.toFile().list().length);
+    assertEquals(expected.size() + 1, v.size());
+    int hospital = v.getId("hospital");
+    assertEquals(3, v.getDocumentFrequency(hospital));
+    assertEquals(3L * expected.get("hospital"), v.getCollectionFrequency(hospital));
+    assertEquals(2, v.getDocumentFrequency(v.getId("giuliani")));
+    assertEquals(1, v.getDocumentFrequency(v.getId("zyzzyva")));
+    assertEquals(-1, v.getId("Hospital"));
+    for (int id = 1; id < v.size(); id++)
+      assertTrue(v.getTerm(id - 1).compareTo(v.getTerm(id)) < 0);
+
+    Path out = this.tmp.getRoot().toPath().resolve("dtm");
+    assertEquals(3, DocumentTermMatrixWriter.write(reader, v, out, 2));
+    DocumentTermMatrix m = DocumentTermMatrix.open(out);
+    assertEquals(3, m.getRowCount());
+    assertEquals(v.size(), m.getColumnCount());
+    assertEquals(3 * expected.size(), m.getNonZeroCount());
+    for (int row = 0; row < 3; row++) {
+      assertEquals(752301, m.getGuid(row));
+      assertEquals(expected.size(), m.getRowLength(row));
+    }
+    assertEquals((float) expected.get("hospital"), m.get(0, hospital), 0f);
+    assertEquals(1f, m.get(0, v.getId("giuliani")), 0f);
+    assertEquals(0f, m.get(2, v.getId("giuliani")), 0f);
+    assertEquals(1f, m.get(2, v.getId("zyzzyva")), 0f);
+    float[] sum = new float[1];
+    int[] last = { -1 };
+    m.forEachInRow(1, (column, value) -> {
+      assertTrue(column > last[0]);
+      last[0] = column;
+      sum[0] += value;
+    });
+    assertEquals(tokens.size(), sum[0], 0f);
+    assertEquals(4L * 4, Files.size(out.resolve("indptr.i32")));
+    assertEquals(4L * m.getNonZeroCount(), Files.size(out.resolve("data.f32")));
+  }
+
+  @Test
+  public void prunesByDocumentFrequency() throws IOException {
+    CorpusReader reader = this.corpus(Fixtures.readResource("/nitf/sample.xml"));
+    Vocabulary v = new VocabularyBuilder(2, 0.9, VocabularyBuilder.DEFAULT_MAX_TERMS)
+        .build(reader, this.tmp.getRoot().toPath().resolve("work"), 1);
+    assertEquals(1, v.size());
+    assertEquals("giuliani", v.getTerm(0));
+
+    Path file = this.tmp.getRoot().toPath().resolve("vocabulary.tsv");
+    v.write(file);
+    Vocabulary r = Vocabulary.read(file);
+    assertEquals(1, r.size());
+    assertEquals(0, r.getId("giuliani"));
+    assertEquals(2, r.getDocumentFrequency(0));
+    assertEquals(2, r.getCollectionFrequency(0));
+  }
+}
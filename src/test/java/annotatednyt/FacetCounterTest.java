@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument;
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.facet.FacetCounter;
+import edu.jhu.hlt.annotatednyt.facet.FacetCounts;
+import edu.jhu.hlt.annotatednyt.facet.FacetExtractor;
+
+/**
+ * Tests for {@link FacetCounter}.
+ */
+public class FacetCounterTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static final FacetExtractor ORGS = FacetExtractor.list(AnnotatedNYTDocument::getOrganizations);
+  private static final FacetExtractor YEAR = FacetExtractor.optional(AnnotatedNYTDocument::getPublicationYear);
+
+  private static AnnotatedNYTDocument doc(Integer year, String... orgs) {
+    NYTCorpusDocument d = new NYTCorpusDocument();
+    d.setPublicationYear(year);
+    d.setOrganizations(new ArrayList<>(Arrays.asList(orgs)));
+    return new AnnotatedNYTDocument(d);
+  }
+
+  @Test
+  public void countsCrossProducts() throws IOException {
+    FacetCounter counter = new FacetCounter(ORGS, YEAR);
+    FacetCounter.Accumulator a = counter.newAccumulator();
+    a.add(doc(1998, "NASA", "Columbia University"));
+    a.add(doc(null, "NASA"));
+    FacetCounter.Accumulator b = counter.newAccumulator();
+    b.add(doc(1997, "NASA"));
+    b.add(doc(1998, "NASA"));
+    b.add(doc(1998));
+
+    FacetCounts counts = FacetCounter.merge(Arrays.asList(a, b));
+    assertEquals(5, counts.getDocumentCount());
+    assertEquals(3, counts.size());
+    assertEquals(2, counts.get("NASA", "1998"));
+    assertEquals(1, counts.get("NASA", "1997"));
+    assertEquals(1, counts.get("Columbia University", "1998"));
+    assertEquals(0, counts.get("NASA", "1996"));
+
+    List<FacetCounts.Entry> top = counts.top(1);
+    assertEquals(1, top.size());
+    assertEquals("NASA", top.get(0).getValue(0));
+    assertEquals("1998", top.get(0).getValue(1));
+
+    StringBuilder sb = new StringBuilder();
+    counts.writeTsv(sb);
+    assertEquals("NASA\t1998\t2\nColumbia University\t1998\t1\nNASA\t1997\t1\n", sb.toString());
+  }
+
+  @Test
+  public void countsCorpusInParallel() throws IOException {
+    FacetCounter counter = new FacetCounter(FacetExtractor.list(AnnotatedNYTDocument::getPeople),
+        FacetExtractor.optional(AnnotatedNYTDocument::getPublicationMonth));
+    CorpusReader reader = Fixtures.corpus(this.tmp.getRoot().toPath(),
+        new String[] { "1995/01.tgz", "1995/02.tgz", "1995/03.tgz" }, 4);
+    FacetCounts counts = counter.count(reader, 2);
+
+    // the per-thread maps must merge to the counts of a single pass
+    FacetCounter.Accumulator a = counter.newAccumulator();
+    for (NYTCorpusDocument d : Fixtures.readAll(reader))
+      a.add(new AnnotatedNYTDocument(d));
+    FacetCounts expected = FacetCounter.merge(Collections.singletonList(a));
+    assertEquals(12, counts.getDocumentCount());
+    assertTrue(expected.size() > 12);
+    assertEquals(expected.size(), counts.size());
+    for (FacetCounts.Entry e : expected.entries())
+      assertEquals(e.toString(), e.getCount(), counts.get(e.getValue(0), e.getValue(1)));
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.DocumentField;
+import edu.jhu.hlt.annotatednyt.synth.NitfGenerator;
+
+/**
+ * Shared test inputs: classpath resources, and small corpora written to a temporary
+ * directory in the <code>data/YYYY/MM.tgz</code> layout.
+ * <br><br>
+ * Corpora hold distinct synthetic documents with known guids, so tests can check that every
+ * document arrives once, in order, and lands where it should.
+ */
+final class Fixtures {
+
+  /** Seed of the synthetic corpora. */
+  static final long SEED = 2015;
+
+  private Fixtures() {
+  }
+
+  /**
+   * @param name the absolute name of a classpath resource
+   * @return its contents
+   */
+  static byte[] readResource(String name) throws IOException {
+    try (InputStream is = Fixtures.class.getResourceAsStream(name);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+      byte[] buf = new byte[8192];
+      int n;
+      while ((n = is.read(buf)) > 0)
+        baos.write(buf, 0, n);
+      return baos.toByteArray();
+    }
+  }
+
+  /**
+   * Write an archive of <code>docs</code>, in order, creating its parent directories.
+   */
+  static void writeArchive(Path archive, byte[]... docs) throws IOException {
+    Files.createDirectories(archive.getParent());
+    try (OutputStream os = Files.newOutputStream(archive);
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(os))) {
+      for (int i = 0; i < docs.length; i++) {
+        TarArchiveEntry e = new TarArchiveEntry(i + ".xml");
+        e.setSize(docs[i].length);
+        tar.putArchiveEntry(e);
+        tar.write(docs[i]);
+        tar.closeArchiveEntry();
+      }
+    }
+  }
+
+  /**
+   * @return the guid of document <code>doc</code> of archive <code>archive</code>, both
+   * indexes into the arguments of {@link #corpus(Path, String[], int)}
+   */
+  static int guid(int archive, int doc) {
+    return 1000 * (archive + 1) + doc;
+  }
+
+  /**
+   * Write a small corpus under <code>root/data</code>: in each of <code>archives</code>, named
+   * like <code>1995/03.tgz</code>, <code>docs</code> distinct synthetic documents published
+   * on successive days of that month, with guids from {@link #guid(int, int)}.
+   *
+   * @return a {@link CorpusReader} over it
+   */
+  static CorpusReader corpus(Path root, String[] archives, int docs) throws IOException {
+    NitfGenerator generator = new NitfGenerator(SEED, 0);
+    Path data = root.resolve("data");
+    for (int a = 0; a < archives.length; a++) {
+      LocalDate month = LocalDate.of(Integer.parseInt(archives[a].substring(0, 4)),
+          Integer.parseInt(archives[a].substring(5, 7)), 1);
+      byte[][] bytes = new byte[docs][];
+      for (int i = 0; i < docs; i++)
+        bytes[i] = generator.generate(guid(a, i), month.plusDays(i));
+      writeArchive(data.resolve(archives[a]), bytes);
+    }
+    return new CorpusReader(data);
+  }
+
+  /**
+   * @return every document of <code>reader</code>, read in order on the calling thread
+   */
+  static List<NYTCorpusDocument> readAll(CorpusReader reader) throws IOException {
+    List<NYTCorpusDocument> docs = new ArrayList<>();
+    reader.readAll(docs::add);
+    return docs;
+  }
+
+  /**
+   * Assert that every {@link DocumentField} of <code>actual</code> equals that of
+   * <code>expected</code>.
+   */
+  static void assertSameFields(NYTCorpusDocument expected, NYTCorpusDocument actual) {
+    for (DocumentField f : DocumentField.values()) {
+      Object e = f.get(expected);
+      Object a = f.get(actual);
+      // compare URLs by their string form; URL#equals resolves hosts
+      assertEquals(f.name(), e == null ? null : e.toString(), a == null ? null : a.toString());
+    }
+  }
+}
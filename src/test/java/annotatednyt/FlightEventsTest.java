@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.SAXParseException;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+import com.nytlabs.corpus.NYTCorpusDocumentParser;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.perf.ArchiveScanEvent;
+import edu.jhu.hlt.annotatednyt.perf.DocumentParseEvent;
+import edu.jhu.hlt.annotatednyt.perf.FlightEvents;
+import edu.jhu.hlt.annotatednyt.perf.ParseFailureEvent;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Tests for {@link FlightEvents}.
+ */
+public class FlightEventsTest {
+
+  /** A document that is not well-formed. */
+  private static final byte[] MALFORMED = "<nitf>".getBytes(StandardCharsets.UTF_8);
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private List<RecordedEvent> record(Recording recording, Path archive) throws Exception {
+    CorpusReader reader = new CorpusReader(archive.getParent().getParent());
+    NYTCorpusDocumentParser parser = new NYTCorpusDocumentParser();
+    byte[] sample = Fixtures.readResource("/nitf/sample.xml");
+    String bad = new String(sample, StandardCharsets.UTF_8)
+        .replace("content=\"1\" name=\"print_page_number\"", "content=\"A1\" name=\"print_page_number\"");
+    Path jfr = this.tmp.newFile().toPath();
+    try {
+      recording.start();
+      reader.read(archive, doc -> { });
+      parser.fromByteArray(bad.getBytes(StandardCharsets.UTF_8), false);
+      assertNull(parser.fromByteArray(MALFORMED, false));
+      recording.stop();
+      recording.dump(jfr);
+    } finally {
+      recording.close();
+    }
+    return RecordingFile.readAllEvents(jfr).stream()
+        .filter(e -> e.getEventType().getName().startsWith(FlightEvents.PREFIX))
+        .collect(Collectors.toList());
+  }
+
+  private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+    return events.stream()
+        .filter(e -> e.getEventType().getName().equals(FlightEvents.PREFIX + name))
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void emitsEventsOnlyWhenEnabled() throws Exception {
+    assumeTrue(FlightEvents.AVAILABLE);
+    byte[] sample = Fixtures.readResource("/nitf/sample.xml");
+    Path archive = this.tmp.getRoot().toPath().resolve("data/1995/03.tgz");
+    Fixtures.writeArchive(archive, sample, sample);
+    NYTCorpusDocument expected = new NYTCorpusDocumentParser().fromByteArray(sample, false);
+
+    // the stock settings leave the events off
+    assertTrue(record(new Recording(Configuration.getConfiguration("default")), archive).isEmpty());
+
+    Recording recording = new Recording();
+    recording.enable(DocumentParseEvent.class);
+    recording.enable(ArchiveScanEvent.class);
+    recording.enable(ParseFailureEvent.class);
+    List<RecordedEvent> events = record(recording, archive);
+
+    List<RecordedEvent> scans = named(events, "ArchiveScan");
+    assertEquals(1, scans.size());
+    assertEquals(archive.toString(), scans.get(0).getString("archive"));
+    assertEquals(2, scans.get(0).getInt("entries"));
+    assertEquals(2L * sample.length, scans.get(0).getLong("uncompressedBytes"));
+    assertTrue(scans.get(0).getLong("compressedBytes") > 0);
+    assertTrue(scans.get(0).getBoolean("completed"));
+
+    List<RecordedEvent> parses = named(events, "DocumentParse");
+    assertEquals(4, parses.size());
+    RecordedEvent first = parses.get(0);
+    assertEquals(expected.getGuid(), first.getInt("guid"));
+    assertEquals(sample.length, first.getLong("bytes"));
+    assertTrue(first.getInt("fields") > 10);
+    assertTrue(first.getInt("listValues") > 0);
+    assertTrue(first.getBoolean("succeeded"));
+    assertFalse(parses.get(3).getBoolean("succeeded"));
+
+    List<RecordedEvent> failures = named(events, "ParseFailure");
+    assertEquals("print_page_number", failures.get(0).getString("field"));
+    assertEquals("A1", failures.get(0).getString("value"));
+    assertEquals(NumberFormatException.class.getName(),
+        failures.get(0).getClass("exception").getName());
+    assertEquals("document", failures.get(1).getString("field"));
+    assertEquals(2, failures.size());
+  }
+
+  @Test
+  public void reportsMalformedDocumentOnce() throws Exception {
+    assumeTrue(FlightEvents.AVAILABLE);
+    Recording recording = new Recording();
+    recording.enable(DocumentParseEvent.class);
+    recording.enable(ParseFailureEvent.class);
+    Path jfr = this.tmp.newFile().toPath();
+    try {
+      recording.start();
+      assertNull(new NYTCorpusDocumentParser().fromByteArray(MALFORMED, false));
+      recording.stop();
+      recording.dump(jfr);
+    } finally {
+      recording.close();
+    }
+    List<RecordedEvent> events = RecordingFile.readAllEvents(jfr);
+
+    List<RecordedEvent> failures = named(events, "ParseFailure");
+    assertEquals(1, failures.size());
+    assertEquals("document", failures.get(0).getString("field"));
+    assertEquals(SAXParseException.class.getName(),
+        failures.get(0).getClass("exception").getName());
+    List<RecordedEvent> parses = named(events, "DocumentParse");
+    assertEquals(1, parses.size());
+    assertFalse(parses.get(0).getBoolean("succeeded"));
+  }
+}
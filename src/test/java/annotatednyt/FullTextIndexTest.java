@@ -0,0 +1,183 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument;
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.DocumentField;
+import edu.jhu.hlt.annotatednyt.index.FullTextIndex;
+import edu.jhu.hlt.annotatednyt.index.FullTextIndexBuilder;
+
+/**
+ * Builds {@link FullTextIndex}es from segments and checks them against brute force.
+ */
+public class FullTextIndexTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static final String[] VOCAB = { "white", "house", "budget", "senate", "vote", "the", "city" };
+
+  private static AnnotatedNYTDocument doc(int guid, String headline, String body) {
+    NYTCorpusDocument d = new NYTCorpusDocument();
+    d.setGuid(guid);
+    d.setHeadline(headline);
+    d.setBody(body);
+    return new AnnotatedNYTDocument(d);
+  }
+
+  private static String randomText(Random r, int words) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < words; i++) {
+      if (i > 0)
+        sb.append(r.nextInt(8) == 0 ? "\n" : " ");
+      sb.append(VOCAB[r.nextInt(VOCAB.length)]);
+    }
+    return sb.toString();
+  }
+
+  /** Brute-force phrase matching within body paragraphs. */
+  private static boolean bodyContains(AnnotatedNYTDocument d, String phrase) {
+    for (String p : d.getBodyAsList())
+      if ((" " + p + " ").contains(" " + phrase + " "))
+        return true;
+    return false;
+  }
+
+  private Path index(List<AnnotatedNYTDocument> docs, int segmentSize) throws IOException {
+    Path root = this.tmp.getRoot().toPath();
+    List<Path> segments = new ArrayList<>();
+    for (int from = 0; from < docs.size(); from += segmentSize) {
+      FullTextIndexBuilder b = new FullTextIndexBuilder();
+      for (AnnotatedNYTDocument d : docs.subList(from, Math.min(docs.size(), from + segmentSize)))
+        b.add(d);
+      Path seg = root.resolve("seg" + segments.size());
+      b.write(seg);
+      segments.add(seg);
+    }
+    Path dir = root.resolve("index");
+    FullTextIndexBuilder.merge(segments, dir);
+    return dir;
+  }
+
+  @Test
+  public void matchesBruteForce() throws IOException {
+    Random r = new Random(7);
+    List<AnnotatedNYTDocument> docs = new ArrayList<>();
+    for (int i = 0; i < 700; i++)
+      docs.add(doc(1000 + i, randomText(r, 3), randomText(r, r.nextInt(40))));
+
+    Map<DocumentField, Float> bodyOnly = new EnumMap<>(DocumentField.class);
+    bodyOnly.put(DocumentField.BODY, 1f);
+    try (FullTextIndex idx = FullTextIndex.open(this.index(docs, 300))) {
+      assertEquals(docs.size(), idx.size());
+      for (String q : new String[] { "budget", "white house", "senate vote the", "city city" }) {
+        Set<Integer> expected = new HashSet<>();
+        for (AnnotatedNYTDocument d : docs)
+          if (bodyContains(d, q))
+            expected.add(d.getGuid());
+        Set<Integer> actual = new HashSet<>();
+        for (FullTextIndex.Hit h : idx.search("\"" + q + "\"", bodyOnly, docs.size()))
+          actual.add(h.getGuid());
+        assertEquals(q, expected, actual);
+      }
+      for (String t : VOCAB) {
+        int df = 0;
+        for (AnnotatedNYTDocument d : docs)
+          if (bodyContains(d, t))
+            df++;
+        assertEquals(t, df, idx.docFreq(DocumentField.BODY, t));
+      }
+    }
+  }
+
+  @Test
+  public void ranksWithBm25() throws IOException {
+    List<AnnotatedNYTDocument> docs = Arrays.asList(
+        doc(1, "Budget Talks Stall", "The Senate did not vote on the budget."),
+        doc(2, "City News", "The city budget, the city budget, and more budget news."),
+        doc(3, "Weather", "Rain is expected."),
+        doc(4, "Senate Vote", "Senators met.\nThe White House said nothing."));
+    try (FullTextIndex idx = FullTextIndex.open(this.index(docs, 2))) {
+      List<FullTextIndex.Hit> hits = idx.search("budget", 10);
+      assertEquals(2, hits.size());
+      // the headline match outweighs the repeated body term
+      assertEquals(1, hits.get(0).getGuid());
+      assertTrue(hits.get(0).getScore() >= hits.get(1).getScore());
+
+      assertEquals(Collections.singletonList(4), guids(idx.search("\"white house\"", 10)));
+      assertEquals(Collections.emptyList(), guids(idx.search("\"met the\"", 10)));
+      assertEquals(Collections.emptyList(), guids(idx.search("unknown", 10)));
+      assertEquals(7, idx.getLength(DocumentField.BODY, 3));
+    }
+  }
+
+  @Test
+  public void buildsCorpus() throws IOException {
+    Path root = this.tmp.getRoot().toPath();
+    Path dir = root.resolve("corpus-index");
+    CorpusReader reader = Fixtures.corpus(root, new String[] { "1995/01.tgz", "1995/02.tgz" }, 3);
+    FullTextIndexBuilder.build(reader, dir, 2);
+    try (Stream<Path> s = Files.list(dir)) {
+      assertEquals(3, s.count());
+    }
+
+    // the merged segments must match one segment of the same documents
+    FullTextIndexBuilder single = new FullTextIndexBuilder();
+    Set<String> terms = new HashSet<>();
+    for (NYTCorpusDocument d : Fixtures.readAll(reader)) {
+      single.add(new AnnotatedNYTDocument(d));
+      terms.addAll(Arrays.asList(d.getHeadline().toLowerCase().split(" ")));
+    }
+    single.write(root.resolve("single"));
+    try (FullTextIndex idx = FullTextIndex.open(dir);
+        FullTextIndex expected = FullTextIndex.open(root.resolve("single"))) {
+      assertEquals(6, idx.size());
+      for (int i = 0; i < 6; i++) {
+        assertEquals(Fixtures.guid(i / 3, i % 3), idx.getGuid(i));
+        for (DocumentField f : FullTextIndex.DEFAULT_WEIGHTS.keySet())
+          assertEquals(expected.getLength(f, i), idx.getLength(f, i));
+      }
+      assertTrue(idx.docFreq(DocumentField.BODY, "the") > 0);
+      for (String t : terms) {
+        for (DocumentField f : FullTextIndex.DEFAULT_WEIGHTS.keySet())
+          assertEquals(t, expected.docFreq(f, t), idx.docFreq(f, t));
+        List<FullTextIndex.Hit> hits = idx.search(t, 10);
+        assertTrue(t, !hits.isEmpty());
+        assertEquals(t, expected.search(t, 10).toString(), hits.toString());
+      }
+    }
+  }
+
+  private static List<Integer> guids(List<FullTextIndex.Hit> hits) {
+    List<Integer> out = new ArrayList<>();
+    for (FullTextIndex.Hit h : hits)
+      out.add(h.getGuid());
+    return out;
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.DocumentField;
+import edu.jhu.hlt.annotatednyt.io.JsonLinesWriter;
+
+/**
+ * Tests for {@link JsonLinesWriter}.
+ */
+public class JsonLinesWriterTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void escapesAndSelectsFields() throws IOException {
+    NYTCorpusDocument doc = new NYTCorpusDocument();
+    doc.setGuid(7);
+    doc.setHeadline("\"Quoted\" \\ tab\there\nnew \u0001 \u2028 caf\u00e9");
+    doc.setPeople(new ArrayList<>(Arrays.asList("A", "")));
+    doc.setPage(12);
+    doc.setPublicationDate(new Date(0));
+    doc.setBody(null);
+
+    StringBuilder sb = new StringBuilder();
+    new JsonLinesWriter(EnumSet.of(DocumentField.HEADLINE, DocumentField.PEOPLE, DocumentField.PAGE,
+        DocumentField.PUBLICATION_DATE, DocumentField.BODY)).write(doc, sb);
+    assertEquals("{\"guid\":7,"
+        + "\"headline\":\"\\\"Quoted\\\" \\\\ tab\\there\\nnew \\u0001 \\u2028 caf\u00e9\","
+        + "\"page\":12,\"people\":[\"A\",\"\"],\"publicationDate\":\"1970-01-01T00:00:00Z\"}\n",
+        sb.toString());
+
+    sb.setLength(0);
+    new JsonLinesWriter(EnumSet.noneOf(DocumentField.class)).write(doc, sb);
+    assertEquals("{\"guid\":7}\n", sb.toString());
+  }
+
+  @Test
+  public void writesCorpus() throws IOException {
+    Path root = this.tmp.getRoot().toPath();
+    String[] archives = { "1995/03.tgz", "1994/12.tgz", "1995/01.tgz" };
+    CorpusReader reader = Fixtures.corpus(root, archives, 3);
+    JsonLinesWriter writer = new JsonLinesWriter(EnumSet.of(DocumentField.HEADLINE));
+
+    assertEquals(9, writer.writePerArchive(reader, root.resolve("out"), 2));
+    for (int a = 0; a < archives.length; a++) {
+      List<String> lines = Files.readAllLines(root.resolve("out").resolve(archives[a].replace(".tgz", ".jsonl")),
+          StandardCharsets.UTF_8);
+      assertEquals(3, lines.size());
+      for (int i = 0; i < 3; i++)
+        assertTrue(lines.get(i), lines.get(i).startsWith("{\"guid\":" + Fixtures.guid(a, i) + ",\"headline\":"));
+    }
+
+    // corpus order is archive path order, whatever the order of completion
+    Path single = root.resolve("all.jsonl");
+    assertEquals(9, writer.writeOrdered(reader, single, 2));
+    List<String> lines = Files.readAllLines(single, StandardCharsets.UTF_8);
+    List<Integer> guids = new ArrayList<>();
+    for (String line : lines)
+      guids.add(Integer.parseInt(line.substring("{\"guid\":".length(), line.indexOf(','))));
+    List<Integer> expected = new ArrayList<>();
+    for (int a : new int[] { 1, 2, 0 })
+      for (int i = 0; i < 3; i++)
+        expected.add(Fixtures.guid(a, i));
+    assertEquals(expected, guids);
+    StringBuilder sb = new StringBuilder();
+    for (NYTCorpusDocument doc : Fixtures.readAll(reader))
+      writer.write(doc, sb);
+    assertEquals(sb.toString(), new String(Files.readAllBytes(single), StandardCharsets.UTF_8));
+    try (Stream<Path> s = Files.list(root)) {
+      assertEquals(0, s.filter(p -> p.getFileName().toString().endsWith(".part")).count());
+    }
+  }
+}
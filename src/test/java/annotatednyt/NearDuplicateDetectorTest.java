@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.dedup.MinHasher;
+import edu.jhu.hlt.annotatednyt.dedup.NearDuplicateDetector;
+
+/**
+ * Tests for {@link NearDuplicateDetector} and {@link MinHasher}.
+ */
+public class NearDuplicateDetectorTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static final String SAMPLE_GUID = "<doc-id id-string=\"752301\"/>";
+
+  // ISO-8859-1 round-trips every byte
+  private static byte[] variant(String sample, int guid, String from, String to) {
+    return sample.replace(SAMPLE_GUID, "<doc-id id-string=\"" + guid + "\"/>").replace(from, to)
+        .getBytes(StandardCharsets.ISO_8859_1);
+  }
+
+  @Test
+  public void estimatesJaccard() {
+    MinHasher h = new MinHasher(256, 2, 1);
+    int[] x = h.shingles("one two three four five six seven eight nine ten");
+    int[] y = h.shingles("ONE two three four five six seven eight nine eleven");
+    assertEquals(9, x.length);
+    assertEquals(8.0 / 10, MinHasher.jaccard(x, y), 1e-9);
+    assertEquals(0.8, MinHasher.estimate(h.signature(x), h.signature(y)), 0.1);
+    assertEquals(0, h.shingles("one").length);
+  }
+
+  @Test
+  public void clustersNearDuplicates() throws IOException {
+    String sample = new String(Fixtures.readResource("/nitf/sample.xml"), StandardCharsets.ISO_8859_1);
+    byte[] original = sample.getBytes(StandardCharsets.ISO_8859_1);
+    byte[] corrected = variant(sample, 1, "the 120-bed wing", "the 102-bed wing");
+    byte[] reprint = variant(sample, 3, "", "");
+    String fullText = sample.substring(sample.indexOf("<block class=\"full_text\">"),
+        sample.indexOf("</block>", sample.indexOf("<block class=\"full_text\">")));
+    byte[] other = variant(sample, 2, fullText, "<block class=\"full_text\"><p>The city's budget office "
+        + "released revised revenue estimates on Tuesday, and council members began a week of hearings "
+        + "on school spending, sanitation contracts, and subway repairs.</p>");
+    byte[] another = variant(sample, 4, fullText, "<block class=\"full_text\"><p>Rain is expected through "
+        + "the weekend, with temperatures in the low 50's and gusty winds along the coast.</p>");
+    Path data = this.tmp.getRoot().toPath().resolve("data");
+    Fixtures.writeArchive(data.resolve("1995/01.tgz"), original, corrected, other);
+    Fixtures.writeArchive(data.resolve("1995/02.tgz"), reprint, another);
+
+    File work = this.tmp.newFolder();
+    List<int[]> clusters = new NearDuplicateDetector().find(new CorpusReader(data), work.toPath(), 2);
+    assertEquals(1, clusters.size());
+    assertArrayEquals(new int[] { 752301, 1, 3 }, clusters.get(0));
+    assertEquals(0, work.list().length);
+  }
+}
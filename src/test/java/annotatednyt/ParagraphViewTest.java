@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument;
+import edu.jhu.hlt.annotatednyt.ParagraphView;
+
+/**
+ * Checks that {@link ParagraphView} agrees with {@link AnnotatedNYTDocument#getBodyAsList()}.
+ */
+public class ParagraphViewTest {
+
+  private static AnnotatedNYTDocument withBody(String body) {
+    NYTCorpusDocument nytdoc = new NYTCorpusDocument();
+    nytdoc.setBody(body);
+    return new AnnotatedNYTDocument(nytdoc);
+  }
+
+  private static void assertSameAsList(String body) {
+    AnnotatedNYTDocument doc = withBody(body);
+    ParagraphView view = doc.getBodyParagraphView();
+    assertEquals(doc.getBodyAsList(), view.toList());
+    int i = 0;
+    for (CharSequence p : view) {
+      assertEquals(doc.getBodyAsList().get(i), p.toString());
+      i++;
+    }
+    assertEquals(view.size(), i);
+  }
+
+  @Test
+  public void matchesBodyAsList() {
+    assertSameAsList(null);
+    assertSameAsList("");
+    assertSameAsList(" \n \u00a0 ");
+    assertSameAsList("One paragraph.");
+    assertSameAsList("First.\nSecond.\nThird.");
+    assertSameAsList("\n  Leading and trailing.\nLines.  \n\n");
+    assertSameAsList("Blank\n\nlines\n \nin the middle.");
+    assertSameAsList("\u00a0Non\u2009breaking\u3000spaces.\u00a0\nNext\u202fline.");
+  }
+
+  @Test
+  public void offsetsIndexIntoBody() {
+    String body = "  WASHINGTON, April 30 -- Lead.\nSecond paragraph.\n";
+    ParagraphView view = withBody(body).getBodyParagraphView();
+    assertEquals(2, view.size());
+    assertEquals(body.indexOf("WASHINGTON"), view.start(0));
+    assertEquals(body.indexOf("Lead.") + "Lead.".length(), view.end(0));
+    assertEquals(body.indexOf("Second"), view.start(1));
+    assertEquals("Second paragraph.", body.substring(view.start(1), view.end(1)));
+    assertEquals("paragraph", view.get(1).subSequence(7, 16).toString());
+  }
+
+  @Test
+  public void emptyBody() {
+    assertTrue(withBody(null).getBodyParagraphView().isEmpty());
+    assertTrue(withBody(" \u00a0\n ").getBodyParagraphView().isEmpty());
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+import com.nytlabs.corpus.NYTCorpusDocumentParser;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.cache.ParseCache;
+
+/**
+ * Tests for {@link ParseCache}.
+ */
+public class ParseCacheTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static List<Path> files(Path dir) throws IOException {
+    try (Stream<Path> s = Files.walk(dir)) {
+      return s.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+  }
+
+  private static byte[] variant(byte[] sample, int guid) {
+    return new String(sample, StandardCharsets.ISO_8859_1).replace("752301", Integer.toString(guid))
+        .getBytes(StandardCharsets.ISO_8859_1);
+  }
+
+  @Test
+  public void skipsTheParserOnHits() throws IOException {
+    byte[] sample = Fixtures.readResource("/nitf/sample.xml");
+    NYTCorpusDocumentParser parser = new NYTCorpusDocumentParser();
+    NYTCorpusDocument expected = parser.fromByteArray(sample, false);
+    Path dir = this.tmp.getRoot().toPath().resolve("cache");
+    ParseCache cache = new ParseCache(dir);
+
+    Fixtures.assertSameFields(expected, cache.fromByteArray(parser, sample));
+    assertEquals(0, cache.getHitCount());
+    List<Path> files = files(dir);
+    assertEquals(1, files.size());
+    assertEquals(Files.size(files.get(0)), cache.getSize());
+
+    // a second process sharing the directory
+    ParseCache other = new ParseCache(dir);
+    assertEquals(cache.getSize(), other.getSize());
+    Fixtures.assertSameFields(expected, other.fromByteArray(parser, sample));
+    assertEquals(1, other.getHitCount());
+    assertEquals(0, other.getMissCount());
+
+    // a corrupt file is a miss, and is replaced
+    Files.write(files.get(0), new byte[] { 1, 2, 3 });
+    Fixtures.assertSameFields(expected, cache.fromByteArray(parser, sample));
+    assertEquals(2, cache.getMissCount());
+    Fixtures.assertSameFields(expected, cache.fromByteArray(parser, sample));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, files(dir).size());
+  }
+
+  @Test
+  public void evictsToStayWithinItsBound() throws IOException {
+    byte[] sample = Fixtures.readResource("/nitf/sample.xml");
+    NYTCorpusDocumentParser parser = new NYTCorpusDocumentParser();
+    Path dir = this.tmp.getRoot().toPath().resolve("cache");
+    new ParseCache(dir).fromByteArray(parser, sample);
+    long fileSize = Files.size(files(dir).get(0));
+
+    ParseCache cache = new ParseCache(dir, 5 * fileSize + fileSize / 2);
+    for (int guid = 1; guid <= 20; guid++)
+      assertEquals(guid, cache.fromByteArray(parser, variant(sample, guid)).getGuid());
+    assertTrue(cache.getSize() <= 5 * fileSize + fileSize / 2);
+    assertTrue(files(dir).size() <= 5);
+    assertEquals(cache.getSize(), files(dir).stream().mapToLong(p -> p.toFile().length()).sum());
+  }
+
+  @Test
+  public void cachesCorpusReads() throws IOException {
+    byte[] sample = Fixtures.readResource("/nitf/sample.xml");
+    Path data = this.tmp.getRoot().toPath().resolve("data");
+    Fixtures.writeArchive(data.resolve("1995/01.tgz"), sample, variant(sample, 7), sample);
+    ParseCache cache = new ParseCache(this.tmp.getRoot().toPath().resolve("cache"));
+    CorpusReader reader = new CorpusReader(data, cache);
+    int[] guids = new int[6];
+    int[] n = new int[1];
+    reader.readAll(doc -> guids[n[0]++] = doc.getGuid());
+    reader.readAll(doc -> guids[n[0]++] = doc.getGuid());
+    assertEquals(6, n[0]);
+    assertEquals(752301, guids[5]);
+    assertEquals(7, guids[4]);
+    assertEquals(2, cache.getMissCount());
+    assertEquals(4, cache.getHitCount());
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument;
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.CorpusReader.DocumentHandler;
+import edu.jhu.hlt.annotatednyt.perf.PipelineMetrics;
+import edu.jhu.hlt.annotatednyt.perf.PipelineStage;
+
+/**
+ * Tests for {@link PipelineMetrics}.
+ */
+public class PipelineMetricsTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @After
+  public void tearDown() throws Exception {
+    PipelineMetrics.setEnabled(false);
+    PipelineMetrics.unregisterMBeans();
+    PipelineMetrics.reset();
+  }
+
+  @Test
+  public void recordsEveryStageOnlyWhenEnabled() throws Exception {
+    byte[] sample = Fixtures.readResource("/nitf/sample.xml");
+    Path archive = this.tmp.getRoot().toPath().resolve("data/1995/03.tgz");
+    Fixtures.writeArchive(archive, sample, sample, sample);
+    CorpusReader reader = new CorpusReader(archive.getParent().getParent());
+
+    PipelineMetrics.reset();
+    reader.read(archive, DocumentHandler.wrapping(AnnotatedNYTDocument::getBodyAsList));
+    PipelineMetrics.Snapshot off = PipelineMetrics.snapshot();
+    for (PipelineStage s : PipelineStage.values())
+      assertEquals(0, off.getInterval(s).getTotalCount());
+    assertEquals(0, off.getDocuments());
+
+    PipelineMetrics.setEnabled(true);
+    reader.read(archive, DocumentHandler.wrapping(AnnotatedNYTDocument::getBodyAsList));
+    PipelineMetrics.Snapshot on = PipelineMetrics.snapshot();
+    for (PipelineStage s : PipelineStage.values())
+      assertEquals(s.toString(), 3, on.getInterval(s).getTotalCount());
+    assertEquals(3, on.getDocuments());
+    assertEquals(3L * sample.length, on.getInflatedBytes());
+    assertTrue(on.getInterval(PipelineStage.DOM).getMaxValue() > 0);
+    assertTrue(on.toString().contains("extract"));
+
+    // the next interval is empty, but the totals remain
+    PipelineMetrics.Snapshot next = PipelineMetrics.snapshot();
+    assertEquals(0, next.getInterval(PipelineStage.DOM).getTotalCount());
+    assertEquals(3, next.getTotal(PipelineStage.DOM).getTotalCount());
+
+    PipelineMetrics.registerMBeans();
+    PipelineMetrics.registerMBeans();
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName dom = new ObjectName("edu.jhu.hlt.annotatednyt:type=PipelineMetrics,stage=dom");
+    assertEquals(3L, server.getAttribute(dom, "Count"));
+    assertTrue((Long) server.getAttribute(dom, "P99Nanos") > 0);
+    ObjectName control = new ObjectName("edu.jhu.hlt.annotatednyt:type=PipelineMetrics");
+    assertEquals(3L, server.getAttribute(control, "Documents"));
+    server.setAttribute(control, new Attribute("Enabled", false));
+    assertFalse(PipelineMetrics.isEnabled());
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+import com.nytlabs.corpus.NYTCorpusDocumentParser;
+
+import edu.jhu.hlt.annotatednyt.AnnotatedNYTDocument;
+import edu.jhu.hlt.annotatednyt.ParagraphView;
+import edu.jhu.hlt.annotatednyt.text.SentenceBuffer;
+import edu.jhu.hlt.annotatednyt.text.SentenceSplitter;
+import edu.jhu.hlt.annotatednyt.text.TokenBuffer;
+import edu.jhu.hlt.annotatednyt.text.Tokenizer;
+
+/**
+ * Tests for {@link Tokenizer#tokenizeNewswire} and {@link SentenceSplitter}.
+ */
+public class SentenceSplitterTest {
+
+  private static List<String> tokens(String text) {
+    TokenBuffer tokens = new TokenBuffer(1);
+    Tokenizer.tokenizeNewswire(text, 0, text.length(), tokens);
+    List<String> out = new ArrayList<>();
+    for (int i = 0; i < tokens.size(); i++)
+      out.add(text.substring(tokens.start(i), tokens.end(i)) + "/" + tokens.type(i));
+    return out;
+  }
+
+  private static List<String> sentences(String body) {
+    ParagraphView view = ParagraphView.of(body);
+    TokenBuffer tokens = new TokenBuffer();
+    SentenceBuffer sentences = new SentenceBuffer();
+    SentenceSplitter.split(view, tokens, sentences);
+    String text = view.getText().toString();
+    List<String> out = new ArrayList<>();
+    for (int i = 0; i < sentences.size(); i++)
+      out.add(text.substring(tokens.start(sentences.start(i)), tokens.end(sentences.end(i) - 1)));
+    return out;
+  }
+
+  @Test
+  public void tokenizesNewswire() {
+    assertEquals(Arrays.asList("O'Brien/0", "paid/0", "$/2", "1,250.50/1", "to/0", "AT&T/0", "Inc./3",
+        "--/2", "a/0", "U.S./3", "mother-in-law/0", "./2", ".../2"),
+        tokens("O'Brien paid $1,250.50 to AT&T Inc. -- a U.S. mother-in-law. ..."));
+    assertEquals(Arrays.asList("ST./3", "LOUIS/0", ",/2", "Jan./3", "5/1", "Rudolph/0", "W./3",
+        "Giuliani/0", "said/0", "\"/2", "no/0", "!/2", "\"/2"),
+        tokens("ST. LOUIS, Jan. 5 Rudolph W. Giuliani said \"no!\""));
+  }
+
+  @Test
+  public void splitsSentences() {
+    assertEquals(Arrays.asList(
+        "ST. LOUIS, Jan. 5 -- Mr. Smith met Rudolph W. Giuliani at 3 p.m. on Tuesday.",
+        "\"Why?\" he asked.",
+        "\"Because.\"",
+        "Sales at Acme Inc. rose 5.5 percent in the U.S.",
+        "The company said so!",
+        "A new paragraph",
+        "Another one."),
+        sentences("ST. LOUIS, Jan. 5 -- Mr. Smith met Rudolph W. Giuliani at 3 p.m. on Tuesday. \"Why?\" he asked. "
+            + "\"Because.\" Sales at Acme Inc. rose 5.5 percent in the U.S. The company said so!\n"
+            + "A new paragraph\nAnother one."));
+  }
+
+  @Test
+  public void coversEveryTokenOfTheSampleBody() throws Exception {
+    NYTCorpusDocument nytdoc = new NYTCorpusDocumentParser().fromByteArray(
+        Fixtures.readResource("/nitf/sample.xml"), false);
+    ParagraphView view = new AnnotatedNYTDocument(nytdoc).getBodyParagraphView();
+    TokenBuffer tokens = new TokenBuffer();
+    SentenceBuffer sentences = new SentenceBuffer();
+    SentenceSplitter.split(view, tokens, sentences);
+    assertTrue(sentences.size() >= view.size());
+    int next = 0;
+    for (int i = 0; i < sentences.size(); i++) {
+      assertEquals(next, sentences.start(i));
+      assertTrue(sentences.end(i) > next);
+      next = sentences.end(i);
+    }
+    assertEquals(tokens.size(), next);
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.jhu.hlt.annotatednyt.SpaceNormalizer;
+
+/**
+ * Checks {@link SpaceNormalizer} against the regular expression it replaces.
+ */
+public class SpaceNormalizerTest {
+
+  private static final char[] ALPHABET = { 'a', 'Z', '0', ' ', '\n', '\t', '.', '\u00a0',
+      '\u2009', '\u3000', '\u202f', '\u00e9', '\u2014', '\u200b', '\u0001' };
+
+  private static String reference(String s) {
+    if (s == null)
+      return null;
+    String t = s.replaceAll("\\p{Zs}", " ").trim();
+    return t.isEmpty() ? null : t;
+  }
+
+  @Test
+  public void matchesRegex() {
+    Random r = new Random(42);
+    for (int n = 0; n < 5000; n++) {
+      char[] cs = new char[r.nextInt(40)];
+      for (int i = 0; i < cs.length; i++)
+        cs[i] = ALPHABET[r.nextInt(ALPHABET.length)];
+      String s = new String(cs);
+      assertEquals(s.replaceAll("\\p{Zs}", " "), SpaceNormalizer.normalize(s));
+      assertEquals(reference(s), SpaceNormalizer.normalizeAndTrim(s));
+    }
+  }
+
+  @Test
+  public void asciiFastPath() {
+    String s = "No separators here.\nJust ASCII.";
+    assertSame(s, SpaceNormalizer.normalize(s));
+    assertSame(s, SpaceNormalizer.normalizeAndTrim(s));
+    assertNull(SpaceNormalizer.normalizeAndTrim(null));
+    assertNull(SpaceNormalizer.normalizeAndTrim(" \u00a0\n"));
+  }
+}
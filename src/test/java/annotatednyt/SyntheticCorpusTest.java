@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+import com.nytlabs.corpus.NYTCorpusDocumentParser;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.DocumentField;
+import edu.jhu.hlt.annotatednyt.synth.NitfGenerator;
+import edu.jhu.hlt.annotatednyt.synth.SyntheticCorpusWriter;
+
+/**
+ * Tests for {@link NitfGenerator} and {@link SyntheticCorpusWriter}.
+ */
+public class SyntheticCorpusTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void generatesEveryField() {
+    NitfGenerator gen = new NitfGenerator(7, 0.01);
+    NYTCorpusDocumentParser parser = new NYTCorpusDocumentParser();
+    Set<DocumentField> seen = EnumSet.noneOf(DocumentField.class);
+    int missingPages = 0;
+    LocalDate first = LocalDate.of(1995, 1, 1);
+    for (int guid = 1; guid <= 1000; guid++) {
+      LocalDate date = first.plusDays(guid * 2);
+      NYTCorpusDocument doc = parser.fromByteArray(gen.generate(guid, date), false);
+      assertNotNull(doc);
+      assertEquals(guid, doc.getGuid());
+      assertEquals(Integer.valueOf(date.getYear()), doc.getPublicationYear());
+      assertEquals(Integer.valueOf(date.getMonthValue()), doc.getPublicationMonth());
+      if (doc.getPage() == null)
+        missingPages++;
+      for (DocumentField f : DocumentField.values()) {
+        Object v = f.get(doc);
+        if (v != null && !(v instanceof Collection && ((Collection<?>) v).isEmpty()))
+          seen.add(f);
+      }
+    }
+    Set<DocumentField> missing = EnumSet.complementOf(EnumSet.copyOf(seen));
+    // the parser never sets a source file for in-memory documents
+    assertEquals(EnumSet.of(DocumentField.SOURCE_FILE), missing);
+    assertTrue(missingPages > 0 && missingPages < 200);
+
+    LocalDate d = LocalDate.of(2001, 9, 12);
+    assertArrayEquals(gen.generate(42, d), new NitfGenerator(7, 0.01).generate(42, d));
+    assertFalse(gen.generateString(42, d).equals(new NitfGenerator(8, 0.01).generateString(42, d)));
+  }
+
+  @Test
+  public void writesReadableReproducibleCorpus() throws IOException {
+    SyntheticCorpusWriter writer = new SyntheticCorpusWriter(new NitfGenerator(3), 0.002);
+    Path data = this.tmp.getRoot().toPath().resolve("data");
+    long n = writer.write(data, YearMonth.of(1999, 11), YearMonth.of(2000, 2), 2);
+    assertEquals(writer.getDocumentCount(YearMonth.of(1999, 11)) + writer.getDocumentCount(YearMonth.of(1999, 12))
+        + writer.getDocumentCount(YearMonth.of(2000, 1)) + writer.getDocumentCount(YearMonth.of(2000, 2)), n);
+
+    CorpusReader reader = new CorpusReader(data);
+    List<Path> archives = reader.getArchives();
+    assertEquals(4, archives.size());
+    assertEquals(data.resolve("1999/11.tgz"), archives.get(0));
+    assertEquals(data.resolve("2000/02.tgz"), archives.get(3));
+    List<NYTCorpusDocument> docs = new ArrayList<>();
+    reader.readAll(docs::add);
+    assertEquals(n, docs.size());
+    for (int i = 0; i < docs.size(); i++)
+      assertEquals(i, docs.get(i).getGuid());
+    assertEquals(Integer.valueOf(1999), docs.get(0).getPublicationYear());
+    assertEquals(Integer.valueOf(11), docs.get(0).getPublicationMonth());
+    assertEquals(Integer.valueOf(2), docs.get(docs.size() - 1).getPublicationMonth());
+
+    Path again = this.tmp.getRoot().toPath().resolve("again");
+    writer.write(again, YearMonth.of(1999, 11), YearMonth.of(2000, 2), 1);
+    for (Path a : archives)
+      assertArrayEquals(Files.readAllBytes(a), Files.readAllBytes(again.resolve(data.relativize(a))));
+  }
+}
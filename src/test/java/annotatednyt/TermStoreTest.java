@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.nytlabs.corpus.NYTCorpusDocument;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.DocumentField;
+import edu.jhu.hlt.annotatednyt.index.TermStore;
+import edu.jhu.hlt.annotatednyt.index.TermStoreWriter;
+
+/**
+ * Tests for {@link TermStore} and {@link TermStoreWriter}.
+ */
+public class TermStoreTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  // in UTF-8 byte order
+  private static final List<String> TERMS = Arrays.asList("", "Baseball", "Basketball", "Boxing", "Boxing Day",
+      "Football", "Golf", "caf\u00e9", "caf\u00e9s", "\u65e5\u672c", "\ud83d\ude00");
+
+  @Test
+  public void looksUpTermsAndPostings() throws IOException {
+    Path dir = this.tmp.getRoot().toPath().resolve("store");
+    try (TermStoreWriter w = new TermStoreWriter(dir, 3)) {
+      for (int i = 0; i < TERMS.size(); i++)
+        w.add(TERMS.get(i), new int[] { i, 10 * i + 1, 1000000 + i, -1 }, 3);
+    }
+    TermStore s = TermStore.open(dir);
+    assertEquals(TERMS.size(), s.size());
+    for (int i = 0; i < TERMS.size(); i++) {
+      assertEquals(i, s.find(TERMS.get(i)));
+      assertEquals(TERMS.get(i), s.term(i));
+      assertEquals(3, s.docFreq(i));
+      assertArrayEquals(new int[] { i, 10 * i + 1, 1000000 + i }, s.postings(TERMS.get(i)));
+    }
+    assertEquals(-1, s.find("Boxin"));
+    assertEquals(-1, s.find("Zzz"));
+    assertEquals(0, s.postings("Basket").length);
+    assertEquals(3, s.ceiling("Boxin"));
+    assertEquals(5, s.ceiling("Boxing!"));
+    // UTF-8 order is code point order: U+FFFF sorts before supplementary characters
+    assertEquals(TERMS.size() - 1, s.ceiling("\uffff"));
+    assertEquals(TERMS.size(), s.ceiling("\udbff\udfff"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnsortedTerms() throws IOException {
+    try (TermStoreWriter w = new TermStoreWriter(this.tmp.getRoot().toPath())) {
+      w.add("b", new int[0], 0);
+      w.add("a", new int[0], 0);
+    }
+  }
+
+  @Test
+  public void mergesTermsWithTheSameBytes() throws IOException {
+    Path dir = this.tmp.getRoot().toPath().resolve("store");
+    Map<String, int[]> terms = new HashMap<>();
+    terms.put("b", new int[] { 3, 1, 3 });
+    // unpaired surrogates are each encoded as '?'
+    terms.put("a\ud800", new int[] { 7 });
+    terms.put("a\udc00", new int[] { 2 });
+    terms.put("a?", new int[] { 5, 2 });
+    TermStoreWriter.write(terms, dir);
+    TermStore s = TermStore.open(dir);
+    assertEquals(2, s.size());
+    assertEquals("a?", s.term(0));
+    assertArrayEquals(new int[] { 2, 5, 7 }, s.postings("a?"));
+    assertArrayEquals(new int[] { 1, 3 }, s.postings("b"));
+  }
+
+  @Test
+  public void indexesAField() throws IOException {
+    Path root = this.tmp.getRoot().toPath();
+    CorpusReader reader = Fixtures.corpus(root, new String[] { "1995/01.tgz", "1995/02.tgz" }, 3);
+    TreeMap<String, List<Integer>> expected = new TreeMap<>();
+    for (NYTCorpusDocument d : Fixtures.readAll(reader))
+      for (String p : d.getPeople()) {
+        List<Integer> guids = expected.computeIfAbsent(p, k -> new ArrayList<>());
+        if (guids.isEmpty() || guids.get(guids.size() - 1) != d.getGuid())
+          guids.add(d.getGuid());
+      }
+    Path dir = root.resolve("people");
+    TermStoreWriter.writeField(reader, DocumentField.PEOPLE, dir, 2);
+    TermStore s = TermStore.open(dir);
+    assertTrue(expected.size() > 6);
+    assertEquals(expected.size(), s.size());
+    int i = 0;
+    for (Map.Entry<String, List<Integer>> e : expected.entrySet()) {
+      assertEquals(e.getKey(), s.term(i++));
+      assertEquals(e.getKey(), e.getValue().toString(), Arrays.toString(s.postings(e.getKey())));
+    }
+    try (TermStoreWriter w = new TermStoreWriter(root.resolve("empty"))) {
+      assertEquals(0, w.size());
+    }
+    TermStore empty = TermStore.open(root.resolve("empty"));
+    assertEquals(0, empty.ceiling("x"));
+    assertEquals(-1, empty.find(""));
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2012-2015 Johns Hopkins University HLTCOE. All rights reserved.
+ * See LICENSE in the project root directory.
+ */
+package annotatednyt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.jhu.hlt.annotatednyt.CorpusReader;
+import edu.jhu.hlt.annotatednyt.perf.ThroughputBenchmark;
+import edu.jhu.hlt.annotatednyt.perf.ThroughputBenchmark.ParseMode;
+import edu.jhu.hlt.annotatednyt.perf.ThroughputBenchmark.Result;
+import edu.jhu.hlt.annotatednyt.synth.NitfGenerator;
+import edu.jhu.hlt.annotatednyt.synth.SyntheticCorpusWriter;
+
+/**
+ * Tests for {@link ThroughputBenchmark}.
+ */
+public class ThroughputBenchmarkTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void measuresEveryStage() throws IOException {
+    Path data = this.tmp.getRoot().toPath().resolve("data");
+    long n = new SyntheticCorpusWriter(new NitfGenerator(1, 0), 0.002)
+        .write(data, YearMonth.of(2003, 1), YearMonth.of(2003, 3), 1);
+    ThroughputBenchmark bench = new ThroughputBenchmark(new CorpusReader(data));
+
+    Result full = bench.run(2, ParseMode.FULL, true);
+    assertEquals(n, full.getDocuments());
+    assertTrue(full.getCompressedBytes() > 0);
+    assertTrue(full.getUncompressedBytes() > 2 * full.getCompressedBytes());
+    assertTrue(full.getParagraphs() > n);
+    assertTrue(full.getParseCpuNanos() > 0);
+    assertTrue(full.getPeakHeapBytes() > 0);
+    assertTrue(full.getDocumentsPerSecond() > 0);
+
+    Result none = bench.run(1, ParseMode.NONE, true);
+    assertEquals(n, none.getDocuments());
+    assertEquals(full.getUncompressedBytes(), none.getUncompressedBytes());
+    assertEquals(0, none.getParagraphs());
+
+    StringBuilder table = new StringBuilder();
+    ThroughputBenchmark.writeTable(Arrays.asList(full, none), table);
+    assertEquals(3, table.toString().split("\n").length);
+    StringBuilder json = new StringBuilder();
+    ThroughputBenchmark.writeJson(Arrays.asList(full, none), json);
+    assertTrue(json.toString().contains("\"mode\":\"FULL\",\"wrap\":true,\"documents\":" + n + ","));
+    assertTrue(json.toString().contains("\"mode\":\"NONE\",\"wrap\":false,"));
+  }
+}